@@ -0,0 +1,38 @@
+package com.github.j3t.mvnio.maven;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+
+/**
+ * Throughput of the content type lookup which is done for each upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ContentTypeResolverBenchmark {
+
+    @Param({
+            "/com/github/j3t/mvnio/1.0.1/mvnio-1.0.1.jar",
+            "/com/github/j3t/mvnio/1.0.1/mvnio-1.0.1.pom.sha1",
+            "/com/github/j3t/mvnio/1.0.1/mvnio-1.0.1.unknown"})
+    String path;
+
+    @Benchmark
+    public MediaType findByPath() {
+        return ContentTypeResolver.findByPath(path).block();
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.j3t.mvnio.maven.validation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the validators which are applied to each request path. The paths are valid, so that every validator
+ * runs to completion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ValidatorBenchmark {
+
+    String releasePath = "/com/github/j3t/mvnio/1.0.1/mvnio-1.0.1-sources.jar";
+    String snapshotPath = "/com/github/j3t/mvnio/1.0.1-SNAPSHOT/mvnio-1.0.1-20230611.123456-42.pom";
+    String metadataPath = "/com/github/j3t/mvnio/maven-metadata.xml";
+    String[] groupIdParts = {"com", "github", "j3t"};
+
+    @Benchmark
+    public Error artifactPath() {
+        return new ArtifactPathValidator(releasePath).validate().block();
+    }
+
+    @Benchmark
+    public Error snapshotArtifactPath() {
+        return new ArtifactPathValidator(snapshotPath).validate().block();
+    }
+
+    @Benchmark
+    public Coordinates parse() {
+        return Coordinates.parse(releasePath);
+    }
+
+    @Benchmark
+    public Coordinates parseSnapshot() {
+        return Coordinates.parse(snapshotPath);
+    }
+
+    @Benchmark
+    public Error metadataPath() {
+        return new MetadataPathValidator(metadataPath).validate().block();
+    }
+
+    @Benchmark
+    public Error group() {
+        return new GroupValidator(groupIdParts).validate().block();
+    }
+
+    @Benchmark
+    public Error id() {
+        return new IdValidator("mvnio").validate().block();
+    }
+
+    @Benchmark
+    public Error version() {
+        return new VersionValidator("1.0.1-SNAPSHOT").validate().block();
+    }
+
+    @Benchmark
+    public Error artifactFilename() {
+        return new ArtifactFilenameValidator("mvnio-1.0.1-sources.jar", "1.0.1", "mvnio").validate().block();
+    }
+
+    @Benchmark
+    public Error snapshotArtifactFilename() {
+        return new ArtifactFilenameValidator("mvnio-1.0.1-20230611.123456-42.pom", "1.0.1-SNAPSHOT", "mvnio")
+                .validate()
+                .block();
+    }
+}
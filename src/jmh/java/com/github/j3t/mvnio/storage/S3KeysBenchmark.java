@@ -0,0 +1,51 @@
+package com.github.j3t.mvnio.storage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the key and prefix helpers of {@link S3RepositoryS3AsyncClientImpl} and {@link S3Repository}, which are
+ * applied to each listed object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class S3KeysBenchmark {
+
+    String path = "/com/github/j3t/mvnio";
+    String key = "com/github/j3t/mvnio/1.0.1/mvnio-1.0.1.jar";
+    String prefix = "com/github/j3t/mvnio/1.0.1/";
+    String metadataKey = "com/github/j3t/mvnio/maven-metadata.xml";
+
+    @Benchmark
+    public String toPrefix() {
+        return S3RepositoryS3AsyncClientImpl.toPrefix(path);
+    }
+
+    @Benchmark
+    public String toFile() {
+        return S3RepositoryS3AsyncClientImpl.toFile(key);
+    }
+
+    @Benchmark
+    public String toDirectory() {
+        return S3RepositoryS3AsyncClientImpl.toDirectory(prefix);
+    }
+
+    @Benchmark
+    public boolean isMetadata() {
+        return S3Repository.isMetadata(metadataKey);
+    }
+}
@@ -1,15 +1,41 @@
 package com.github.j3t.mvnio;
 
+import java.net.URI;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 
+import com.github.j3t.mvnio.maven.GroupResolver;
+import com.github.j3t.mvnio.maven.metadata.MetadataUpdater;
+import com.github.j3t.mvnio.metrics.RequestMetricsWebFilter;
+import com.github.j3t.mvnio.metrics.S3MetricPublisher;
+import com.github.j3t.mvnio.metrics.ServerTimingWebFilter;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.MultipartUploader;
 import com.github.j3t.mvnio.storage.S3CredentialsWebFilter;
 import com.github.j3t.mvnio.storage.S3Repository;
 import com.github.j3t.mvnio.storage.S3RepositoryS3AsyncClientImpl;
+import com.github.j3t.mvnio.storage.cache.DenialCacheS3Repository;
+import com.github.j3t.mvnio.storage.cache.DiskCacheS3Repository;
+import com.github.j3t.mvnio.storage.cache.ExistenceIndexS3Repository;
+import com.github.j3t.mvnio.storage.cache.MemoryCacheS3Repository;
+import com.github.j3t.mvnio.storage.cache.NegativeCacheS3Repository;
+import com.github.j3t.mvnio.storage.cache.SingleFlightS3Repository;
+import com.github.j3t.mvnio.storage.checksum.ChecksumS3Repository;
+import com.github.j3t.mvnio.storage.crawl.ShardedCrawlS3Repository;
+import com.github.j3t.mvnio.storage.index.MetadataIndexS3Repository;
+import com.github.j3t.mvnio.storage.limit.ConcurrencyLimitS3Repository;
+import com.github.j3t.mvnio.storage.proxy.ProxyS3Repository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.util.unit.DataSize;
 
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
 import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
@@ -33,10 +59,10 @@ public class App {
     }
 
     @Bean
-    S3AsyncClient s3client(AppProperties appProperties) {
+    S3AsyncClient s3client(AppProperties appProperties, MeterRegistry meterRegistry) {
         SdkAsyncHttpClient httpClient = NettyNioAsyncHttpClient.builder()
                 .writeTimeout(Duration.ZERO)
-                .maxConcurrency(64)
+                .maxConcurrency(appProperties.getS3MaxConcurrency())
                 .build();
 
         S3Configuration serviceConfiguration = S3Configuration.builder()
@@ -50,6 +76,12 @@ public class App {
                 .region(Region.of(appProperties.getS3Region()))
                 .serviceConfiguration(serviceConfiguration);
 
+        if (appProperties.isMetricsEnabled()) {
+            builder.overrideConfiguration(ClientOverrideConfiguration.builder()
+                    .addMetricPublisher(new S3MetricPublisher(meterRegistry))
+                    .build());
+        }
+
         if (appProperties.isS3OverrideEndpoint()) {
             builder.endpointOverride(appProperties.getS3Endpoint());
         }
@@ -58,13 +90,187 @@ public class App {
     }
 
     @Bean
-    S3Repository s3Repository(S3AsyncClient s3client) {
-        return new S3RepositoryS3AsyncClientImpl(s3client);
+    BucketPermissions bucketPermissions(AppProperties appProperties) {
+        return new BucketPermissions(appProperties.getCachePermissionsTtl(), 100_000, appProperties.getDenialCacheTtl());
+    }
+
+    @Bean
+    S3Repository s3Repository(S3AsyncClient s3client,
+                              AppProperties appProperties,
+                              BucketPermissions bucketPermissions,
+                              MeterRegistry meterRegistry) {
+
+        var multipartUploader = new MultipartUploader(s3client,
+                appProperties.getS3MultipartPartSize(),
+                appProperties.getS3MultipartParallelism(),
+                appProperties.getS3MultipartMaxRetries(),
+                appProperties.getS3MultipartMaxBuffers(),
+                appProperties.getS3MultipartAcquireTimeout());
+        multipartUploader.bindTo(meterRegistry);
+
+        S3Repository s3Repository = new S3RepositoryS3AsyncClientImpl(s3client,
+                multipartUploader,
+                appProperties.getS3MultipartThreshold().toBytes(),
+                appProperties.getS3ListPageSize());
+
+        if (appProperties.isS3LimiterEnabled()) {
+            var limiter = new ConcurrencyLimitS3Repository(s3Repository,
+                    appProperties.getS3LimiterInitialLimit(),
+                    appProperties.getS3MaxConcurrency(),
+                    appProperties.getS3LimiterLatencyThreshold(),
+                    appProperties.getS3LimiterMaxQueue(),
+                    appProperties.getS3LimiterMaxWait(),
+                    appProperties.getS3MultipartThreshold().toBytes(),
+                    appProperties.getS3MultipartParallelism(),
+                    appProperties.getS3LimiterUnclaimedTimeout(),
+                    appProperties.getS3ListPageSize());
+            limiter.bindTo(meterRegistry);
+            s3Repository = limiter;
+        }
+
+        if (appProperties.isS3CrawlEnabled()) {
+            s3Repository = new ShardedCrawlS3Repository(s3Repository,
+                    appProperties.getS3CrawlParallelism(),
+                    appProperties.getS3CrawlShardDepth());
+        }
+
+        if (appProperties.isMetadataIndexEnabled()) {
+            var metadataIndex = new MetadataIndexS3Repository(s3Repository,
+                    appProperties.getMetadataIndexRefreshInterval(),
+                    appProperties.getMetadataIndexFlushDelay(),
+                    appProperties.getMetadataIndexCrawlParallelism(),
+                    appProperties.isS3ConditionalWrites(),
+                    bucketPermissions);
+            metadataIndex.bindTo(meterRegistry);
+            s3Repository = metadataIndex;
+        }
+
+        if (!appProperties.getProxyUpstreams().isEmpty()) {
+            var upstreams = new HashMap<String, URI>();
+            appProperties.getProxyUpstreams().forEach((bucket, url) -> upstreams.put(bucket, URI.create(url)));
+
+            var proxy = new ProxyS3Repository(s3Repository,
+                    upstreams,
+                    appProperties.getProxyMaxConnections(),
+                    appProperties.getProxyTimeout(),
+                    appProperties.getProxyUnclaimedTimeout());
+            proxy.bindTo(meterRegistry);
+            s3Repository = proxy;
+        }
+
+        if (appProperties.isDiskCacheEnabled()) {
+            var diskCache = new DiskCacheS3Repository(s3Repository,
+                    appProperties.getDiskCacheDirectory(),
+                    appProperties.getDiskCacheMaxSize(),
+                    bucketPermissions);
+            diskCache.bindTo(meterRegistry);
+            s3Repository = diskCache;
+        }
+
+        if (appProperties.isSingleFlightEnabled()) {
+            var singleFlight = new SingleFlightS3Repository(s3Repository,
+                    appProperties.getSingleFlightReplaySize(),
+                    bucketPermissions,
+                    appProperties.getSingleFlightUnclaimedTimeout());
+            singleFlight.bindTo(meterRegistry);
+            s3Repository = singleFlight;
+        }
+
+        if (appProperties.isMemoryCacheEnabled()) {
+            var memoryCache = new MemoryCacheS3Repository(s3Repository,
+                    appProperties.getMemoryCacheMaxSize(),
+                    appProperties.getMemoryCacheMaxObjectSize(),
+                    appProperties.getMemoryCacheMutableTtl(),
+                    bucketPermissions);
+            memoryCache.bindTo(meterRegistry);
+            s3Repository = memoryCache;
+        }
+
+        if (appProperties.isNegativeCacheEnabled()) {
+            var negativeCache = new NegativeCacheS3Repository(s3Repository,
+                    appProperties.getNegativeCacheTtl(),
+                    appProperties.getNegativeCacheMaxSize(),
+                    bucketPermissions);
+            negativeCache.bindTo(meterRegistry);
+            s3Repository = negativeCache;
+        }
+
+        if (appProperties.isChecksumsEnabled()) {
+            // the checksums are stored as metadata only along with files which are not uploaded in parts
+            var checksums = new ChecksumS3Repository(s3Repository,
+                    100_000,
+                    DataSize.ofBytes(Math.min(appProperties.getChecksumsMaxObjectSize().toBytes(),
+                            appProperties.getS3MultipartThreshold().toBytes())),
+                    bucketPermissions);
+            checksums.bindTo(meterRegistry);
+            s3Repository = checksums;
+        }
+
+        if (appProperties.isExistenceIndexEnabled()) {
+            // without conditional writes, a missing artifact must be confirmed by S3 before each upload
+            if (!appProperties.isS3ConditionalWrites()) {
+                throw new IllegalStateException("index.existence.enabled requires s3.conditional-writes=true");
+            }
+
+            var existenceIndex = new ExistenceIndexS3Repository(s3Repository,
+                    appProperties.getExistenceIndexExpectedKeys(),
+                    appProperties.getExistenceIndexRefreshInterval(),
+                    100_000,
+                    appProperties.getExistenceIndexExistingTtl(),
+                    bucketPermissions);
+            existenceIndex.bindTo(meterRegistry);
+            s3Repository = existenceIndex;
+        }
+
+        if (appProperties.isDenialCacheEnabled()) {
+            var denialCache = new DenialCacheS3Repository(s3Repository, bucketPermissions);
+            denialCache.bindTo(meterRegistry);
+            s3Repository = denialCache;
+        }
+
+        return s3Repository;
+    }
+
+    @Bean
+    MetadataUpdater metadataUpdater(S3Repository s3Repository, AppProperties appProperties) {
+        // the checksum files are written by the repository if it computes them for each upload
+        return new MetadataUpdater(s3Repository,
+                appProperties.getMavenMetadataMaxRetries(),
+                appProperties.isS3ConditionalWrites(),
+                !appProperties.isChecksumsEnabled());
+    }
+
+    @Bean
+    GroupResolver groupResolver(S3Repository s3Repository, AppProperties appProperties, MeterRegistry meterRegistry) {
+        var groups = new HashMap<String, List<String>>();
+        appProperties.getMavenGroups().forEach((group, members) -> groups.put(group, List.of(members.split("\\s*,\\s*"))));
+
+        var groupResolver = new GroupResolver(s3Repository, groups, appProperties.getMavenGroupsCacheTtl(), 100_000);
+        groupResolver.bindTo(meterRegistry);
+        return groupResolver;
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "metrics.enabled", matchIfMissing = true)
+    RequestMetricsWebFilter requestMetricsFilter(AppProperties appProperties, MeterRegistry meterRegistry) {
+        var configured = new HashSet<String>();
+        configured.addAll(appProperties.getMavenGroups().keySet());
+        configured.addAll(appProperties.getProxyUpstreams().keySet());
+
+        return new RequestMetricsWebFilter(meterRegistry, appProperties.getMetricsMaxRepositories(), configured);
+    }
+
+    @Bean
+    ServerTimingWebFilter serverTimingFilter(AppProperties appProperties) {
+        return new ServerTimingWebFilter(appProperties.isServerTimingEnabled(), appProperties.getSlowRequestThreshold());
     }
 
     @Bean
-    S3CredentialsWebFilter credentialContextFilter() {
-        return new S3CredentialsWebFilter();
+    S3CredentialsWebFilter credentialContextFilter(AppProperties appProperties, MeterRegistry meterRegistry) {
+        var filter = new S3CredentialsWebFilter(appProperties.getCredentialsCacheTtl(),
+                appProperties.getCredentialsCacheMaxSize());
+        filter.bindTo(meterRegistry);
+        return filter;
     }
 
 }
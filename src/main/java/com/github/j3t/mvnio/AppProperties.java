@@ -4,6 +4,11 @@ import lombok.Data;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import org.springframework.util.unit.DataSize;
 
 /**
  * Stores configuration parameters and their defaults.
@@ -20,6 +25,202 @@ public class AppProperties {
     @Value("${s3.endpoint:http://localhost:9000}")
     private URI s3Endpoint;
 
+    @Value("${s3.multipart.threshold:16MB}")
+    private DataSize s3MultipartThreshold;
+
+    @Value("${s3.multipart.part-size:8MB}")
+    private DataSize s3MultipartPartSize;
+
+    @Value("${s3.multipart.parallelism:4}")
+    private int s3MultipartParallelism;
+
+    @Value("${s3.multipart.max-retries:3}")
+    private int s3MultipartMaxRetries;
+
+    @Value("${s3.multipart.max-buffers:16}")
+    private int s3MultipartMaxBuffers;
+
+    @Value("${s3.multipart.acquire-timeout:10s}")
+    private Duration s3MultipartAcquireTimeout;
+
+    @Value("${s3.list-page-size:1000}")
+    private int s3ListPageSize;
+
+    @Value("${s3.crawl.enabled:false}")
+    private boolean s3CrawlEnabled;
+
+    @Value("${s3.crawl.parallelism:8}")
+    private int s3CrawlParallelism;
+
+    @Value("${s3.crawl.shard-depth:2}")
+    private int s3CrawlShardDepth;
+
+    @Value("${s3.max-concurrency:64}")
+    private int s3MaxConcurrency;
+
+    @Value("${s3.limiter.enabled:false}")
+    private boolean s3LimiterEnabled;
+
+    @Value("${s3.limiter.initial-limit:16}")
+    private int s3LimiterInitialLimit;
+
+    @Value("${s3.limiter.latency-threshold:2s}")
+    private Duration s3LimiterLatencyThreshold;
+
+    @Value("${s3.limiter.max-queue:128}")
+    private int s3LimiterMaxQueue;
+
+    @Value("${s3.limiter.max-wait:1s}")
+    private Duration s3LimiterMaxWait;
+
+    @Value("${s3.limiter.unclaimed-timeout:30s}")
+    private Duration s3LimiterUnclaimedTimeout;
+
+    @Value("${s3.conditional-writes:false}")
+    private boolean s3ConditionalWrites;
+
+    @Value("${metrics.enabled:true}")
+    private boolean metricsEnabled;
+
+    @Value("${metrics.max-repositories:100}")
+    private int metricsMaxRepositories;
+
+    @Value("${metrics.server-timing:false}")
+    private boolean serverTimingEnabled;
+
+    @Value("${metrics.slow-request-threshold:0s}")
+    private Duration slowRequestThreshold;
+
     @Value("${maven.validate:true}")
     private boolean mavenValidate;
+
+    // without s3.conditional-writes the last write of a metadata file wins, updates through other nodes can be lost
+    @Value("${maven.metadata.generate:false}")
+    private boolean mavenMetadataGenerate;
+
+    @Value("${maven.metadata.max-retries:5}")
+    private int mavenMetadataMaxRetries;
+
+    @Value("${maven.bundle.concurrency:8}")
+    private int mavenBundleConcurrency;
+
+    @Value("${maven.bundle.max-size:1GB}")
+    private DataSize mavenBundleMaxSize;
+
+    @Value("${maven.bundle.max-files:100}")
+    private int mavenBundleMaxFiles;
+
+    @Value("${maven.archive.parallelism:4}")
+    private int mavenArchiveParallelism;
+
+    @Value("${maven.archive.max-files:1000}")
+    private int mavenArchiveMaxFiles;
+
+    // e.g. {central:'https://repo1.maven.org/maven2'}
+    @Value("#{${proxy.upstreams:{:}}}")
+    private Map<String, String> proxyUpstreams;
+
+    @Value("${proxy.max-connections:32}")
+    private int proxyMaxConnections;
+
+    @Value("${proxy.timeout:30s}")
+    private Duration proxyTimeout;
+
+    // shorter than proxy.timeout, otherwise the upstream connection times out before it's passed on
+    @Value("${proxy.unclaimed-timeout:5s}")
+    private Duration proxyUnclaimedTimeout;
+
+    // e.g. {public:'releases,snapshots,central'}
+    @Value("#{${maven.groups:{:}}}")
+    private Map<String, String> mavenGroups;
+
+    @Value("${maven.groups.cache-ttl:10m}")
+    private Duration mavenGroupsCacheTtl;
+
+    @Value("${checksums.enabled:false}")
+    private boolean checksumsEnabled;
+
+    // files up to this size get their checksums stored as metadata, larger ones as checksum files
+    @Value("${checksums.max-object-size:1MB}")
+    private DataSize checksumsMaxObjectSize;
+
+    @Value("${cache.permissions-ttl:5m}")
+    private Duration cachePermissionsTtl;
+
+    @Value("${cache.credentials.ttl:5m}")
+    private Duration credentialsCacheTtl;
+
+    @Value("${cache.credentials.max-size:10000}")
+    private long credentialsCacheMaxSize;
+
+    @Value("${cache.denials.enabled:false}")
+    private boolean denialCacheEnabled;
+
+    @Value("${cache.denials.ttl:1m}")
+    private Duration denialCacheTtl;
+
+    @Value("${cache.single-flight.enabled:false}")
+    private boolean singleFlightEnabled;
+
+    @Value("${cache.single-flight.replay-size:64}")
+    private int singleFlightReplaySize;
+
+    @Value("${cache.single-flight.unclaimed-timeout:30s}")
+    private Duration singleFlightUnclaimedTimeout;
+
+    @Value("${cache.memory.enabled:false}")
+    private boolean memoryCacheEnabled;
+
+    @Value("${cache.memory.max-size:64MB}")
+    private DataSize memoryCacheMaxSize;
+
+    @Value("${cache.memory.max-object-size:64KB}")
+    private DataSize memoryCacheMaxObjectSize;
+
+    // changes of mutable objects (e.g. maven-metadata.xml) through other nodes show up after this time at the latest
+    @Value("${cache.memory.mutable-ttl:5s}")
+    private Duration memoryCacheMutableTtl;
+
+    @Value("${cache.negative.enabled:false}")
+    private boolean negativeCacheEnabled;
+
+    @Value("${cache.negative.ttl:30s}")
+    private Duration negativeCacheTtl;
+
+    @Value("${cache.negative.max-size:100000}")
+    private long negativeCacheMaxSize;
+
+    // requires s3.conditional-writes, otherwise every upload must be confirmed by S3 anyway
+    @Value("${index.existence.enabled:false}")
+    private boolean existenceIndexEnabled;
+
+    @Value("${index.existence.expected-keys:1000000}")
+    private long existenceIndexExpectedKeys;
+
+    @Value("${index.existence.refresh-interval:1h}")
+    private Duration existenceIndexRefreshInterval;
+
+    @Value("${index.existence.existing-ttl:10m}")
+    private Duration existenceIndexExistingTtl;
+
+    @Value("${index.metadata.enabled:false}")
+    private boolean metadataIndexEnabled;
+
+    @Value("${index.metadata.refresh-interval:5m}")
+    private Duration metadataIndexRefreshInterval;
+
+    @Value("${index.metadata.flush-delay:10s}")
+    private Duration metadataIndexFlushDelay;
+
+    @Value("${index.metadata.crawl-parallelism:8}")
+    private int metadataIndexCrawlParallelism;
+
+    @Value("${cache.disk.enabled:false}")
+    private boolean diskCacheEnabled;
+
+    @Value("${cache.disk.directory:${java.io.tmpdir}/mvnio-cache}")
+    private Path diskCacheDirectory;
+
+    @Value("${cache.disk.max-size:10GB}")
+    private DataSize diskCacheMaxSize;
 }
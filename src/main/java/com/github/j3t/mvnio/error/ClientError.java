@@ -8,6 +8,15 @@ public class ClientError extends RuntimeException {
         this.returnCode = returnCode;
     }
 
+    /**
+     * @param writableStackTrace false if the error is expected to occur frequently (e.g. load shedding), so that the
+     *                           stack trace, which is of no use anyway, is not created
+     */
+    public ClientError(int returnCode, String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+        this.returnCode = returnCode;
+    }
+
     public int getReturnCode() {
         return returnCode;
     }
@@ -20,8 +20,11 @@ import software.amazon.awssdk.services.s3.model.S3Exception;
 @ControllerAdvice
 public class ErrorHandler {
 
+    // the requests of an overloaded node are rejected, clients should retry soon
+    private static final String RETRY_AFTER_SECONDS = "1";
+
     private static void logError(int status, Exception e) {
-        if (status < 500) {
+        if (status < 500 || e instanceof ClientError) {
             log.debug("status: {}, message: {}", status, e.getMessage());
         } else {
             log.error("status: {}, message: {}", status, e.getMessage(), e);
@@ -45,6 +48,8 @@ public class ErrorHandler {
             if (status == 401) {
                 String bucket = getBucket(swe);
                 httpHeaders.set("WWW-Authenticate", "Basic realm=\"s3\", bucket=\"" + bucket + "\"");
+            } else if (status == 503) {
+                httpHeaders.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
             }
         } else if (e instanceof NoSuchBucketException) {
             status = 404;
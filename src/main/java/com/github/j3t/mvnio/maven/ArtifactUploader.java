@@ -0,0 +1,151 @@
+package com.github.j3t.mvnio.maven;
+
+import static com.github.j3t.mvnio.metrics.ServerTiming.time;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import org.reactivestreams.Publisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import com.github.j3t.mvnio.AppProperties;
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.maven.metadata.MetadataUpdater;
+import com.github.j3t.mvnio.maven.validation.Coordinates;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.checksum.ChecksumS3Repository;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Validates and stores the files of single uploads and of bundles (see {@link BundleUploader}), so that both follow the
+ * same rules: validated artifacts must not exist and must not be overwritten, and the metadata maintained by the server
+ * is updated once an artifact is stored.
+ */
+@Slf4j
+final class ArtifactUploader {
+
+    private final S3Repository s3;
+    private final AppProperties appProperties;
+    private final MetadataUpdater metadataUpdater;
+
+    ArtifactUploader(S3Repository s3, AppProperties appProperties, MetadataUpdater metadataUpdater) {
+        this.s3 = s3;
+        this.appProperties = appProperties;
+        this.metadataUpdater = metadataUpdater;
+    }
+
+    /**
+     * Checks that a given artifact not already exists and can be uploaded. Maven metadata files are ignored. Missing
+     * artifacts are confirmed by S3 (not by caches, which could be outdated), unless uploads are conditional anyway.
+     * Checksum files are not checked if checksums are computed on upload, they are compared with the computed ones
+     * instead (see {@link ChecksumS3Repository}).
+     *
+     * @return the coordinates of the artifact if it has been validated (it must not be overwritten), empty if not (e.g.
+     * metadata)
+     * @throws ClientError if the artifact already exists if path is not valid
+     */
+    Mono<Coordinates> validate(@NonNull String repository,
+                               @NonNull String artifactPath) {
+
+        // check: is a valid metadata path or is artifact validation disabled?
+        if (Coordinates.isMetadata(artifactPath) || !appProperties.isMavenValidate()) {
+            // yes -> upload artifact approved
+            return Mono.empty();
+        }
+
+        // no -> check: is artifact path valid?
+        return time("validate", Mono.fromSupplier(() -> Coordinates.parse(artifactPath)))
+                // no -> throw an error
+                .switchIfEmpty(Mono.error(() -> new ClientError(400, "Path validation failed")))
+                // yes -> check: checksum file which is compared with the computed one?
+                .filter(coordinates -> !isComputedChecksum(artifactPath))
+                // no -> check: file exists?
+                .flatMap(coordinates -> time("exists", exists(repository, artifactPath))
+                        // yes -> throw an error
+                        .flatMap(exists -> exists
+                                ? Mono.error(new ClientError(403, "Artifact already exists"))
+                                // no -> upload artifact approved
+                                : Mono.just(coordinates)));
+    }
+
+    /**
+     * Checks whether a file exists, a missing file is confirmed by S3 unless uploads are conditional anyway.
+     */
+    Mono<Boolean> exists(String repository, String artifactPath) {
+        return s3.exists(repository, key(artifactPath))
+                .contextWrite(ctx -> ctx.put(S3Repository.CONFIRM_MISSING, !appProperties.isS3ConditionalWrites()));
+    }
+
+    /**
+     * @return true if the given file is a checksum file, and the checksums are computed on upload
+     */
+    boolean isComputedChecksum(String path) {
+        return appProperties.isChecksumsEnabled() && ChecksumS3Repository.isChecksum(path);
+    }
+
+    /**
+     * Uploads a file, validated artifacts must not be overwritten in the meantime.
+     */
+    Mono<Void> store(String repository, String artifactPath, MediaType contentType, Long contentLength,
+                     Optional<Coordinates> coordinates, Publisher<ByteBuffer> file) {
+
+        return computeContentType(contentType, coordinates, artifactPath)
+                .flatMap(type -> s3.upload(repository, key(artifactPath), type, contentLength, file)
+                        .contextWrite(ctx -> ctx.put(S3Repository.CREATE_ONLY, coordinates.isPresent() && appProperties.isS3ConditionalWrites())))
+                .onErrorMap(ArtifactUploader::isPreconditionFailed, e -> new ClientError(403, "Artifact already exists"))
+                .then();
+    }
+
+    /**
+     * Uploads a metadata file, which is merged into the stored one if the metadata is maintained by the server (see
+     * {@link MetadataUpdater#upload}).
+     */
+    Mono<Void> storeMetadata(String repository, String metadataPath, Long contentLength, Publisher<ByteBuffer> file) {
+        return appProperties.isMavenMetadataGenerate()
+                ? metadataUpdater.upload(repository, key(metadataPath), file)
+                : store(repository, metadataPath, null, contentLength, Optional.empty(), file);
+    }
+
+    /**
+     * Adds an uploaded artifact to the metadata, if the metadata is maintained by the server. The artifact itself is
+     * stored already, so a failed update is logged only (the client would retry the upload, which is rejected then).
+     * It is caught up when the client uploads the metadata file, which is merged (see {@link MetadataUpdater#upload}).
+     */
+    Mono<Void> updateMetadata(String repository, Optional<Coordinates> coordinates, String artifactPath) {
+        if (!appProperties.isMavenMetadataGenerate()) {
+            return Mono.empty();
+        }
+
+        return Mono.defer(() -> Mono.justOrEmpty(coordinates.orElseGet(() -> Coordinates.parse(artifactPath))))
+                .flatMap(c -> time("metadata", metadataUpdater.update(repository, c)))
+                .onErrorResume(e -> {
+                    log.warn("metadata of {}{} not updated: {}", repository, artifactPath, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * @return the key of the object of a path (e.g. foo/bar/1.0/bar-1.0.jar for /foo/bar/1.0/bar-1.0.jar)
+     */
+    static String key(String path) {
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    private static Mono<String> computeContentType(MediaType contentType, Optional<Coordinates> coordinates, String artifactPath) {
+        return Mono.justOrEmpty(contentType)
+                .switchIfEmpty(coordinates
+                        .map(c -> ContentTypeResolver.findByExtension(c.type()))
+                        .orElseGet(() -> ContentTypeResolver.findByPath(artifactPath)))
+                .switchIfEmpty(Mono.just(MediaType.APPLICATION_OCTET_STREAM))
+                .map(MediaType::toString);
+    }
+
+    private static boolean isPreconditionFailed(Throwable e) {
+        return e instanceof S3Exception s3Exception && s3Exception.statusCode() == HttpStatus.PRECONDITION_FAILED.value();
+    }
+}
@@ -0,0 +1,317 @@
+package com.github.j3t.mvnio.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.DefaultPartHttpMessageReader;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.Part;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.github.j3t.mvnio.error.ClientError;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reads the files of a bundle upload, sent as multipart/form-data (a file part per file) or as tar archive
+ * (application/x-tar). The content of a bundle is spooled to disk, so that the sizes of its files are known, they can be
+ * read concurrently (and more than once), and deleted once the bundle has been handled. The size of a bundle and the
+ * number of its files are limited, so that a request can't fill the disk.
+ */
+final class Bundle {
+
+    static final MediaType TAR = MediaType.parseMediaType("application/x-tar");
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final ResolvableType PART = ResolvableType.forClass(Part.class);
+
+    private final long maxSize;
+    private final int maxFiles;
+    private final DefaultPartHttpMessageReader partReader;
+
+    /**
+     * @param maxSize the maximum size of a bundle (the request body) in bytes
+     * @param maxFiles the maximum number of files of a bundle
+     */
+    Bundle(long maxSize, int maxFiles) {
+        this.maxSize = maxSize;
+        this.maxFiles = maxFiles;
+        this.partReader = new DefaultPartHttpMessageReader();
+        this.partReader.setMaxParts(maxFiles);
+        this.partReader.setMaxDiskUsagePerPart(maxSize);
+    }
+
+    /**
+     * A file of a bundle.
+     *
+     * @param name the name of the file (e.g. mvnio-1.0.1.jar)
+     * @param contentLength the size of the file
+     * @param content the content, it can be read more than once
+     */
+    record Entry(String name, long contentLength, Flux<ByteBuffer> content) {
+    }
+
+    /**
+     * Reads the files of the bundle of a request and passes them to a given handler.
+     *
+     * @throws ClientError if the content type is not supported, the bundle is too large or malformed
+     */
+    <T> Mono<T> read(ServerWebExchange exchange, Function<List<Entry>, Mono<T>> handler) {
+        ServerHttpRequest request = exchange.getRequest();
+        MediaType contentType = request.getHeaders().getContentType();
+
+        if (request.getHeaders().getContentLength() > maxSize) {
+            return Mono.error(tooLarge());
+        }
+
+        if (MediaType.MULTIPART_FORM_DATA.isCompatibleWith(contentType)) {
+            var limited = new ServerHttpRequestDecorator(request) {
+                @Override
+                public Flux<DataBuffer> getBody() {
+                    return limit(super.getBody());
+                }
+            };
+
+            return Mono.usingWhen(
+                    blocking(() -> Files.createTempDirectory("bundle")),
+                    directory -> partReader.read(PART, limited, Map.of())
+                            .index()
+                            // the parts are deleted by Spring only if read by the exchange
+                            .concatMap(part -> Mono.usingWhen(Mono.just(part.getT2()),
+                                    p -> p instanceof FilePart file
+                                            ? spool(file, directory.resolve(String.valueOf(part.getT1())))
+                                            : Mono.empty(),
+                                    Part::delete))
+                            .collectList()
+                            .onErrorMap(DecodingException.class, e -> new ClientError(400, "Bundle is malformed: " + e.getMessage()))
+                            .flatMap(handler),
+                    directory -> blocking(() -> delete(directory)));
+        }
+
+        if (TAR.isCompatibleWith(contentType)) {
+            return Mono.usingWhen(
+                    blocking(() -> Files.createTempFile("bundle", ".tar")),
+                    file -> DataBufferUtils.write(limit(request.getBody()), file)
+                            .then(blocking(() -> tar(file, maxFiles)))
+                            .flatMap(handler),
+                    file -> blocking(() -> Files.deleteIfExists(file)));
+        }
+
+        return Mono.error(new ClientError(415, "Bundle must be multipart/form-data or application/x-tar"));
+    }
+
+    /**
+     * Indexes the regular files of a tar archive (ustar, with GNU or pax long names). Their content is read from the
+     * archive when it's requested.
+     *
+     * @throws ClientError if the archive is malformed or contains more than the given number of files
+     */
+    static List<Entry> tar(Path file, int maxFiles) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_SIZE);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            String longName = null;
+
+            while (true) {
+                header.clear();
+                if (channel.read(header, position) < BLOCK_SIZE) {
+                    throw new ClientError(400, "Bundle is truncated");
+                }
+                byte[] block = header.array();
+
+                // an empty block marks the end of the archive
+                if (block[0] == 0) {
+                    return entries;
+                }
+
+                long size = octal(block, 124, 12);
+                long offset = position + BLOCK_SIZE;
+                position = offset + (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+
+                if (offset + size > channel.size()) {
+                    throw new ClientError(400, "Bundle is truncated");
+                }
+
+                switch (block[156]) {
+                    // the name of the next entry (GNU)
+                    case 'L' -> longName = string(read(channel, offset, size), 0, (int) size);
+                    // the attributes of the next entry (pax), only the name is relevant
+                    case 'x' -> longName = paxPath(read(channel, offset, size));
+                    // a regular file
+                    case '0', 0 -> {
+                        if (entries.size() == maxFiles) {
+                            throw new ClientError(413, "Bundle has too many files");
+                        }
+                        String name = longName != null ? longName : name(block);
+                        entries.add(new Entry(name.startsWith("./") ? name.substring(2) : name, size, content(file, offset, size)));
+                        longName = null;
+                    }
+                    // directories, links, global attributes and so on are ignored
+                    default -> longName = null;
+                }
+            }
+        }
+    }
+
+    private static String name(byte[] block) {
+        String name = string(block, 0, 100);
+        // check: ustar with a prefix?
+        if (string(block, 257, 5).equals("ustar") && block[345] != 0) {
+            // yes -> the name is prefix/name
+            return string(block, 345, 155) + "/" + name;
+        }
+
+        return name;
+    }
+
+    private static String paxPath(byte[] records) {
+        // records of the form "<length> <key>=<value>\n"
+        String s = new String(records, UTF_8);
+        for (String line : s.split("\n")) {
+            int space = line.indexOf(' ');
+            if (space > 0 && line.startsWith("path=", space + 1)) {
+                return line.substring(space + 1 + "path=".length());
+            }
+        }
+
+        return null;
+    }
+
+    private static long octal(byte[] block, int from, int length) {
+        String s = string(block, from, length).trim();
+        try {
+            return s.isEmpty() ? 0 : Long.parseLong(s, 8);
+        } catch (NumberFormatException e) {
+            throw new ClientError(400, "Bundle is malformed");
+        }
+    }
+
+    private static String string(byte[] bytes, int from, int length) {
+        int end = from;
+        while (end < from + length && bytes[end] != 0) {
+            end++;
+        }
+
+        return new String(bytes, from, end - from, UTF_8);
+    }
+
+    private static byte[] read(FileChannel channel, long offset, long size) throws IOException {
+        if (size > CHUNK_SIZE) {
+            throw new ClientError(400, "Bundle is malformed");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+            // read until full
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Reads a region of the archive in chunks, on a thread which may block.
+     */
+    private static Flux<ByteBuffer> content(Path file, long offset, long size) {
+        return Flux.using(
+                () -> FileChannel.open(file, StandardOpenOption.READ),
+                channel -> Flux.<ByteBuffer, Long>generate(() -> 0L, (read, sink) -> {
+                    if (read >= size) {
+                        sink.complete();
+                        return read;
+                    }
+
+                    ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, size - read));
+                    try {
+                        while (chunk.hasRemaining()) {
+                            if (channel.read(chunk, offset + read + chunk.position()) < 0) {
+                                throw new IOException("Unexpected end of bundle");
+                            }
+                        }
+                    } catch (IOException e) {
+                        sink.error(new UncheckedIOException(e));
+                        return read;
+                    }
+
+                    sink.next(chunk.flip());
+                    return read + chunk.limit();
+                }),
+                channel -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        // nothing to do
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Writes a multipart file to disk, so that its size is known and it can be read like the files of a tar archive.
+     */
+    private static Mono<Entry> spool(FilePart part, Path file) {
+        return part.transferTo(file)
+                .then(blocking(() -> Files.size(file)))
+                .map(size -> new Entry(part.filename(), size, content(file, 0, size)));
+    }
+
+    /**
+     * Fails the body of a request once it exceeds the maximum size of a bundle, Content-Length is optional.
+     */
+    private Flux<DataBuffer> limit(Flux<DataBuffer> body) {
+        return Flux.defer(() -> {
+            var size = new AtomicLong();
+            return body.handle((buffer, sink) -> {
+                if (size.addAndGet(buffer.readableByteCount()) > maxSize) {
+                    DataBufferUtils.release(buffer);
+                    sink.error(tooLarge());
+                } else {
+                    sink.next(buffer);
+                }
+            });
+        });
+    }
+
+    private static boolean delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        return Files.deleteIfExists(directory);
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> callable) {
+        return Mono.fromCallable(callable).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static ClientError tooLarge() {
+        return new ClientError(413, "Bundle is too large");
+    }
+}
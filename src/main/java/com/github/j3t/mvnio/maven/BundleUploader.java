@@ -0,0 +1,201 @@
+package com.github.j3t.mvnio.maven;
+
+import static com.github.j3t.mvnio.maven.ArtifactUploader.key;
+import static com.github.j3t.mvnio.metrics.ServerTiming.time;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.reactivestreams.Publisher;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.github.j3t.mvnio.AppProperties;
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.maven.validation.Coordinates;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.index.MetadataIndexS3Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+/**
+ * Uploads the files of a version directory (e.g. /com/github/j3t/mvnio/1.0.1), which are sent with one request (see
+ * {@link Bundle}). The path of the directory is parsed once, the files by their name only. All files are validated
+ * before the first one is uploaded, then they are uploaded concurrently:
+ * <ul>
+ *     <li>artifacts which exist already with the same content are skipped, so that a bundle which failed halfway can
+ *     be uploaded again</li>
+ *     <li>checksum files which are compared with the computed ones are uploaded after the other artifacts</li>
+ *     <li>metadata files (e.g. of a snapshot version) are uploaded after the artifacts, and the metadata maintained by
+ *     the server is updated last, so that a version is not visible before its files</li>
+ * </ul>
+ */
+final class BundleUploader {
+
+    // the ETag of an object which has been uploaded in one part
+    private static final Pattern MD5 = Pattern.compile("[0-9a-f]{32}");
+
+    private final S3Repository s3;
+    private final AppProperties appProperties;
+    private final ArtifactUploader uploader;
+    private final Bundle bundle;
+
+    BundleUploader(S3Repository s3, AppProperties appProperties, ArtifactUploader uploader) {
+        this.s3 = s3;
+        this.appProperties = appProperties;
+        this.uploader = uploader;
+        this.bundle = new Bundle(appProperties.getMavenBundleMaxSize().toBytes(), appProperties.getMavenBundleMaxFiles());
+    }
+
+    /**
+     * @param versionPath the path of the version directory
+     * @throws ClientError if the path or a file of the bundle is not valid, or an artifact exists already
+     */
+    Mono<Void> upload(String repository, String versionPath, ServerWebExchange exchange) {
+        Coordinates directory = Coordinates.parseDirectory(versionPath);
+        if (directory == null) {
+            return Mono.error(new ClientError(400, "Path validation failed"));
+        }
+        String directoryPath = versionPath.endsWith("/") ? versionPath : versionPath + "/";
+        if (MetadataIndexS3Repository.isInternal(key(directoryPath))) {
+            return Mono.error(new ClientError(403, "Path is reserved"));
+        }
+
+        return bundle.read(exchange, entries -> {
+            // check: files are valid?
+            List<BundleFile> files = files(directory, directoryPath, entries);
+            List<BundleFile> artifacts = files.stream().filter(file -> !Coordinates.isMetadata(file.path())).toList();
+            List<BundleFile> metadata = files.stream().filter(file -> Coordinates.isMetadata(file.path())).toList();
+            // the computed checksum files are uploaded after the files, so that they are compared with them
+            List<BundleFile> checksums = artifacts.stream().filter(file -> uploader.isComputedChecksum(file.path())).toList();
+            int concurrency = appProperties.getMavenBundleConcurrency();
+
+            // yes -> check: artifacts exist?
+            return time("exists", Flux.fromIterable(artifacts)
+                    .filter(file -> file.coordinates().isPresent())
+                    .flatMap(file -> uploader.exists(repository, file.path())
+                            .filter(exists -> exists)
+                            // yes -> check: same content (e.g. the upload of the bundle is retried)?
+                            .flatMap(exists -> identical(repository, file))
+                            // no -> throw an error
+                            .flatMap(identical -> identical
+                                    ? Mono.just(file.path())
+                                    : Mono.error(new ClientError(403, "Artifact already exists"))), concurrency)
+                    .collect(Collectors.toSet()))
+                    // yes, with the same content -> skip them and upload the others
+                    .flatMap(existing -> time("upload", Flux.fromIterable(artifacts)
+                            .filter(file -> !existing.contains(file.path()) && !checksums.contains(file))
+                            .flatMap(file -> store(repository, file), concurrency)
+                            .thenMany(Flux.fromIterable(checksums))
+                            .flatMap(file -> store(repository, file), concurrency)
+                            .then()))
+                    // and then the metadata files
+                    .then(Mono.defer(() -> time("upload", Flux.fromIterable(metadata)
+                            .concatMap(file -> uploader.storeMetadata(repository, file.path(), file.entry().contentLength(), file.entry().content()))
+                            .then())))
+                    // and then update the metadata (concurrent updates of the same file are written together)
+                    .then(Mono.defer(() -> Flux.fromIterable(artifacts)
+                            .flatMap(file -> uploader.updateMetadata(repository, file.coordinates(), file.path()))
+                            .then()));
+        });
+    }
+
+    private Mono<Void> store(String repository, BundleFile file) {
+        return uploader.store(repository, file.path(), null, file.entry().contentLength(), file.coordinates(), file.entry().content());
+    }
+
+    /**
+     * Validates the names of the files of a bundle. The artifacts are parsed by their name, relative to the coordinates
+     * of the version directory.
+     *
+     * @throws ClientError if the bundle is empty or contains an invalid file
+     */
+    private List<BundleFile> files(Coordinates directory, String directoryPath, List<Bundle.Entry> entries) {
+        if (entries.isEmpty()) {
+            throw new ClientError(400, "Bundle is empty");
+        }
+
+        var names = new HashSet<String>();
+        var files = new ArrayList<BundleFile>(entries.size());
+        for (Bundle.Entry entry : entries) {
+            String name = entry.name();
+            if (name == null || name.isEmpty() || name.indexOf('/') >= 0 || !names.add(name)) {
+                throw new ClientError(400, "Invalid bundle file: " + name);
+            }
+
+            String path = directoryPath + name;
+            Coordinates coordinates = null;
+            // check: artifact to be validated?
+            if (appProperties.isMavenValidate() && !Coordinates.isMetadata(path)) {
+                // yes -> check: name is valid?
+                coordinates = directory.resolve(name);
+                if (coordinates == null) {
+                    // no -> throw an error
+                    throw new ClientError(400, "Path validation failed: " + name);
+                }
+            }
+
+            // computed checksum files are compared on upload, they are not checked for existence
+            files.add(new BundleFile(path, uploader.isComputedChecksum(path) ? Optional.empty() : Optional.ofNullable(coordinates), entry));
+        }
+
+        return files;
+    }
+
+    /**
+     * Compares an artifact of a bundle with the stored one, by the ETag if it's the MD5 of the content (i.e. not for
+     * multipart uploads), otherwise by the content.
+     */
+    private Mono<Boolean> identical(String repository, BundleFile file) {
+        return md5(file.entry().content())
+                .zipWith(s3.head(repository, key(file.path())))
+                .flatMap(t -> {
+                    HeadObjectResponse head = t.getT2();
+                    if (head.contentLength() != null && head.contentLength() != file.entry().contentLength()) {
+                        return Mono.just(false);
+                    }
+
+                    String eTag = head.eTag() != null ? head.eTag().replace("\"", "") : "";
+                    return MD5.matcher(eTag).matches()
+                            ? Mono.just(eTag.equals(t.getT1()))
+                            : s3.download(repository, key(file.path()))
+                            .flatMap(download -> md5(download.getContent()))
+                            .map(t.getT1()::equals);
+                });
+    }
+
+    private static Mono<String> md5(Publisher<ByteBuffer> content) {
+        return Flux.from(content)
+                .reduce(newMd5(), (digest, buffer) -> {
+                    digest.update(buffer.duplicate());
+                    return digest;
+                })
+                .map(digest -> HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A file of a bundle.
+     *
+     * @param path the path relative to the repository (e.g. /com/github/j3t/mvnio/1.0.1/mvnio-1.0.1.jar)
+     * @param coordinates the coordinates if the file has been validated (it must not be overwritten), empty if not
+     */
+    private record BundleFile(String path, Optional<Coordinates> coordinates, Bundle.Entry entry) {
+    }
+}
@@ -26,10 +26,14 @@ public class ContentTypeResolver {
     private ContentTypeResolver() {}
 
     public static Mono<MediaType> findByPath(String path) {
-        return Mono.justOrEmpty(getFilenameExtension(path))
-                .map(String::toLowerCase)
-                .map(MEDIA_TYPES::get)
-                .onErrorResume(NullPointerException.class, e -> Mono.empty());
+        return findByExtension(getFilenameExtension(path));
+    }
+
+    /**
+     * @param extension the extension without the leading '.' (e.g. jar)
+     */
+    public static Mono<MediaType> findByExtension(String extension) {
+        return extension != null ? Mono.justOrEmpty(MEDIA_TYPES.get(extension.toLowerCase())) : Mono.empty();
     }
 
     private static Map<String, MediaType> parseMimeTypes() {
@@ -0,0 +1,158 @@
+package com.github.j3t.mvnio.maven;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.cache.Keys;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Resolves the objects of virtual group repositories, which combine several repositories (buckets) in a given order
+ * (e.g. releases, snapshots and a proxy of Maven Central) behind a single URL:
+ * <ul>
+ *     <li>all members are asked in parallel, the first member (in the order of the group) which has the object wins
+ *     and the requests of the others are cancelled as soon as it's known</li>
+ *     <li>the member which holds an immutable object is remembered per client (credentials), so that the next
+ *     request goes there directly (unless a member has been skipped, other clients may be allowed to read it)</li>
+ *     <li>a member is considered not to have an object only if S3 confirms it, missing objects remembered by caches
+ *     could be outdated</li>
+ * </ul>
+ * Members which the client isn't allowed to read are skipped, their error is returned only if no member has the object.
+ * Other errors (e.g. S3 is unavailable) fail the request, otherwise an object could be resolved to a later member.
+ */
+@Slf4j
+public class GroupResolver implements MeterBinder {
+
+    private static final Set<String> INVALID_CREDENTIALS = Set.of("InvalidAccessKeyId", "SignatureDoesNotMatch");
+
+    private final S3Repository s3;
+    private final Map<String, List<String>> groups;
+    private final Cache<String, String> members;
+
+    /**
+     * @param s3 the repository to ask the members
+     * @param groups the members (buckets) of each group, by name of the group
+     * @param ttl how long the member which holds an object is remembered
+     * @param maxSize the maximum number of objects of which the member is remembered
+     */
+    public GroupResolver(S3Repository s3, Map<String, List<String>> groups, Duration ttl, long maxSize) {
+        this.s3 = s3;
+        this.groups = groups;
+        this.members = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return the member (bucket) of the group which holds the object, or an error if none of them
+     * @throws ClientError if the group doesn't exist
+     */
+    public Mono<String> resolve(@NonNull String group, @NonNull String key) {
+        List<String> buckets = groups.get(group);
+        if (buckets == null) {
+            return Mono.error(new ClientError(404, "Group not found"));
+        }
+
+        return Mono.deferContextual(ctx -> {
+            // the member is remembered per client, another client could be denied to read it (or a member before it)
+            String cacheKey = cacheKey(group, key) + Objects.toString(BucketPermissions.fingerprint(ctx), "");
+            String member = members.getIfPresent(cacheKey);
+            if (member != null) {
+                return Mono.just(member);
+            }
+
+            // all members are asked at once, but their answers are evaluated in the order of the group
+            return Flux.mergeSequential(buckets.stream().map(bucket -> exists(bucket, key)).toList())
+                    // the requests of the remaining members are cancelled once a member has the object
+                    .takeUntil(Found::exists)
+                    .collectList()
+                    .flatMap(answers -> {
+                        Found last = answers.get(answers.size() - 1);
+
+                        // check: found?
+                        if (last.exists()) {
+                            // yes -> remember the member, if the object can't change and no member has been skipped
+                            if (Keys.isImmutable(key) && answers.stream().allMatch(answer -> answer.error() == null)) {
+                                members.put(cacheKey, last.bucket());
+                            }
+                            return Mono.just(last.bucket());
+                        }
+
+                        // no -> report the first denial, if any, or that it doesn't exist
+                        return Mono.error(answers.stream()
+                                .map(Found::error)
+                                .filter(Objects::nonNull)
+                                .findFirst()
+                                .orElseGet(() -> NoSuchKeyException.builder().message("Not found in group " + group).build()));
+                    });
+        });
+    }
+
+    /**
+     * Forgets the member which holds an object (e.g. because the object doesn't exist there anymore) for all clients.
+     */
+    public void invalidate(@NonNull String group, @NonNull String key) {
+        // rare (the object has been deleted), so scanning the remembered members is fine
+        String prefix = cacheKey(group, key);
+        members.asMap().keySet().removeIf(cacheKey -> cacheKey.startsWith(prefix));
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, members, "groups");
+    }
+
+    private static String cacheKey(String group, String key) {
+        return Keys.cacheKey(group, key) + "#";
+    }
+
+    private Mono<Found> exists(String bucket, String key) {
+        return s3.exists(bucket, key)
+                // a missing object which is remembered by a cache could resolve it to a member later in the group
+                .contextWrite(ctx -> ctx.put(S3Repository.CONFIRM_MISSING, true))
+                .map(exists -> new Found(bucket, exists, null))
+                .onErrorResume(GroupResolver::isDenied, e -> {
+                    // the client isn't allowed to read the bucket -> skip it
+                    log.debug("{}/{} skipped: {}", bucket, key, e.getMessage());
+                    return Mono.just(new Found(bucket, false, e));
+                });
+    }
+
+    private static boolean isDenied(Throwable e) {
+        if (e instanceof ClientError clientError) {
+            return clientError.getReturnCode() == 401 || clientError.getReturnCode() == 403;
+        }
+
+        return e instanceof S3Exception s3Exception
+                && (s3Exception.statusCode() == 403
+                || s3Exception.awsErrorDetails() != null
+                && INVALID_CREDENTIALS.contains(s3Exception.awsErrorDetails().errorCode()));
+    }
+
+    /**
+     * The answer of a member.
+     *
+     * @param error the error if the client isn't allowed to ask the member, null otherwise
+     */
+    private record Found(String bucket, boolean exists, Throwable error) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.j3t.mvnio.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Writes strings as JSON array or, if the client accepts it, as newline delimited JSON (application/x-ndjson) one by
+ * one, so that a listing is sent while it is requested from S3 and never kept in memory as a whole.
+ */
+final class JsonStream {
+
+    private JsonStream() {
+    }
+
+    static Mono<Void> write(ServerWebExchange exchange, Flux<String> values) {
+        boolean ndjson = accepts(exchange.getRequest().getHeaders(), MediaType.APPLICATION_NDJSON);
+        ServerHttpResponse response = exchange.getResponse();
+        response.getHeaders().setContentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON);
+
+        // the response is committed with the first value, so that an error before (e.g. access denied) is still sent
+        Flux<ByteBuffer> body = ndjson
+                ? values.map(value -> encode(null, value, "\n"))
+                : Flux.defer(() -> {
+                    var first = new boolean[]{true};
+                    return values
+                            .map(value -> {
+                                String prefix = first[0] ? "[" : ",";
+                                first[0] = false;
+                                return encode(prefix, value, null);
+                            })
+                            .concatWith(Mono.fromSupplier(() -> ByteBuffer.wrap((first[0] ? "[]" : "]").getBytes(UTF_8))));
+                });
+
+        return response.writeWith(body.map(response.bufferFactory()::wrap));
+    }
+
+    private static boolean accepts(HttpHeaders headers, MediaType mediaType) {
+        List<MediaType> accept = headers.getAccept();
+        return accept.stream().anyMatch(type -> type.isConcrete() && type.isCompatibleWith(mediaType));
+    }
+
+    private static ByteBuffer encode(String prefix, String value, String suffix) {
+        var out = new ByteArrayOutputStream(value.length() + 4);
+        if (prefix != null) {
+            out.writeBytes(prefix.getBytes(UTF_8));
+        }
+        out.write('"');
+        out.writeBytes(JsonStringEncoder.getInstance().quoteAsUTF8(value));
+        out.write('"');
+        if (suffix != null) {
+            out.writeBytes(suffix.getBytes(UTF_8));
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+}
@@ -1,122 +1,497 @@
 package com.github.j3t.mvnio.maven;
 
+import static com.github.j3t.mvnio.metrics.ServerTiming.time;
+
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
 
 import com.github.j3t.mvnio.AppProperties;
 import com.github.j3t.mvnio.error.ClientError;
-import com.github.j3t.mvnio.maven.validation.ArtifactPathValidator;
-import com.github.j3t.mvnio.maven.validation.MetadataPathValidator;
+import com.github.j3t.mvnio.maven.metadata.MetadataUpdater;
+import com.github.j3t.mvnio.maven.validation.Coordinates;
+import com.github.j3t.mvnio.storage.Download;
 import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.index.MetadataIndexS3Repository;
 
-import lombok.NonNull;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 @RestController
 @RequestMapping("/")
 public class RepositoryController {
 
+    private static final String BYTES = "bytes";
+    // each range of a multipart/byteranges response is requested separately from S3
+    private static final int MAX_RANGES = 8;
+    static final String CONTINUATION_TOKEN = "X-Continuation-Token";
+
     private final S3Repository s3;
     private final AppProperties appProperties;
+    private final MetadataUpdater metadataUpdater;
+    private final GroupResolver groupResolver;
+    private final ArtifactUploader uploader;
+    private final BundleUploader bundleUploader;
 
-    public RepositoryController(S3Repository s3, AppProperties appProperties) {
+    public RepositoryController(S3Repository s3,
+                                AppProperties appProperties,
+                                MetadataUpdater metadataUpdater,
+                                GroupResolver groupResolver) {
         this.s3 = s3;
         this.appProperties = appProperties;
+        this.metadataUpdater = metadataUpdater;
+        this.groupResolver = groupResolver;
+        this.uploader = new ArtifactUploader(s3, appProperties, metadataUpdater);
+        this.bundleUploader = new BundleUploader(s3, appProperties, uploader);
     }
 
     @PutMapping(value = "/maven/{repository}/{*artifactPath}")
     public Mono<ResponseEntity<Void>> upload(@RequestHeader(value = "content-type", required = false) MediaType contentType,
-                                             @RequestHeader(value = "content-length") long contentLength,
+                                             @RequestHeader(value = "content-length", required = false) Long contentLength,
                                              @PathVariable String repository,
                                              @PathVariable String artifactPath,
                                              @RequestBody Flux<ByteBuffer> file) {
 
-        // check: artifact path is valid?
-        return validate(repository, artifactPath)
-                // yes -> compute content type
-                .then(computeContentType(contentType, artifactPath))
-                // and upload file
-                .flatMap(type -> s3.upload(repository, key(artifactPath), type, contentLength, file))
+        // check: path reserved for the server?
+        if (MetadataIndexS3Repository.isInternal(key(artifactPath))) {
+            // yes -> reject it
+            return Mono.error(new ClientError(403, "Path is reserved"));
+        }
+
+        // no -> check: metadata maintained by the server?
+        if (appProperties.isMavenMetadataGenerate() && Coordinates.isMetadata(artifactPath)) {
+            // yes -> the metadata of the client is not needed (unless it's not maintained, e.g. plugins of a group)
+            return time("upload", metadataUpdater.upload(repository, key(artifactPath), file))
+                    .thenReturn(ResponseEntity.status(HttpStatus.CREATED).build());
+        }
+
+        // no -> check: artifact path is valid?
+        return uploader.validate(repository, artifactPath)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                // yes -> upload file
+                .flatMap(coordinates -> time("upload", uploader.store(repository, artifactPath, contentType, contentLength, coordinates, file))
+                        // and update the metadata
+                        .then(uploader.updateMetadata(repository, coordinates, artifactPath)))
+                // and then return 201
+                .thenReturn(ResponseEntity.status(HttpStatus.CREATED).build());
+    }
+
+    /**
+     * Uploads the files of a version directory (e.g. /com/github/j3t/mvnio/1.0.1) with one request, sent as
+     * multipart/form-data or as tar archive. All files are validated before the first one is uploaded, a version is not
+     * visible before its files (see {@link BundleUploader}).
+     */
+    @PostMapping(value = "/bundle/{repository}/{*versionPath}")
+    public Mono<ResponseEntity<Void>> uploadBundle(@PathVariable String repository,
+                                                   @PathVariable String versionPath,
+                                                   ServerWebExchange exchange) {
+
+        return bundleUploader.upload(repository, versionPath, exchange)
                 // and then return 201
                 .thenReturn(ResponseEntity.status(HttpStatus.CREATED).build());
     }
 
     @GetMapping(value = "/maven/{repository}/{*artifactPath}")
-    public Mono<ResponseEntity<Flux<ByteBuffer>>> download(@PathVariable String repository,
-                                                           @PathVariable String artifactPath) {
+    public Mono<Void> download(@PathVariable String repository,
+                               @PathVariable String artifactPath,
+                               ServerWebExchange exchange) {
+
+        // the attributes are requested once at most, and only if needed by the request
+        Mono<HeadObjectResponse> head = time("head", Mono.defer(() -> s3.head(repository, key(artifactPath)))).cache();
+
+        // check: conditional request and not modified?
+        return notModified(head, exchange)
+                // yes -> return 304 (or 412)
+                .flatMap(notModified -> notModified ? exchange.getResponse().setComplete()
+                        // no -> check: range request?
+                        : ranges(head, exchange.getRequest().getHeaders())
+                        .flatMap(ranges -> switch (ranges.size()) {
+                            // no -> download file and return 200
+                            case 0 -> time("s3", s3.download(repository, key(artifactPath)))
+                                    .flatMap(result -> write(exchange.getResponse(), result));
+                            // yes -> download the range and return 206
+                            case 1 -> time("s3", s3.download(repository, key(artifactPath), HttpRange.toString(ranges)))
+                                    .flatMap(result -> write(exchange.getResponse(), result));
+                            // yes, multiple ranges -> download each of them and return 206
+                            default -> head.flatMap(h -> writeRanges(exchange.getResponse(), repository, key(artifactPath), ranges, h));
+                        }));
+    }
+
+    @RequestMapping(method = RequestMethod.HEAD, value = "/maven/{repository}/{*artifactPath}")
+    public Mono<Void> head(@PathVariable String repository,
+                           @PathVariable String artifactPath,
+                           ServerWebExchange exchange) {
+
+        // request file attributes (no content is transferred)
+        return time("head", s3.head(repository, key(artifactPath)))
+                .flatMap(head -> {
+                    ServerHttpResponse response = exchange.getResponse();
+                    response.getHeaders().set(HttpHeaders.CONTENT_TYPE, head.contentType());
+                    // the length could be unknown (e.g. fetched from an upstream repository without it)
+                    if (isLengthKnown(head)) {
+                        response.getHeaders().setContentLength(head.contentLength());
+                    }
+                    response.getHeaders().set(HttpHeaders.ACCEPT_RANGES, BYTES);
+
+                    // check: not modified?
+                    if (!exchange.checkNotModified(head.eTag(), lastModifiedOrEpoch(head.lastModified()))) {
+                        // no -> return 200
+                        response.setStatusCode(HttpStatus.OK);
+                        setValidators(response.getHeaders(), head.eTag(), head.lastModified());
+                    }
+
+                    // yes -> return 304 (or 412)
+                    return response.setComplete();
+                });
+    }
+
+    @GetMapping(value = "/group/{group}/{*artifactPath}")
+    public Mono<Void> groupDownload(@PathVariable String group,
+                                    @PathVariable String artifactPath,
+                                    ServerWebExchange exchange) {
+
+        // resolve the member which holds the artifact and download it from there
+        return time("resolve", groupResolver.resolve(group, key(artifactPath)))
+                .flatMap(repository -> download(repository, artifactPath, exchange)
+                        .doOnError(NoSuchKeyException.class, e -> groupResolver.invalidate(group, key(artifactPath))));
+    }
+
+    @RequestMapping(method = RequestMethod.HEAD, value = "/group/{group}/{*artifactPath}")
+    public Mono<Void> groupHead(@PathVariable String group,
+                                @PathVariable String artifactPath,
+                                ServerWebExchange exchange) {
+
+        return time("resolve", groupResolver.resolve(group, key(artifactPath)))
+                .flatMap(repository -> head(repository, artifactPath, exchange)
+                        .doOnError(NoSuchKeyException.class, e -> groupResolver.invalidate(group, key(artifactPath))));
+    }
+
+    /**
+     * Downloads the files under a path (e.g. a version directory) as ZIP archive, which is written while the files are
+     * downloaded (see {@link ZipStream}). The entries are named by their path relative to the repository, so that the
+     * archive can be extracted into a local repository. The number of files is limited, a path with more files (e.g. a
+     * whole repository) is rejected before anything is sent.
+     */
+    @GetMapping(value = "/archive/{repository}/{*path}")
+    public Mono<Void> archive(@PathVariable String repository,
+                              @PathVariable String path,
+                              ServerWebExchange exchange) {
+
+        String prefix = key(path.endsWith("/") ? path : path + "/");
+        String name = archiveName(repository, prefix);
+
+        // the files are listed recursively (without the ones of the server), an empty listing is answered with 404 and
+        // one with too many files with 413 (nothing is sent until then)
+        int maxFiles = appProperties.getMavenArchiveMaxFiles();
+        Mono<List<String>> keys = time("s3", s3.keys(repository, prefix.isEmpty() ? null : prefix)
+                .filter(key -> !MetadataIndexS3Repository.isInternal(key))
+                .take(maxFiles + 1L)
+                .collectList())
+                .flatMap(list -> list.isEmpty() ? Mono.error(NoSuchKeyException.builder().message("Not found").build())
+                        : list.size() > maxFiles ? Mono.error(new ClientError(413, "Too many files for an archive"))
+                        : Mono.just(list));
 
-        // download file
-        return s3.download(repository, key(artifactPath))
-                // and return 200
-                .map(result -> ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_TYPE, result.getContentType())
-                        .header(HttpHeaders.CONTENT_LENGTH, Long.toString(result.getContentLength()))
-                        .body(result.getContent()));
+        return keys.flatMap(list -> {
+            ServerHttpResponse response = exchange.getResponse();
+            response.getHeaders().setContentType(MediaType.parseMediaType("application/zip"));
+            response.getHeaders().setContentDisposition(ContentDisposition.attachment().filename(name + ".zip").build());
+
+            // files deleted in the meantime are skipped
+            return response.writeWith(ZipStream.zip(Flux.fromIterable(list),
+                            key -> s3.download(repository, key).onErrorResume(NoSuchKeyException.class, e -> Mono.empty()),
+                            appProperties.getMavenArchiveParallelism())
+                    .map(response.bufferFactory()::wrap));
+        });
     }
 
+    /**
+     * Lists a page of the metadata files of a repository. The token to request the next page is returned as header
+     * {@value #CONTINUATION_TOKEN}, if there are more.
+     *
+     * @param startAfter the key after which the page starts (superseded by the continuation token)
+     * @param continuationToken the token of the previous page
+     * @param limit the maximum number of entries (capped at the configured page size)
+     */
     @GetMapping(value = "/metadata/{repository}")
-    public Mono<List<String>> metadata(@PathVariable String repository,
-                                       @RequestParam(required = false) String startAfter,
-                                       @RequestParam(required = false, defaultValue = "10") int limit) {
-        return s3.metadata(repository, startAfter, limit).collectList();
+    public Mono<Void> metadata(@PathVariable String repository,
+                               @RequestParam(required = false) String startAfter,
+                               @RequestParam(required = false) String continuationToken,
+                               @RequestParam(required = false, defaultValue = "10") int limit,
+                               ServerWebExchange exchange) {
+
+        int pageSize = pageSize(limit);
+        String after = continuationToken != null ? decodeToken(continuationToken) : startAfter;
+
+        // the page is bounded by the page size, so it's requested before the response, which contains the token
+        return time("s3", s3.metadata(repository, after, pageSize).collectList())
+                .flatMap(keys -> {
+                    // check: page full?
+                    if (keys.size() == pageSize) {
+                        // yes -> there could be more, continue after the last key (without leading slash)
+                        exchange.getResponse().getHeaders().set(CONTINUATION_TOKEN, encodeToken(keys.get(keys.size() - 1).substring(1)));
+                    }
+
+                    return JsonStream.write(exchange, Flux.fromIterable(keys));
+                });
     }
 
+    /**
+     * Lists the files and directories of a path. The whole listing is streamed, unless a page is requested (limit or
+     * continuationToken given). The token to request the next page is returned as header {@value #CONTINUATION_TOKEN},
+     * if there are more.
+     *
+     * @param continuationToken the token of the previous page
+     * @param limit the maximum number of entries of a page (capped at the configured page size)
+     */
     @GetMapping(value = "/list/{repository}/{*path}")
-    public Mono<List<String>> list(@PathVariable String repository, @PathVariable String path) {
-        return s3.list(repository, path).collectList();
+    public Mono<Void> list(@PathVariable String repository,
+                           @PathVariable String path,
+                           @RequestParam(required = false) String continuationToken,
+                           @RequestParam(required = false) Integer limit,
+                           ServerWebExchange exchange) {
+
+        // check: page requested?
+        if (continuationToken == null && limit == null) {
+            // no -> stream the whole listing
+            return JsonStream.write(exchange, time("s3", s3.list(repository, path)));
+        }
+
+        // yes -> request the page and return it along with the token of the next one
+        return time("s3", s3.list(repository, path, continuationToken, pageSize(limit != null ? limit : Integer.MAX_VALUE)))
+                .flatMap(page -> {
+                    if (page.continuationToken() != null) {
+                        exchange.getResponse().getHeaders().set(CONTINUATION_TOKEN, page.continuationToken());
+                    }
+
+                    return JsonStream.write(exchange, Flux.fromIterable(page.entries()));
+                });
+    }
+
+    /**
+     * @return the name of the archive of a path (e.g. mvnio-1.0.1 for a version directory, otherwise the name of the
+     * directory or the repository)
+     */
+    private static String archiveName(String repository, String prefix) {
+        if (prefix.isEmpty()) {
+            return repository;
+        }
+
+        Coordinates directory = Coordinates.parseDirectory("/" + prefix);
+        return directory != null
+                ? directory.artifactId() + "-" + directory.version()
+                : prefix.substring(prefix.lastIndexOf('/', prefix.length() - 2) + 1, prefix.length() - 1);
+    }
+
+    private int pageSize(int limit) {
+        if (limit < 1) {
+            throw new ClientError(400, "Invalid limit");
+        }
+
+        return Math.min(limit, appProperties.getS3ListPageSize());
+    }
+
+    private static String encodeToken(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeToken(String token) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ClientError(400, "Invalid continuation token");
+        }
+    }
+
+    /**
+     * Evaluates the conditional headers of the request (e.g. If-None-Match) against the validators of the artifact. The
+     * validators are requested with a HEAD request, so that the content is not transferred if not needed.
+     *
+     * @return true if the response is already complete (304 or 412), false if the artifact must be sent
+     */
+    private Mono<Boolean> notModified(Mono<HeadObjectResponse> head, ServerWebExchange exchange) {
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+
+        if (headers.getIfMatch().isEmpty() && headers.getIfNoneMatch().isEmpty()
+                && headers.getIfModifiedSince() == -1 && headers.getIfUnmodifiedSince() == -1) {
+            return Mono.just(false);
+        }
+
+        return head.map(h -> exchange.checkNotModified(h.eTag(), lastModifiedOrEpoch(h.lastModified())));
+    }
+
+    /**
+     * Evaluates the Range header of the request. The ranges are ignored if the header is malformed, if there are more
+     * than {@value #MAX_RANGES} of them or if the If-Range header doesn't match the current validators of the artifact,
+     * so that the whole artifact is sent instead.
+     *
+     * @return the requested byte ranges or an empty list if the whole artifact must be sent
+     */
+    private static Mono<List<HttpRange>> ranges(Mono<HeadObjectResponse> head, HttpHeaders headers) {
+        List<HttpRange> ranges;
+        try {
+            ranges = headers.getRange();
+        } catch (IllegalArgumentException e) {
+            return Mono.just(List.of());
+        }
+
+        if (ranges.size() > MAX_RANGES) {
+            return Mono.just(List.of());
+        }
+
+        String ifRange = headers.getFirst(HttpHeaders.IF_RANGE);
+        if (ranges.isEmpty() || ifRange == null) {
+            return Mono.just(ranges);
+        }
+
+        return head.map(h -> ifRangeMatches(ifRange, h) ? ranges : List.of());
+    }
+
+    private static boolean ifRangeMatches(String ifRange, HeadObjectResponse head) {
+        // check: entity tag?
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // yes -> must match strongly
+            return !ifRange.startsWith("W/") && ifRange.equals(head.eTag());
+        }
+
+        // no -> must be the exact date of the last modification
+        try {
+            return head.lastModified() != null
+                    && head.lastModified().getEpochSecond() == ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static void setValidators(HttpHeaders headers, String eTag, Instant lastModified) {
+        if (eTag != null) {
+            headers.setETag(eTag);
+        }
+
+        if (lastModified != null) {
+            headers.setLastModified(lastModified);
+        }
+    }
+
+    private static Instant lastModifiedOrEpoch(Instant lastModified) {
+        return lastModified != null ? lastModified : Instant.EPOCH;
+    }
+
+    private static Mono<Void> write(ServerHttpResponse response, Download download) {
+        response.setStatusCode(download.getContentRange() != null ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK);
+        response.getHeaders().set(HttpHeaders.CONTENT_TYPE, download.getContentType());
+        // the length could be unknown (e.g. fetched from an upstream repository without it)
+        if (download.getContentLength() >= 0) {
+            response.getHeaders().setContentLength(download.getContentLength());
+        }
+        response.getHeaders().set(HttpHeaders.ACCEPT_RANGES, BYTES);
+        if (download.getContentRange() != null) {
+            response.getHeaders().set(HttpHeaders.CONTENT_RANGE, download.getContentRange());
+        }
+        setValidators(response.getHeaders(), download.getETag(), download.getLastModified());
+
+        // local files are transferred without copying them through the heap, if the server supports it
+        if (download.getFile() != null && response instanceof ZeroCopyHttpOutputMessage zeroCopyResponse) {
+            return zeroCopyResponse.writeWith(download.getFile(), download.getFilePosition(), download.getContentLength());
+        }
+
+        return response.writeWith(download.getContent().map(response.bufferFactory()::wrap));
     }
 
     /**
-     * Checks that a given artifact not already exists and can be uploaded. Maven metadata files are ignored.
+     * Writes multiple ranges of an artifact as multipart/byteranges response. Each range is requested separately, they
+     * are streamed one after another. The whole artifact is sent instead if its length is unknown, so that the ranges
+     * can't be resolved.
      *
-     * @throws ClientError if the artifact already exists if path is not valid
+     * @throws ClientError if none of the ranges is satisfiable
      */
-    private Mono<Void> validate(@NonNull String repository,
-                                @NonNull String artifactPath) {
-
-
-        // check: is a valid metadata path?
-        return new MetadataPathValidator(artifactPath).validate()
-                // no -> check: is artifact validation enabled?
-                .filter(errorMPV -> appProperties.isMavenValidate())
-                // yes -> check: is artifact path valid?
-                .flatMap(errorMPV -> new ArtifactPathValidator(artifactPath).validate()
-                        // no -> throw an error
-                        .flatMap(errorAPV -> Mono.error(new ClientError(400, "Path validation failed")))
-                        // yes -> check: file exists?
-                        .switchIfEmpty(s3.head(repository, key(artifactPath))
-                                // yes -> throw an error
-                                .flatMap(headResponse -> Mono.error(new ClientError(403, "Artifact already exists")))
-                                // no -> handle the exception and return something
-                                .onErrorReturn(NoSuchKeyException.class, false)))
-                // no -> return empty (upload artifact approved)
-                .then();
-    }
-
-    private Mono<String> computeContentType(MediaType contentType, String artifactPath) {
-        return Mono.justOrEmpty(contentType)
-                .switchIfEmpty(ContentTypeResolver.findByPath(artifactPath))
-                .switchIfEmpty(Mono.just(MediaType.APPLICATION_OCTET_STREAM))
-                .map(MediaType::toString);
-    }
-
-    private String key(String coordinates) {
-        return coordinates.startsWith("/") ? coordinates.substring(1) : coordinates;
+    private Mono<Void> writeRanges(ServerHttpResponse response, String repository, String key, List<HttpRange> ranges,
+                                   HeadObjectResponse head) {
+
+        if (!isLengthKnown(head)) {
+            return time("s3", s3.download(repository, key))
+                    .flatMap(download -> write(response, download));
+        }
+
+        long length = head.contentLength();
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        List<Flux<ByteBuffer>> parts = new ArrayList<>();
+        long contentLength = 0;
+
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+
+            // unsatisfiable ranges are skipped, as long as there are others
+            if (start >= length || start > end) {
+                continue;
+            }
+
+            byte[] partHeaders = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + head.contentType() + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            contentLength += partHeaders.length + end - start + 1;
+
+            parts.add(Flux.defer(() -> Flux.just(ByteBuffer.wrap(partHeaders)))
+                    .concatWith(s3.download(repository, key, "bytes=" + start + "-" + end)
+                            .flatMapMany(Download::getContent)));
+        }
+
+        if (parts.isEmpty()) {
+            return Mono.error(new ClientError(416, "Range not satisfiable"));
+        }
+
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+        response.getHeaders().set(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+        response.getHeaders().setContentLength(contentLength);
+        response.getHeaders().set(HttpHeaders.ACCEPT_RANGES, BYTES);
+        setValidators(response.getHeaders(), head.eTag(), head.lastModified());
+
+        return response.writeWith(Flux.concat(parts)
+                .concatWith(Flux.defer(() -> Flux.just(ByteBuffer.wrap(closing))))
+                .map(response.bufferFactory()::wrap));
+    }
+
+    private static boolean isLengthKnown(HeadObjectResponse head) {
+        return head.contentLength() != null && head.contentLength() >= 0;
+    }
+
+    private static String key(String coordinates) {
+        return ArtifactUploader.key(coordinates);
     }
 
 }
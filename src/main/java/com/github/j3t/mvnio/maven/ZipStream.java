@@ -0,0 +1,120 @@
+package com.github.j3t.mvnio.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.attribute.FileTime;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.github.j3t.mvnio.storage.Download;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Writes objects as ZIP archive on the fly, so that a directory can be downloaded with one request without keeping the
+ * archive in memory. The downloads of the next objects are started while the current one is written, so that the
+ * archive is written without waiting for each object, but only a bounded number of buffers is kept ahead. The content is
+ * compressed on the parallel scheduler, not on the threads which transfer it.
+ */
+final class ZipStream {
+
+    // the number of buffers of an object which are requested ahead of time
+    private static final int BUFFERS_AHEAD = 32;
+
+    private ZipStream() {
+    }
+
+    /**
+     * @param names the names of the objects, in the order of the archive
+     * @param download downloads an object by name, empty if it doesn't exist (anymore)
+     * @param parallelism the maximum number of objects which are downloaded at the same time
+     * @return the content of the archive
+     */
+    static Flux<ByteBuffer> zip(Flux<String> names, Function<String, Mono<Download>> download, int parallelism) {
+        // each object becomes an entry followed by its content
+        Flux<Object> entries = names.flatMapSequential(name -> download.apply(name)
+                        .flatMapMany(d -> Flux.<Object>just(entry(name, d)).concatWith(d.getContent())),
+                parallelism,
+                BUFFERS_AHEAD);
+
+        return Flux.using(Output::new,
+                output -> entries
+                        .publishOn(Schedulers.parallel(), BUFFERS_AHEAD)
+                        .map(output::write)
+                        .concatWith(Mono.fromSupplier(output::finish))
+                        .filter(ByteBuffer::hasRemaining),
+                Output::close);
+    }
+
+    private static ZipEntry entry(String name, Download download) {
+        var entry = new ZipEntry(name);
+        if (download.getLastModified() != null) {
+            entry.setLastModifiedTime(FileTime.from(download.getLastModified()));
+        }
+        return entry;
+    }
+
+    /**
+     * A ZIP output stream which writes into a buffer that is taken after each write.
+     */
+    private static class Output {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final WritableByteChannel channel;
+        private final ZipOutputStream zip;
+
+        Output() {
+            zip = new ZipOutputStream(buffer);
+            // most artifacts are compressed already (e.g. jars)
+            zip.setLevel(Deflater.BEST_SPEED);
+            channel = Channels.newChannel(zip);
+        }
+
+        ByteBuffer write(Object event) {
+            try {
+                if (event instanceof ZipEntry entry) {
+                    zip.putNextEntry(entry);
+                } else {
+                    channel.write(((ByteBuffer) event).duplicate());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return take();
+        }
+
+        ByteBuffer finish() {
+            try {
+                zip.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return take();
+        }
+
+        void close() {
+            try {
+                // releases the deflater, even if the archive isn't finished (e.g. the client went away)
+                zip.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+
+        private ByteBuffer take() {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            buffer.reset();
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.github.j3t.mvnio.maven.metadata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import com.github.j3t.mvnio.maven.validation.Coordinates;
+
+/**
+ * The content of a maven-metadata.xml file of an artifact (e.g. foo/bar/maven-metadata.xml) or of a snapshot version
+ * (e.g. foo/bar/1.0-SNAPSHOT/maven-metadata.xml). Elements which don't belong to these (e.g. plugins) are dropped.
+ */
+final class Metadata {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private String groupId;
+    private String artifactId;
+    private String version;
+    private String latest;
+    private String release;
+    private final List<String> versions = new ArrayList<>();
+    private String snapshotTimestamp;
+    private String snapshotBuildNumber;
+    private String lastUpdated;
+    private boolean versioning;
+    // by classifier and extension
+    private final Map<String, SnapshotVersion> snapshotVersions = new LinkedHashMap<>();
+
+    /**
+     * Adds the version of an artifact to the metadata of the artifact, the version becomes the latest one.
+     *
+     * @return true if the metadata has been changed
+     */
+    boolean addVersion(Coordinates coordinates) {
+        boolean changed = identify(coordinates.groupId(), coordinates.artifactId(), null);
+
+        if (!versions.contains(coordinates.version())) {
+            versions.add(coordinates.version());
+            changed = true;
+        }
+
+        if (!coordinates.version().equals(latest)) {
+            latest = coordinates.version();
+            changed = true;
+        }
+
+        if (!coordinates.isSnapshot() && !coordinates.version().equals(release)) {
+            release = coordinates.version();
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Adds a file of a snapshot to the metadata of the snapshot version, unless a newer file of the same classifier and
+     * extension is known already.
+     *
+     * @return true if the metadata has been changed
+     */
+    boolean addSnapshot(Coordinates coordinates) {
+        boolean changed = identify(coordinates.groupId(), coordinates.artifactId(), coordinates.version());
+
+        // timestamp-buildNumber, e.g. 20201023.142512-1
+        int separator = coordinates.timestamp().lastIndexOf('-');
+        String timestamp = coordinates.timestamp().substring(0, separator);
+        String buildNumber = coordinates.timestamp().substring(separator + 1);
+
+        if (snapshotTimestamp == null || compare(timestamp, buildNumber, snapshotTimestamp, snapshotBuildNumber) > 0) {
+            snapshotTimestamp = timestamp;
+            snapshotBuildNumber = buildNumber;
+            changed = true;
+        }
+
+        String baseVersion = coordinates.version().substring(0, coordinates.version().length() - "-SNAPSHOT".length());
+        var file = new SnapshotVersion(coordinates.classifier(), coordinates.extension(),
+                baseVersion + "-" + coordinates.timestamp(), timestamp.replace(".", ""));
+        SnapshotVersion known = snapshotVersions.get(file.id());
+
+        if (known == null || compare(file.updated(), buildNumber, known.updated(), known.buildNumber()) > 0) {
+            snapshotVersions.put(file.id(), file);
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Adds what the given metadata knows and this one doesn't (e.g. uploaded by a client while an update failed): the
+     * versions, the snapshot files and, if missing, the latest and the release version. What is known here wins.
+     *
+     * @return true if the metadata has been changed
+     */
+    boolean merge(Metadata other) {
+        if (!other.versioning) {
+            return false;
+        }
+
+        boolean changed = !versioning;
+        versioning = true;
+
+        if (groupId == null && artifactId == null) {
+            groupId = other.groupId;
+            artifactId = other.artifactId;
+            version = other.version;
+            changed = true;
+        }
+
+        for (String otherVersion : other.versions) {
+            if (!versions.contains(otherVersion)) {
+                versions.add(otherVersion);
+                changed = true;
+            }
+        }
+
+        if (latest == null && other.latest != null) {
+            latest = other.latest;
+            changed = true;
+        }
+
+        if (release == null && other.release != null) {
+            release = other.release;
+            changed = true;
+        }
+
+        if (other.snapshotTimestamp != null && (snapshotTimestamp == null
+                || compare(other.snapshotTimestamp, other.snapshotBuildNumber, snapshotTimestamp, snapshotBuildNumber) > 0)) {
+            snapshotTimestamp = other.snapshotTimestamp;
+            snapshotBuildNumber = other.snapshotBuildNumber;
+            changed = true;
+        }
+
+        for (SnapshotVersion file : other.snapshotVersions.values()) {
+            SnapshotVersion known = snapshotVersions.get(file.id());
+            if (known == null || compare(file.updated(), file.buildNumber(), known.updated(), known.buildNumber()) > 0) {
+                snapshotVersions.put(file.id(), file);
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return true if the metadata belongs to an artifact or a snapshot version, false if not (e.g. the plugins of a
+     * group)
+     */
+    boolean hasVersioning() {
+        return versioning;
+    }
+
+    void touch(ZonedDateTime now) {
+        lastUpdated = TIMESTAMP.format(now.withZoneSameInstant(ZoneOffset.UTC));
+    }
+
+    private boolean identify(String groupId, String artifactId, String version) {
+        versioning = true;
+        boolean changed = !Objects.equals(this.groupId, groupId)
+                || !Objects.equals(this.artifactId, artifactId)
+                || !Objects.equals(this.version, version);
+
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        return changed;
+    }
+
+    private static int compare(String timestamp, String buildNumber, String otherTimestamp, String otherBuildNumber) {
+        int result = timestamp.compareTo(otherTimestamp);
+        return result != 0 ? result : Long.compare(parseLong(buildNumber), parseLong(otherBuildNumber));
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static Metadata parse(byte[] xml) {
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setExpandEntityReferences(false);
+            document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            throw new IllegalArgumentException("Not a valid metadata file: " + e.getMessage(), e);
+        }
+
+        var metadata = new Metadata();
+        Element root = document.getDocumentElement();
+        metadata.groupId = text(root, "groupId");
+        metadata.artifactId = text(root, "artifactId");
+        metadata.version = text(root, "version");
+
+        Element versioning = child(root, "versioning");
+        if (versioning == null) {
+            return metadata;
+        }
+
+        metadata.versioning = true;
+        metadata.latest = text(versioning, "latest");
+        metadata.release = text(versioning, "release");
+        metadata.lastUpdated = text(versioning, "lastUpdated");
+        children(child(versioning, "versions"), "version").forEach(v -> metadata.versions.add(v.getTextContent().trim()));
+
+        Element snapshot = child(versioning, "snapshot");
+        if (snapshot != null) {
+            metadata.snapshotTimestamp = text(snapshot, "timestamp");
+            metadata.snapshotBuildNumber = text(snapshot, "buildNumber");
+        }
+
+        for (Element element : children(child(versioning, "snapshotVersions"), "snapshotVersion")) {
+            var file = new SnapshotVersion(text(element, "classifier"), text(element, "extension"),
+                    text(element, "value"), Objects.toString(text(element, "updated"), ""));
+            metadata.snapshotVersions.put(file.id(), file);
+        }
+
+        return metadata;
+    }
+
+    byte[] toBytes() {
+        var xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata modelVersion=\"1.1.0\">\n");
+        element(xml, 1, "groupId", groupId);
+        element(xml, 1, "artifactId", artifactId);
+        element(xml, 1, "version", version);
+        xml.append("  <versioning>\n");
+        element(xml, 2, "latest", latest);
+        element(xml, 2, "release", release);
+
+        if (!versions.isEmpty()) {
+            xml.append("    <versions>\n");
+            versions.forEach(v -> element(xml, 3, "version", v));
+            xml.append("    </versions>\n");
+        }
+
+        if (snapshotTimestamp != null) {
+            xml.append("    <snapshot>\n");
+            element(xml, 3, "timestamp", snapshotTimestamp);
+            element(xml, 3, "buildNumber", snapshotBuildNumber);
+            xml.append("    </snapshot>\n");
+        }
+
+        element(xml, 2, "lastUpdated", lastUpdated);
+
+        if (!snapshotVersions.isEmpty()) {
+            xml.append("    <snapshotVersions>\n");
+            for (SnapshotVersion file : snapshotVersions.values()) {
+                xml.append("      <snapshotVersion>\n");
+                element(xml, 4, "classifier", file.classifier());
+                element(xml, 4, "extension", file.extension());
+                element(xml, 4, "value", file.value());
+                element(xml, 4, "updated", file.updated());
+                xml.append("      </snapshotVersion>\n");
+            }
+            xml.append("    </snapshotVersions>\n");
+        }
+
+        xml.append("  </versioning>\n</metadata>\n");
+        return xml.toString().getBytes(UTF_8);
+    }
+
+    private static void element(StringBuilder xml, int depth, String name, String value) {
+        if (value == null) {
+            return;
+        }
+
+        xml.append("  ".repeat(depth)).append('<').append(name).append('>');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<' -> xml.append("&lt;");
+                case '>' -> xml.append("&gt;");
+                case '&' -> xml.append("&amp;");
+                default -> xml.append(c);
+            }
+        }
+        xml.append("</").append(name).append(">\n");
+    }
+
+    private static Element child(Element parent, String name) {
+        List<Element> children = children(parent, name);
+        return children.isEmpty() ? null : children.get(0);
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        List<Element> children = new ArrayList<>();
+        if (parent == null) {
+            return children;
+        }
+
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element element && name.equals(element.getTagName())) {
+                children.add(element);
+            }
+        }
+        return children;
+    }
+
+    private static String text(Element parent, String name) {
+        Element child = child(parent, name);
+        return child != null ? child.getTextContent().trim() : null;
+    }
+
+    /**
+     * A file of a snapshot version.
+     *
+     * @param classifier the classifier (e.g. sources) or null
+     * @param extension the extension (e.g. jar)
+     * @param value the timestamped version (e.g. 1.0-20201023.142512-1)
+     * @param updated when the file has been deployed (e.g. 20201023142512)
+     */
+    private record SnapshotVersion(String classifier, String extension, String value, String updated) {
+
+        String id() {
+            return classifier != null ? classifier + ":" + extension : ":" + extension;
+        }
+
+        String buildNumber() {
+            return value != null ? value.substring(value.lastIndexOf('-') + 1) : "";
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.github.j3t.mvnio.maven.metadata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.reactivestreams.Publisher;
+import org.springframework.http.HttpStatus;
+
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.maven.validation.Coordinates;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.checksum.ChecksumS3Repository;
+import com.github.j3t.mvnio.storage.cache.Keys;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+import reactor.util.retry.Retry;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Maintains the maven-metadata.xml files of artifacts and snapshot versions on the server side, instead of the
+ * read-modify-write cycle of the Maven clients:
+ * <ul>
+ *     <li>each uploaded artifact file is added to the metadata of the artifact and, if it's a snapshot, to the metadata
+ *     of the snapshot version</li>
+ *     <li>a metadata file is updated with a conditional write (on its ETag), which is retried with the current content
+ *     if it has been changed meanwhile (e.g. through another node). Without conditional writes (see
+ *     {@code s3.conditional-writes}) the last write wins, so concurrent updates through other nodes can be lost.</li>
+ *     <li>updates of the same metadata file which arrive while it is written (e.g. the files of a version uploaded in
+ *     parallel) are applied together with the next write, if they were submitted with the same credentials. Each write
+ *     uses the credentials of the clients whose updates it applies, updates of other clients are written separately
+ *     (and retried on conflicts like the ones of other nodes).</li>
+ *     <li>the checksum files (md5, sha1, sha256 and sha512) are written along with the metadata file, unless the
+ *     repository computes them for each upload anyway (see {@link ChecksumS3Repository})</li>
+ * </ul>
+ * The metadata files of artifacts and snapshot versions which are uploaded by clients are merged into the maintained
+ * ones instead of replacing them, other metadata files (e.g. the plugins of a group) are stored as usual.
+ */
+@Slf4j
+public class MetadataUpdater {
+
+    private static final String METADATA_FILENAME = "maven-metadata.xml";
+    private static final String CONTENT_TYPE = "application/xml";
+    private static final Map<String, String> CHECKSUMS = Map.of("md5", "MD5", "sha1", "SHA-1", "sha256", "SHA-256",
+            "sha512", "SHA-512");
+    private static final Set<String> CHECKSUM_TYPES = CHECKSUMS.keySet();
+    // metadata files are small, larger uploads are not metadata files which are maintained here
+    private static final int MAX_METADATA_SIZE = 1024 * 1024;
+
+    private final S3Repository s3;
+    private final int maxRetries;
+    private final boolean conditionalWrites;
+    private final boolean checksumFiles;
+    private final Clock clock;
+    // pending updates by metadata file and credentials of the clients which submitted them
+    private final Map<String, Updates> updates = new ConcurrentHashMap<>();
+
+    /**
+     * @param s3 the repository to read and write the metadata files
+     * @param maxRetries how often an update is retried if the metadata file has been changed meanwhile
+     * @param conditionalWrites true if S3 supports conditional writes, false to write the metadata files unconditionally
+     * @param checksumFiles true to write the checksum files of the metadata files, false if the repository computes them
+     *                      for each upload (see {@link ChecksumS3Repository})
+     */
+    public MetadataUpdater(S3Repository s3, int maxRetries, boolean conditionalWrites, boolean checksumFiles) {
+        this(s3, maxRetries, conditionalWrites, checksumFiles, Clock.systemUTC());
+    }
+
+    MetadataUpdater(S3Repository s3, int maxRetries, boolean conditionalWrites, boolean checksumFiles, Clock clock) {
+        this.s3 = s3;
+        this.maxRetries = maxRetries;
+        this.conditionalWrites = conditionalWrites;
+        this.checksumFiles = checksumFiles;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds an uploaded artifact file to the metadata. Checksum files are ignored.
+     *
+     * @return completes once the metadata files have been written
+     */
+    public Mono<Void> update(String bucket, Coordinates coordinates) {
+        if (CHECKSUM_TYPES.contains(coordinates.type())) {
+            return Mono.empty();
+        }
+
+        String artifactKey = coordinates.groupId().replace('.', '/') + "/" + coordinates.artifactId() + "/";
+
+        return Mono.deferContextual(ctx -> {
+            Mono<Void> artifact = submit(ctx, bucket, artifactKey + METADATA_FILENAME, new Update(coordinates, false, null));
+
+            return coordinates.isSnapshot()
+                    ? Mono.when(artifact, submit(ctx, bucket, artifactKey + coordinates.version() + "/" + METADATA_FILENAME,
+                    new Update(coordinates, true, null)))
+                    : artifact;
+        });
+    }
+
+    /**
+     * Handles the upload of a metadata file (or one of its checksum files) by a client. Metadata files of artifacts and
+     * snapshot versions are merged into the maintained ones (so that an update which failed while the artifact was
+     * uploaded is caught up), other metadata files (e.g. the plugins of a group) are stored as usual. Uploaded checksum
+     * files are acknowledged without storing them, all of them are stored along with each written metadata file.
+     *
+     * @param key the key of the metadata file (e.g. foo/bar/maven-metadata.xml or foo/bar/maven-metadata.xml.sha1)
+     */
+    public Mono<Void> upload(String bucket, String key, Publisher<ByteBuffer> file) {
+        String extension = key.substring(key.lastIndexOf('/') + 1 + METADATA_FILENAME.length());
+
+        if (!extension.isEmpty()) {
+            return CHECKSUM_TYPES.contains(extension.substring(1))
+                    ? Flux.from(file).then()
+                    : s3.upload(bucket, key, "application/octet-stream", null, file).then();
+        }
+
+        return read(Flux.from(file))
+                .flatMap(bytes -> {
+                    Metadata uploaded = parse(bytes);
+                    return uploaded.hasVersioning()
+                            ? Mono.deferContextual(ctx -> submit(ctx, bucket, key, new Update(null, false, uploaded)))
+                            : write(bucket, key, bytes);
+                });
+    }
+
+    private Mono<Void> submit(ContextView ctx, String bucket, String key, Update update) {
+        var result = new AtomicReference<Mono<Void>>();
+        var start = new AtomicReference<Boolean>(false);
+        String batchKey = Keys.cacheKey(bucket, key) + "#" + Objects.toString(BucketPermissions.fingerprint(ctx), "");
+
+        updates.compute(batchKey, (k, pending) -> {
+            pending = pending != null ? pending : new Updates();
+            if (pending.updates.isEmpty()) {
+                // the batch is written with the credentials of its first update (all of them share the credentials)
+                pending.ctx = Context.of(ctx);
+            }
+            pending.updates.add(update);
+            result.set(pending.done.asMono());
+
+            if (!pending.writing) {
+                pending.writing = true;
+                start.set(true);
+            }
+            return pending;
+        });
+
+        if (start.get()) {
+            drain(bucket, key, batchKey);
+        }
+
+        return result.get();
+    }
+
+    /**
+     * Writes the pending updates of a metadata file, and then the ones which have arrived meanwhile until there are
+     * none left.
+     */
+    private void drain(String bucket, String key, String batchKey) {
+        var batch = new AtomicReference<Updates>();
+
+        updates.compute(batchKey, (k, pending) -> {
+            if (pending == null || pending.updates.isEmpty()) {
+                return null;
+            }
+
+            batch.set(pending);
+            var next = new Updates();
+            next.writing = true;
+            return next;
+        });
+
+        Updates current = batch.get();
+        if (current == null) {
+            return;
+        }
+
+        update(bucket, key, current.updates)
+                .contextWrite(current.ctx)
+                .subscribe(
+                        v -> {
+                        },
+                        e -> {
+                            log.warn("metadata {}/{} not updated: {}", bucket, key, e.getMessage());
+                            current.done.tryEmitError(e);
+                            drain(bucket, key, batchKey);
+                        },
+                        () -> {
+                            current.done.tryEmitEmpty();
+                            drain(bucket, key, batchKey);
+                        });
+    }
+
+    /**
+     * Applies updates to a metadata file with a conditional write, which is retried if the file has been changed
+     * meanwhile.
+     */
+    private Mono<Void> update(String bucket, String key, List<Update> batch) {
+        return Mono.defer(() -> s3.download(bucket, key)
+                        .flatMap(download -> read(download.getContent())
+                                .map(bytes -> new Current(Metadata.parse(bytes), download.getETag())))
+                        .onErrorResume(NoSuchKeyException.class, e -> Mono.empty())
+                        .defaultIfEmpty(new Current(new Metadata(), null))
+                        .flatMap(current -> {
+                            boolean changed = false;
+                            for (Update update : batch) {
+                                changed |= update.applyTo(current.metadata());
+                            }
+
+                            if (!changed) {
+                                return Mono.empty();
+                            }
+
+                            current.metadata().touch(ZonedDateTime.now(clock));
+                            return write(bucket, key, current.metadata().toBytes())
+                                    .contextWrite(ctx -> conditions(ctx, current.eTag()));
+                        }))
+                .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(50)).filter(MetadataUpdater::isConflict));
+    }
+
+    /**
+     * @return the context of a write of a metadata file, which fails if the file has been changed (or created)
+     * meanwhile
+     */
+    private Context conditions(Context ctx, String eTag) {
+        // check: conditional writes supported?
+        if (!conditionalWrites) {
+            // no -> the last write wins
+            return ctx.delete(S3Repository.IF_MATCH).put(S3Repository.CREATE_ONLY, false);
+        }
+
+        // yes -> check: metadata file stored already?
+        return eTag != null
+                // yes -> it must not have been changed meanwhile
+                ? ctx.put(S3Repository.IF_MATCH, eTag).put(S3Repository.CREATE_ONLY, false)
+                // no -> it must not have been created meanwhile
+                : ctx.delete(S3Repository.IF_MATCH).put(S3Repository.CREATE_ONLY, true);
+    }
+
+    /**
+     * Writes a metadata file, and then its checksum files (if not written by the repository).
+     */
+    private Mono<Void> write(String bucket, String key, byte[] bytes) {
+        if (!checksumFiles) {
+            return upload(bucket, key, CONTENT_TYPE, bytes);
+        }
+
+        return upload(bucket, key, CONTENT_TYPE, bytes)
+                .then(Flux.fromIterable(CHECKSUMS.entrySet())
+                        .flatMap(checksum -> upload(bucket, key + "." + checksum.getKey(), "text/plain",
+                                digest(checksum.getValue(), bytes).getBytes(UTF_8))
+                                .contextWrite(ctx -> ctx.delete(S3Repository.IF_MATCH).put(S3Repository.CREATE_ONLY, false)))
+                        .then());
+    }
+
+    private Mono<Void> upload(String bucket, String key, String contentType, byte[] bytes) {
+        return s3.upload(bucket, key, contentType, (long) bytes.length, Flux.defer(() -> Flux.just(ByteBuffer.wrap(bytes))))
+                .then();
+    }
+
+    private static boolean isConflict(Throwable e) {
+        return e instanceof S3Exception s3Exception
+                && (s3Exception.statusCode() == HttpStatus.PRECONDITION_FAILED.value()
+                || s3Exception.statusCode() == HttpStatus.CONFLICT.value());
+    }
+
+    private static Metadata parse(byte[] bytes) {
+        try {
+            return Metadata.parse(bytes);
+        } catch (IllegalArgumentException e) {
+            throw new ClientError(400, "Not a valid metadata file");
+        }
+    }
+
+    private static Mono<byte[]> read(Publisher<ByteBuffer> content) {
+        return Flux.from(content)
+                .reduce(new ByteArrayOutputStream(), (out, buffer) -> {
+                    if (out.size() + buffer.remaining() > MAX_METADATA_SIZE) {
+                        throw new ClientError(400, "Metadata file too large");
+                    }
+
+                    ByteBuffer source = buffer.duplicate();
+                    byte[] bytes = new byte[source.remaining()];
+                    source.get(bytes);
+                    out.writeBytes(bytes);
+                    return out;
+                })
+                .map(ByteArrayOutputStream::toByteArray);
+    }
+
+    private static String digest(String algorithm, byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance(algorithm).digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not supported!", e);
+        }
+    }
+
+    /**
+     * @param coordinates the uploaded artifact file
+     * @param snapshot true if the update belongs to the metadata of the snapshot version, false if to the one of the
+     *                 artifact
+     * @param uploaded the metadata uploaded by a client, merged instead of adding an artifact file if given
+     */
+    private record Update(Coordinates coordinates, boolean snapshot, Metadata uploaded) {
+
+        /**
+         * @return true if the metadata has been changed
+         */
+        boolean applyTo(Metadata metadata) {
+            if (uploaded != null) {
+                return metadata.merge(uploaded);
+            }
+
+            return snapshot ? metadata.addSnapshot(coordinates) : metadata.addVersion(coordinates);
+        }
+    }
+
+    private record Current(Metadata metadata, String eTag) {
+    }
+
+    /**
+     * The updates of a metadata file which are waiting to be written, all of them submitted with the same credentials.
+     */
+    private static class Updates {
+        final List<Update> updates = new ArrayList<>();
+        final Sinks.Empty<Void> done = Sinks.empty();
+        // the context of the first update, which provides the credentials to write them
+        Context ctx;
+        boolean writing;
+    }
+}
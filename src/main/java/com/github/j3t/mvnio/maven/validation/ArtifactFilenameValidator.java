@@ -2,10 +2,6 @@ package com.github.j3t.mvnio.maven.validation;
 
 import reactor.core.publisher.Mono;
 
-import static com.github.j3t.mvnio.maven.validation.IdValidator.ID_REGEX;
-import static com.github.j3t.mvnio.maven.validation.IdValidator.WORD_REGEX;
-import static java.lang.String.format;
-
 /**
  * Validates the filename of a given Maven artifact.
  */
@@ -27,20 +23,8 @@ public class ArtifactFilenameValidator implements Validator {
 
     @Override
     public Mono<Error> validate() {
-        return Mono.just(version)
-                .filter(v -> !(v.endsWith("-SNAPSHOT") ? isSnapshotVersion() : isReleaseVersion()))
-                .map(e -> Error.builder().value(filename).message("Artifact-Name is not valid!").build());
-    }
-
-    private boolean isReleaseVersion() {
-        return filename.matches(format("^%1$s-%2$s(-%3$s)?(\\.%4$s){1,2}$", artifactId, version, ID_REGEX, WORD_REGEX));
-    }
-
-    private boolean isSnapshotVersion() {
-        return filename.matches(format("^%1$s-%2$s-\\d{8}\\.\\d{6}-\\d{1,6}(-%3$s)?(\\.%4$s){1,2}$",
-                artifactId,
-                version.substring(0, version.length() - "-SNAPSHOT".length()),
-                ID_REGEX,
-                WORD_REGEX));
+        return Coordinates.parseFilename(null, artifactId, version, filename, 0) != null
+                ? Mono.empty()
+                : Mono.just(Error.builder().value(filename).message("Artifact-Name is not valid!").build());
     }
 }
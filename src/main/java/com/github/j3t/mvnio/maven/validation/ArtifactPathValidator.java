@@ -1,10 +1,7 @@
 package com.github.j3t.mvnio.maven.validation;
 
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.Arrays;
-
 /**
  * Validates the repository path of a given Maven artifact.
  */
@@ -20,21 +17,8 @@ public class ArtifactPathValidator implements Validator {
 
     @Override
     public Mono<Error> validate() {
-        String[] parts = path.split("/", 30);
-
-        String fileName = parts[parts.length - 1];
-        String version = parts[parts.length - 2];
-        String artifactId = parts[parts.length - 3];
-        String[] groupIdParts = Arrays.copyOfRange(parts, 1, parts.length - 3);
-
-        return Flux.just(
-                new GroupValidator(groupIdParts),
-                new IdValidator(artifactId),
-                new VersionValidator(version),
-                new ArtifactFilenameValidator(fileName, version, artifactId))
-                .flatMap(Validator::validate)
-                .take(1, true)
-                .next()
-                .map(e -> Error.builder().value(path).message("Artifact-Path is not valid!").build());
+        return Coordinates.parse(path) != null
+                ? Mono.empty()
+                : Mono.just(Error.builder().value(path).message("Artifact-Path is not valid!").build());
     }
 }
@@ -0,0 +1,176 @@
+package com.github.j3t.mvnio.maven.validation;
+
+import static com.github.j3t.mvnio.maven.validation.Syntax.SNAPSHOT;
+
+import lombok.NonNull;
+
+/**
+ * The coordinates of a Maven artifact file, parsed from its repository path (e.g.
+ * /com/github/j3t/mvnio/1.0.1-SNAPSHOT/mvnio-1.0.1-20201023.142512-1-sources.jar.sha1).
+ *
+ * @param groupId the groupId (e.g. com.github.j3t)
+ * @param artifactId the artifactId (e.g. mvnio)
+ * @param version the version (e.g. 1.0.1-SNAPSHOT)
+ * @param timestamp the timestamp of a snapshot file (e.g. 20201023.142512-1) or null if it's a release
+ * @param classifier the classifier (e.g. sources) or null if none
+ * @param extension the extension (e.g. jar.sha1)
+ */
+public record Coordinates(String groupId,
+                          String artifactId,
+                          String version,
+                          String timestamp,
+                          String classifier,
+                          String extension) {
+
+    private static final int MAX_ARTIFACT_PATH_SEGMENTS = 29;
+    private static final int MAX_METADATA_PATH_SEGMENTS = 19;
+
+    /**
+     * Parses the repository path of an artifact file in a single pass. The filename must match the artifactId and the
+     * version, snapshot files must be timestamped.
+     *
+     * @param path the path relative to the repository (e.g. /com/github/j3t/mvnio/1.0.1/mvnio-1.0.1.jar)
+     * @return the coordinates or null if the path is not a valid artifact path
+     */
+    public static Coordinates parse(@NonNull String path) {
+        int segments = Syntax.count(path, '/');
+        if (!path.startsWith("/") || segments < 4 || segments > MAX_ARTIFACT_PATH_SEGMENTS) {
+            return null;
+        }
+
+        int filenameStart = path.lastIndexOf('/') + 1;
+        int versionStart = path.lastIndexOf('/', filenameStart - 2) + 1;
+        int artifactIdStart = path.lastIndexOf('/', versionStart - 2) + 1;
+
+        if (!Syntax.isGroupPath(path, 1, artifactIdStart - 1)
+                || !Syntax.isId(path, artifactIdStart, versionStart - 1)
+                || !Syntax.isVersion(path, versionStart, filenameStart - 1)) {
+            return null;
+        }
+
+        return parseFilename(
+                path.substring(1, artifactIdStart - 1).replace('/', '.'),
+                path.substring(artifactIdStart, versionStart - 1),
+                path.substring(versionStart, filenameStart - 1),
+                path,
+                filenameStart);
+    }
+
+    /**
+     * Parses the repository path of a version directory, so that the files of the directory can be parsed by their
+     * filename only (see {@link #resolve(String)}).
+     *
+     * @param path the path relative to the repository (e.g. /com/github/j3t/mvnio/1.0.1)
+     * @return the coordinates without timestamp, classifier and extension or null if the path is not a valid version
+     * directory
+     */
+    public static Coordinates parseDirectory(@NonNull String path) {
+        String directory = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        int segments = Syntax.count(directory, '/');
+        if (!directory.startsWith("/") || segments < 3 || segments > MAX_ARTIFACT_PATH_SEGMENTS - 1) {
+            return null;
+        }
+
+        int versionStart = directory.lastIndexOf('/') + 1;
+        int artifactIdStart = directory.lastIndexOf('/', versionStart - 2) + 1;
+
+        if (!Syntax.isGroupPath(directory, 1, artifactIdStart - 1)
+                || !Syntax.isId(directory, artifactIdStart, versionStart - 1)
+                || !Syntax.isVersion(directory, versionStart, directory.length())) {
+            return null;
+        }
+
+        return new Coordinates(
+                directory.substring(1, artifactIdStart - 1).replace('/', '.'),
+                directory.substring(artifactIdStart, versionStart - 1),
+                directory.substring(versionStart),
+                null,
+                null,
+                null);
+    }
+
+    /**
+     * Parses the filename of an artifact in the version directory of these coordinates.
+     *
+     * @param filename the filename (e.g. mvnio-1.0.1-sources.jar)
+     * @return the coordinates or null if the filename doesn't match the artifactId and the version
+     */
+    public Coordinates resolve(@NonNull String filename) {
+        return filename.indexOf('/') < 0 ? parseFilename(groupId, artifactId, version, filename, 0) : null;
+    }
+
+    /**
+     * Parses the filename of an artifact, which starts at the given index of a string.
+     *
+     * @return the coordinates or null if the filename doesn't match the artifactId and the version
+     */
+    static Coordinates parseFilename(String groupId, String artifactId, String version, String s, int from) {
+        boolean snapshot = version.endsWith(SNAPSHOT);
+        String baseVersion = snapshot ? version.substring(0, version.length() - SNAPSHOT.length()) : version;
+
+        // <artifactId>-<version>
+        int i = from;
+        if (!s.startsWith(artifactId, i)
+                || !s.startsWith("-", i += artifactId.length())
+                || !s.startsWith(baseVersion, ++i)) {
+            return null;
+        }
+        i += baseVersion.length();
+
+        // -<timestamp>, if snapshot
+        String timestamp = null;
+        if (snapshot) {
+            int timestampEnd = s.startsWith("-", i) ? Syntax.timestampEnd(s, i + 1, s.length()) : -1;
+            if (timestampEnd < 0) {
+                return null;
+            }
+            timestamp = s.substring(i + 1, timestampEnd);
+            i = timestampEnd;
+        }
+
+        // [-<classifier>].<extension>
+        int extensionStart = Syntax.extensionStart(s, i, s.length());
+        if (extensionStart < 0) {
+            return null;
+        }
+
+        return new Coordinates(
+                groupId,
+                artifactId,
+                version,
+                timestamp,
+                extensionStart - 1 > i ? s.substring(i + 1, extensionStart - 1) : null,
+                s.substring(extensionStart));
+    }
+
+    /**
+     * Checks whether a given path is the path of a Maven metadata file (e.g. /com/github/j3t/mvnio/maven-metadata.xml
+     * or /com/github/j3t/mvnio/1.0.1-SNAPSHOT/maven-metadata.xml.sha1), without parsing it.
+     *
+     * @param path the path relative to the repository
+     */
+    public static boolean isMetadata(@NonNull String path) {
+        int segments = Syntax.count(path, '/');
+        if (!path.startsWith("/") || segments < 3 || segments > MAX_METADATA_PATH_SEGMENTS) {
+            return false;
+        }
+
+        int filenameStart = path.lastIndexOf('/') + 1;
+        int versionStart = path.lastIndexOf('/', filenameStart - 2) + 1;
+
+        return Syntax.isMetadataFilename(path, filenameStart, path.length())
+                && Syntax.isVersion(path, versionStart, filenameStart - 1)
+                && Syntax.isGroupPath(path, 1, versionStart - 1);
+    }
+
+    public boolean isSnapshot() {
+        return timestamp != null;
+    }
+
+    /**
+     * @return the last part of the extension, which determines the content type (e.g. sha1 for jar.sha1)
+     */
+    public String type() {
+        return extension.substring(extension.lastIndexOf('.') + 1);
+    }
+}
@@ -1,6 +1,5 @@
 package com.github.j3t.mvnio.maven.validation;
 
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.Arrays;
@@ -24,11 +23,13 @@ public class GroupValidator implements Validator {
     }
 
     private Mono<Error> notEmptyPath() {
-        return Flux.just(groupIdParts)
-                .flatMap(part -> new IdValidator(part).validate())
-                .take(1, true)
-                .next()
-                .map(e -> Error.builder().value(Arrays.toString(groupIdParts)).message("GroupId invalid!").build());
+        for (String part : groupIdParts) {
+            if (!Syntax.isId(part, 0, part.length())) {
+                return Mono.just(Error.builder().value(Arrays.toString(groupIdParts)).message("GroupId invalid!").build());
+            }
+        }
+
+        return Mono.empty();
     }
 
     private Mono<Error> emptyPath() {
@@ -2,9 +2,6 @@ package com.github.j3t.mvnio.maven.validation;
 
 import reactor.core.publisher.Mono;
 
-import static com.github.j3t.mvnio.maven.validation.IdValidator.WORD_REGEX;
-import static java.lang.String.format;
-
 /**
  * Validates the metadata filename of a given Maven artifact.
  */
@@ -17,8 +14,8 @@ public class MetadataFilenameValidator implements Validator {
 
     @Override
     public Mono<Error> validate() {
-        return Mono.just(filename)
-                .filter(f -> !f.matches(format("^maven-metadata\\.xml(\\.%s)?$", WORD_REGEX)))
-                .map(e -> Error.builder().value(filename).message("Not a valid metadata filename!").build());
+        return Syntax.isMetadataFilename(filename, 0, filename.length())
+                ? Mono.empty()
+                : Mono.just(Error.builder().value(filename).message("Not a valid metadata filename!").build());
     }
 }
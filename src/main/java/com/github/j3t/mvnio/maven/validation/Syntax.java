@@ -0,0 +1,200 @@
+package com.github.j3t.mvnio.maven.validation;
+
+/**
+ * Hand-rolled matchers for the parts of a Maven repository path. They work on a region of a string, so that a path
+ * can be checked in a single pass without splitting it or compiling regular expressions. The grammar is:
+ * <ul>
+ *     <li>word: 1 to 20 characters out of [a-zA-Z0-9_]</li>
+ *     <li>id: 1 to 21 words separated by '.' or '-' (e.g. foo-bar, 4.1.53.Final)</li>
+ *     <li>version: an id, optionally followed by -SNAPSHOT</li>
+ *     <li>timestamp: yyyyMMdd.HHmmss-buildNumber (e.g. 20201023.142512-1), the buildNumber has 1 to 6 digits</li>
+ *     <li>extension: 1 or 2 words separated by '.' (e.g. jar, jar.sha1)</li>
+ * </ul>
+ */
+final class Syntax {
+
+    static final String SNAPSHOT = "-SNAPSHOT";
+    static final String METADATA_FILENAME = "maven-metadata.xml";
+
+    private static final int MAX_WORD_LENGTH = 20;
+    private static final int MAX_ID_WORDS = 21;
+    private static final int MAX_BUILD_NUMBER_LENGTH = 6;
+
+    private Syntax() {}
+
+    static boolean isWord(String s, int from, int to) {
+        if (to - from < 1 || to - from > MAX_WORD_LENGTH) {
+            return false;
+        }
+
+        for (int i = from; i < to; i++) {
+            if (!isWordChar(s.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static boolean isId(String s, int from, int to) {
+        int words = 0;
+        int start = from;
+
+        for (int i = from; i <= to; i++) {
+            if (i == to || isIdSeparator(s.charAt(i))) {
+                if (++words > MAX_ID_WORDS || !isWord(s, start, i)) {
+                    return false;
+                }
+                start = i + 1;
+            }
+        }
+
+        return true;
+    }
+
+    static boolean isVersion(String s, int from, int to) {
+        return isId(s, from, to) || isSnapshot(s, from, to) && isId(s, from, to - SNAPSHOT.length());
+    }
+
+    static boolean isSnapshot(String s, int from, int to) {
+        return to - from >= SNAPSHOT.length() && s.startsWith(SNAPSHOT, to - SNAPSHOT.length());
+    }
+
+    /**
+     * @return the end of the timestamp which starts at the given index or -1 if there is none
+     */
+    static int timestampEnd(String s, int from, int to) {
+        int i = digits(s, from, to, 8);
+        if (i < 0 || i >= to || s.charAt(i) != '.') {
+            return -1;
+        }
+
+        i = digits(s, i + 1, to, 6);
+        if (i < 0 || i >= to || s.charAt(i) != '-') {
+            return -1;
+        }
+
+        int buildNumberStart = ++i;
+        while (i < to && i - buildNumberStart < MAX_BUILD_NUMBER_LENGTH && isDigit(s.charAt(i))) {
+            i++;
+        }
+
+        return i > buildNumberStart ? i : -1;
+    }
+
+    /**
+     * Matches the end of an artifact filename, which is an optional classifier (e.g. -sources) followed by the
+     * extension (e.g. .jar).
+     *
+     * @return the start of the extension (after the '.') or -1 if the region doesn't match
+     */
+    static int extensionStart(String s, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+
+        // no classifier
+        if (s.charAt(from) == '.') {
+            return isExtension(s, from + 1, to) ? from + 1 : -1;
+        }
+
+        if (s.charAt(from) != '-') {
+            return -1;
+        }
+
+        // classifier, the extension consists of the last or the last two words if they are separated by '.'
+        int last = lastIdSeparator(s, from + 1, to);
+        if (last < 0 || s.charAt(last) != '.') {
+            return -1;
+        }
+
+        int previous = lastIdSeparator(s, from + 1, last);
+        if (previous >= 0 && s.charAt(previous) == '.' && isId(s, from + 1, previous) && isExtension(s, previous + 1, to)) {
+            return previous + 1;
+        }
+
+        return isId(s, from + 1, last) && isWord(s, last + 1, to) ? last + 1 : -1;
+    }
+
+    static boolean isExtension(String s, int from, int to) {
+        int dot = s.indexOf('.', from);
+        return dot < 0 || dot >= to
+                ? isWord(s, from, to)
+                : isWord(s, from, dot) && isWord(s, dot + 1, to);
+    }
+
+    /**
+     * Matches maven-metadata.xml, optionally followed by the extension of a checksum or signature (e.g. .sha1).
+     */
+    static boolean isMetadataFilename(String s, int from, int to) {
+        if (!s.startsWith(METADATA_FILENAME, from) || from + METADATA_FILENAME.length() > to) {
+            return false;
+        }
+
+        int end = from + METADATA_FILENAME.length();
+        return end == to || s.charAt(end) == '.' && isWord(s, end + 1, to);
+    }
+
+    /**
+     * Matches a groupId in path notation (e.g. com/github/j3t), each part must be an id.
+     */
+    static boolean isGroupPath(String s, int from, int to) {
+        int start = from;
+
+        for (int i = from; i <= to; i++) {
+            if (i == to || s.charAt(i) == '/') {
+                if (!isId(s, start, i)) {
+                    return false;
+                }
+                start = i + 1;
+            }
+        }
+
+        return true;
+    }
+
+    static int count(String s, char c) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int digits(String s, int from, int to, int count) {
+        if (to - from < count) {
+            return -1;
+        }
+
+        for (int i = from; i < from + count; i++) {
+            if (!isDigit(s.charAt(i))) {
+                return -1;
+            }
+        }
+
+        return from + count;
+    }
+
+    private static int lastIdSeparator(String s, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (isIdSeparator(s.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWordChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || isDigit(c) || c == '_';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdSeparator(char c) {
+        return c == '.' || c == '-';
+    }
+}
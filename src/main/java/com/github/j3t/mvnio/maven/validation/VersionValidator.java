@@ -2,17 +2,10 @@ package com.github.j3t.mvnio.maven.validation;
 
 import reactor.core.publisher.Mono;
 
-import java.util.regex.Pattern;
-
-import static com.github.j3t.mvnio.maven.validation.IdValidator.ID_REGEX;
-import static java.lang.String.format;
-
 /**
  * Validates the version of a given Maven artifact.
  */
 public class VersionValidator implements Validator {
-    static final Pattern VERSION_PATTERN = Pattern.compile(format("^%1$s(-SNAPSHOT)?$", ID_REGEX));
-
     private final String version;
 
     /**
@@ -24,8 +17,8 @@ public class VersionValidator implements Validator {
 
     @Override
     public Mono<Error> validate() {
-        return Mono.just(version)
-                .filter(v -> !VERSION_PATTERN.matcher(v).matches())
-                .map(v -> Error.builder().value(v).message("Version not valid!").build());
+        return Syntax.isVersion(version, 0, version.length())
+                ? Mono.empty()
+                : Mono.just(Error.builder().value(version).message("Version not valid!").build());
     }
 }
@@ -0,0 +1,218 @@
+package com.github.j3t.mvnio.metrics;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.lang.NonNull;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Records the following metrics of each repository request, tagged by endpoint (upload, download, head, metadata,
+ * list, group-download, group-head, bundle and archive) and repository (or group):
+ * <ul>
+ *     <li>mvnio.requests - the duration until the response is complete, also tagged by status</li>
+ *     <li>mvnio.requests.ttfb - the duration until the response headers are sent (time to first byte)</li>
+ *     <li>mvnio.bytes - the number of bytes received (in) and sent (out)</li>
+ * </ul>
+ * Clients can request any repository name, so a repository is tagged by its name only if it is configured (e.g. a
+ * group) or once a request of it has been answered successfully, i.e. S3 has authorized it. The number of these
+ * repositories is limited as well, others are tagged as "other".
+ */
+public class RequestMetricsWebFilter implements WebFilter {
+
+    private static final String OTHER = "other";
+
+    private final MeterRegistry registry;
+    private final int maxRepositories;
+    private final Set<String> repositories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param registry the registry to record the metrics in
+     * @param maxRepositories the maximum number of distinct repository tags
+     * @param configured the repositories (and groups) which are tagged by their name from the start
+     */
+    public RequestMetricsWebFilter(MeterRegistry registry, int maxRepositories, Collection<String> configured) {
+        this.registry = registry;
+        this.maxRepositories = maxRepositories;
+        configured.stream().limit(maxRepositories).forEach(repositories::add);
+    }
+
+    @NonNull
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        String[] segments = exchange.getRequest().getPath().pathWithinApplication().value().split("/", 4);
+        String endpoint = segments.length >= 3 ? endpoint(exchange.getRequest().getMethod(), segments[1]) : null;
+
+        // check: repository request?
+        if (endpoint == null) {
+            // no -> not recorded
+            return chain.filter(exchange);
+        }
+
+        long start = System.nanoTime();
+        var bytesIn = new AtomicLong();
+        var bytesOut = new AtomicLong();
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.beforeCommit(() -> {
+            Tags tags = Tags.of("endpoint", endpoint, "repository", repository(segments[2], isSuccess(response.getStatusCode())));
+            timer("mvnio.requests.ttfb", "The duration until the response headers are sent", tags)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return Mono.empty();
+        });
+
+        ServerWebExchange countingExchange = exchange.mutate()
+                .request(new CountingRequest(exchange.getRequest(), bytesIn))
+                .response(response instanceof ZeroCopyHttpOutputMessage
+                        ? new ZeroCopyCountingResponse(response, bytesOut)
+                        : new CountingResponse(response, bytesOut))
+                .build();
+
+        return chain.filter(countingExchange)
+                .doFinally(signal -> {
+                    HttpStatusCode status = response.getStatusCode();
+                    String statusTag = signal == SignalType.CANCEL ? "cancelled"
+                            : status != null ? String.valueOf(status.value()) : "200";
+                    Tags tags = Tags.of("endpoint", endpoint,
+                            "repository", repository(segments[2], signal == SignalType.ON_COMPLETE && isSuccess(status)));
+
+                    timer("mvnio.requests", "The duration of repository requests", tags.and("status", statusTag))
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    bytes(tags, "in").increment(bytesIn.get());
+                    bytes(tags, "out").increment(bytesOut.get());
+                });
+    }
+
+    private static String endpoint(HttpMethod method, String segment) {
+        return switch (segment) {
+            case "maven" -> HttpMethod.GET.equals(method) ? "download"
+                    : HttpMethod.HEAD.equals(method) ? "head"
+                    : HttpMethod.PUT.equals(method) ? "upload"
+                    : null;
+            case "group" -> HttpMethod.GET.equals(method) ? "group-download"
+                    : HttpMethod.HEAD.equals(method) ? "group-head"
+                    : null;
+            case "bundle" -> HttpMethod.POST.equals(method) ? "bundle" : null;
+            case "archive" -> HttpMethod.GET.equals(method) ? "archive" : null;
+            case "metadata" -> "metadata";
+            case "list" -> "list";
+            default -> null;
+        };
+    }
+
+    /**
+     * @param success true if the request has been answered successfully
+     * @return the repository tag, the name if the repository is known or has just been answered successfully
+     */
+    private String repository(String repository, boolean success) {
+        if (repositories.contains(repository)) {
+            return repository;
+        }
+
+        if (success && repositories.size() < maxRepositories) {
+            repositories.add(repository);
+            return repository;
+        }
+
+        return OTHER;
+    }
+
+    private static boolean isSuccess(HttpStatusCode status) {
+        // the status is not set if the response is 200
+        return status == null || !status.isError();
+    }
+
+    private Timer timer(String name, String description, Tags tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter bytes(Tags tags, String direction) {
+        return Counter.builder("mvnio.bytes")
+                .description("The number of bytes received and sent by repository requests")
+                .baseUnit("bytes")
+                .tags(tags)
+                .tag("direction", direction)
+                .register(registry);
+    }
+
+    private static class CountingRequest extends ServerHttpRequestDecorator {
+        private final AtomicLong bytes;
+
+        CountingRequest(ServerHttpRequest delegate, AtomicLong bytes) {
+            super(delegate);
+            this.bytes = bytes;
+        }
+
+        @NonNull
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return super.getBody().doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()));
+        }
+    }
+
+    private static class CountingResponse extends ServerHttpResponseDecorator {
+        final AtomicLong bytes;
+
+        CountingResponse(ServerHttpResponse delegate, AtomicLong bytes) {
+            super(delegate);
+            this.bytes = bytes;
+        }
+
+        @NonNull
+        @Override
+        public Mono<Void> writeWith(@NonNull Publisher<? extends DataBuffer> body) {
+            return super.writeWith(Flux.from(body).doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount())));
+        }
+
+        @NonNull
+        @Override
+        public Mono<Void> writeAndFlushWith(@NonNull Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.from(body)
+                    .map(part -> Flux.from(part).doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))));
+        }
+    }
+
+    /**
+     * Keeps the zero-copy file transfer of the response available (e.g. for files of the disk cache).
+     */
+    private static class ZeroCopyCountingResponse extends CountingResponse implements ZeroCopyHttpOutputMessage {
+
+        ZeroCopyCountingResponse(ServerHttpResponse delegate, AtomicLong bytes) {
+            super(delegate, bytes);
+        }
+
+        @NonNull
+        @Override
+        public Mono<Void> writeWith(@NonNull Path file, long position, long count) {
+            return ((ZeroCopyHttpOutputMessage) getDelegate()).writeWith(file, position, count)
+                    .doOnSuccess(v -> bytes.addAndGet(count));
+        }
+    }
+}
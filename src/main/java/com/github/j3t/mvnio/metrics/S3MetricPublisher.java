@@ -0,0 +1,116 @@
+package com.github.j3t.mvnio.metrics;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+/**
+ * Publishes the metrics which the S3 client collects for each API call to Micrometer:
+ * <ul>
+ *     <li>s3.operations - duration of each operation (e.g. GetObject until the response headers are received), tagged
+ *     by operation and outcome</li>
+ *     <li>s3.operations.errors - failed operations, tagged by operation, error type and status code</li>
+ *     <li>s3.operations.retries - retried attempts, tagged by operation</li>
+ *     <li>s3.connections.* - utilization of the connection pool, as observed by the most recent call</li>
+ * </ul>
+ */
+public class S3MetricPublisher implements MetricPublisher {
+
+    private final MeterRegistry registry;
+    private final AtomicInteger maxConnections = new AtomicInteger();
+    private final AtomicInteger leasedConnections = new AtomicInteger();
+    private final AtomicInteger pendingConnections = new AtomicInteger();
+    private final Timer connectionAcquireTimer;
+
+    public S3MetricPublisher(MeterRegistry registry) {
+        this.registry = registry;
+
+        Gauge.builder("s3.connections.max", maxConnections, AtomicInteger::get)
+                .description("The maximum number of connections to S3")
+                .register(registry);
+        Gauge.builder("s3.connections.leased", leasedConnections, AtomicInteger::get)
+                .description("The number of connections to S3 in use")
+                .register(registry);
+        Gauge.builder("s3.connections.pending", pendingConnections, AtomicInteger::get)
+                .description("The number of requests waiting for a connection to S3")
+                .register(registry);
+        connectionAcquireTimer = Timer.builder("s3.connections.acquire")
+                .description("The time a request waits for a connection to S3")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public void publish(MetricCollection metrics) {
+        String operation = first(metrics, CoreMetric.OPERATION_NAME, "unknown");
+        boolean successful = first(metrics, CoreMetric.API_CALL_SUCCESSFUL, false);
+        Duration duration = first(metrics, CoreMetric.API_CALL_DURATION, null);
+
+        if (duration != null) {
+            Timer.builder("s3.operations")
+                    .description("The duration of S3 operations")
+                    .tag("operation", operation)
+                    .tag("outcome", successful ? "success" : "failure")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(duration);
+        }
+
+        int retries = first(metrics, CoreMetric.RETRY_COUNT, 0);
+        if (retries > 0) {
+            Counter.builder("s3.operations.retries")
+                    .description("The number of retried S3 operation attempts")
+                    .tag("operation", operation)
+                    .register(registry)
+                    .increment(retries);
+        }
+
+        List<MetricCollection> attempts = metrics.childrenWithName("ApiCallAttempt").toList();
+        if (attempts.isEmpty()) {
+            return;
+        }
+
+        MetricCollection lastAttempt = attempts.get(attempts.size() - 1);
+
+        if (!successful) {
+            Counter.builder("s3.operations.errors")
+                    .description("The number of failed S3 operations")
+                    .tag("operation", operation)
+                    .tag("error", first(lastAttempt, CoreMetric.ERROR_TYPE, "unknown"))
+                    .tag("status", String.valueOf(first(lastAttempt, HttpMetric.HTTP_STATUS_CODE, 0)))
+                    .register(registry)
+                    .increment();
+        }
+
+        lastAttempt.childrenWithName("HttpClient").forEach(http -> {
+            maxConnections.set(first(http, HttpMetric.MAX_CONCURRENCY, maxConnections.get()));
+            leasedConnections.set(first(http, HttpMetric.LEASED_CONCURRENCY, leasedConnections.get()));
+            pendingConnections.set(first(http, HttpMetric.PENDING_CONCURRENCY_ACQUIRES, pendingConnections.get()));
+
+            Duration acquireDuration = first(http, HttpMetric.CONCURRENCY_ACQUIRE_DURATION, null);
+            if (acquireDuration != null) {
+                connectionAcquireTimer.record(acquireDuration);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        // the meters are owned by the registry
+    }
+
+    private static <T> T first(MetricCollection metrics, SdkMetric<T> metric, T defaultValue) {
+        List<T> values = metrics.metricValues(metric);
+        return values.isEmpty() || values.get(0) == null ? defaultValue : values.get(0);
+    }
+}
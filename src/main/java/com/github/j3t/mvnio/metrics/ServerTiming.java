@@ -0,0 +1,87 @@
+package com.github.j3t.mvnio.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Collects the durations of the phases of a request (e.g. validation or the S3 request), so that they can be reported
+ * as Server-Timing header or logged. An instance is put into the subscriber context by the
+ * {@link ServerTimingWebFilter}, the phases are recorded with {@link #time(String, Mono)}. The durations of phases
+ * with the same name are summed up.
+ */
+public final class ServerTiming {
+
+    public static final String SERVER_TIMING = "SERVER_TIMING";
+
+    private final long start = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * Records the duration from the subscription to the termination of the given publisher as phase of the request, if
+     * the subscriber context contains a {@link ServerTiming}.
+     */
+    public static <T> Mono<T> time(String phase, Mono<T> publisher) {
+        return Mono.deferContextual(ctx -> {
+            ServerTiming timing = ctx.getOrDefault(SERVER_TIMING, null);
+            if (timing == null) {
+                return publisher;
+            }
+
+            // recorded before the signal is passed on, the response could be sent right after
+            Runnable record = timing.start(phase);
+            return publisher.doOnTerminate(record).doOnCancel(record);
+        });
+    }
+
+    /**
+     * Same as {@link #time(String, Mono)} but for publishers of multiple items.
+     */
+    public static <T> Flux<T> time(String phase, Flux<T> publisher) {
+        return Flux.deferContextual(ctx -> {
+            ServerTiming timing = ctx.getOrDefault(SERVER_TIMING, null);
+            if (timing == null) {
+                return publisher;
+            }
+
+            Runnable record = timing.start(phase);
+            return publisher.doOnTerminate(record).doOnCancel(record);
+        });
+    }
+
+    private Runnable start(String phase) {
+        long phaseStart = System.nanoTime();
+        return () -> add(phase, System.nanoTime() - phaseStart);
+    }
+
+    synchronized void add(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * @return the time elapsed since the start of the request in nanoseconds
+     */
+    long elapsed() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @param total the name of the entry which contains the time elapsed since the start of the request
+     * @return the phases in the format of the Server-Timing header (e.g. validate;dur=0.1, s3;dur=12.3, total;dur=13.5)
+     */
+    synchronized String format(String total) {
+        var entries = new StringJoiner(", ");
+        phases.forEach((phase, nanos) -> entries.add(entry(phase, nanos)));
+        entries.add(entry(total, elapsed()));
+        return entries.toString();
+    }
+
+    private static String entry(String phase, long nanos) {
+        return String.format(Locale.ROOT, "%s;dur=%.1f", phase, nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.j3t.mvnio.metrics;
+
+import static com.github.j3t.mvnio.metrics.ServerTiming.SERVER_TIMING;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Puts a {@link ServerTiming} into the subscriber context of each request and reports the recorded phases:
+ * <ul>
+ *     <li>as Server-Timing header (optional), the phases until the response headers are sent, because the header can't
+ *     be changed afterwards</li>
+ *     <li>as log entry, if the request took longer than the given threshold (optional), including the transfer of the
+ *     response body</li>
+ * </ul>
+ */
+@Slf4j
+public class ServerTimingWebFilter implements WebFilter {
+
+    private static final String HEADER = "Server-Timing";
+
+    private final boolean header;
+    private final long slowRequestThreshold;
+
+    /**
+     * @param header true if the Server-Timing header should be added to the responses
+     * @param slowRequestThreshold requests which take longer are logged, or null (or zero) to log none
+     */
+    public ServerTimingWebFilter(boolean header, Duration slowRequestThreshold) {
+        this.header = header;
+        this.slowRequestThreshold = slowRequestThreshold == null || slowRequestThreshold.isZero()
+                ? Long.MAX_VALUE
+                : slowRequestThreshold.toNanos();
+    }
+
+    @NonNull
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        if (!header && slowRequestThreshold == Long.MAX_VALUE) {
+            return chain.filter(exchange);
+        }
+
+        var timing = new ServerTiming();
+        var committed = new AtomicLong(-1);
+        ServerHttpResponse response = exchange.getResponse();
+
+        response.beforeCommit(() -> {
+            committed.set(timing.elapsed());
+            if (header) {
+                response.getHeaders().add(HEADER, timing.format("total"));
+            }
+            return Mono.empty();
+        });
+
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    long elapsed = timing.elapsed();
+                    if (elapsed > slowRequestThreshold) {
+                        logSlowRequest(exchange.getRequest(), response.getStatusCode(), timing, committed.get(), elapsed);
+                    }
+                })
+                .contextWrite(ctx -> ctx.put(SERVER_TIMING, timing));
+    }
+
+    private static void logSlowRequest(ServerHttpRequest request, HttpStatusCode status, ServerTiming timing,
+                                       long committed, long elapsed) {
+
+        // the transfer of the response body starts once the headers have been sent
+        if (committed >= 0) {
+            timing.add("transfer", elapsed - committed);
+        }
+
+        log.warn("slow request: method={}, path={}, status={}, timing=[{}]",
+                request.getMethod(),
+                request.getPath().pathWithinApplication().value(),
+                status != null ? status.value() : null,
+                timing.format("total"));
+    }
+}
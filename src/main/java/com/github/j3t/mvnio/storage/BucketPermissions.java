@@ -0,0 +1,140 @@
+package com.github.j3t.mvnio.storage;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+
+import java.time.Duration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import reactor.util.context.ContextView;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+
+/**
+ * Remembers for a limited time which client credentials have been authorized by S3 to read an object. Caches use it to
+ * decide whether an object can be served locally, without asking S3 whether the client is allowed to see it.
+ * <p>
+ * The grants are kept per object, not per bucket, so that a client whose policy allows only some prefixes of a bucket
+ * (e.g. releases/com/acme/*) is not served the other objects of the bucket from a cache.
+ * <p>
+ * Permissions to list a bucket are remembered separately per prefix, a listing or a missing object (S3 answers 404
+ * instead of 403 only if the client is allowed to list the key) doesn't authorize a read.
+ * <p>
+ * It also remembers which client credentials have been rejected by S3 as invalid, so that they can be rejected locally.
+ */
+public class BucketPermissions {
+
+    private final Cache<String, Boolean> readGrants;
+    private final Cache<String, Boolean> listGrants;
+    private final Cache<String, Boolean> denials;
+
+    /**
+     * @param ttl how long a successful S3 read authorizes further reads of the same object
+     * @param maximumSize maximum number of credentials/object combinations to remember
+     */
+    public BucketPermissions(Duration ttl, long maximumSize) {
+        this(ttl, maximumSize, Duration.ZERO);
+    }
+
+    /**
+     * @param ttl how long a successful S3 read authorizes further reads of the same object
+     * @param maximumSize maximum number of credentials/object combinations to remember
+     * @param denialTtl how long credentials which have been rejected by S3 are rejected locally
+     */
+    public BucketPermissions(Duration ttl, long maximumSize, Duration denialTtl) {
+        this.readGrants = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumSize)
+                .build();
+        this.listGrants = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumSize)
+                .build();
+        this.denials = Caffeine.newBuilder()
+                .expireAfterWrite(denialTtl)
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * Returns true if the credentials in the given context were recently authorized by S3 to read the object.
+     */
+    public boolean canRead(ContextView ctx, String bucket, String key) {
+        String fingerprint = fingerprint(ctx);
+        return fingerprint != null
+                && denials.getIfPresent(fingerprint + "/" + bucket) == null
+                && readGrants.getIfPresent(fingerprint + "/" + bucket + "/" + key) != null;
+    }
+
+    /**
+     * Records that the credentials in the given context have been authorized by S3 to read the object (i.e. a GET or
+     * HEAD of it succeeded).
+     */
+    public void grantRead(ContextView ctx, String bucket, String key) {
+        String fingerprint = fingerprint(ctx);
+        if (fingerprint != null) {
+            readGrants.put(fingerprint + "/" + bucket + "/" + key, Boolean.TRUE);
+            denials.invalidate(fingerprint + "/" + bucket);
+        }
+    }
+
+    /**
+     * Returns true if the credentials in the given context were recently authorized by S3 to list the keys with the
+     * given prefix.
+     */
+    public boolean canList(ContextView ctx, String bucket, String prefix) {
+        String fingerprint = fingerprint(ctx);
+        return fingerprint != null
+                && denials.getIfPresent(fingerprint + "/" + bucket) == null
+                && listGrants.getIfPresent(fingerprint + "/" + bucket + "/" + prefix) != null;
+    }
+
+    /**
+     * Records that the credentials in the given context have been authorized by S3 to list the keys with the given
+     * prefix (i.e. a listing of the prefix succeeded or a lookup of the key was answered with 404).
+     */
+    public void grantList(ContextView ctx, String bucket, String prefix) {
+        String fingerprint = fingerprint(ctx);
+        if (fingerprint != null) {
+            listGrants.put(fingerprint + "/" + bucket + "/" + prefix, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Returns true if the credentials in the given context were recently rejected by S3 for the bucket.
+     */
+    public boolean isDenied(ContextView ctx, String bucket) {
+        String fingerprint = fingerprint(ctx);
+        return fingerprint != null && denials.getIfPresent(fingerprint + "/" + bucket) != null;
+    }
+
+    /**
+     * Records that the credentials in the given context have been rejected by S3 for the bucket, their read grants of
+     * the bucket are not considered anymore.
+     */
+    public void deny(ContextView ctx, String bucket) {
+        String fingerprint = fingerprint(ctx);
+        if (fingerprint != null) {
+            denials.put(fingerprint + "/" + bucket, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the credentials in the given context, so that the secrets itself are not kept as
+     * cache key.
+     *
+     * @return the fingerprint or null if the context contains no credentials
+     */
+    public static String fingerprint(ContextView ctx) {
+        if (!ctx.hasKey(S3_CREDENTIALS_PROVIDER)) {
+            return null;
+        }
+
+        AwsCredentialsProvider credentialsProvider = ctx.get(S3_CREDENTIALS_PROVIDER);
+
+        // the fingerprint of the credentials of a client is computed once (see S3CredentialsWebFilter)
+        return credentialsProvider instanceof ClientCredentialsProvider clientCredentialsProvider
+                ? clientCredentialsProvider.fingerprint()
+                : ClientCredentialsProvider.fingerprint(credentialsProvider.resolveCredentials());
+    }
+}
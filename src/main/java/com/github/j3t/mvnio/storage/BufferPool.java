@@ -0,0 +1,99 @@
+package com.github.j3t.mvnio.storage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Bounded pool of equally sized buffers. The buffers are allocated lazily and reused once released, at most
+ * {@code maxBuffers} buffers exist at the same time. If all of them are in use, an acquisition waits until one is
+ * released, so that the memory used by all uploads together stays bounded.
+ */
+class BufferPool {
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final Deque<ByteBuffer> free = new ArrayDeque<>();
+    private final Queue<MonoSink<ByteBuffer>> waiting = new ArrayDeque<>();
+    private int allocated;
+
+    BufferPool(int bufferSize, int maxBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+    }
+
+    /**
+     * @return an empty buffer as soon as one is available, it must be {@link #release(ByteBuffer) released} after use
+     */
+    Mono<ByteBuffer> acquire() {
+        return Mono.<ByteBuffer>create(sink -> {
+                    ByteBuffer buffer;
+                    synchronized (this) {
+                        buffer = poll();
+                        if (buffer == null) {
+                            waiting.add(sink);
+                            sink.onCancel(() -> {
+                                synchronized (this) {
+                                    waiting.remove(sink);
+                                }
+                            });
+                            return;
+                        }
+                    }
+                    sink.success(buffer);
+                })
+                // a buffer which is handed over while the acquisition is cancelled goes back to the pool
+                .doOnDiscard(ByteBuffer.class, this::release);
+    }
+
+    void release(ByteBuffer buffer) {
+        MonoSink<ByteBuffer> sink;
+        synchronized (this) {
+            sink = waiting.poll();
+            if (sink == null) {
+                free.push(buffer);
+                return;
+            }
+        }
+        sink.success(buffer.clear());
+    }
+
+    /**
+     * Removes a buffer from the pool which must not be reused (e.g. because an aborted request might still read it).
+     * Its place is taken by a newly allocated buffer.
+     */
+    void discard(ByteBuffer buffer) {
+        MonoSink<ByteBuffer> sink;
+        synchronized (this) {
+            sink = waiting.poll();
+            if (sink == null) {
+                allocated--;
+                return;
+            }
+        }
+        sink.success(ByteBuffer.allocate(bufferSize));
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    synchronized int available() {
+        return free.size() + maxBuffers - allocated;
+    }
+
+    private ByteBuffer poll() {
+        ByteBuffer buffer = free.poll();
+
+        if (buffer == null && allocated < maxBuffers) {
+            allocated++;
+            buffer = ByteBuffer.allocate(bufferSize);
+        }
+
+        return buffer == null ? null : buffer.clear();
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.j3t.mvnio.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+
+/**
+ * Provides the credentials of a client. The credentials and their fingerprint are created once, so that an instance
+ * can be reused for all requests with the same Authorization header.
+ */
+final class ClientCredentialsProvider implements AwsCredentialsProvider {
+
+    private final AwsCredentials credentials;
+    private final String fingerprint;
+
+    ClientCredentialsProvider(String accessKeyId, String secretAccessKey) {
+        this.credentials = AwsBasicCredentials.create(accessKeyId, secretAccessKey);
+        this.fingerprint = fingerprint(credentials);
+    }
+
+    @Override
+    public AwsCredentials resolveCredentials() {
+        return credentials;
+    }
+
+    String fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Computes a digest of the given credentials, so that the secrets itself are not kept as cache key.
+     */
+    static String fingerprint(AwsCredentials credentials) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(credentials.accessKeyId().getBytes(UTF_8));
+            digest.update((byte) ':');
+            digest.update(credentials.secretAccessKey().getBytes(UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported!", e);
+        }
+    }
+}
@@ -1,15 +1,43 @@
 package com.github.j3t.mvnio.storage;
 
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
 
 import lombok.Builder;
 import lombok.Data;
 import reactor.core.publisher.Flux;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class Download {
     private Flux<ByteBuffer> content;
     private String contentType;
     private long contentLength;
+
+    /**
+     * The range of the object which is contained in the content (e.g. bytes 0-99/1234) or null if the content contains
+     * the whole object.
+     */
+    private String contentRange;
+    private String eTag;
+    private Instant lastModified;
+
+    /**
+     * The user metadata of the object (see {@link S3Repository#METADATA}), empty if none.
+     */
+    @Builder.Default
+    private Map<String, String> metadata = Map.of();
+
+    /**
+     * The local file which contains the content, if any. The file can be transferred without copying it through
+     * the heap, the content is available nevertheless.
+     */
+    private Path file;
+
+    /**
+     * The position in the {@link #file} where the content starts.
+     */
+    private long filePosition;
 }
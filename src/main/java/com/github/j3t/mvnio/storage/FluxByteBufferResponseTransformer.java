@@ -21,7 +21,11 @@ public class FluxByteBufferResponseTransformer implements AsyncResponseTransform
     public void onResponse(GetObjectResponse sdkResponse) {
         downloadBuilder
                 .contentLength(sdkResponse.contentLength())
-                .contentType(sdkResponse.contentType());
+                .contentRange(sdkResponse.contentRange())
+                .contentType(sdkResponse.contentType())
+                .eTag(sdkResponse.eTag())
+                .lastModified(sdkResponse.lastModified())
+                .metadata(sdkResponse.metadata());
     }
 
     @Override
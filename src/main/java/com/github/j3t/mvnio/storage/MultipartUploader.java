@@ -0,0 +1,383 @@
+package com.github.j3t.mvnio.storage;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.reactivestreams.Publisher;
+import org.springframework.util.unit.DataSize;
+
+import com.github.j3t.mvnio.error.ClientError;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.retry.Retry;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * Uploads an object in parts (see <a href="https://docs.aws.amazon.com/AmazonS3/latest/userguide/mpuoverview.html">
+ * Multipart upload</a>). The content is split into parts of a fixed size which are uploaded in parallel, a failed part
+ * is retried on its own. If the upload fails or the client disconnects, the multipart upload is aborted, so that S3
+ * discards the parts uploaded so far.
+ * <p>
+ * The parts are copied into buffers of a pool which is shared by all uploads, so that the memory used for uploads is
+ * bounded by the size of the pool. This also applies to content of unknown size, which is uploaded in parts unless it
+ * fits into a single part. An upload which waits too long for a buffer (e.g. because slow clients hold all of them) is
+ * rejected with 503, so that the pool can't be starved.
+ */
+@Slf4j
+public class MultipartUploader implements MeterBinder {
+
+    /**
+     * The minimum size of a part, except of the last one.
+     */
+    public static final DataSize MIN_PART_SIZE = DataSize.ofMegabytes(5);
+
+    private static final Duration RETRY_MIN_BACKOFF = Duration.ofMillis(200);
+
+    private final S3AsyncClient s3AsyncClient;
+    private final BufferPool bufferPool;
+    private final int parallelism;
+    private final int maxRetries;
+    private final Duration acquireTimeout;
+    private Timer partTimer;
+
+    /**
+     * @param partSize the size of a part, at least {@link #MIN_PART_SIZE}
+     * @param parallelism the maximum number of parts which are uploaded at the same time per upload
+     * @param maxRetries the maximum number of retries per part
+     * @param maxBuffers the maximum number of part buffers for all uploads together
+     * @param acquireTimeout how long an upload waits for a part buffer
+     */
+    public MultipartUploader(S3AsyncClient s3AsyncClient,
+                             DataSize partSize,
+                             int parallelism,
+                             int maxRetries,
+                             int maxBuffers,
+                             Duration acquireTimeout) {
+        if (partSize.compareTo(MIN_PART_SIZE) < 0 || partSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Part size must be between " + MIN_PART_SIZE + " and 2GB: " + partSize);
+        }
+
+        this.s3AsyncClient = s3AsyncClient;
+        this.bufferPool = new BufferPool((int) partSize.toBytes(), Math.max(maxBuffers, 1));
+        this.parallelism = Math.max(parallelism, 1);
+        this.maxRetries = maxRetries;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    /**
+     * @param contentLength the expected size of the content or null if unknown
+     * @param overrideConfiguration applied to each request (e.g. to set the credentials of the client)
+     * @param writeConfiguration applied instead to the request which creates the object (PutObject or
+     *                           CompleteMultipartUpload), e.g. to make it conditional
+     */
+    Mono<PutObjectResponse> upload(String bucket,
+                                   String key,
+                                   String contentType,
+                                   Long contentLength,
+                                   Publisher<ByteBuffer> file,
+                                   Consumer<AwsRequestOverrideConfiguration.Builder> overrideConfiguration,
+                                   Consumer<AwsRequestOverrideConfiguration.Builder> writeConfiguration) {
+
+        if (contentLength != null) {
+            return uploadParts(bucket, key, contentType, contentLength, split(file), overrideConfiguration, writeConfiguration);
+        }
+
+        // the size is unknown -> wait for the first part
+        return split(file)
+                .switchOnFirst((first, parts) -> {
+                    // check: content fits into a single part?
+                    if (!first.hasValue() || first.get().buffer().remaining() < bufferPool.getBufferSize()) {
+                        // yes -> upload it with a single request
+                        return parts.concatMap(part -> put(bucket, key, contentType, part, writeConfiguration))
+                                .switchIfEmpty(put(bucket, key, contentType, null, writeConfiguration));
+                    }
+
+                    // no -> upload it in parts
+                    return uploadParts(bucket, key, contentType, null, parts, overrideConfiguration, writeConfiguration);
+                })
+                .next();
+    }
+
+    private Mono<PutObjectResponse> uploadParts(String bucket,
+                                                String key,
+                                                String contentType,
+                                                Long contentLength,
+                                                Flux<Part> parts,
+                                                Consumer<AwsRequestOverrideConfiguration.Builder> overrideConfiguration,
+                                                Consumer<AwsRequestOverrideConfiguration.Builder> writeConfiguration) {
+
+        return Mono.usingWhen(
+                // start the upload
+                Mono.fromFuture(() -> s3AsyncClient.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .contentType(contentType)
+                        .overrideConfiguration(overrideConfiguration)
+                        .build())),
+                // upload the parts and complete the upload
+                created -> uploadParts(new Upload(bucket, key, created.uploadId(), overrideConfiguration, writeConfiguration), contentLength, parts),
+                // nothing to clean up if completed
+                created -> Mono.empty(),
+                // abort it if failed
+                (created, e) -> abort(new Upload(bucket, key, created.uploadId(), overrideConfiguration, writeConfiguration)),
+                // abort it if the client disconnected
+                created -> abort(new Upload(bucket, key, created.uploadId(), overrideConfiguration, writeConfiguration)));
+    }
+
+    private Mono<PutObjectResponse> uploadParts(Upload upload, Long contentLength, Flux<Part> parts) {
+        long start = System.nanoTime();
+
+        return parts
+                .index()
+                .flatMap(part -> uploadPart(upload, (int) (part.getT1() + 1), part.getT2().buffer()), parallelism)
+                .collectList()
+                .flatMap(results -> {
+                    long size = results.stream().mapToLong(PartResult::size).sum();
+
+                    if (contentLength != null && size != contentLength) {
+                        return Mono.error(new ClientError(400, "Content length mismatch"));
+                    }
+
+                    return complete(upload, results).doOnSuccess(response -> log.debug(
+                            "upload {}/{} completed: {} parts, {} bytes in {} ms",
+                            upload.bucket(), upload.key(), results.size(), size, millisSince(start)));
+                });
+    }
+
+    /**
+     * Uploads content which fits into a single part with a single request.
+     *
+     * @param part the content or null if empty
+     */
+    private Mono<PutObjectResponse> put(String bucket,
+                                        String key,
+                                        String contentType,
+                                        Part part,
+                                        Consumer<AwsRequestOverrideConfiguration.Builder> overrideConfiguration) {
+
+        return Mono.fromFuture(() -> s3AsyncClient.putObject(PutObjectRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .contentType(contentType)
+                                .contentLength(part != null ? (long) part.buffer().remaining() : 0L)
+                                .overrideConfiguration(overrideConfiguration)
+                                .build(),
+                        part != null ? AsyncRequestBody.fromByteBufferUnsafe(part.buffer().duplicate()) : AsyncRequestBody.empty()))
+                .doFinally(signal -> {
+                    if (part != null) {
+                        release(part.buffer(), signal);
+                    }
+                });
+    }
+
+    /**
+     * Splits the content into parts. Each part is a pooled buffer which must be released once the part is uploaded.
+     */
+    private Flux<Part> split(Publisher<ByteBuffer> file) {
+        return Flux.defer(() -> {
+            var splitter = new Splitter();
+
+            return Flux.from(file)
+                    .concatMap(splitter::write)
+                    .concatWith(Mono.fromSupplier(splitter::flush))
+                    .doFinally(signal -> splitter.discard());
+        }).doOnDiscard(Part.class, part -> bufferPool.release(part.buffer()));
+    }
+
+    private Mono<PartResult> uploadPart(Upload upload, int partNumber, ByteBuffer part) {
+        long start = System.nanoTime();
+        int size = part.remaining();
+
+        return Mono.defer(() -> Mono.fromFuture(s3AsyncClient.uploadPart(UploadPartRequest.builder()
+                                .bucket(upload.bucket())
+                                .key(upload.key())
+                                .uploadId(upload.uploadId())
+                                .partNumber(partNumber)
+                                .contentLength((long) size)
+                                .overrideConfiguration(upload.overrideConfiguration())
+                                .build(),
+                        // each attempt reads the part from the beginning
+                        AsyncRequestBody.fromByteBufferUnsafe(part.duplicate()))))
+                .retryWhen(Retry.backoff(maxRetries, RETRY_MIN_BACKOFF)
+                        .filter(MultipartUploader::isRetryable)
+                        .doBeforeRetry(retry -> log.debug("retry part {} of {}/{}: {}",
+                                partNumber, upload.bucket(), upload.key(), retry.failure().getMessage()))
+                        .onRetryExhaustedThrow((spec, retry) -> retry.failure()))
+                .map(response -> new PartResult(CompletedPart.builder()
+                        .partNumber(partNumber)
+                        .eTag(response.eTag())
+                        .build(), size))
+                .doOnSuccess(result -> {
+                    log.debug("part {} of {}/{} ({} bytes) uploaded in {} ms",
+                            partNumber, upload.bucket(), upload.key(), size, millisSince(start));
+                    if (partTimer != null) {
+                        partTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                })
+                .doFinally(signal -> release(part, signal));
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        partTimer = Timer.builder("s3.multipart.part")
+                .description("Time to upload a part (including retries)")
+                .tag("size", DataSize.ofBytes(bufferPool.getBufferSize()).toMegabytes() + "MB")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        Gauge.builder("s3.multipart.buffers.available", bufferPool, BufferPool::available)
+                .description("Number of part buffers which can be acquired without waiting")
+                .register(registry);
+    }
+
+    private Mono<PutObjectResponse> complete(Upload upload, List<PartResult> parts) {
+        return Mono.fromFuture(() -> s3AsyncClient.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(upload.bucket())
+                        .key(upload.key())
+                        .uploadId(upload.uploadId())
+                        .multipartUpload(CompletedMultipartUpload.builder()
+                                .parts(parts.stream()
+                                        .map(PartResult::part)
+                                        .sorted(Comparator.comparing(CompletedPart::partNumber))
+                                        .toList())
+                                .build())
+                        .overrideConfiguration(upload.writeConfiguration())
+                        .build()))
+                .map(response -> PutObjectResponse.builder()
+                        .eTag(response.eTag())
+                        .versionId(response.versionId())
+                        .build());
+    }
+
+    private Mono<Void> abort(Upload upload) {
+        return Mono.fromFuture(() -> s3AsyncClient.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(upload.bucket())
+                        .key(upload.key())
+                        .uploadId(upload.uploadId())
+                        .overrideConfiguration(upload.overrideConfiguration())
+                        .build()))
+                .doOnSuccess(response -> log.debug("upload {}/{} aborted", upload.bucket(), upload.key()))
+                // the parts are removed by a lifecycle rule at the latest (if configured)
+                .onErrorResume(e -> {
+                    log.warn("abort of upload {}/{} failed: {}", upload.bucket(), upload.key(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void release(ByteBuffer buffer, SignalType signal) {
+        // a cancelled request might still read the buffer
+        if (signal == SignalType.CANCEL) {
+            bufferPool.discard(buffer);
+        } else {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private static boolean isRetryable(Throwable e) {
+        return e instanceof SdkException sdkException && (sdkException.retryable()
+                || e instanceof SdkServiceException serviceException && serviceException.statusCode() >= 500);
+    }
+
+    private static long millisSince(long nanos) {
+        return Duration.ofNanos(System.nanoTime() - nanos).toMillis();
+    }
+
+    private record Upload(String bucket,
+                          String key,
+                          String uploadId,
+                          Consumer<AwsRequestOverrideConfiguration.Builder> overrideConfiguration,
+                          Consumer<AwsRequestOverrideConfiguration.Builder> writeConfiguration) {
+    }
+
+    private record Part(ByteBuffer buffer) {
+    }
+
+    private record PartResult(CompletedPart part, long size) {
+    }
+
+    /**
+     * Copies the content into pooled buffers and emits each of them once it is full.
+     */
+    private class Splitter {
+        private ByteBuffer current;
+
+        Flux<Part> write(ByteBuffer source) {
+            if (!source.hasRemaining()) {
+                return Flux.empty();
+            }
+
+            return current()
+                    .flatMapMany(part -> {
+                        int length = Math.min(part.remaining(), source.remaining());
+                        part.put(part.position(), source, source.position(), length);
+                        part.position(part.position() + length);
+                        source.position(source.position() + length);
+
+                        if (part.hasRemaining()) {
+                            return Flux.empty();
+                        }
+
+                        // the part is full -> emit it and continue with the rest of the source
+                        current = null;
+                        return Flux.just(new Part(part.flip())).concatWith(Flux.defer(() -> write(source)));
+                    });
+        }
+
+        /**
+         * @return the last part, if any
+         */
+        Part flush() {
+            ByteBuffer part = current;
+            current = null;
+
+            if (part != null && part.position() == 0) {
+                bufferPool.release(part);
+                return null;
+            }
+
+            return part == null ? null : new Part(part.flip());
+        }
+
+        void discard() {
+            if (current != null) {
+                bufferPool.release(current);
+                current = null;
+            }
+        }
+
+        private Mono<ByteBuffer> current() {
+            if (current != null) {
+                return Mono.just(current);
+            }
+
+            return bufferPool.acquire()
+                    .timeout(acquireTimeout, Mono.error(() -> new ClientError(503, "Upload buffers exhausted", false)))
+                    .doOnNext(buffer -> current = buffer);
+        }
+    }
+}
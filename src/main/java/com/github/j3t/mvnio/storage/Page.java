@@ -0,0 +1,12 @@
+package com.github.j3t.mvnio.storage;
+
+import java.util.List;
+
+/**
+ * A page of a listing (see {@link S3Repository#list(String, String, String, int)}).
+ *
+ * @param entries the entries of the page
+ * @param continuationToken the token to request the next page or null if this is the last one
+ */
+public record Page(List<String> entries, String continuationToken) {
+}
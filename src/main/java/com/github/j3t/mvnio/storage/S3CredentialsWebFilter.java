@@ -2,6 +2,7 @@ package com.github.j3t.mvnio.storage;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.time.Duration;
 import java.util.Base64;
 
 import org.springframework.lang.NonNull;
@@ -9,36 +10,81 @@ import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import reactor.core.publisher.Mono;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 
 /**
  * Injects the S3 credentials provider with the provided client credentials into the subscriber context so that it can be used by the
  * {@link S3Repository} to perform bucket operations.
+ * <p>
+ * The credentials provider of an Authorization header is cached, so that the header is decoded and the fingerprint of
+ * the credentials (see {@link BucketPermissions}) is computed only once per client. The cache is keyed by the header
+ * itself, a digest of it would cost more than the decoding and protect nothing, since the cached provider holds the
+ * secret in plain text anyway.
  */
-public class S3CredentialsWebFilter implements WebFilter {
+public class S3CredentialsWebFilter implements WebFilter, MeterBinder {
 
     public static final String S3_CREDENTIALS_PROVIDER = "S3_CREDENTIALS_PROVIDER";
 
+    private final Cache<String, AwsCredentialsProvider> credentialsProviders;
+
+    /**
+     * @param ttl how long the credentials provider of an Authorization header is kept after its last use
+     * @param maxSize the maximum number of Authorization headers to keep the credentials provider of
+     */
+    public S3CredentialsWebFilter(Duration ttl, long maxSize) {
+        this.credentialsProviders = Caffeine.newBuilder()
+                .expireAfterAccess(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
     @NonNull
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, @NonNull WebFilterChain chain) {
 
-        var authorization = exchange.getRequest().getHeaders().getOrEmpty("authorization");
+        var authorization = exchange.getRequest().getHeaders().getFirst("authorization");
 
-        if (authorization.isEmpty() || !authorization.get(0).toLowerCase().startsWith("basic")) {
+        if (authorization == null || !authorization.regionMatches(true, 0, "basic", 0, "basic".length())) {
             return chain.filter(exchange);
         }
 
-        var base64Credentials = authorization.get(0).substring("Basic".length()).trim();
-        var credentials = new String(Base64.getDecoder().decode(base64Credentials), UTF_8);
-        var values = credentials.split(":", 2);
-        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create(values[0], values[1]);
+        AwsCredentialsProvider credentialsProvider = credentialsProviders.get(authorization, S3CredentialsWebFilter::decode);
+
+        // malformed credentials are handled like missing ones
+        if (credentialsProvider == null) {
+            return chain.filter(exchange);
+        }
 
         return chain.filter(exchange)
                 .contextWrite(ctx -> ctx.put(S3_CREDENTIALS_PROVIDER, credentialsProvider));
 
     }
 
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, credentialsProviders, "credentials");
+    }
+
+    /**
+     * @return the credentials provider of the given Authorization header or null if the header is malformed
+     */
+    private static AwsCredentialsProvider decode(String authorization) {
+        try {
+            var base64Credentials = authorization.substring("Basic".length()).trim();
+            var credentials = new String(Base64.getDecoder().decode(base64Credentials), UTF_8);
+            var values = credentials.split(":", 2);
+            return values.length == 2 ? new ClientCredentialsProvider(values[0], values[1]) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
 }
@@ -6,24 +6,113 @@ import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 
 import java.nio.ByteBuffer;
 
 public interface S3Repository {
+
+    /**
+     * Key of a Reactor context entry. If it is set to true, an upload fails with status 412 if the object already
+     * exists (conditional write), so that an object can't be overwritten even if the existence check was skipped or is
+     * outdated.
+     */
+    String CREATE_ONLY = "S3_CREATE_ONLY";
+
+    /**
+     * Key of a Reactor context entry. If it is set to an ETag, an upload fails with status 412 if the object has been
+     * changed (its ETag doesn't match anymore), so that concurrent updates of an object are not lost.
+     */
+    String IF_MATCH = "S3_IF_MATCH";
+
+    /**
+     * Key of a Reactor context entry. If it is set to true, a missing object is reported only if S3 confirms it, caches
+     * which remember missing objects are bypassed (e.g. for the existence check before an upload, which must not be
+     * outdated).
+     */
+    String CONFIRM_MISSING = "S3_CONFIRM_MISSING";
+
+    /**
+     * Key of a Reactor context entry. If it is set to a map, the entries are stored as user metadata of an uploaded
+     * object and are returned along with it (see {@link Download#getMetadata()}). Only applied to objects which are
+     * not uploaded in parts.
+     */
+    String METADATA = "S3_METADATA";
+
+    default Mono<Download> download(@NonNull String bucket,
+                                    @NonNull String key) {
+        return download(bucket, key, null);
+    }
+
+    /**
+     * Downloads an object or a part of it.
+     *
+     * @param range the byte range to download in the format of the HTTP Range header (e.g. bytes=0-99) or null to
+     *              download the whole object
+     */
     Mono<Download> download(@NonNull String bucket,
-                          @NonNull String key);
+                            @NonNull String key,
+                            String range);
 
+    /**
+     * Uploads an object.
+     *
+     * @param contentLength the size of the file or null if unknown (e.g. the request body is chunked)
+     */
     Mono<PutObjectResponse> upload(@NonNull String bucket,
                                    @NonNull String key,
                                    @NonNull String contentType,
-                                   @NonNull Long contentLength,
+                                   Long contentLength,
                                    @NonNull Publisher<ByteBuffer> file);
 
     Mono<HeadObjectResponse> head(@NonNull String bucket,
                                   @NonNull String key);
 
+    /**
+     * Checks whether an object exists.
+     */
+    default Mono<Boolean> exists(@NonNull String bucket, @NonNull String key) {
+        return head(bucket, key)
+                .thenReturn(true)
+                .onErrorReturn(NoSuchKeyException.class, false);
+    }
+
     Flux<String> metadata(@NonNull String bucket, String startAfter, int limit);
 
+    /**
+     * Returns true if the object with the given key is the metadata file of an artifact or a group (e.g.
+     * foo/bar/maven-metadata.xml), but not the one of a snapshot version. These are the keys listed by
+     * {@link #metadata(String, String, int)}.
+     */
+    static boolean isMetadata(String key) {
+        return key.endsWith("/maven-metadata.xml") && !key.endsWith("-SNAPSHOT/maven-metadata.xml");
+    }
+
     Flux<String> list(@NonNull String bucket, @NonNull String path);
+
+    /**
+     * Lists a page of the files and directories of a path.
+     *
+     * @param continuationToken the token of the previous page (see {@link Page#continuationToken()}) or null to request
+     *                          the first page
+     * @param limit the maximum number of entries of the page
+     */
+    Mono<Page> list(@NonNull String bucket, @NonNull String path, String continuationToken, int limit);
+
+    /**
+     * Lists the keys of all objects in a bucket which start with the given prefix, including those in sub-directories.
+     *
+     * @param prefix the prefix (e.g. foo/bar/) or null to list the whole bucket
+     */
+    default Flux<String> keys(@NonNull String bucket, String prefix) {
+        return keys(bucket, prefix, null);
+    }
+
+    /**
+     * Same as {@link #keys(String, String)}, but the listing starts after the given key.
+     *
+     * @param startAfter the key after which the listing starts or null to start at the beginning
+     */
+    Flux<String> keys(@NonNull String bucket, String prefix, String startAfter);
 }
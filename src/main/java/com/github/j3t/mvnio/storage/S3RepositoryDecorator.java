@@ -0,0 +1,68 @@
+package com.github.j3t.mvnio.storage;
+
+import lombok.NonNull;
+import org.reactivestreams.Publisher;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base class for {@link S3Repository} implementations which add behaviour (e.g. caching) on top of another repository.
+ * All operations are forwarded to the delegate unless they are overridden.
+ */
+public abstract class S3RepositoryDecorator implements S3Repository {
+
+    protected final S3Repository delegate;
+
+    protected S3RepositoryDecorator(S3Repository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Mono<Download> download(@NonNull String bucket, @NonNull String key, String range) {
+        return delegate.download(bucket, key, range);
+    }
+
+    @Override
+    public Mono<PutObjectResponse> upload(@NonNull String bucket,
+                                          @NonNull String key,
+                                          @NonNull String contentType,
+                                          Long contentLength,
+                                          @NonNull Publisher<ByteBuffer> file) {
+        return delegate.upload(bucket, key, contentType, contentLength, file);
+    }
+
+    @Override
+    public Mono<HeadObjectResponse> head(@NonNull String bucket, @NonNull String key) {
+        return delegate.head(bucket, key);
+    }
+
+    @Override
+    public Mono<Boolean> exists(@NonNull String bucket, @NonNull String key) {
+        return delegate.exists(bucket, key);
+    }
+
+    @Override
+    public Flux<String> metadata(@NonNull String bucket, String startAfter, int limit) {
+        return delegate.metadata(bucket, startAfter, limit);
+    }
+
+    @Override
+    public Flux<String> list(@NonNull String bucket, @NonNull String path) {
+        return delegate.list(bucket, path);
+    }
+
+    @Override
+    public Mono<Page> list(@NonNull String bucket, @NonNull String path, String continuationToken, int limit) {
+        return delegate.list(bucket, path, continuationToken, limit);
+    }
+
+    @Override
+    public Flux<String> keys(@NonNull String bucket, String prefix, String startAfter) {
+        return delegate.keys(bucket, prefix, startAfter);
+    }
+}
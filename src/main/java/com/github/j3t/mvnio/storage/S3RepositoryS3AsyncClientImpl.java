@@ -12,28 +12,51 @@ import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.*;
-import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Publisher;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
 
 public class S3RepositoryS3AsyncClientImpl implements S3Repository {
 
+    // the maximum number of keys S3 returns per list request
+    public static final int MAX_KEYS = 1000;
+
     private final S3AsyncClient s3AsyncClient;
+    private final MultipartUploader multipartUploader;
+    private final long multipartThreshold;
+    private final int listPageSize;
 
     public S3RepositoryS3AsyncClientImpl(S3AsyncClient s3AsyncClient) {
+        this(s3AsyncClient, null, Long.MAX_VALUE, MAX_KEYS);
+    }
+
+    /**
+     * @param multipartUploader used to upload objects larger than the threshold
+     * @param multipartThreshold objects larger than this are uploaded in parts
+     * @param listPageSize the number of keys requested per list request
+     */
+    public S3RepositoryS3AsyncClientImpl(S3AsyncClient s3AsyncClient,
+                                         MultipartUploader multipartUploader,
+                                         long multipartThreshold,
+                                         int listPageSize) {
         this.s3AsyncClient = s3AsyncClient;
+        this.multipartUploader = multipartUploader;
+        this.multipartThreshold = multipartThreshold;
+        this.listPageSize = Math.min(listPageSize, MAX_KEYS);
     }
 
     @Override
-    public Mono<Download> download(@NonNull String bucket, @NonNull String key) {
+    public Mono<Download> download(@NonNull String bucket, @NonNull String key, String range) {
 
         return Mono.deferContextual(ctx -> Mono.fromFuture(s3AsyncClient.getObject(GetObjectRequest.builder()
                 .bucket(bucket)
                 .overrideConfiguration(overrideConfiguration(ctx))
                 .key(key)
+                .range(range)
                 .build(), new FluxByteBufferResponseTransformer())));
     }
 
@@ -41,15 +64,27 @@ public class S3RepositoryS3AsyncClientImpl implements S3Repository {
     public Mono<PutObjectResponse> upload(@NonNull String bucket,
                                           @NonNull String key,
                                           @NonNull String contentType,
-                                          @NonNull Long contentLength,
+                                          Long contentLength,
                                           @NonNull Publisher<ByteBuffer> file) {
 
+        // check: large or unknown size?
+        if (contentLength == null || contentLength > multipartThreshold) {
+            // yes -> upload it in parts
+            if (multipartUploader == null) {
+                return Mono.error(new ClientError(411, "Content length required"));
+            }
+
+            return Mono.deferContextual(ctx -> multipartUploader.upload(bucket, key, contentType, contentLength, file,
+                    overrideConfiguration(ctx), writeConfiguration(ctx)));
+        }
+
         return Mono.deferContextual(ctx -> Mono.fromFuture(s3AsyncClient.putObject(PutObjectRequest.builder()
                 .bucket(bucket)
-                .overrideConfiguration(overrideConfiguration(ctx))
+                .overrideConfiguration(writeConfiguration(ctx))
                 .key(key)
                 .contentType(contentType)
                 .contentLength(contentLength)
+                .metadata(ctx.getOrDefault(METADATA, null))
                 .build(), AsyncRequestBody.fromPublisher(file))));
     }
 
@@ -62,49 +97,84 @@ public class S3RepositoryS3AsyncClientImpl implements S3Repository {
                 .build())));
     }
 
+    @Override
+    public Flux<String> keys(@NonNull String bucket, String prefix, String startAfter) {
+        return Flux.deferContextual(ctx -> s3AsyncClient.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                        .bucket(bucket)
+                        .prefix(prefix)
+                        .startAfter(startAfter)
+                        .maxKeys(listPageSize)
+                        .overrideConfiguration(overrideConfiguration(ctx))
+                        .build())
+                .contents()
+                .map(S3Object::key));
+    }
+
     @Override
     public Flux<String> metadata(@NonNull String bucket, String startAfter, int limit) {
         return Flux.deferContextual(ctx -> s3AsyncClient.listObjectsV2Paginator(ListObjectsV2Request.builder()
                         .bucket(bucket)
-                        .maxKeys(50)
+                        .maxKeys(listPageSize)
                         .startAfter(startAfter)
                         .overrideConfiguration(overrideConfiguration(ctx))
                         .build())
                 .contents()
-                .filter(this::isMetadata)
+                .filter(s3Object -> S3Repository.isMetadata(s3Object.key()))
                 .limit(limit)
                 .map(s3Object -> "/"+s3Object.key()));
     }
 
-    private boolean isMetadata(S3Object s3Object) {
-        return s3Object.key().endsWith("/maven-metadata.xml") && !s3Object.key().endsWith("-SNAPSHOT/maven-metadata.xml");
+    /**
+     * Lists the directories and files of a path, each page is emitted as soon as it arrives, so that the listing is
+     * never held in memory. The order is per page (directories and then files of each page, see {@link #entries}), not
+     * across the whole listing.
+     */
+    @Override
+    public Flux<String> list(@NonNull String bucket, @NonNull String path) {
+        return Flux.deferContextual(ctx -> s3AsyncClient.listObjectsV2Paginator(listRequest(ctx, bucket, path)
+                        .maxKeys(listPageSize)
+                        .build()))
+                .concatMapIterable(S3RepositoryS3AsyncClientImpl::entries);
     }
 
     @Override
-    public Flux<String> list(@NonNull String bucket, @NonNull String path) {
-        return Flux.deferContextual(ctx -> {
-            ListObjectsV2Publisher p = s3AsyncClient.listObjectsV2Paginator(ListObjectsV2Request.builder()
-                    .bucket(bucket)
-                    .prefix(toPrefix(path))
-                    .delimiter("/")
-                    .overrideConfiguration(overrideConfiguration(ctx))
-                    .build());
+    public Mono<Page> list(@NonNull String bucket, @NonNull String path, String continuationToken, int limit) {
+        return Mono.deferContextual(ctx -> Mono.fromFuture(s3AsyncClient.listObjectsV2(listRequest(ctx, bucket, path)
+                        .maxKeys(Math.min(limit, MAX_KEYS))
+                        .continuationToken(continuationToken)
+                        .build())))
+                .map(response -> new Page(entries(response), response.nextContinuationToken()));
+    }
+
+    private static ListObjectsV2Request.Builder listRequest(ContextView ctx, String bucket, String path) {
+        return ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(toPrefix(path))
+                .delimiter("/")
+                .overrideConfiguration(overrideConfiguration(ctx));
+    }
 
-            return Flux.concat(p.commonPrefixes().map(this::toDirectory), p.contents().map(this::toFile));
-        });
+    /**
+     * @return the directories (e.g. 1.0/) and then the files (e.g. maven-metadata.xml) of a list response
+     */
+    private static List<String> entries(ListObjectsV2Response response) {
+        List<String> entries = new ArrayList<>(response.commonPrefixes().size() + response.contents().size());
+        response.commonPrefixes().forEach(commonPrefix -> entries.add(toDirectory(commonPrefix.prefix())));
+        response.contents().forEach(s3Object -> entries.add(toFile(s3Object.key())));
+        return entries;
     }
 
-    private String toFile(S3Object s3Object) {
-        String[] parts = s3Object.key().split("/");
+    static String toFile(String key) {
+        String[] parts = key.split("/");
         return parts[parts.length - 1];
     }
 
-    private String toDirectory(CommonPrefix commonPrefix) {
-        String[] parts = commonPrefix.prefix().split("/");
+    static String toDirectory(String prefix) {
+        String[] parts = prefix.split("/");
         return parts[parts.length - 1] + "/";
     }
 
-    private static String toPrefix(String path) {
+    static String toPrefix(String path) {
         String prefix = path;
 
         if (prefix.startsWith("/")) {
@@ -128,4 +198,21 @@ public class S3RepositoryS3AsyncClientImpl implements S3Repository {
         };
     }
 
+    /**
+     * Same as {@link #overrideConfiguration(ContextView)}, but the request fails if the object already exists or has
+     * been changed and the context requires it (see {@link S3Repository#CREATE_ONLY} and {@link S3Repository#IF_MATCH}).
+     */
+    private static Consumer<AwsRequestOverrideConfiguration.Builder> writeConfiguration(ContextView ctx) {
+        Consumer<AwsRequestOverrideConfiguration.Builder> configuration = overrideConfiguration(ctx);
+
+        if (ctx.hasKey(IF_MATCH)) {
+            String eTag = ctx.get(IF_MATCH);
+            return configuration.andThen(builder -> builder.putHeader("If-Match", eTag));
+        }
+
+        return ctx.getOrDefault(CREATE_ONLY, false)
+                ? configuration.andThen(builder -> builder.putHeader("If-None-Match", "*"))
+                : configuration;
+    }
+
 }
@@ -0,0 +1,139 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.reactivestreams.Publisher;
+
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.Page;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.S3RepositoryDecorator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Rejects requests with credentials which S3 recently reported as invalid (unknown access key or wrong secret) for a
+ * bucket with 401, without asking S3 again. This spares S3 and the event loop the requests of misconfigured clients,
+ * which tend to repeat them at a high rate.
+ * <p>
+ * Only errors which are caused by the credentials itself are remembered. An access denied error depends on the
+ * requested object and operation (e.g. a missing object is reported as access denied to clients which are not allowed
+ * to list the bucket), so that it can't be applied to other requests. S3 doesn't report the cause of a failed HEAD
+ * request, so those are not remembered either.
+ */
+public class DenialCacheS3Repository extends S3RepositoryDecorator implements MeterBinder {
+
+    private static final Set<String> INVALID_CREDENTIALS = Set.of("InvalidAccessKeyId", "SignatureDoesNotMatch");
+
+    private final BucketPermissions permissions;
+
+    private Counter rejections;
+
+    /**
+     * @param delegate the repository to forward the requests with valid or unknown credentials to
+     * @param permissions used to remember the rejected credentials
+     */
+    public DenialCacheS3Repository(S3Repository delegate, BucketPermissions permissions) {
+        super(delegate);
+        this.permissions = permissions;
+    }
+
+    @Override
+    public Mono<Download> download(@NonNull String bucket, @NonNull String key, String range) {
+        return check(bucket, () -> delegate.download(bucket, key, range));
+    }
+
+    @Override
+    public Mono<PutObjectResponse> upload(@NonNull String bucket,
+                                          @NonNull String key,
+                                          @NonNull String contentType,
+                                          Long contentLength,
+                                          @NonNull Publisher<ByteBuffer> file) {
+        return check(bucket, () -> delegate.upload(bucket, key, contentType, contentLength, file));
+    }
+
+    @Override
+    public Mono<HeadObjectResponse> head(@NonNull String bucket, @NonNull String key) {
+        return check(bucket, () -> delegate.head(bucket, key));
+    }
+
+    @Override
+    public Mono<Boolean> exists(@NonNull String bucket, @NonNull String key) {
+        return check(bucket, () -> delegate.exists(bucket, key));
+    }
+
+    @Override
+    public Flux<String> metadata(@NonNull String bucket, String startAfter, int limit) {
+        return checkAll(bucket, () -> delegate.metadata(bucket, startAfter, limit));
+    }
+
+    @Override
+    public Flux<String> list(@NonNull String bucket, @NonNull String path) {
+        return checkAll(bucket, () -> delegate.list(bucket, path));
+    }
+
+    @Override
+    public Mono<Page> list(@NonNull String bucket, @NonNull String path, String continuationToken, int limit) {
+        return check(bucket, () -> delegate.list(bucket, path, continuationToken, limit));
+    }
+
+    @Override
+    public Flux<String> keys(@NonNull String bucket, String prefix, String startAfter) {
+        return checkAll(bucket, () -> delegate.keys(bucket, prefix, startAfter));
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        rejections = Counter.builder("denials.rejections")
+                .description("Requests which were rejected because of known invalid credentials")
+                .register(registry);
+    }
+
+    private <T> Mono<T> check(String bucket, Supplier<Mono<T>> request) {
+        return Mono.deferContextual(ctx -> permissions.isDenied(ctx, bucket)
+                ? reject()
+                : request.get().onErrorMap(DenialCacheS3Repository::isInvalidCredentials, e -> deny(ctx, bucket)));
+    }
+
+    private <T> Flux<T> checkAll(String bucket, Supplier<Flux<T>> request) {
+        return Flux.deferContextual(ctx -> permissions.isDenied(ctx, bucket)
+                ? reject()
+                : request.get().onErrorMap(DenialCacheS3Repository::isInvalidCredentials, e -> deny(ctx, bucket)));
+    }
+
+    private ClientError deny(ContextView ctx, String bucket) {
+        permissions.deny(ctx, bucket);
+        return invalidCredentials();
+    }
+
+    private <T> Mono<T> reject() {
+        if (rejections != null) {
+            rejections.increment();
+        }
+
+        return Mono.error(DenialCacheS3Repository::invalidCredentials);
+    }
+
+    private static ClientError invalidCredentials() {
+        return new ClientError(401, "Invalid S3 Credentials");
+    }
+
+    private static boolean isInvalidCredentials(Throwable e) {
+        return e instanceof S3Exception s3Exception
+                && s3Exception.awsErrorDetails() != null
+                && INVALID_CREDENTIALS.contains(s3Exception.awsErrorDetails().errorCode());
+    }
+}
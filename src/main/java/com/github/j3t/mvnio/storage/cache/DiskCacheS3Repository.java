@@ -0,0 +1,369 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.reactivestreams.Publisher;
+import org.springframework.http.HttpRange;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.S3RepositoryDecorator;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+/**
+ * Read-through cache which keeps immutable artifacts on the local disk. On a cache miss, the object is streamed from
+ * S3 to the client and written to the disk along the way. Cache hits are served from the disk and can be transferred
+ * zero-copy (see {@link Download#getFile()}), their validators are also used to answer HEAD requests. Range requests
+ * are served from the disk if the object is cached, otherwise they are passed through to S3.
+ * <p>
+ * The cache is bounded by the total size of the cached objects, objects larger than a quarter of it are not cached at
+ * all. The index is kept in memory, files of a previous run are removed on startup.
+ */
+@Slf4j
+public class DiskCacheS3Repository extends S3RepositoryDecorator implements MeterBinder {
+
+    private static final String FILE_SUFFIX = ".artifact";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // evicted files are deleted with a delay, so that a hit which is just about to be transferred doesn't fail
+    private static final long DELETE_DELAY_SECONDS = 30;
+
+    private final Path directory;
+    private final long maxObjectSize;
+    private final BucketPermissions permissions;
+    private final Cache<String, Entry> entries;
+
+    /**
+     * @param delegate the repository to read through
+     * @param directory the directory where the cached objects are stored
+     * @param maxSize the maximum total size of all cached objects
+     * @param permissions used to check that a client is allowed to read a cached object
+     */
+    public DiskCacheS3Repository(S3Repository delegate, Path directory, DataSize maxSize, BucketPermissions permissions) {
+        super(delegate);
+        this.directory = prepare(directory);
+        this.maxObjectSize = maxSize.toBytes() / 4;
+        this.permissions = permissions;
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toKilobytes())
+                .weigher((String cacheKey, Entry entry) -> (int) Math.min(Integer.MAX_VALUE, (entry.contentLength() + 1023) / 1024))
+                .removalListener((String cacheKey, Entry entry, RemovalCause cause) -> {
+                    if (entry != null) {
+                        Schedulers.boundedElastic().schedule(() -> deleteQuietly(entry.file()), DELETE_DELAY_SECONDS, TimeUnit.SECONDS);
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Mono<Download> download(@NonNull String bucket, @NonNull String key, String range) {
+        if (range != null) {
+            return downloadRange(bucket, key, range);
+        }
+
+        if (!Keys.isImmutable(key)) {
+            return delegate.download(bucket, key);
+        }
+
+        return Mono.deferContextual(ctx -> {
+            String cacheKey = Keys.cacheKey(bucket, key);
+            Entry entry = entries.getIfPresent(cacheKey);
+
+            // check: cached and client is allowed to read it?
+            if (entry != null && permissions.canRead(ctx, bucket, key)) {
+                // yes -> serve it from disk
+                return Mono.just(entry.toDownload());
+            }
+
+            // no -> download it from S3
+            return delegate.download(bucket, key)
+                    .doOnNext(download -> permissions.grantRead(ctx, bucket, key))
+                    // and write it to the disk along the way, if not already cached
+                    .map(download -> entry == null && download.getContentLength() <= maxObjectSize
+                            ? tee(cacheKey, download)
+                            : download);
+        });
+    }
+
+    private Mono<Download> downloadRange(String bucket, String key, String range) {
+        if (!Keys.isImmutable(key)) {
+            return delegate.download(bucket, key, range);
+        }
+
+        return Mono.deferContextual(ctx -> {
+            Entry entry = entries.getIfPresent(Keys.cacheKey(bucket, key));
+
+            // check: cached, client is allowed to read it and range is satisfiable?
+            Download download = entry != null && permissions.canRead(ctx, bucket, key) ? entry.toDownload(range) : null;
+
+            // yes -> serve it from disk, no -> download the range from S3 (ranges are not cached)
+            return download != null ? Mono.just(download) : delegate.download(bucket, key, range);
+        });
+    }
+
+    @Override
+    public Mono<HeadObjectResponse> head(@NonNull String bucket, @NonNull String key) {
+        if (!Keys.isImmutable(key)) {
+            return delegate.head(bucket, key);
+        }
+
+        return Mono.deferContextual(ctx -> {
+            Entry entry = entries.getIfPresent(Keys.cacheKey(bucket, key));
+
+            // the validators of immutable objects never change
+            return entry != null && permissions.canRead(ctx, bucket, key)
+                    ? Mono.just(entry.toHeadObjectResponse())
+                    : delegate.head(bucket, key);
+        });
+    }
+
+    @Override
+    public Mono<PutObjectResponse> upload(@NonNull String bucket,
+                                          @NonNull String key,
+                                          @NonNull String contentType,
+                                          Long contentLength,
+                                          @NonNull Publisher<ByteBuffer> file) {
+
+        // immutable objects are usually not uploaded twice, but validation could be disabled
+        return delegate.upload(bucket, key, contentType, contentLength, file)
+                .doOnSuccess(response -> entries.invalidate(Keys.cacheKey(bucket, key)));
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, entries, "disk");
+    }
+
+    private Download tee(String cacheKey, Download download) {
+        return download.toBuilder()
+                .content(Flux.defer(() -> {
+                    var writer = new EntryWriter(directory.resolve(UUID.randomUUID() + FILE_SUFFIX), download);
+
+                    // the file is written on a thread which may block, not on the one of the S3 client
+                    return download.getContent()
+                            .concatMap(buffer -> Mono.fromCallable(() -> writer.write(buffer)).subscribeOn(Schedulers.boundedElastic()))
+                            .concatWith(Mono.<ByteBuffer>fromRunnable(() -> writer.commit(cacheKey)).subscribeOn(Schedulers.boundedElastic()))
+                            .doFinally(signal -> Schedulers.boundedElastic().schedule(writer::close));
+                }))
+                .build();
+    }
+
+    private static Flux<ByteBuffer> read(Path file, long position, long length) {
+        long end = position + length;
+
+        return Flux.using(
+                () -> FileChannel.open(file, READ).position(position),
+                channel -> Flux.<ByteBuffer>generate(sink -> {
+                    try {
+                        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, end - channel.position()));
+                        if (!buffer.hasRemaining() || channel.read(buffer) < 0) {
+                            sink.complete();
+                        } else {
+                            sink.next(buffer.flip());
+                        }
+                    } catch (IOException e) {
+                        sink.error(e);
+                    }
+                }),
+                DiskCacheS3Repository::closeQuietly)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Path prepare(Path directory) {
+        try {
+            Files.createDirectories(directory);
+
+            try (var files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+
+            return directory;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cache directory not usable: " + directory, e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.debug("close failed: {}", e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("delete of {} failed: {}", file, e.getMessage());
+        }
+    }
+
+    private record Entry(Path file, String contentType, long contentLength, String eTag, Instant lastModified,
+                         Map<String, String> metadata) {
+
+        Download toDownload() {
+            return Download.builder()
+                    .file(file)
+                    .content(read(file, 0, contentLength))
+                    .contentType(contentType)
+                    .contentLength(contentLength)
+                    .eTag(eTag)
+                    .lastModified(lastModified)
+                    .metadata(metadata)
+                    .build();
+        }
+
+        /**
+         * @return the given part of the object or null if the range is not a single satisfiable byte range
+         */
+        Download toDownload(String range) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+
+            if (ranges.size() != 1) {
+                return null;
+            }
+
+            long start = ranges.get(0).getRangeStart(contentLength);
+            long end = ranges.get(0).getRangeEnd(contentLength);
+            if (start >= contentLength || start > end) {
+                return null;
+            }
+
+            return Download.builder()
+                    .file(file)
+                    .filePosition(start)
+                    .content(read(file, start, end - start + 1))
+                    .contentType(contentType)
+                    .contentLength(end - start + 1)
+                    .contentRange("bytes " + start + "-" + end + "/" + contentLength)
+                    .eTag(eTag)
+                    .lastModified(lastModified)
+                    .metadata(metadata)
+                    .build();
+        }
+
+        HeadObjectResponse toHeadObjectResponse() {
+            return HeadObjectResponse.builder()
+                    .contentType(contentType)
+                    .contentLength(contentLength)
+                    .eTag(eTag)
+                    .lastModified(lastModified)
+                    .metadata(metadata)
+                    .build();
+        }
+    }
+
+    /**
+     * Writes the content of a download to a file and adds it to the cache once the download is complete.
+     */
+    private class EntryWriter {
+        private final Path file;
+        private final Download download;
+        private FileChannel channel;
+        private long written;
+        private boolean failed;
+        private boolean committed;
+
+        EntryWriter(Path file, Download download) {
+            this.file = file;
+            this.download = download;
+        }
+
+        /**
+         * @return the given buffer, which is passed on to the client
+         */
+        synchronized ByteBuffer write(ByteBuffer buffer) {
+            if (failed) {
+                return buffer;
+            }
+
+            try {
+                // the buffer is passed on to the client, so it must not be consumed here
+                ByteBuffer source = buffer.duplicate();
+                while (source.hasRemaining()) {
+                    written += channel().write(source);
+                }
+            } catch (IOException e) {
+                log.warn("caching of {} failed: {}", file, e.getMessage());
+                failed = true;
+            }
+
+            return buffer;
+        }
+
+        synchronized void commit(String cacheKey) {
+            if (failed || written != download.getContentLength()) {
+                return;
+            }
+
+            try {
+                channel().close();
+                committed = true;
+                entries.put(cacheKey, new Entry(file,
+                        download.getContentType(),
+                        written,
+                        download.getETag(),
+                        download.getLastModified(),
+                        download.getMetadata()));
+            } catch (IOException e) {
+                log.warn("caching of {} failed: {}", file, e.getMessage());
+            }
+        }
+
+        synchronized void close() {
+            // a write which is still in progress (e.g. the client went away) must not open the file again
+            failed = true;
+            closeQuietly(channel);
+
+            if (!committed) {
+                deleteQuietly(file);
+            }
+        }
+
+        private FileChannel channel() throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(file, CREATE_NEW, WRITE);
+            }
+
+            return channel;
+        }
+    }
+}
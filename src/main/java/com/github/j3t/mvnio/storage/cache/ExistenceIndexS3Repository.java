@@ -0,0 +1,239 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.S3RepositoryDecorator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+/**
+ * Answers existence checks of immutable objects (e.g. the immutability check of an upload) without asking S3 in most
+ * cases:
+ * <ul>
+ *     <li>objects which are known to exist, still exist (they can't be removed through this application, objects
+ *     removed directly in S3 are forgotten after a while)</li>
+ *     <li>objects which are not contained in the Bloom filter of the bucket, don't exist</li>
+ * </ul>
+ * The Bloom filter of a bucket is built by listing the bucket in the background on first use (with the credentials of
+ * the client which triggered it) and rebuilt periodically, uploads through this node are added immediately. Uploads
+ * through other nodes are only reflected after the next rebuild, so the Bloom filter is not used if a missing object
+ * must be confirmed (see {@link S3Repository#CONFIRM_MISSING}). That's the case for uploads which are not conditional,
+ * which is why the index requires conditional writes (see {@link S3Repository#CREATE_ONLY}).
+ */
+@Slf4j
+public class ExistenceIndexS3Repository extends S3RepositoryDecorator implements MeterBinder {
+
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+    // a failed build (e.g. the client isn't allowed to list the bucket) is retried after this delay
+    private static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+
+    private final long expectedKeys;
+    private final Duration refreshInterval;
+    private final BucketPermissions permissions;
+    private final Cache<String, Boolean> existing;
+    private final Map<String, BucketIndex> indexes = new ConcurrentHashMap<>();
+
+    private Counter existingHits;
+    private Counter absentHits;
+    private Counter misses;
+
+    /**
+     * @param delegate the repository to check if the index can't answer
+     * @param expectedKeys the expected number of objects per bucket
+     * @param refreshInterval how often the Bloom filter of a bucket is rebuilt
+     * @param maxExisting the maximum number of objects which are remembered to exist
+     * @param existingTtl how long an object is remembered to exist
+     * @param permissions used to check that a client is allowed to see an object
+     */
+    public ExistenceIndexS3Repository(S3Repository delegate,
+                                      long expectedKeys,
+                                      Duration refreshInterval,
+                                      long maxExisting,
+                                      Duration existingTtl,
+                                      BucketPermissions permissions) {
+        super(delegate);
+        this.expectedKeys = expectedKeys;
+        this.refreshInterval = refreshInterval;
+        this.permissions = permissions;
+        this.existing = Caffeine.newBuilder()
+                .expireAfterWrite(existingTtl)
+                .maximumSize(maxExisting)
+                .build();
+    }
+
+    @Override
+    public Mono<Boolean> exists(@NonNull String bucket, @NonNull String key) {
+        if (!Keys.isImmutable(key)) {
+            return delegate.exists(bucket, key);
+        }
+
+        return Mono.deferContextual(ctx -> {
+            // check: known to exist?
+            if (existing.getIfPresent(Keys.cacheKey(bucket, key)) != null && permissions.canRead(ctx, bucket, key)) {
+                // yes -> exists
+                increment(existingHits);
+                return Mono.just(true);
+            }
+
+            // no -> check: definitely not in the bucket (and that's good enough)?
+            BloomFilter filter = ctx.getOrDefault(CONFIRM_MISSING, false) ? null : index(ctx, bucket).filter();
+            if (filter != null && !filter.mightContain(key)) {
+                // yes -> doesn't exist
+                increment(absentHits);
+                return Mono.just(false);
+            }
+
+            // no -> ask S3
+            increment(misses);
+            return delegate.exists(bucket, key)
+                    .doOnNext(exists -> {
+                        if (Boolean.TRUE.equals(exists)) {
+                            permissions.grantRead(ctx, bucket, key);
+                            add(bucket, key);
+                        }
+                    });
+        });
+    }
+
+    @Override
+    public Mono<PutObjectResponse> upload(@NonNull String bucket,
+                                          @NonNull String key,
+                                          @NonNull String contentType,
+                                          Long contentLength,
+                                          @NonNull Publisher<ByteBuffer> file) {
+
+        return delegate.upload(bucket, key, contentType, contentLength, file)
+                .doOnSuccess(response -> {
+                    if (Keys.isImmutable(key)) {
+                        add(bucket, key);
+                    }
+                });
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        existingHits = lookups(registry, "existing");
+        absentHits = lookups(registry, "absent");
+        misses = lookups(registry, "miss");
+    }
+
+    private void add(String bucket, String key) {
+        existing.put(Keys.cacheKey(bucket, key), Boolean.TRUE);
+
+        BucketIndex index = indexes.get(bucket);
+        if (index != null) {
+            index.add(key);
+        }
+    }
+
+    /**
+     * @return the index of the bucket, it is (re)built in the background if missing or outdated
+     */
+    private BucketIndex index(ContextView ctx, String bucket) {
+        BucketIndex index = indexes.computeIfAbsent(bucket, b -> new BucketIndex());
+
+        if (index.isOutdated() && index.building.compareAndSet(false, true)) {
+            build(Context.of(ctx), bucket, index);
+        }
+
+        return index;
+    }
+
+    private void build(Context ctx, String bucket, BucketIndex index) {
+        long start = System.nanoTime();
+        var filter = new BloomFilter(Math.max(expectedKeys, index.size.get() * 2), FALSE_POSITIVE_PROBABILITY);
+        var size = new AtomicLong();
+        index.next = filter;
+        index.attemptedAt = start;
+
+        delegate.keys(bucket, null)
+                .filter(Keys::isImmutable)
+                .doOnNext(key -> {
+                    filter.add(key);
+                    size.incrementAndGet();
+                })
+                .contextWrite(ctx)
+                .doFinally(signal -> {
+                    index.next = null;
+                    index.building.set(false);
+                })
+                .subscribe(
+                        key -> {
+                        },
+                        e -> log.warn("index of bucket {} not built: {}", bucket, e.getMessage()),
+                        () -> {
+                            index.current = filter;
+                            index.size.set(size.get());
+                            index.builtAt = System.nanoTime();
+                            log.info("index of bucket {} built: {} keys in {} ms", bucket, size.get(),
+                                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+                        });
+    }
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("index.lookups")
+                .description("Existence checks by how they were answered")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * The Bloom filter of a bucket.
+     */
+    private class BucketIndex {
+        final AtomicBoolean building = new AtomicBoolean();
+        final AtomicLong size = new AtomicLong();
+        volatile BloomFilter current;
+        volatile BloomFilter next;
+        volatile long builtAt;
+        volatile long attemptedAt = System.nanoTime() - RETRY_DELAY.toNanos();
+
+        BloomFilter filter() {
+            return current;
+        }
+
+        boolean isOutdated() {
+            return current == null
+                    ? System.nanoTime() - attemptedAt >= RETRY_DELAY.toNanos()
+                    : System.nanoTime() - builtAt > refreshInterval.toNanos();
+        }
+
+        void add(String key) {
+            BloomFilter filter = current;
+            if (filter != null) {
+                filter.add(key);
+            }
+
+            // a filter which is being built must not miss keys uploaded meanwhile
+            filter = next;
+            if (filter != null) {
+                filter.add(key);
+            }
+        }
+    }
+}
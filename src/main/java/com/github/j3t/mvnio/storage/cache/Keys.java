@@ -0,0 +1,24 @@
+package com.github.j3t.mvnio.storage.cache;
+
+/**
+ * Helper methods to classify and address the objects in a cache.
+ */
+public final class Keys {
+
+    private Keys() {}
+
+    /**
+     * Returns true if the object with the given key never changes. This is the case for release artifacts, because
+     * they are protected against overrides, but not for snapshots and metadata files.
+     *
+     * @param key the object key (e.g. foo/bar/1.0.1/bar-1.0.1.jar)
+     */
+    public static boolean isImmutable(String key) {
+        String filename = key.substring(key.lastIndexOf('/') + 1);
+        return !filename.startsWith("maven-metadata.xml") && !key.contains("-SNAPSHOT/");
+    }
+
+    public static String cacheKey(String bucket, String key) {
+        return bucket + "/" + key;
+    }
+}
@@ -0,0 +1,263 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.S3RepositoryDecorator;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.NonNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+/**
+ * Read-through cache which keeps small objects (e.g. poms, checksums and metadata) off-heap in memory. Cache hits are
+ * served without copying the content.
+ * <p>
+ * Immutable objects are kept until they are evicted, mutable ones (e.g. maven-metadata.xml) expire after a short time,
+ * so that changes made through other nodes show up without a HEAD request on each hit. A mutable object is forgotten
+ * once it's uploaded through this node. The validators of immutable objects are also used to answer HEAD requests.
+ * <p>
+ * A quarter of the size is reserved for the buffers of objects which are being downloaded, objects which don't fit
+ * into it are passed on without caching them. Objects of unknown size (e.g. fetched from an upstream repository
+ * without length) are not cached either.
+ */
+public class MemoryCacheS3Repository extends S3RepositoryDecorator implements MeterBinder {
+
+    private final long maxInFlight;
+    private final long maxObjectSize;
+    private final BucketPermissions permissions;
+    private final Cache<String, Entry> entries;
+    // the total size of the buffers of the objects which are being downloaded
+    private final AtomicLong inFlight = new AtomicLong();
+
+    /**
+     * @param delegate the repository to read through
+     * @param maxSize the maximum total size of all cached objects and the buffers of the objects in flight
+     * @param maxObjectSize objects larger than this are not cached
+     * @param mutableTtl how long mutable objects are served from the cache
+     * @param permissions used to check that a client is allowed to read a cached object
+     */
+    public MemoryCacheS3Repository(S3Repository delegate,
+                                   DataSize maxSize,
+                                   DataSize maxObjectSize,
+                                   Duration mutableTtl,
+                                   BucketPermissions permissions) {
+        super(delegate);
+        this.maxInFlight = maxSize.toBytes() / 4;
+        this.maxObjectSize = Math.min(maxObjectSize.toBytes(), Integer.MAX_VALUE);
+        this.permissions = permissions;
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes() - maxInFlight)
+                .weigher((String cacheKey, Entry entry) -> entry.content().capacity())
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String cacheKey, Entry entry, long currentTime) {
+                        return entry.immutable() ? Long.MAX_VALUE : mutableTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String cacheKey, Entry entry, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(cacheKey, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String cacheKey, Entry entry, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Mono<Download> download(@NonNull String bucket, @NonNull String key, String range) {
+        if (range != null) {
+            // objects in memory are small, partial downloads of them are rare and not worth it
+            return delegate.download(bucket, key, range);
+        }
+
+        return Mono.deferContextual(ctx -> {
+            String cacheKey = Keys.cacheKey(bucket, key);
+            Entry entry = entries.getIfPresent(cacheKey);
+
+            // check: cached (mutable objects not expired yet) and client is allowed to read it?
+            return entry != null && permissions.canRead(ctx, bucket, key)
+                    // yes -> serve it from memory
+                    ? Mono.just(entry.toDownload())
+                    // no -> download it
+                    : download(ctx, bucket, key, cacheKey);
+        });
+    }
+
+    @Override
+    public Mono<HeadObjectResponse> head(@NonNull String bucket, @NonNull String key) {
+        if (!Keys.isImmutable(key)) {
+            return delegate.head(bucket, key);
+        }
+
+        return Mono.deferContextual(ctx -> {
+            Entry entry = entries.getIfPresent(Keys.cacheKey(bucket, key));
+
+            // the validators of immutable objects never change
+            return entry != null && permissions.canRead(ctx, bucket, key)
+                    ? Mono.just(entry.toHeadObjectResponse())
+                    : delegate.head(bucket, key);
+        });
+    }
+
+    @Override
+    public Mono<PutObjectResponse> upload(@NonNull String bucket,
+                                          @NonNull String key,
+                                          @NonNull String contentType,
+                                          Long contentLength,
+                                          @NonNull Publisher<ByteBuffer> file) {
+
+        // also forgotten if the upload fails, e.g. a conditional write of a metadata file which has been read from the
+        // cache, but changed through another node meanwhile, must read it from S3 when it's retried
+        return delegate.upload(bucket, key, contentType, contentLength, file)
+                .doFinally(signal -> entries.invalidate(Keys.cacheKey(bucket, key)));
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, entries, "memory");
+    }
+
+    private Mono<Download> download(ContextView ctx, String bucket, String key, String cacheKey) {
+        return delegate.download(bucket, key)
+                .doOnNext(download -> permissions.grantRead(ctx, bucket, key))
+                .map(download -> download.getContentLength() >= 0 && download.getContentLength() <= maxObjectSize
+                        ? tee(cacheKey, key, download)
+                        : download);
+    }
+
+    private Download tee(String cacheKey, String key, Download download) {
+        return download.toBuilder()
+                .content(Flux.defer(() -> {
+                    // check: buffer fits into the cache?
+                    if (!reserve(download.getContentLength())) {
+                        // no -> pass the content on without caching it
+                        return download.getContent();
+                    }
+
+                    // yes -> copy the content into the buffer along the way
+                    var writer = new EntryWriter(download);
+                    var released = new AtomicBoolean();
+
+                    return download.getContent()
+                            .doOnNext(writer::write)
+                            .doOnComplete(() -> {
+                                if (released.compareAndSet(false, true)) {
+                                    release(download.getContentLength());
+                                    writer.commit(cacheKey, key);
+                                }
+                            })
+                            .doFinally(signal -> {
+                                if (released.compareAndSet(false, true)) {
+                                    release(download.getContentLength());
+                                }
+                            });
+                }))
+                .build();
+    }
+
+    /**
+     * Reserves the size of a buffer until it's released.
+     *
+     * @return false if the buffers in flight would exceed the size reserved for them
+     */
+    private boolean reserve(long size) {
+        if (inFlight.addAndGet(size) > maxInFlight) {
+            inFlight.addAndGet(-size);
+            return false;
+        }
+
+        return true;
+    }
+
+    private void release(long size) {
+        inFlight.addAndGet(-size);
+    }
+
+    private record Entry(ByteBuffer content, String contentType, String eTag, Instant lastModified,
+                         Map<String, String> metadata, boolean immutable) {
+
+        Download toDownload() {
+            return Download.builder()
+                    // each subscriber gets its own view on the shared content
+                    .content(Flux.defer(() -> Flux.just(content.duplicate())))
+                    .contentType(contentType)
+                    .contentLength(content.capacity())
+                    .eTag(eTag)
+                    .lastModified(lastModified)
+                    .metadata(metadata)
+                    .build();
+        }
+
+        HeadObjectResponse toHeadObjectResponse() {
+            return HeadObjectResponse.builder()
+                    .contentType(contentType)
+                    .contentLength((long) content.capacity())
+                    .eTag(eTag)
+                    .lastModified(lastModified)
+                    .metadata(metadata)
+                    .build();
+        }
+    }
+
+    /**
+     * Copies the content of a download into an off-heap buffer and adds it to the cache once the download is complete.
+     */
+    private class EntryWriter {
+        private final Download download;
+        private final ByteBuffer content;
+        private boolean failed;
+
+        EntryWriter(Download download) {
+            this.download = download;
+            this.content = ByteBuffer.allocateDirect((int) download.getContentLength());
+        }
+
+        void write(ByteBuffer buffer) {
+            if (buffer.remaining() > content.remaining()) {
+                // more content than announced
+                failed = true;
+            } else if (!failed) {
+                // the buffer is passed on to the client, so it must not be consumed here
+                content.put(buffer.duplicate());
+            }
+        }
+
+        void commit(String cacheKey, String key) {
+            if (!failed && !content.hasRemaining()) {
+                entries.put(cacheKey, new Entry(content.flip().asReadOnlyBuffer(),
+                        download.getContentType(),
+                        download.getETag(),
+                        download.getLastModified(),
+                        download.getMetadata(),
+                        Keys.isImmutable(key)));
+            }
+        }
+    }
+}
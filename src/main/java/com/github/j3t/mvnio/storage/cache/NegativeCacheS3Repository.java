@@ -0,0 +1,147 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import org.reactivestreams.Publisher;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.S3RepositoryDecorator;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.NonNull;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+/**
+ * Remembers for a short time which objects don't exist, so that repeated lookups of missing artifacts (e.g. a resolver
+ * which probes all of its repositories) are answered without a round trip to S3.
+ * <p>
+ * An upload through this node removes the entry of the object immediately, a lookup which started before the upload
+ * ended doesn't add it again. Uploads through other nodes become visible once the entry has expired, so that the cache
+ * is bypassed if the answer must not be outdated (see {@link S3Repository#CONFIRM_MISSING}). Missing objects are only
+ * reported from the cache to clients which S3 has told that the object is missing (S3 answers 403 instead of 404 to
+ * clients which are not allowed to list the key), that doesn't authorize them to read other objects.
+ */
+public class NegativeCacheS3Repository extends S3RepositoryDecorator implements MeterBinder {
+
+    private final BucketPermissions permissions;
+    private final Cache<String, Boolean> missing;
+    // the time (System.nanoTime) of the last upload per object, lookups which started before are not remembered
+    private final Cache<String, Long> uploaded;
+
+    /**
+     * @param delegate the repository to read through
+     * @param ttl how long an object is considered missing
+     * @param maxSize the maximum number of missing objects to remember
+     * @param permissions used to check that a client is allowed to know that an object is missing
+     */
+    public NegativeCacheS3Repository(S3Repository delegate, Duration ttl, long maxSize, BucketPermissions permissions) {
+        super(delegate);
+        this.permissions = permissions;
+        this.missing = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        this.uploaded = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    @Override
+    public Mono<Download> download(@NonNull String bucket, @NonNull String key, String range) {
+        return Mono.deferContextual(ctx -> {
+            long start = System.nanoTime();
+            return isMissing(ctx, bucket, key)
+                    ? notFound()
+                    : delegate.download(bucket, key, range).doOnError(NoSuchKeyException.class, e -> remember(ctx, bucket, key, start));
+        });
+    }
+
+    @Override
+    public Mono<HeadObjectResponse> head(@NonNull String bucket, @NonNull String key) {
+        return Mono.deferContextual(ctx -> {
+            long start = System.nanoTime();
+            return isMissing(ctx, bucket, key)
+                    ? notFound()
+                    : delegate.head(bucket, key).doOnError(NoSuchKeyException.class, e -> remember(ctx, bucket, key, start));
+        });
+    }
+
+    @Override
+    public Mono<Boolean> exists(@NonNull String bucket, @NonNull String key) {
+        return Mono.deferContextual(ctx -> {
+            long start = System.nanoTime();
+            return isMissing(ctx, bucket, key)
+                    ? Mono.just(false)
+                    : delegate.exists(bucket, key).doOnNext(exists -> {
+                        if (!exists) {
+                            remember(ctx, bucket, key, start);
+                        }
+                    });
+        });
+    }
+
+    @Override
+    public Mono<PutObjectResponse> upload(@NonNull String bucket,
+                                          @NonNull String key,
+                                          @NonNull String contentType,
+                                          Long contentLength,
+                                          @NonNull Publisher<ByteBuffer> file) {
+
+        String cacheKey = Keys.cacheKey(bucket, key);
+
+        return delegate.upload(bucket, key, contentType, contentLength, file)
+                .doOnSubscribe(s -> uploaded(cacheKey))
+                // a failed conditional upload proves that the object exists as well
+                .doOnTerminate(() -> uploaded(cacheKey));
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, missing, "negative");
+    }
+
+    private boolean isMissing(ContextView ctx, String bucket, String key) {
+        return !ctx.getOrDefault(CONFIRM_MISSING, false)
+                && missing.getIfPresent(Keys.cacheKey(bucket, key)) != null
+                && permissions.canList(ctx, bucket, key);
+    }
+
+    private void remember(ContextView ctx, String bucket, String key, long start) {
+        // S3 reports a missing object only to clients which are allowed to list its key (403 otherwise)
+        permissions.grantList(ctx, bucket, key);
+
+        // the object could have been uploaded while it was looked up
+        String cacheKey = Keys.cacheKey(bucket, key);
+        Long lastUpload = uploaded.getIfPresent(cacheKey);
+        if (lastUpload == null || lastUpload - start < 0) {
+            missing.put(cacheKey, Boolean.TRUE);
+        }
+    }
+
+    private void uploaded(String cacheKey) {
+        uploaded.put(cacheKey, System.nanoTime());
+        missing.invalidate(cacheKey);
+    }
+
+    private static <T> Mono<T> notFound() {
+        // the stack trace is of no use and expensive to create
+        return Mono.error(() -> NoSuchKeyException.builder()
+                .message("The specified key does not exist.")
+                .statusCode(404)
+                .writableStackTrace(false)
+                .build());
+    }
+}
@@ -0,0 +1,319 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.reactivestreams.Subscription;
+
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.S3RepositoryDecorator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+import reactor.util.function.Tuple2;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Coalesces concurrent downloads of the same object (e.g. a new release which is requested by many build agents at
+ * once), so that they share a single S3 request. The content is fanned out to all clients and the most recent buffers
+ * are kept, so that clients which join a bit later still receive the content from the start. Clients which join once
+ * the start of the content is not available anymore download the object on their own.
+ * <p>
+ * The shared content is transferred at the pace of the slowest client, the memory usage of a download is limited to
+ * the number of kept buffers. Clients which are not known to be allowed to read the object have to pass a HEAD request
+ * before they can join a download. If the download is denied to the client which started it (e.g. invalid credentials),
+ * the clients which joined it download the object with their own credentials. The content of a download which is not requested by any client in time is
+ * released, so that the download can't be joined anymore and the S3 connection is freed.
+ */
+public class SingleFlightS3Repository extends S3RepositoryDecorator implements MeterBinder {
+
+    private static final Set<String> DENIALS = Set.of("AccessDenied", "InvalidAccessKeyId", "SignatureDoesNotMatch");
+
+    private final int replaySize;
+    private final BucketPermissions permissions;
+    private final Duration unclaimedTimeout;
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private Counter leaders;
+    private Counter followers;
+
+    /**
+     * @param delegate the repository to download the objects from
+     * @param replaySize the number of buffers which are kept for clients which join a download
+     * @param permissions used to check that a client is allowed to join a download
+     * @param unclaimedTimeout how long the content of a download is kept at most if no client requests it
+     */
+    public SingleFlightS3Repository(S3Repository delegate,
+                                    int replaySize,
+                                    BucketPermissions permissions,
+                                    Duration unclaimedTimeout) {
+        super(delegate);
+        this.replaySize = replaySize;
+        this.permissions = permissions;
+        this.unclaimedTimeout = unclaimedTimeout;
+    }
+
+    @Override
+    public Mono<Download> download(@NonNull String bucket, @NonNull String key, String range) {
+        if (range != null) {
+            // partial downloads are rare and usually differ from each other
+            return delegate.download(bucket, key, range);
+        }
+
+        return Mono.deferContextual(ctx -> {
+            String cacheKey = Keys.cacheKey(bucket, key);
+            Supplier<Mono<Download>> download = () -> delegate.download(bucket, key, null);
+            var leader = new AtomicBoolean();
+
+            // check: download in progress?
+            Flight flight = flights.compute(cacheKey, (k, existing) -> {
+                if (existing != null && existing.joinable) {
+                    // yes -> join it
+                    return existing;
+                }
+
+                // no -> start a new one
+                leader.set(true);
+                return new Flight(cacheKey);
+            });
+
+            if (leader.get()) {
+                increment(leaders);
+                flight.start(download.get().doOnNext(d -> permissions.grantRead(ctx, bucket, key)), ctx);
+                return flight.join(download, false);
+            }
+
+            increment(followers);
+
+            // check: client is allowed to read the object?
+            return permissions.canRead(ctx, bucket, key)
+                    // yes -> join the download
+                    ? flight.join(download, true)
+                    // don't know -> ask S3 first (still cheaper than downloading the object)
+                    : delegate.head(bucket, key)
+                    .doOnNext(head -> permissions.grantRead(ctx, bucket, key))
+                    .then(flight.join(download, true));
+        });
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        leaders = downloads(registry, "leader");
+        followers = downloads(registry, "follower");
+    }
+
+    private static Counter downloads(MeterRegistry registry, String role) {
+        return Counter.builder("single-flight.downloads")
+                .description("Downloads by whether they started an S3 request or joined one in progress")
+                .tag("role", role)
+                .register(registry);
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Subscribes to the given content without requesting anything and cancels it right away, so that the underlying
+     * connection is released. The subscription is cancelled once subscribe returns, because a shared content is
+     * connected to its source only then.
+     */
+    private static void release(Flux<?> content) {
+        var subscriber = new BaseSubscriber<Object>() {
+            @Override
+            protected void hookOnSubscribe(@NonNull Subscription subscription) {
+                // nothing is requested
+            }
+        };
+        content.subscribe(subscriber);
+        subscriber.dispose();
+    }
+
+    /**
+     * @return true if the request has been denied because of the credentials (e.g. invalid or not allowed to read the
+     * object), which says nothing about the credentials of other clients
+     */
+    private static boolean isDenied(Throwable e) {
+        if (e instanceof ClientError clientError) {
+            return clientError.getReturnCode() == 401 || clientError.getReturnCode() == 403;
+        }
+
+        return e instanceof S3Exception s3Exception
+                && (s3Exception.statusCode() == 401
+                || s3Exception.statusCode() == 403
+                || s3Exception.awsErrorDetails() != null
+                && DENIALS.contains(s3Exception.awsErrorDetails().errorCode()));
+    }
+
+    /**
+     * Signals that a download is not available anymore to a client which joined it.
+     */
+    private static class FlightClosed extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        FlightClosed() {
+            super("download closed", null, false, false);
+        }
+    }
+
+    /**
+     * The response of a download along with its shared content, which emits each buffer with its index.
+     */
+    private record Shared(Download download, Flux<Tuple2<Long, ByteBuffer>> content) {
+    }
+
+    /**
+     * A download which is shared by all clients which joined it.
+     */
+    private class Flight {
+        private final String cacheKey;
+        private final Sinks.One<Shared> response = Sinks.one();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private volatile Disposable request;
+        private volatile boolean joinable = true;
+
+        Flight(String cacheKey) {
+            this.cacheKey = cacheKey;
+        }
+
+        void start(Mono<Download> download, ContextView ctx) {
+            request = download
+                    .map(this::share)
+                    .contextWrite(Context.of(ctx))
+                    .subscribe(response::tryEmitValue, e -> {
+                        close();
+                        response.tryEmitError(e);
+                    });
+        }
+
+        /**
+         * @param download downloads the object separately, if the start of the shared content is not available anymore
+         * @param follower true if the client didn't start the download, it downloads the object separately if the
+         * request has been denied to the client which started it
+         */
+        Mono<Download> join(Supplier<Mono<Download>> download, boolean follower) {
+            return response.asMono()
+                    .doOnSubscribe(s -> waiting.incrementAndGet())
+                    .doOnSuccess(shared -> waiting.decrementAndGet())
+                    .doOnCancel(this::cancelled)
+                    .map(shared -> shared.content() == null
+                            ? shared.download()
+                            : shared.download().toBuilder()
+                            .content(content(shared, download))
+                            .build())
+                    .onErrorResume(e -> e instanceof FlightClosed || follower && isDenied(e), e -> download.get());
+        }
+
+        private Shared share(Download download) {
+            if (download.getFile() != null) {
+                // the content is served from a local file, no need to share it
+                close();
+                return new Shared(download, null);
+            }
+
+            // the content can be subscribed to once, later subscribers can't join anymore
+            var subscribed = new AtomicBoolean();
+            Flux<Tuple2<Long, ByteBuffer>> content = Flux.defer(() -> subscribed.compareAndSet(false, true)
+                            ? download.getContent().index()
+                            : Flux.error(new FlightClosed()))
+                    .doOnNext(buffer -> {
+                        // the start of the content is about to be dropped from the replay buffer
+                        if (buffer.getT1() >= replaySize - 1) {
+                            close();
+                        }
+                    })
+                    .doFinally(signal -> close())
+                    .replay(replaySize)
+                    .refCount(1);
+
+            // check: content not requested in time (e.g. the clients went away once they got the response)?
+            Schedulers.parallel().schedule(() -> {
+                if (!subscribed.get()) {
+                    // yes -> release it
+                    discard(content);
+                }
+            }, unclaimedTimeout.toMillis(), TimeUnit.MILLISECONDS);
+
+            return new Shared(download, content);
+        }
+
+        private Flux<ByteBuffer> content(Shared shared, Supplier<Mono<Download>> download) {
+            return shared.content()
+                    .switchOnFirst((first, content) -> {
+                        // check: content available from the start?
+                        if (first.hasValue() && first.get().getT1() == 0 || first.isOnComplete()
+                                || first.isOnError() && !(first.getThrowable() instanceof FlightClosed)) {
+                            // yes -> each client reads the shared buffers on its own
+                            return content.map(buffer -> buffer.getT2().duplicate());
+                        }
+
+                        // no -> download it separately, it must not have changed in the meantime
+                        return download.get()
+                                .flatMapMany(separate -> Objects.equals(separate.getETag(), shared.download().getETag())
+                                        ? separate.getContent()
+                                        // the content of the separate download is released before giving up
+                                        : Mono.fromRunnable(() -> release(separate.getContent()))
+                                        .thenMany(Flux.error(new IllegalStateException("object changed during download"))));
+                    });
+        }
+
+        private void cancelled() {
+            // check: all clients gone?
+            if (waiting.decrementAndGet() > 0) {
+                return;
+            }
+
+            // yes -> check: response not received yet?
+            if (response.tryEmitError(new FlightClosed()).isSuccess()) {
+                // yes -> cancel the request
+                close();
+                Disposable request = this.request;
+                if (request != null) {
+                    request.dispose();
+                }
+            } else {
+                // no -> make sure the content is released, even if no client subscribes to it
+                response.asMono()
+                        .mapNotNull(Shared::content)
+                        .subscribe(this::discard, e -> {
+                        });
+            }
+        }
+
+        /**
+         * Releases the shared content once the last subscriber is gone, the download can't be joined anymore.
+         */
+        private void discard(Flux<?> content) {
+            close();
+            release(content);
+        }
+
+        private void close() {
+            joinable = false;
+            flights.remove(cacheKey, this);
+        }
+    }
+}
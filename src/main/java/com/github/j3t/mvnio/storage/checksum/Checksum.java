@@ -0,0 +1,53 @@
+package com.github.j3t.mvnio.storage.checksum;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The checksums which Maven deploys along with each file.
+ */
+enum Checksum {
+    MD5("md5", "MD5"),
+    SHA1("sha1", "SHA-1"),
+    SHA256("sha256", "SHA-256"),
+    SHA512("sha512", "SHA-512");
+
+    /**
+     * The extension of the checksum file.
+     */
+    final String extension;
+    private final String algorithm;
+
+    Checksum(String extension, String algorithm) {
+        this.extension = extension;
+        this.algorithm = algorithm;
+    }
+
+    MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not supported!", e);
+        }
+    }
+
+    /**
+     * @return the checksum of which the given key is the checksum file (e.g. foo.jar.sha1) or null if none
+     */
+    static Checksum ofKey(String key) {
+        for (Checksum checksum : values()) {
+            if (key.endsWith("." + checksum.extension)) {
+                return checksum;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the key of the file of which the given key is the checksum file (e.g. foo.jar for foo.jar.sha1)
+     */
+    String fileKey(String checksumKey) {
+        return checksumKey.substring(0, checksumKey.length() - extension.length() - 1);
+    }
+}
@@ -0,0 +1,391 @@
+package com.github.j3t.mvnio.storage.checksum;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.reactivestreams.Publisher;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.S3RepositoryDecorator;
+import com.github.j3t.mvnio.storage.cache.Keys;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+/**
+ * Computes the checksums (md5, sha1, sha256 and sha512) of each uploaded file in a single pass and answers the requests
+ * of its checksum files (e.g. foo.jar.sha1), which is where Maven clients look for them:
+ * <ul>
+ *     <li>files up to a maximum size are hashed before they are stored, the checksums are stored as metadata of the
+ *     file in the same request. Requests of their checksum files are answered from a HEAD request of the file, without
+ *     checksum files being stored at all.</li>
+ *     <li>larger files (and files of unknown size) are hashed while they are transferred, the checksums are stored as
+ *     checksum files next to the file afterwards.</li>
+ *     <li>the upload of a checksum file which matches the computed one is acknowledged without storing it, one which
+ *     doesn't match is rejected, one of a file without known checksums is stored as usual (e.g. a file whose checksum
+ *     files couldn't be stored gets them from the client). Checksum files must therefore not be rejected as existing
+ *     artifacts before they reach this repository (see {@link #isChecksum(String)}).</li>
+ *     <li>the checksums of immutable files are kept in memory, so that requests of their checksum files are answered
+ *     without a round trip to S3</li>
+ * </ul>
+ * The uploaded file itself is stored unchanged. Checksum files stored before (or by other means) are served as usual,
+ * if the file has no checksums in its metadata.
+ */
+@Slf4j
+public class ChecksumS3Repository extends S3RepositoryDecorator implements MeterBinder {
+
+    private static final String CONTENT_TYPE = "text/plain";
+    private static final String METADATA_PREFIX = "checksum-";
+    // a checksum file contains the hex encoded checksum, optionally followed by the filename
+    private static final int MAX_CHECKSUM_FILE_SIZE = 4096;
+
+    private final long maxObjectSize;
+    private final BucketPermissions permissions;
+    private final Cache<String, Checksums> checksums;
+
+    /**
+     * @param delegate the repository to store the files
+     * @param maxSize the maximum number of files of which the checksums are kept in memory
+     * @param maxObjectSize files up to this size are buffered, so that their checksums can be stored as metadata; it
+     * must not exceed the size above which files are uploaded in parts
+     * @param permissions used to check that a client is allowed to read the checksums kept in memory
+     */
+    public ChecksumS3Repository(S3Repository delegate, long maxSize, DataSize maxObjectSize, BucketPermissions permissions) {
+        super(delegate);
+        this.maxObjectSize = Math.min(maxObjectSize.toBytes(), Integer.MAX_VALUE);
+        this.permissions = permissions;
+        this.checksums = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Mono<Download> download(@NonNull String bucket, @NonNull String key, String range) {
+        Checksum checksum = Checksum.ofKey(key);
+        if (checksum == null || range != null) {
+            return delegate.download(bucket, key, range);
+        }
+
+        // check: checksum known (kept in memory or stored as metadata of the file)?
+        return known(bucket, key, checksum)
+                .mapNotNull(file -> file.toDownload(checksum))
+                // no -> download the checksum file
+                .switchIfEmpty(Mono.deferContextual(ctx -> delegate.download(bucket, key, range)
+                        .doOnNext(download -> permissions.grantRead(ctx, bucket, key))));
+    }
+
+    @Override
+    public Mono<HeadObjectResponse> head(@NonNull String bucket, @NonNull String key) {
+        Checksum checksum = Checksum.ofKey(key);
+        if (checksum == null) {
+            return delegate.head(bucket, key);
+        }
+
+        return known(bucket, key, checksum)
+                .mapNotNull(file -> file.toHeadObjectResponse(checksum))
+                .switchIfEmpty(Mono.deferContextual(ctx -> delegate.head(bucket, key)
+                        .doOnNext(head -> permissions.grantRead(ctx, bucket, key))));
+    }
+
+    @Override
+    public Mono<PutObjectResponse> upload(@NonNull String bucket,
+                                          @NonNull String key,
+                                          @NonNull String contentType,
+                                          Long contentLength,
+                                          @NonNull Publisher<ByteBuffer> file) {
+
+        Checksum checksum = Checksum.ofKey(key);
+        if (checksum != null) {
+            return uploadChecksum(bucket, key, contentType, checksum, file);
+        }
+
+        checksums.invalidate(Keys.cacheKey(bucket, key));
+
+        return contentLength != null && contentLength <= maxObjectSize
+                ? uploadSmallFile(bucket, key, contentType, contentLength, file)
+                : uploadLargeFile(bucket, key, contentType, contentLength, file);
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, checksums, "checksums");
+    }
+
+    /**
+     * @return true if the given key (or path) is a checksum file (e.g. foo.jar.sha1), which is compared with the
+     * computed checksum on upload instead of being rejected if it exists
+     */
+    public static boolean isChecksum(String key) {
+        return Checksum.ofKey(key) != null;
+    }
+
+    /**
+     * Buffers a file to compute its checksums and uploads it along with them as metadata.
+     */
+    private Mono<PutObjectResponse> uploadSmallFile(String bucket, String key, String contentType, long contentLength,
+                                                    Publisher<ByteBuffer> file) {
+
+        return read(file, contentLength)
+                .flatMap(content -> {
+                    var digests = new Digests();
+                    digests.update(ByteBuffer.wrap(content));
+                    Map<String, String> values = digests.toMap();
+
+                    return delegate.upload(bucket, key, contentType, (long) content.length,
+                                    Flux.defer(() -> Flux.just(ByteBuffer.wrap(content))))
+                            .contextWrite(ctx -> ctx.put(METADATA, toMetadata(values)))
+                            .doOnSuccess(response -> remember(bucket, key, values));
+                });
+    }
+
+    /**
+     * Uploads a file and then its checksum files, the checksums are computed while the file is transferred.
+     */
+    private Mono<PutObjectResponse> uploadLargeFile(String bucket, String key, String contentType, Long contentLength,
+                                                    Publisher<ByteBuffer> file) {
+
+        // the content could be read more than once (e.g. on retries), the last pass counts
+        var digests = new AtomicReference<Digests>();
+        Flux<ByteBuffer> content = Flux.defer(() -> {
+            var pass = new Digests();
+            digests.set(pass);
+            return Flux.from(file).doOnNext(pass::update);
+        });
+
+        return delegate.upload(bucket, key, contentType, contentLength, content)
+                .flatMap(response -> {
+                    if (digests.get() == null) {
+                        return Mono.just(response);
+                    }
+
+                    Map<String, String> values = digests.get().toMap();
+
+                    return Flux.fromArray(Checksum.values())
+                            .flatMap(checksum -> {
+                                byte[] value = values.get(checksum.extension).getBytes(US_ASCII);
+                                return delegate.upload(bucket, key + "." + checksum.extension, CONTENT_TYPE,
+                                        (long) value.length, Flux.defer(() -> Flux.just(ByteBuffer.wrap(value))));
+                            })
+                            // the checksum files are derived from the file, they may be replaced
+                            .contextWrite(ctx -> ctx.put(CREATE_ONLY, false).delete(IF_MATCH))
+                            .then(Mono.fromRunnable(() -> remember(bucket, key, values)))
+                            // the file itself is stored, the client uploads the checksum files anyway
+                            .onErrorResume(e -> {
+                                log.warn("checksum files of {}/{} not stored: {}", bucket, key, e.getMessage());
+                                return Mono.empty();
+                            })
+                            .thenReturn(response);
+                });
+    }
+
+    /**
+     * Compares an uploaded checksum file with the computed checksum or the stored checksum file, if any. Otherwise, the
+     * checksum file is stored as usual.
+     */
+    private Mono<PutObjectResponse> uploadChecksum(String bucket, String key, String contentType, Checksum checksum,
+                                                   Publisher<ByteBuffer> file) {
+
+        return read(file, MAX_CHECKSUM_FILE_SIZE)
+                .flatMap(content -> expected(bucket, key, checksum)
+                        // check: checksum of the file known?
+                        .flatMap(expected -> parse(content).equalsIgnoreCase(expected)
+                                // yes, and it matches -> nothing to store
+                                ? Mono.just(PutObjectResponse.builder().eTag(eTag(expected)).build())
+                                // yes, but it doesn't match -> reject it
+                                : Mono.<PutObjectResponse>error(new ClientError(400, "Checksum mismatch")))
+                        // no -> store the checksum file
+                        .switchIfEmpty(Mono.defer(() -> delegate.upload(bucket, key, contentType,
+                                (long) content.length, Flux.just(ByteBuffer.wrap(content))))));
+    }
+
+    /**
+     * @return the checksums of the file of a checksum file, either kept in memory or read from the metadata of the file,
+     * or empty if none are known (or the client isn't allowed to read the file)
+     */
+    private Mono<Checksums> known(String bucket, String key, Checksum checksum) {
+        String fileKey = checksum.fileKey(key);
+
+        return Mono.deferContextual(ctx -> {
+            Checksums cached = checksums.getIfPresent(Keys.cacheKey(bucket, fileKey));
+
+            // check: kept in memory and client is allowed to read it?
+            if (cached != null && permissions.canRead(ctx, bucket, key)) {
+                // yes -> no need to ask S3
+                return cached.values().isEmpty() ? Mono.empty() : Mono.just(cached);
+            }
+
+            // no -> read the metadata of the file
+            return delegate.head(bucket, fileKey)
+                    .map(head -> new Checksums(fromMetadata(head.metadata()), head.lastModified()))
+                    .doOnNext(file -> {
+                        permissions.grantRead(ctx, bucket, key);
+                        // files without checksums in their metadata are remembered too, so that they are not asked again
+                        if (Keys.isImmutable(fileKey)) {
+                            checksums.put(Keys.cacheKey(bucket, fileKey), file);
+                        }
+                    })
+                    .filter(file -> !file.values().isEmpty())
+                    // the checksum file could have been stored without the file
+                    .onErrorResume(NoSuchKeyException.class, e -> Mono.empty());
+        });
+    }
+
+    /**
+     * @return the expected checksum or empty if the checksum of the file is not known. The checksum kept in memory is
+     * used without a read grant, a client learns only whether the checksum it sent matches.
+     */
+    private Mono<String> expected(String bucket, String key, Checksum checksum) {
+        return Mono.justOrEmpty(checksums.getIfPresent(Keys.cacheKey(bucket, checksum.fileKey(key))))
+                .filter(file -> !file.values().isEmpty())
+                .switchIfEmpty(known(bucket, key, checksum))
+                .mapNotNull(file -> file.values().get(checksum.extension))
+                // no -> check: checksum file stored already?
+                .switchIfEmpty(Mono.defer(() -> delegate.download(bucket, key)
+                        .flatMap(download -> read(download.getContent(), MAX_CHECKSUM_FILE_SIZE))
+                        .map(ChecksumS3Repository::parse)
+                        .onErrorResume(NoSuchKeyException.class, e -> Mono.empty())));
+    }
+
+    private void remember(String bucket, String key, Map<String, String> values) {
+        if (Keys.isImmutable(key)) {
+            checksums.put(Keys.cacheKey(bucket, key), new Checksums(values, Instant.now()));
+        }
+    }
+
+    private static Map<String, String> toMetadata(Map<String, String> values) {
+        Map<String, String> metadata = new HashMap<>();
+        values.forEach((extension, value) -> metadata.put(METADATA_PREFIX + extension, value));
+        return metadata;
+    }
+
+    private static Map<String, String> fromMetadata(Map<String, String> metadata) {
+        Map<String, String> values = new HashMap<>();
+        for (Checksum checksum : Checksum.values()) {
+            String value = metadata.get(METADATA_PREFIX + checksum.extension);
+            if (value != null) {
+                values.put(checksum.extension, value);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * @return the content of a file, which must not be larger than the given size
+     */
+    private static Mono<byte[]> read(Publisher<ByteBuffer> file, long maxSize) {
+        return Flux.from(file)
+                .reduce(new ByteArrayOutputStream(), (out, buffer) -> {
+                    if (out.size() + buffer.remaining() > maxSize) {
+                        throw new ClientError(400, "Content larger than expected");
+                    }
+
+                    ByteBuffer source = buffer.duplicate();
+                    byte[] bytes = new byte[source.remaining()];
+                    source.get(bytes);
+                    out.writeBytes(bytes);
+                    return out;
+                })
+                .map(ByteArrayOutputStream::toByteArray);
+    }
+
+    private static String parse(byte[] content) {
+        String[] tokens = new String(content, US_ASCII).trim().split("\\s+", 2);
+        return tokens[0];
+    }
+
+    /**
+     * @return the ETag which S3 assigns to a checksum file (the md5 of its content), so that it doesn't matter where it
+     * has been served from
+     */
+    private static String eTag(String value) {
+        return "\"" + HexFormat.of().formatHex(Checksum.MD5.newDigest().digest(value.getBytes(US_ASCII))) + "\"";
+    }
+
+    /**
+     * The checksums of a file, by the extension of the checksum file.
+     */
+    private record Checksums(Map<String, String> values, Instant lastModified) {
+
+        Download toDownload(Checksum checksum) {
+            String value = values.get(checksum.extension);
+            if (value == null) {
+                return null;
+            }
+
+            byte[] content = value.getBytes(US_ASCII);
+            return Download.builder()
+                    .content(Flux.defer(() -> Flux.just(ByteBuffer.wrap(content))))
+                    .contentType(CONTENT_TYPE)
+                    .contentLength(content.length)
+                    .eTag(eTag(value))
+                    .lastModified(lastModified)
+                    .build();
+        }
+
+        HeadObjectResponse toHeadObjectResponse(Checksum checksum) {
+            String value = values.get(checksum.extension);
+            if (value == null) {
+                return null;
+            }
+
+            return HeadObjectResponse.builder()
+                    .contentType(CONTENT_TYPE)
+                    .contentLength((long) value.length())
+                    .eTag(eTag(value))
+                    .lastModified(lastModified)
+                    .build();
+        }
+    }
+
+    /**
+     * Computes all checksums of a file in a single pass.
+     */
+    private static class Digests {
+        private final Map<Checksum, MessageDigest> digests = new EnumMap<>(Checksum.class);
+
+        Digests() {
+            for (Checksum checksum : Checksum.values()) {
+                digests.put(checksum, checksum.newDigest());
+            }
+        }
+
+        void update(ByteBuffer buffer) {
+            // the buffer is passed on to S3, so it must not be consumed here
+            digests.values().forEach(digest -> digest.update(buffer.duplicate()));
+        }
+
+        /**
+         * @return the checksums by the extension of the checksum file
+         */
+        Map<String, String> toMap() {
+            Map<String, String> values = new HashMap<>();
+            digests.forEach((checksum, digest) -> values.put(checksum.extension, HexFormat.of().formatHex(digest.digest())));
+            return values;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.j3t.mvnio.storage.crawl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.cache.Keys;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Lists the keys of a bucket in parallel. The key space is split into shards by the directories (common prefixes) of
+ * the first levels (e.g. com/github/), which are listed concurrently and merged back into key order, so that a full
+ * listing takes about as long as the largest shard and not as the sum of all of them.
+ * <p>
+ * The shards of a prefix are kept for a short time, so that a listing which is continued page by page (startAfter)
+ * doesn't discover them again for each page. Directories which are created meanwhile are picked up once they expire.
+ */
+public class BucketCrawler {
+
+    private static final Duration SHARDS_TTL = Duration.ofMinutes(1);
+
+    private final S3Repository s3;
+    private final int parallelism;
+    private final int shardDepth;
+    // by bucket and prefix
+    private final Cache<String, List<String>> shards = Caffeine.newBuilder()
+            .expireAfterWrite(SHARDS_TTL)
+            .maximumSize(1000)
+            .build();
+
+    /**
+     * @param s3 the repository to list
+     * @param parallelism the maximum number of list requests in progress at the same time (per crawl)
+     * @param shardDepth the number of directory levels which are used to split the key space
+     */
+    public BucketCrawler(S3Repository s3, int parallelism, int shardDepth) {
+        this.s3 = s3;
+        this.parallelism = parallelism;
+        this.shardDepth = shardDepth;
+    }
+
+    /**
+     * Lists the keys of all objects in a bucket which start with the given prefix in key order, like
+     * {@link S3Repository#keys(String, String, String)}.
+     *
+     * @param prefix the prefix (e.g. foo/bar/) or null to list the whole bucket
+     * @param startAfter the key after which the listing starts or null to start at the beginning
+     */
+    public Flux<String> keys(String bucket, String prefix, String startAfter) {
+        return keys(bucket, prefix, startAfter, parallelism);
+    }
+
+    /**
+     * Same as {@link #keys(String, String, String)}, but with a lower parallelism (e.g. for a small page, which would
+     * cancel most of the listings right after they have been started).
+     */
+    public Flux<String> keys(String bucket, String prefix, String startAfter, int parallelism) {
+        return shards(bucket, prefix != null ? prefix : "")
+                .filter(shard -> isAfter(shard, startAfter))
+                .flatMapSequential(shard -> {
+                    // a key which has been found on the way is a shard of its own
+                    if (!shard.endsWith("/")) {
+                        return Flux.just(shard);
+                    }
+
+                    return startAfter != null && startAfter.startsWith(shard)
+                            ? s3.keys(bucket, shard, startAfter)
+                            : s3.keys(bucket, shard);
+                }, Math.max(parallelism, 1));
+    }
+
+    /**
+     * @return the shards of the given prefix, they are discovered if not known (anymore)
+     */
+    private Flux<String> shards(String bucket, String prefix) {
+        String cacheKey = Keys.cacheKey(bucket, prefix);
+        List<String> known = shards.getIfPresent(cacheKey);
+        if (known != null) {
+            return Flux.fromIterable(known);
+        }
+
+        return discover(bucket, prefix, shardDepth)
+                .collectList()
+                .doOnNext(discovered -> shards.put(cacheKey, discovered))
+                .flatMapIterable(discovered -> discovered);
+    }
+
+    /**
+     * @return the directories (e.g. com/github/) below the given prefix up to the given depth, and the keys of the
+     * objects which are found on the way, in key order
+     */
+    private Flux<String> discover(String bucket, String prefix, int depth) {
+        if (depth == 0) {
+            return Flux.just(prefix);
+        }
+
+        // the directories and files of a page are listed separately, so they have to be sorted
+        return s3.list(bucket, "/" + prefix)
+                .map(name -> prefix + name)
+                .collectSortedList(BucketCrawler::compare)
+                .flatMapIterable(entries -> entries)
+                .flatMapSequential(entry -> entry.endsWith("/")
+                        ? discover(bucket, entry, depth - 1)
+                        : Flux.just(entry), parallelism);
+    }
+
+    /**
+     * @return true if the given key, or any key in the given directory, comes after startAfter
+     */
+    private static boolean isAfter(String entry, String startAfter) {
+        if (startAfter == null) {
+            return true;
+        }
+
+        return entry.endsWith("/") && startAfter.startsWith(entry) || compare(entry, startAfter) > 0;
+    }
+
+    /**
+     * Compares keys like S3 does (by their UTF-8 bytes).
+     */
+    static int compare(String a, String b) {
+        return Arrays.compareUnsigned(a.getBytes(UTF_8), b.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.j3t.mvnio.storage.crawl;
+
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.S3RepositoryDecorator;
+
+import lombok.NonNull;
+import reactor.core.publisher.Flux;
+
+/**
+ * Lists buckets with a {@link BucketCrawler} instead of a single sequence of list requests, so that operations which
+ * walk a whole bucket (e.g. the rebuild of an index or a metadata request which has to skip many other objects) scale
+ * with the allowed parallelism instead of with the latency of S3. Listings of a prefix (e.g. a version directory, or a
+ * shard of another crawler) are passed on as they are.
+ */
+public class ShardedCrawlS3Repository extends S3RepositoryDecorator {
+
+    // a page of metadata keys is expected to need a shard listing per this many entries, a smaller page lists the
+    // shards one after the other instead of starting listings which are cancelled right away
+    private static final int METADATA_PER_SHARD = 100;
+
+    private final BucketCrawler crawler;
+    private final int parallelism;
+
+    /**
+     * @param delegate the repository to list
+     * @param parallelism the maximum number of list requests in progress at the same time (per crawl)
+     * @param shardDepth the number of directory levels which are used to split the key space
+     */
+    public ShardedCrawlS3Repository(S3Repository delegate, int parallelism, int shardDepth) {
+        super(delegate);
+        this.crawler = new BucketCrawler(delegate, parallelism, shardDepth);
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public Flux<String> metadata(@NonNull String bucket, String startAfter, int limit) {
+        int shardParallelism = Math.min(parallelism, Math.max(1, limit / METADATA_PER_SHARD));
+
+        return crawler.keys(bucket, null, startAfter, shardParallelism)
+                .filter(S3Repository::isMetadata)
+                .take(limit)
+                .map(key -> "/" + key);
+    }
+
+    @Override
+    public Flux<String> keys(@NonNull String bucket, String prefix, String startAfter) {
+        return prefix == null
+                ? crawler.keys(bucket, null, startAfter)
+                : delegate.keys(bucket, prefix, startAfter);
+    }
+}
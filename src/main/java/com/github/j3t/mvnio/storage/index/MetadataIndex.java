@@ -0,0 +1,83 @@
+package com.github.j3t.mvnio.storage.index;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Thread-safe, sorted set of the metadata keys of a bucket. It is stored as gzipped text file with one key per line.
+ */
+final class MetadataIndex {
+
+    private final NavigableSet<String> keys = new ConcurrentSkipListSet<>();
+
+    /**
+     * @return true if the key has not been contained before
+     */
+    boolean add(String key) {
+        return keys.add(key);
+    }
+
+    void addAll(Collection<String> keys) {
+        this.keys.addAll(keys);
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    /**
+     * @param startAfter the key after which the page starts (exclusive) or null to start with the first key
+     * @param limit the maximum number of keys
+     * @return the keys of the page in their natural order
+     */
+    List<String> page(String startAfter, int limit) {
+        List<String> page = new ArrayList<>(Math.min(limit, 100));
+
+        for (String key : startAfter != null ? keys.tailSet(startAfter, false) : keys) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(key);
+        }
+
+        return page;
+    }
+
+    byte[] toBytes() {
+        var out = new ByteArrayOutputStream();
+
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(out), UTF_8)) {
+            for (String key : keys) {
+                writer.write(key);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+    static List<String> parse(byte[] bytes) {
+        try (var reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(bytes)), UTF_8))) {
+            return reader.lines().filter(line -> !line.isEmpty()).toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
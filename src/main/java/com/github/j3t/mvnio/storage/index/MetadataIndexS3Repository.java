@@ -0,0 +1,367 @@
+package com.github.j3t.mvnio.storage.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.reactivestreams.Publisher;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.Page;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.S3RepositoryDecorator;
+import com.github.j3t.mvnio.storage.crawl.BucketCrawler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+import reactor.util.retry.Retry;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Answers metadata requests (see {@link S3Repository#metadata(String, String, int)}) from an index of the metadata keys
+ * of a bucket, so that a page costs as much as its size and not a scan of the bucket up to it. The index is stored in
+ * the bucket itself ({@link #INDEX_KEY}) and kept in memory:
+ * <ul>
+ *     <li>it is loaded once S3 has allowed a client to list the metadata of a bucket (with the credentials of that
+ *     client) and reloaded periodically to pick up the keys added through other nodes</li>
+ *     <li>it is rebuilt by crawling the bucket (prefixes in parallel) if it doesn't exist yet, remove the object to
+ *     force a rebuild</li>
+ *     <li>uploads of new metadata files are added immediately and written back shortly after (merged with the stored
+ *     index and written only if it hasn't been changed meanwhile, so that concurrent updates of other nodes are
+ *     kept). Without conditional writes the last write wins, keys added concurrently through other nodes are then
+ *     missing until the index is rebuilt.</li>
+ * </ul>
+ * Metadata requests are answered by the bucket as usual as long as the index of a bucket isn't loaded, or the client
+ * isn't known to be allowed to list the bucket (a successful listing grants it, see {@link BucketPermissions}). The
+ * number of indexed buckets is limited. The objects under {@link #INTERNAL_PREFIX} are not listed (see
+ * {@link #isInternal(String)}).
+ */
+@Slf4j
+public class MetadataIndexS3Repository extends S3RepositoryDecorator implements MeterBinder {
+
+    public static final String INTERNAL_PREFIX = ".mvnio/";
+    public static final String INDEX_KEY = INTERNAL_PREFIX + "metadata-index.gz";
+
+    private static final String CONTENT_TYPE = "application/gzip";
+    // a failed load (e.g. the client isn't allowed to read the index) is retried after this delay
+    private static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+    // the bucket is split into shards by the prefixes up to this depth (e.g. com/github/), which are crawled in parallel
+    private static final int SHARD_DEPTH = 2;
+    // the maximum number of retries of a write of the index which conflicts with a concurrent one
+    private static final int MAX_RETRIES = 5;
+    // the maximum number of buckets of which the index is kept in memory
+    private static final int MAX_BUCKETS = 1000;
+
+    private final Duration refreshInterval;
+    private final Duration flushDelay;
+    private final BucketCrawler crawler;
+    private final boolean conditionalWrites;
+    private final BucketPermissions permissions;
+    private final Cache<String, BucketIndex> indexes = Caffeine.newBuilder()
+            .maximumSize(MAX_BUCKETS)
+            .build();
+
+    private Counter hits;
+    private Counter misses;
+
+    /**
+     * @param delegate the repository which stores the files and the index
+     * @param refreshInterval how often the index of a bucket is reloaded
+     * @param flushDelay how long new keys are collected before the index is written back
+     * @param crawlParallelism the maximum number of shards which are listed in parallel when the index is rebuilt
+     * @param conditionalWrites true if S3 supports conditional writes, false to write the index unconditionally
+     * @param permissions used to check that a client is allowed to list the metadata of a bucket
+     */
+    public MetadataIndexS3Repository(S3Repository delegate,
+                                     Duration refreshInterval,
+                                     Duration flushDelay,
+                                     int crawlParallelism,
+                                     boolean conditionalWrites,
+                                     BucketPermissions permissions) {
+        super(delegate);
+        this.refreshInterval = refreshInterval;
+        this.flushDelay = flushDelay;
+        this.crawler = new BucketCrawler(delegate, crawlParallelism, SHARD_DEPTH);
+        this.conditionalWrites = conditionalWrites;
+        this.permissions = permissions;
+    }
+
+    @Override
+    public Flux<String> metadata(@NonNull String bucket, String startAfter, int limit) {
+        return Flux.deferContextual(ctx -> {
+            BucketIndex index = indexes.getIfPresent(bucket);
+
+            // check: index loaded and client known to be allowed to list the bucket?
+            if (index != null && index.loaded && permissions.canList(ctx, bucket, "")) {
+                // yes -> answer from the index
+                refresh(ctx, bucket, index);
+                increment(hits);
+                return Flux.fromIterable(index.keys.page(startAfter, limit)).map(key -> "/" + key);
+            }
+
+            // no -> ask S3, the client is allowed to list the bucket if it succeeds (and the index can be loaded)
+            increment(misses);
+            return delegate.metadata(bucket, startAfter, limit)
+                    .doOnComplete(() -> {
+                        permissions.grantList(ctx, bucket, "");
+                        refresh(ctx, bucket, indexes.get(bucket, b -> new BucketIndex()));
+                    });
+        });
+    }
+
+    @Override
+    public Mono<PutObjectResponse> upload(@NonNull String bucket,
+                                          @NonNull String key,
+                                          @NonNull String contentType,
+                                          Long contentLength,
+                                          @NonNull Publisher<ByteBuffer> file) {
+
+        if (!S3Repository.isMetadata(key)) {
+            return delegate.upload(bucket, key, contentType, contentLength, file);
+        }
+
+        return Mono.deferContextual(ctx -> delegate.upload(bucket, key, contentType, contentLength, file)
+                .doOnSuccess(response -> add(ctx, bucket, key)));
+    }
+
+    @Override
+    public Flux<String> list(@NonNull String bucket, @NonNull String path) {
+        if (isInternal(toPrefix(path))) {
+            return Flux.empty();
+        }
+
+        return delegate.list(bucket, path).filter(entry -> !isRoot(path) || !isInternal(entry));
+    }
+
+    @Override
+    public Mono<Page> list(@NonNull String bucket, @NonNull String path, String continuationToken, int limit) {
+        if (isInternal(toPrefix(path))) {
+            return Mono.just(new Page(List.of(), null));
+        }
+
+        return delegate.list(bucket, path, continuationToken, limit)
+                .map(page -> !isRoot(path) ? page : new Page(page.entries().stream()
+                        .filter(entry -> !isInternal(entry))
+                        .toList(), page.continuationToken()));
+    }
+
+    @Override
+    public Flux<String> keys(@NonNull String bucket, String prefix, String startAfter) {
+        return delegate.keys(bucket, prefix, startAfter).filter(key -> !isInternal(key));
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        hits = lookups(registry, "hit");
+        misses = lookups(registry, "miss");
+    }
+
+    /**
+     * @return true if the given key (or directory entry) belongs to the objects maintained by the server, which are
+     * not listed and can't be uploaded by clients
+     */
+    public static boolean isInternal(String key) {
+        return key.startsWith(INTERNAL_PREFIX);
+    }
+
+    private static String toPrefix(String path) {
+        String prefix = path.startsWith("/") ? path.substring(1) : path;
+        return prefix.endsWith("/") || prefix.isEmpty() ? prefix : prefix + "/";
+    }
+
+    private static boolean isRoot(String path) {
+        return toPrefix(path).isEmpty();
+    }
+
+    private void add(ContextView ctx, String bucket, String key) {
+        // the key of a bucket without index is picked up when the index is loaded
+        BucketIndex index = indexes.getIfPresent(bucket);
+
+        // an index which isn't loaded yet is written back when it has been loaded
+        if (index != null && index.keys.add(key) && index.loaded) {
+            flush(ctx, bucket, index);
+        }
+    }
+
+    /**
+     * (Re)loads the index of a bucket in the background if it is missing or outdated.
+     */
+    private void refresh(ContextView ctx, String bucket, BucketIndex index) {
+        if (index.isOutdated() && index.loading.compareAndSet(false, true)) {
+            load(Context.of(ctx), bucket, index);
+        }
+    }
+
+    private void load(Context ctx, String bucket, BucketIndex index) {
+        long start = System.nanoTime();
+        index.attemptedAt = start;
+
+        read(bucket)
+                // the index doesn't exist yet -> rebuild it
+                .switchIfEmpty(Mono.defer(() -> crawl(bucket)
+                        .collectList()
+                        .doOnNext(keys -> log.info("index of metadata in bucket {} rebuilt: {} keys in {} ms",
+                                bucket, keys.size(), Duration.ofNanos(System.nanoTime() - start).toMillis()))
+                        .map(keys -> new Stored(keys, false, null))))
+                .contextWrite(ctx)
+                .doFinally(signal -> index.loading.set(false))
+                .subscribe(
+                        stored -> {
+                            index.keys.addAll(stored.keys);
+                            index.loadedAt = System.nanoTime();
+                            index.loaded = true;
+
+                            // check: keys missing in the stored index (e.g. new keys or lost by a concurrent update)?
+                            if (!stored.exists || index.keys.size() > stored.keys.size()) {
+                                // yes -> write it back
+                                flush(ctx, bucket, index);
+                            }
+                        },
+                        e -> log.warn("index of metadata in bucket {} not loaded: {}", bucket, e.getMessage()));
+    }
+
+    /**
+     * Writes the index back to the bucket after the flush delay, keys which are added meanwhile are written as well.
+     */
+    private void flush(ContextView ctx, String bucket, BucketIndex index) {
+        if (!index.flushing.compareAndSet(false, true)) {
+            return;
+        }
+
+        Mono.delay(flushDelay)
+                .doOnNext(tick -> index.flushing.set(false))
+                .then(write(bucket, index))
+                .contextWrite(Context.of(ctx))
+                .subscribe(
+                        response -> log.debug("index of metadata in bucket {} stored: {} keys", bucket, index.keys.size()),
+                        e -> log.warn("index of metadata in bucket {} not stored: {}", bucket, e.getMessage()));
+    }
+
+    /**
+     * Merges the stored index, which could contain keys added through other nodes, and writes the result with a
+     * conditional write (if supported), which is retried if the stored index has been changed meanwhile.
+     */
+    private Mono<PutObjectResponse> write(String bucket, BucketIndex index) {
+        return Mono.defer(() -> read(bucket)
+                        .doOnNext(stored -> index.keys.addAll(stored.keys))
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .flatMap(stored -> {
+                            byte[] bytes = index.keys.toBytes();
+
+                            return delegate.upload(bucket, INDEX_KEY, CONTENT_TYPE, (long) bytes.length,
+                                            Flux.defer(() -> Flux.just(ByteBuffer.wrap(bytes))))
+                                    .contextWrite(ctx -> conditions(ctx, stored));
+                        }))
+                .retryWhen(Retry.backoff(MAX_RETRIES, Duration.ofMillis(50)).filter(MetadataIndexS3Repository::isConflict));
+    }
+
+    /**
+     * @return the context of a write of the index, which fails if the stored index has been changed (or created)
+     * meanwhile
+     */
+    private Context conditions(Context ctx, Optional<Stored> stored) {
+        // check: conditional writes supported?
+        if (!conditionalWrites) {
+            // no -> the last write wins
+            return ctx.delete(S3Repository.IF_MATCH).put(S3Repository.CREATE_ONLY, false);
+        }
+
+        // yes -> check: index stored already?
+        String eTag = stored.map(Stored::eTag).orElse(null);
+        return eTag != null
+                // yes -> it must not have been changed meanwhile
+                ? ctx.put(S3Repository.IF_MATCH, eTag).put(S3Repository.CREATE_ONLY, false)
+                // no -> it must not have been created meanwhile (replaced if the ETag is unknown)
+                : ctx.delete(S3Repository.IF_MATCH).put(S3Repository.CREATE_ONLY, stored.isEmpty());
+    }
+
+    /**
+     * @return the stored index or empty if it doesn't exist
+     */
+    private Mono<Stored> read(String bucket) {
+        return delegate.download(bucket, INDEX_KEY)
+                .flatMap(download -> read(download)
+                        .map(bytes -> new Stored(MetadataIndex.parse(bytes), true, download.getETag())))
+                .onErrorResume(NoSuchKeyException.class, e -> Mono.empty());
+    }
+
+    private static boolean isConflict(Throwable e) {
+        return e instanceof S3Exception s3Exception
+                && (s3Exception.statusCode() == 412 || s3Exception.statusCode() == 409);
+    }
+
+    private static Mono<byte[]> read(Download download) {
+        return download.getContent()
+                .reduce(new ByteArrayOutputStream(), (out, buffer) -> {
+                    ByteBuffer source = buffer.duplicate();
+                    byte[] bytes = new byte[source.remaining()];
+                    source.get(bytes);
+                    out.writeBytes(bytes);
+                    return out;
+                })
+                .map(ByteArrayOutputStream::toByteArray);
+    }
+
+    /**
+     * Lists the metadata keys of a bucket, the bucket is crawled in parallel.
+     */
+    private Flux<String> crawl(String bucket) {
+        return crawler.keys(bucket, null, null).filter(S3Repository::isMetadata);
+    }
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("index.metadata.lookups")
+                .description("Metadata requests by whether they were answered from the index")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * The keys of a stored index.
+     *
+     * @param exists false if the index didn't exist and has been rebuilt
+     * @param eTag the ETag of the stored index or null if unknown
+     */
+    private record Stored(List<String> keys, boolean exists, String eTag) {
+    }
+
+    /**
+     * The index of a bucket.
+     */
+    private class BucketIndex {
+        final MetadataIndex keys = new MetadataIndex();
+        final AtomicBoolean loading = new AtomicBoolean();
+        final AtomicBoolean flushing = new AtomicBoolean();
+        volatile boolean loaded;
+        volatile long loadedAt;
+        volatile long attemptedAt = System.nanoTime() - RETRY_DELAY.toNanos();
+
+        boolean isOutdated() {
+            return !loaded
+                    ? System.nanoTime() - attemptedAt >= RETRY_DELAY.toNanos()
+                    : System.nanoTime() - loadedAt > refreshInterval.toNanos();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.j3t.mvnio.storage.limit;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.j3t.mvnio.error.ClientError;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Limits the number of concurrent requests. The limit is adjusted to the observed behaviour of the backend (additive
+ * increase, multiplicative decrease): it grows by one with each successful and fast enough request while the limit is
+ * utilized, and shrinks by a fixed ratio with each request which was throttled, timed out or slower than the latency
+ * threshold.
+ * <p>
+ * Requests which exceed the limit wait in a bounded queue. Requests which find the queue full, or which waited too
+ * long, are rejected with status 503, so that the clients retry later instead of piling up.
+ */
+class AimdLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThreshold;
+    private final int maxQueue;
+    private final Duration maxWait;
+
+    private final Queue<Waiter> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+
+    /**
+     * @param initialLimit the limit to start with
+     * @param maxLimit the upper bound of the limit (e.g. the maximum number of connections to the backend)
+     * @param latencyThreshold requests which take longer are handled like throttled requests
+     * @param maxQueue the maximum number of requests which wait for a permit
+     * @param maxWait the maximum time a request waits for a permit
+     */
+    AimdLimiter(int initialLimit, int maxLimit, Duration latencyThreshold, int maxQueue, Duration maxWait) {
+        this.minLimit = 1;
+        this.maxLimit = maxLimit;
+        this.latencyThreshold = latencyThreshold.toNanos();
+        this.maxQueue = maxQueue;
+        this.maxWait = maxWait;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+    }
+
+    /**
+     * @return a permit, which must be released once the request is done, or a {@link ClientError} with status 503 if
+     * the limit has been reached and the request can't wait
+     */
+    Mono<Permit> acquire() {
+        return acquire(1);
+    }
+
+    /**
+     * @param weight the number of concurrent requests the permit stands for (e.g. the parts of a multipart upload), a
+     *               permit which exceeds the limit is granted if no other permit is in use
+     * @return a permit, which must be released once the requests are done, or a {@link ClientError} with status 503
+     * if the limit has been reached and the requests can't wait
+     */
+    Mono<Permit> acquire(int weight) {
+        return Mono.<Permit>create(sink -> {
+                    Waiter waiter;
+
+                    synchronized (this) {
+                        // waiting requests are served first
+                        if (waiters.isEmpty() && fits(weight)) {
+                            inFlight += weight;
+                            waiter = null;
+                        } else if (waiters.size() < maxQueue) {
+                            waiter = new Waiter(sink, weight);
+                            waiters.add(waiter);
+                        } else {
+                            sink.error(overloaded());
+                            return;
+                        }
+                    }
+
+                    if (waiter == null) {
+                        sink.success(new Permit(weight));
+                    } else {
+                        sink.onCancel(waiter::cancel);
+                    }
+                })
+                .timeout(maxWait, Mono.error(AimdLimiter::overloaded));
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    private synchronized void adjust(boolean dropped, long latency) {
+        if (dropped || latency > latencyThreshold) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    private boolean fits(int weight) {
+        return inFlight == 0 || inFlight + weight <= (int) limit;
+    }
+
+    private void release(int weight) {
+        List<Waiter> granted = new ArrayList<>();
+
+        synchronized (this) {
+            inFlight -= weight;
+
+            while (!waiters.isEmpty() && fits(waiters.peek().weight)) {
+                Waiter waiter = waiters.poll();
+                if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED)) {
+                    inFlight += waiter.weight;
+                    granted.add(waiter);
+                }
+            }
+        }
+
+        // the waiters are resumed outside the lock, because they proceed with their request immediately
+        granted.forEach(waiter -> waiter.sink.success(new Permit(waiter.weight)));
+    }
+
+    private synchronized void remove(Waiter waiter) {
+        waiters.remove(waiter);
+    }
+
+    private static ClientError overloaded() {
+        return new ClientError(503, "Too many concurrent requests, try again later", false);
+    }
+
+    /**
+     * Grants a request to be executed. The outcome of the request adjusts the limit (once at most), the permit must be
+     * released exactly once, further calls are ignored.
+     */
+    class Permit {
+        private final long start = System.nanoTime();
+        private final int weight;
+        private final AtomicBoolean sampled = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * Adjusts the limit by the latency of the request (e.g. once the response has been received).
+         */
+        void success() {
+            if (sampled.compareAndSet(false, true)) {
+                adjust(false, System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Reduces the limit because the backend was overloaded.
+         */
+        void dropped() {
+            if (sampled.compareAndSet(false, true)) {
+                adjust(true, System.nanoTime() - start);
+            }
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                AimdLimiter.this.release(weight);
+            }
+        }
+    }
+
+    private class Waiter {
+        static final int WAITING = 0;
+        static final int GRANTED = 1;
+        static final int CANCELLED = 2;
+
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        final MonoSink<Permit> sink;
+        final int weight;
+
+        Waiter(MonoSink<Permit> sink, int weight) {
+            this.sink = sink;
+            this.weight = weight;
+        }
+
+        void cancel() {
+            if (state.compareAndSet(WAITING, CANCELLED)) {
+                remove(this);
+                // the waiters behind it may fit now
+                release(0);
+            } else {
+                // the permit was granted concurrently, but it isn't used
+                release(weight);
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.github.j3t.mvnio.storage.limit;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.reactivestreams.Publisher;
+
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.Page;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.S3RepositoryDecorator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Limits the number of concurrent S3 requests adaptively (see {@link AimdLimiter}), so that a burst of requests is
+ * shed early with status 503 and Retry-After instead of being queued inside the S3 client until it times out.
+ * <p>
+ * The latency of HEAD and GET requests (until the response headers are received) drives the limit, as well as
+ * throttled (SlowDown) and timed out requests of any kind. A download holds its permit until the content has been
+ * transferred (or until a timeout, if the content is never requested), an upload until it is complete. A multipart
+ * upload counts as many requests as it uploads parts at the same time. Listings are requested page by page, each page
+ * request holds a permit of its own, so that a long listing doesn't hold a permit while its consumer is slow.
+ */
+public class ConcurrencyLimitS3Repository extends S3RepositoryDecorator implements MeterBinder {
+
+    private final AimdLimiter limiter;
+    private final long multipartThreshold;
+    private final int multipartParallelism;
+    private final Duration unclaimedTimeout;
+    private final int listPageSize;
+
+    private Counter rejections;
+
+    /**
+     * @param delegate the repository to limit the requests of
+     * @param initialLimit the number of concurrent requests to start with
+     * @param maxLimit the maximum number of concurrent requests (e.g. the size of the connection pool)
+     * @param latencyThreshold HEAD and GET requests which take longer reduce the limit
+     * @param maxQueue the maximum number of requests which wait for a permit
+     * @param maxWait the maximum time a request waits for a permit
+     * @param multipartThreshold uploads larger than this (or of unknown size) are uploaded in parts
+     * @param multipartParallelism the maximum number of parts which are uploaded at the same time per upload
+     * @param unclaimedTimeout how long a download holds its permit at most if its content is not requested
+     * @param listPageSize the number of keys requested per list request
+     */
+    public ConcurrencyLimitS3Repository(S3Repository delegate,
+                                        int initialLimit,
+                                        int maxLimit,
+                                        Duration latencyThreshold,
+                                        int maxQueue,
+                                        Duration maxWait,
+                                        long multipartThreshold,
+                                        int multipartParallelism,
+                                        Duration unclaimedTimeout,
+                                        int listPageSize) {
+        super(delegate);
+        this.limiter = new AimdLimiter(initialLimit, maxLimit, latencyThreshold, maxQueue, maxWait);
+        this.multipartThreshold = multipartThreshold;
+        this.multipartParallelism = Math.max(multipartParallelism, 1);
+        this.unclaimedTimeout = unclaimedTimeout;
+        this.listPageSize = listPageSize;
+    }
+
+    @Override
+    public Mono<Download> download(@NonNull String bucket, @NonNull String key, String range) {
+        return limiter.acquire()
+                .doOnError(this::rejected)
+                .flatMap(permit -> delegate.download(bucket, key, range)
+                        .doOnError(e -> {
+                            failed(permit, e);
+                            permit.release();
+                        })
+                        .doOnCancel(permit::release)
+                        // the response headers have been received, the transfer of the content takes as long as the
+                        // client needs, so it isn't taken into account, but the connection is in use until it is done
+                        .doOnNext(download -> permit.success())
+                        .map(download -> {
+                            // the permit is released once, by whichever comes first
+                            Disposable unclaimed = Schedulers.parallel()
+                                    .schedule(permit::release, unclaimedTimeout.toMillis(), TimeUnit.MILLISECONDS);
+
+                            return download.toBuilder()
+                                    .content(Flux.defer(() -> {
+                                                unclaimed.dispose();
+                                                return download.getContent();
+                                            })
+                                            .doOnError(e -> failed(permit, e))
+                                            .doFinally(signal -> permit.release()))
+                                    .build();
+                        }));
+    }
+
+    @Override
+    public Mono<PutObjectResponse> upload(@NonNull String bucket,
+                                          @NonNull String key,
+                                          @NonNull String contentType,
+                                          Long contentLength,
+                                          @NonNull Publisher<ByteBuffer> file) {
+        // a multipart upload uses a connection per part which is uploaded at the same time
+        int weight = contentLength == null || contentLength > multipartThreshold ? multipartParallelism : 1;
+
+        // the duration of an upload depends on the client, so only failures are taken into account
+        return limit(() -> delegate.upload(bucket, key, contentType, contentLength, file), weight, false);
+    }
+
+    @Override
+    public Mono<HeadObjectResponse> head(@NonNull String bucket, @NonNull String key) {
+        return limit(() -> delegate.head(bucket, key), true);
+    }
+
+    @Override
+    public Mono<Boolean> exists(@NonNull String bucket, @NonNull String key) {
+        return limit(() -> delegate.exists(bucket, key), true);
+    }
+
+    /**
+     * Lists the metadata files page by page (see {@link #keys(String, String, String)}), as the S3 client does.
+     */
+    @Override
+    public Flux<String> metadata(@NonNull String bucket, String startAfter, int limit) {
+        return keys(bucket, null, startAfter)
+                .filter(S3Repository::isMetadata)
+                .take(limit)
+                .map(key -> "/" + key);
+    }
+
+    @Override
+    public Flux<String> list(@NonNull String bucket, @NonNull String path) {
+        return list(bucket, path, null, listPageSize)
+                .expand(page -> page.continuationToken() != null
+                        ? list(bucket, path, page.continuationToken(), listPageSize)
+                        : Mono.empty())
+                // the next page is requested once the entries of the previous one are consumed
+                .concatMapIterable(Page::entries, 1);
+    }
+
+    @Override
+    public Mono<Page> list(@NonNull String bucket, @NonNull String path, String continuationToken, int limit) {
+        return limit(() -> delegate.list(bucket, path, continuationToken, limit), false);
+    }
+
+    @Override
+    public Flux<String> keys(@NonNull String bucket, String prefix, String startAfter) {
+        return keys(bucket, prefix, startAfter, listPageSize)
+                .expand(keys -> keys.size() < listPageSize
+                        ? Mono.empty()
+                        : keys(bucket, prefix, keys.get(keys.size() - 1), listPageSize))
+                // the next page is requested once the keys of the previous one are consumed
+                .concatMapIterable(keys -> keys, 1);
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Gauge.builder("s3.limiter.limit", limiter, AimdLimiter::getLimit)
+                .description("The current limit of concurrent S3 requests")
+                .register(registry);
+        Gauge.builder("s3.limiter.in-flight", limiter, AimdLimiter::getInFlight)
+                .description("The number of S3 requests in progress")
+                .register(registry);
+        Gauge.builder("s3.limiter.queue", limiter, AimdLimiter::getQueued)
+                .description("The number of S3 requests waiting for a permit")
+                .register(registry);
+        rejections = Counter.builder("s3.limiter.rejections")
+                .description("Requests which were rejected because the limit of concurrent S3 requests was reached")
+                .register(registry);
+    }
+
+    private <T> Mono<T> limit(Supplier<Mono<T>> request, boolean sampleLatency) {
+        return limit(request, 1, sampleLatency);
+    }
+
+    private <T> Mono<T> limit(Supplier<Mono<T>> request, int weight, boolean sampleLatency) {
+        return limiter.acquire(weight)
+                .doOnError(this::rejected)
+                .flatMap(permit -> request.get()
+                        .doOnError(e -> failed(permit, e))
+                        .doOnSuccess(result -> {
+                            if (sampleLatency) {
+                                permit.success();
+                            }
+                        })
+                        .doFinally(signal -> permit.release()));
+    }
+
+    /**
+     * @return a page of the keys, the listing is cancelled once the page is complete, so that it takes a single request
+     */
+    private Mono<List<String>> keys(String bucket, String prefix, String startAfter, int limit) {
+        return limit(() -> delegate.keys(bucket, prefix, startAfter).take(limit).collectList(), false);
+    }
+
+    private void rejected(Throwable e) {
+        if (rejections != null && e instanceof ClientError) {
+            rejections.increment();
+        }
+    }
+
+    private static void failed(AimdLimiter.Permit permit, Throwable e) {
+        if (isOverloaded(e)) {
+            permit.dropped();
+        }
+    }
+
+    /**
+     * @return true if the error indicates that S3 is overloaded (throttled or timed out)
+     */
+    private static boolean isOverloaded(Throwable e) {
+        return e instanceof S3Exception s3Exception && s3Exception.statusCode() == 503
+                || e instanceof ApiCallTimeoutException
+                || e instanceof ApiCallAttemptTimeoutException
+                || e instanceof TimeoutException;
+    }
+}
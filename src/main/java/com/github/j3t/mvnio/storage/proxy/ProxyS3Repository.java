@@ -0,0 +1,306 @@
+package com.github.j3t.mvnio.storage.proxy;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.S3RepositoryDecorator;
+import com.github.j3t.mvnio.storage.cache.Keys;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquirePendingLimitException;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquireTimeoutException;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+/**
+ * Turns buckets into pull-through proxies of upstream Maven repositories (e.g. Maven Central). Objects which don't
+ * exist in such a bucket are requested from its upstream repository:
+ * <ul>
+ *     <li>the content is streamed to the client and stored in the bucket at the same time, so that the next request is
+ *     answered by the bucket</li>
+ *     <li>concurrent requests of the same object fetch it once, the others wait until it is stored (or fetch it
+ *     themselves if that takes too long)</li>
+ *     <li>mutable objects (metadata and snapshots) and partial downloads are passed through without storing them, so
+ *     that they are always up-to-date</li>
+ * </ul>
+ * The objects are stored with the credentials of the client which requested them first.
+ */
+@Slf4j
+public class ProxyS3Repository extends S3RepositoryDecorator implements MeterBinder {
+
+    private final Map<String, URI> upstreams;
+    private final WebClient webClient;
+    private final Duration timeout;
+    private final Duration unclaimedTimeout;
+    private final Map<String, Mono<Void>> fetches = new ConcurrentHashMap<>();
+
+    private Counter found;
+    private Counter missing;
+    private Counter stored;
+
+    /**
+     * @param delegate the repository which stores the objects
+     * @param upstreams the upstream repositories (e.g. https://repo1.maven.org/maven2) by bucket
+     * @param maxConnections the maximum number of connections to the upstream repositories
+     * @param timeout how long to wait for the response of an upstream repository and for a fetch of another client
+     * @param unclaimedTimeout how long to wait for a client to read a fetched object before it's stored without it
+     */
+    public ProxyS3Repository(S3Repository delegate, Map<String, URI> upstreams, int maxConnections, Duration timeout,
+                             Duration unclaimedTimeout) {
+        super(delegate);
+        this.upstreams = upstreams;
+        this.timeout = timeout;
+        this.unclaimedTimeout = unclaimedTimeout;
+
+        ConnectionProvider connections = ConnectionProvider.builder("upstream")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(maxConnections * 4)
+                .pendingAcquireTimeout(timeout)
+                .build();
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)
+                        .followRedirect(true)
+                        .responseTimeout(timeout)))
+                .build();
+    }
+
+    @Override
+    public Mono<Download> download(@NonNull String bucket, @NonNull String key, String range) {
+        URI upstream = upstreams.get(bucket);
+        if (upstream == null) {
+            return delegate.download(bucket, key, range);
+        }
+
+        return delegate.download(bucket, key, range)
+                .onErrorResume(NoSuchKeyException.class, e -> Mono.deferContextual(ctx -> fetch(ctx, bucket, key, range, upstream)));
+    }
+
+    @Override
+    public Mono<HeadObjectResponse> head(@NonNull String bucket, @NonNull String key) {
+        URI upstream = upstreams.get(bucket);
+        if (upstream == null) {
+            return delegate.head(bucket, key);
+        }
+
+        return delegate.head(bucket, key)
+                .onErrorResume(NoSuchKeyException.class, e -> webClient.head()
+                        .uri(url(upstream, key))
+                        .retrieve()
+                        .toBodilessEntity()
+                        .map(response -> toHeadObjectResponse(response.getHeaders()))
+                        .onErrorMap(ProxyS3Repository::toStorageError));
+    }
+
+    @Override
+    public Mono<Boolean> exists(@NonNull String bucket, @NonNull String key) {
+        // an object of the upstream repository exists as well, as it is fetched on the first download
+        return upstreams.containsKey(bucket)
+                ? head(bucket, key).thenReturn(true).onErrorReturn(NoSuchKeyException.class, false)
+                : delegate.exists(bucket, key);
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        found = fetches(registry, "found");
+        missing = fetches(registry, "missing");
+        stored = Counter.builder("proxy.stored")
+                .description("Objects which have been fetched from an upstream repository and stored in the bucket")
+                .register(registry);
+    }
+
+    private Mono<Download> fetch(ContextView ctx, String bucket, String key, String range, URI upstream) {
+        // check: object to be stored?
+        if (range != null || !Keys.isImmutable(key)) {
+            // no -> pass it through
+            return get(upstream, key, range);
+        }
+
+        // yes -> check: fetched by another client already?
+        String cacheKey = Keys.cacheKey(bucket, key);
+        Sinks.Empty<Void> done = Sinks.empty();
+        Mono<Void> stored = done.asMono();
+        Mono<Void> fetch = fetches.putIfAbsent(cacheKey, stored);
+
+        if (fetch != null) {
+            // yes -> wait until it's stored (or not) and download it from the bucket (or upstream)
+            return fetch
+                    .timeout(timeout, Mono.empty())
+                    .onErrorResume(e -> Mono.empty())
+                    .then(Mono.defer(() -> delegate.download(bucket, key, null)))
+                    .onErrorResume(NoSuchKeyException.class, e -> get(upstream, key, null));
+        }
+
+        // no -> fetch it and store it while it's sent to the client
+        Runnable finished = () -> {
+            fetches.remove(cacheKey, stored);
+            done.tryEmitEmpty();
+        };
+        AtomicBoolean storing = new AtomicBoolean();
+
+        return get(upstream, key, null)
+                .map(download -> {
+                    storing.set(true);
+                    return store(ctx, bucket, key, download, finished);
+                })
+                // not fetched or the client went away before -> nothing to wait for
+                .doFinally(signal -> {
+                    if (!storing.get()) {
+                        finished.run();
+                    }
+                });
+    }
+
+    /**
+     * Uploads the content of a download to the bucket while it is sent to the client. The content is transferred at
+     * the pace of the slower one, a client which aborts the download doesn't abort the upload. A client which doesn't
+     * read the content in time (e.g. it went away meanwhile) doesn't get it anymore, it's uploaded anyway.
+     */
+    private Download store(ContextView ctx, String bucket, String key, Download download, Runnable onFinished) {
+        Flux<ByteBuffer> shared = download.getContent().publish().autoConnect(2);
+        Long contentLength = download.getContentLength() >= 0 ? download.getContentLength() : null;
+
+        AtomicBoolean claimed = new AtomicBoolean();
+        Disposable unclaimed = Schedulers.parallel().schedule(() -> {
+            if (claimed.compareAndSet(false, true)) {
+                // takes the place of the client, the buffers are dropped (the upload reports errors)
+                shared.subscribe(buffer -> { }, e -> { });
+            }
+        }, unclaimedTimeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        delegate.upload(bucket, key, download.getContentType(), contentLength, shared)
+                .contextWrite(Context.of(ctx).put(S3Repository.CREATE_ONLY, false))
+                .doFinally(signal -> onFinished.run())
+                .subscribe(
+                        response -> increment(stored),
+                        e -> log.warn("{}/{} not stored: {}", bucket, key, e.getMessage()));
+
+        Flux<ByteBuffer> content = Flux.defer(() -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return Flux.error(new IllegalStateException("Content of " + bucket + "/" + key + " has not been read in time"));
+            }
+
+            unclaimed.dispose();
+            return shared;
+        });
+
+        return download.toBuilder().content(content).build();
+    }
+
+    private Mono<Download> get(URI upstream, String key, String range) {
+        return webClient.get()
+                .uri(url(upstream, key))
+                .headers(headers -> {
+                    if (range != null) {
+                        headers.set(HttpHeaders.RANGE, range);
+                    }
+                })
+                .retrieve()
+                .toEntityFlux(DataBuffer.class)
+                .map(this::toDownload)
+                .doOnNext(download -> increment(found))
+                .onErrorMap(ProxyS3Repository::toStorageError)
+                .doOnError(NoSuchKeyException.class, e -> increment(missing));
+    }
+
+    private Download toDownload(ResponseEntity<Flux<DataBuffer>> response) {
+        HttpHeaders headers = response.getHeaders();
+        Flux<ByteBuffer> content = response.getBody() == null ? Flux.empty() : response.getBody().map(buffer -> {
+            // the buffer is released, the content could be kept longer (e.g. until it's uploaded)
+            ByteBuffer copy = ByteBuffer.allocate(buffer.readableByteCount());
+            buffer.toByteBuffer(copy);
+            DataBufferUtils.release(buffer);
+            return copy;
+        });
+
+        return Download.builder()
+                .content(content)
+                .contentType(contentType(headers))
+                .contentLength(headers.getContentLength())
+                .contentRange(headers.getFirst(HttpHeaders.CONTENT_RANGE))
+                .eTag(headers.getETag())
+                .lastModified(headers.getLastModified() >= 0 ? Instant.ofEpochMilli(headers.getLastModified()) : null)
+                .build();
+    }
+
+    private static HeadObjectResponse toHeadObjectResponse(HttpHeaders headers) {
+        return HeadObjectResponse.builder()
+                .contentType(contentType(headers))
+                // the length could be unknown (e.g. a chunked response)
+                .contentLength(headers.getContentLength() >= 0 ? headers.getContentLength() : null)
+                .eTag(headers.getETag())
+                .lastModified(headers.getLastModified() >= 0 ? Instant.ofEpochMilli(headers.getLastModified()) : null)
+                .build();
+    }
+
+    private static String contentType(HttpHeaders headers) {
+        return headers.getContentType() != null ? headers.getContentType().toString() : "application/octet-stream";
+    }
+
+    private static URI url(URI upstream, String key) {
+        String base = upstream.toString();
+        return URI.create(base.endsWith("/") ? base + key : base + "/" + key);
+    }
+
+    /**
+     * Maps the errors of an upstream repository to the ones of S3, so that they are handled like them.
+     */
+    private static Throwable toStorageError(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().value() == HttpStatus.NOT_FOUND.value()
+                    || response.getStatusCode().value() == HttpStatus.GONE.value()
+                    ? NoSuchKeyException.builder().message("Not found upstream").build()
+                    : new ClientError(HttpStatus.BAD_GATEWAY.value(), "Upstream repository failed: " + response.getStatusCode().value());
+        }
+
+        // all connections are in use and too many requests are waiting for one
+        if (e instanceof PoolAcquirePendingLimitException || e instanceof PoolAcquireTimeoutException) {
+            return new ClientError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Upstream repository busy", false);
+        }
+
+        return e;
+    }
+
+    private static Counter fetches(MeterRegistry registry, String result) {
+        return Counter.builder("proxy.fetches")
+                .description("Objects which have been requested from an upstream repository")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.j3t.mvnio.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.j3t.mvnio.error.ClientError;
+
+class BundleTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testTarEntries() throws Exception {
+        // GIVEN
+        String longName = "bar-1.0-" + "x".repeat(120) + ".jar";
+        var tar = new ByteArrayOutputStream();
+        entry(tar, "./", '5', new byte[0]);
+        entry(tar, "./bar-1.0.pom", '0', "<project/>".getBytes(UTF_8));
+        entry(tar, "././@LongLink", 'L', (longName + "\0").getBytes(UTF_8));
+        entry(tar, longName.substring(0, 99), '0', "jar ".repeat(50_000).getBytes(UTF_8));
+        tar.write(new byte[1024]);
+        Path file = Files.write(tempDir.resolve("bundle.tar"), tar.toByteArray());
+
+        // WHEN
+        List<Bundle.Entry> entries = Bundle.tar(file, 10);
+
+        // THEN
+        assertThat(entries).extracting(Bundle.Entry::name).containsExactly("bar-1.0.pom", longName);
+        assertThat(entries).extracting(Bundle.Entry::contentLength).containsExactly(10L, 200_000L);
+        assertThat(content(entries.get(0))).isEqualTo("<project/>");
+        assertThat(content(entries.get(1))).isEqualTo("jar ".repeat(50_000));
+    }
+
+    @Test
+    void testTruncatedTar() throws Exception {
+        // GIVEN
+        var tar = new ByteArrayOutputStream();
+        entry(tar, "bar-1.0.pom", '0', "<project/>".getBytes(UTF_8));
+        Path file = Files.write(tempDir.resolve("bundle.tar"), tar.toByteArray());
+
+        // WHEN / THEN
+        assertThatThrownBy(() -> Bundle.tar(file, 10)).isInstanceOf(ClientError.class).hasMessage("Bundle is truncated");
+    }
+
+    @Test
+    void testTarWithTooManyFiles() throws Exception {
+        // GIVEN
+        var tar = new ByteArrayOutputStream();
+        entry(tar, "bar-1.0.pom", '0', "<project/>".getBytes(UTF_8));
+        entry(tar, "bar-1.0.jar", '0', "jar".getBytes(UTF_8));
+        tar.write(new byte[1024]);
+        Path file = Files.write(tempDir.resolve("bundle.tar"), tar.toByteArray());
+
+        // WHEN / THEN
+        assertThatThrownBy(() -> Bundle.tar(file, 1)).isInstanceOf(ClientError.class).hasMessage("Bundle has too many files");
+    }
+
+    private static void entry(ByteArrayOutputStream tar, String name, char type, byte[] content) {
+        byte[] header = new byte[512];
+        System.arraycopy(name.getBytes(UTF_8), 0, header, 0, name.length());
+        byte[] size = String.format("%011o", content.length).getBytes(UTF_8);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\0".getBytes(UTF_8), 0, header, 257, 6);
+
+        tar.writeBytes(header);
+        tar.writeBytes(content);
+        tar.writeBytes(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private static String content(Bundle.Entry entry) {
+        return entry.content()
+                .map(ByteBuffer::duplicate)
+                .map(buffer -> UTF_8.decode(buffer).toString())
+                .reduce(String::concat)
+                .block();
+    }
+}
@@ -0,0 +1,224 @@
+package com.github.j3t.mvnio.maven;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+class GroupResolverTest {
+
+    static final String JAR = "foo/bar/1.0/bar-1.0.jar";
+
+    S3Repository s3;
+    GroupResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+        when(s3.exists(any(), any())).thenReturn(Mono.just(false));
+
+        resolver = new GroupResolver(s3,
+                Map.of("public", List.of("releases", "snapshots", "central")),
+                Duration.ofMinutes(1),
+                100);
+    }
+
+    @Test
+    void testHighestPriorityMemberWins() {
+        // GIVEN the lower priority member answers first
+        when(s3.exists("snapshots", JAR)).thenReturn(Mono.just(true).delayElement(Duration.ofMillis(100)));
+        when(s3.exists("central", JAR)).thenReturn(Mono.just(true));
+
+        // WHEN
+        StepVerifier.create(resolver.resolve("public", JAR))
+
+                // THEN
+                .expectNext("snapshots")
+                .verifyComplete();
+    }
+
+    @Test
+    void testMemberIsNotRememberedIfMemberIsSkipped() {
+        // GIVEN
+        when(s3.exists("releases", JAR)).thenReturn(Mono.error(S3Exception.builder()
+                .statusCode(403)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("InvalidAccessKeyId").build())
+                .build()));
+        when(s3.exists("snapshots", JAR)).thenReturn(Mono.just(true));
+        resolver.resolve("public", JAR).block();
+
+        // WHEN
+        resolver.resolve("public", JAR).block();
+
+        // THEN
+        verify(s3, times(2)).exists("releases", JAR);
+    }
+
+    @Test
+    void testUnavailableMemberFails() {
+        // GIVEN
+        when(s3.exists("releases", JAR)).thenReturn(Mono.error(S3Exception.builder().statusCode(503).build()));
+        when(s3.exists("snapshots", JAR)).thenReturn(Mono.just(true));
+
+        // WHEN
+        StepVerifier.create(resolver.resolve("public", JAR))
+
+                // THEN
+                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(S3Exception.class))
+                .verify();
+    }
+
+    @Test
+    void testLosingRequestsAreCancelled() {
+        // GIVEN
+        var cancelled = new AtomicBoolean();
+        when(s3.exists("releases", JAR)).thenReturn(Mono.just(true).delayElement(Duration.ofMillis(50)));
+        when(s3.exists("central", JAR)).thenReturn(Mono.<Boolean>never().doOnCancel(() -> cancelled.set(true)));
+
+        // WHEN
+        StepVerifier.create(resolver.resolve("public", JAR))
+
+                // THEN
+                .expectNext("releases")
+                .verifyComplete();
+        assertThat(cancelled).isTrue();
+    }
+
+    @Test
+    void testMemberOfImmutableObjectIsRemembered() {
+        // GIVEN
+        when(s3.exists("central", JAR)).thenReturn(Mono.just(true));
+        resolver.resolve("public", JAR).block();
+
+        // WHEN
+        StepVerifier.create(resolver.resolve("public", JAR))
+
+                // THEN
+                .expectNext("central")
+                .verifyComplete();
+        verify(s3, times(1)).exists("releases", JAR);
+    }
+
+    @Test
+    void testMemberIsRememberedPerClient() {
+        // GIVEN
+        when(s3.exists("central", JAR)).thenReturn(Mono.just(true));
+        resolver.resolve("public", JAR).contextWrite(credentials("user")).block();
+
+        // WHEN
+        StepVerifier.create(resolver.resolve("public", JAR).contextWrite(credentials("other-user")))
+
+                // THEN
+                .expectNext("central")
+                .verifyComplete();
+        verify(s3, times(2)).exists("releases", JAR);
+    }
+
+    @Test
+    void testMissingObjectIsConfirmed() {
+        // GIVEN
+        var confirmed = new AtomicBoolean();
+        when(s3.exists("releases", JAR)).thenReturn(Mono.deferContextual(ctx -> {
+            confirmed.set(ctx.getOrDefault(S3Repository.CONFIRM_MISSING, false));
+            return Mono.just(false);
+        }));
+
+        // WHEN
+        resolver.resolve("public", JAR).onErrorResume(e -> Mono.empty()).block();
+
+        // THEN
+        assertThat(confirmed).isTrue();
+    }
+
+    @Test
+    void testMemberOfMetadataIsNotRemembered() {
+        // GIVEN
+        when(s3.exists("releases", "foo/bar/maven-metadata.xml")).thenReturn(Mono.just(true));
+        resolver.resolve("public", "foo/bar/maven-metadata.xml").block();
+
+        // WHEN
+        resolver.resolve("public", "foo/bar/maven-metadata.xml").block();
+
+        // THEN
+        verify(s3, times(2)).exists("releases", "foo/bar/maven-metadata.xml");
+    }
+
+    @Test
+    void testNotFoundInAnyMember() {
+        // WHEN
+        StepVerifier.create(resolver.resolve("public", JAR))
+
+                // THEN
+                .expectError(NoSuchKeyException.class)
+                .verify();
+    }
+
+    @Test
+    void testDeniedMemberIsSkipped() {
+        // GIVEN
+        when(s3.exists("releases", JAR)).thenReturn(Mono.error(new ClientError(403, "Access Denied")));
+        when(s3.exists("snapshots", JAR)).thenReturn(Mono.just(true));
+
+        // WHEN
+        StepVerifier.create(resolver.resolve("public", JAR))
+
+                // THEN
+                .expectNext("snapshots")
+                .verifyComplete();
+    }
+
+    @Test
+    void testRememberedMemberIsInvalidated() {
+        // GIVEN
+        when(s3.exists("central", JAR)).thenReturn(Mono.just(true));
+        resolver.resolve("public", JAR).contextWrite(credentials("user")).block();
+        resolver.resolve("public", JAR).contextWrite(credentials("other-user")).block();
+
+        // WHEN
+        resolver.invalidate("public", JAR);
+        resolver.resolve("public", JAR).contextWrite(credentials("user")).block();
+
+        // THEN
+        verify(s3, times(3)).exists("releases", JAR);
+    }
+
+    @Test
+    void testUnknownGroup() {
+        // WHEN
+        StepVerifier.create(resolver.resolve("other", JAR))
+
+                // THEN
+                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(ClientError.class).hasMessage("Group not found"))
+                .verify();
+        verify(s3, never()).exists(any(), any());
+    }
+
+    private static Context credentials(String username) {
+        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create(username, "secret");
+        return Context.of(S3_CREDENTIALS_PROVIDER, credentialsProvider);
+    }
+}
@@ -0,0 +1,744 @@
+package com.github.j3t.mvnio.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import com.github.j3t.mvnio.AppProperties;
+import com.github.j3t.mvnio.error.ErrorHandler;
+import com.github.j3t.mvnio.maven.metadata.MetadataUpdater;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.Page;
+import com.github.j3t.mvnio.storage.S3Repository;
+import com.github.j3t.mvnio.storage.checksum.ChecksumS3Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Checks the HTTP semantics of the {@link RepositoryController} with a mocked {@link S3Repository}. The interaction
+ * with a real S3 storage is covered by {@link com.github.j3t.mvnio.AppTests}.
+ */
+class RepositoryControllerTest {
+
+    static final String CONTENT = "<abc></abc>";
+    static final String ETAG = "\"0a1b2c\"";
+    static final Instant LAST_MODIFIED = Instant.parse("2020-10-23T14:25:12Z");
+
+    S3Repository s3;
+    AppProperties appProperties;
+
+    WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+
+        when(s3.head(any(), any())).thenReturn(Mono.just(HeadObjectResponse.builder()
+                .contentType("application/xml")
+                .contentLength((long) CONTENT.length())
+                .eTag(ETAG)
+                .lastModified(LAST_MODIFIED)
+                .build()));
+
+        when(s3.download(any(), any())).thenAnswer(invocation -> Mono.just(Download.builder()
+                .content(Flux.just(ByteBuffer.wrap(CONTENT.getBytes(UTF_8))))
+                .contentType("application/xml")
+                .contentLength(CONTENT.length())
+                .eTag(ETAG)
+                .lastModified(LAST_MODIFIED)
+                .build()));
+
+        appProperties = new AppProperties();
+        appProperties.setS3ListPageSize(2);
+        appProperties.setMavenBundleConcurrency(4);
+        appProperties.setMavenBundleMaxSize(DataSize.ofMegabytes(1));
+        appProperties.setMavenBundleMaxFiles(10);
+        appProperties.setMavenArchiveParallelism(2);
+        appProperties.setMavenArchiveMaxFiles(10);
+
+        webTestClient = WebTestClient.bindToController(new RepositoryController(s3, appProperties, new MetadataUpdater(s3, 5, true, true),
+                        new GroupResolver(s3, Map.of("public", List.of("releases", "snapshots")), Duration.ofMinutes(1), 100)))
+                .controllerAdvice(new ErrorHandler())
+                .build();
+    }
+
+    @Test
+    void testDownloadReturnsValidators() {
+        // WHEN
+        webTestClient.get()
+                .uri("/maven/releases/foo/bar/maven-metadata.xml")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", ETAG)
+                .expectHeader().lastModified(LAST_MODIFIED.toEpochMilli())
+                .expectBody(String.class).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void testIfNoneMatchNotModified() {
+        // WHEN
+        webTestClient.get()
+                .uri("/maven/releases/foo/bar/maven-metadata.xml")
+                .ifNoneMatch(ETAG)
+                .exchange()
+
+                // THEN
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("ETag", ETAG)
+                .expectBody().isEmpty();
+
+        verify(s3, never()).download(any(), any());
+    }
+
+    @Test
+    void testIfNoneMatchModified() {
+        // WHEN
+        webTestClient.get()
+                .uri("/maven/releases/foo/bar/maven-metadata.xml")
+                .ifNoneMatch("\"other\"")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void testIfModifiedSinceNotModified() {
+        // WHEN
+        webTestClient.get()
+                .uri("/maven/releases/foo/bar/maven-metadata.xml")
+                .ifModifiedSince(ZonedDateTime.ofInstant(LAST_MODIFIED, ZoneOffset.UTC))
+                .exchange()
+
+                // THEN
+                .expectStatus().isNotModified();
+
+        verify(s3, never()).download(any(), any());
+    }
+
+    @Test
+    void testIfModifiedSinceModified() {
+        // WHEN
+        webTestClient.get()
+                .uri("/maven/releases/foo/bar/maven-metadata.xml")
+                .ifModifiedSince(ZonedDateTime.ofInstant(LAST_MODIFIED.minusSeconds(60), ZoneOffset.UTC))
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void testRangeReturnsPartialContent() {
+        // GIVEN
+        when(s3.download(any(), any(), any())).thenReturn(Mono.just(Download.builder()
+                .content(Flux.just(ByteBuffer.wrap(CONTENT.substring(0, 5).getBytes(UTF_8))))
+                .contentType("application/xml")
+                .contentLength(5)
+                .contentRange("bytes 0-4/" + CONTENT.length())
+                .eTag(ETAG)
+                .build()));
+
+        // WHEN
+        webTestClient.get()
+                .uri("/maven/releases/foo/bar/1.0.1/bar-1.0.1.pom")
+                .header("Range", "bytes=0-4")
+                .exchange()
+
+                // THEN
+                .expectStatus().isEqualTo(206)
+                .expectHeader().valueEquals("Content-Range", "bytes 0-4/" + CONTENT.length())
+                .expectHeader().contentLength(5)
+                .expectBody(String.class).isEqualTo(CONTENT.substring(0, 5));
+
+        verify(s3).download("releases", "foo/bar/1.0.1/bar-1.0.1.pom", "bytes=0-4");
+        verify(s3, never()).head(any(), any());
+    }
+
+    @Test
+    void testMultipleRangesReturnMultipartByteranges() {
+        // GIVEN
+        when(s3.download(any(), any(), any())).thenAnswer(invocation -> {
+            String[] range = invocation.getArgument(2, String.class).substring(6).split("-");
+            String part = CONTENT.substring(Integer.parseInt(range[0]), Integer.parseInt(range[1]) + 1);
+            return Mono.just(Download.builder()
+                    .content(Flux.just(ByteBuffer.wrap(part.getBytes(UTF_8))))
+                    .contentLength(part.length())
+                    .build());
+        });
+
+        // WHEN
+        String body = webTestClient.get()
+                .uri("/maven/releases/foo/bar/1.0.1/bar-1.0.1.pom")
+                .header("Range", "bytes=0-0,-2")
+                .exchange()
+
+                // THEN
+                .expectStatus().isEqualTo(206)
+                .expectHeader().contentTypeCompatibleWith("multipart/byteranges")
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        assertThat(body)
+                .contains("Content-Range: bytes 0-0/11\r\n\r\n<\r\n")
+                .contains("Content-Range: bytes 9-10/11\r\n\r\nc>\r\n");
+    }
+
+    @Test
+    void testMultipleRangesOfUnknownLengthReturnWholeArtifact() {
+        // GIVEN (e.g. fetched from an upstream repository without Content-Length)
+        when(s3.head(any(), any())).thenReturn(Mono.just(HeadObjectResponse.builder()
+                .contentType("application/xml")
+                .build()));
+
+        // WHEN
+        webTestClient.get()
+                .uri("/maven/releases/foo/bar/1.0.1/bar-1.0.1.pom")
+                .header("Range", "bytes=0-0,-2")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(CONTENT);
+
+        verify(s3, never()).download(any(), any(), any());
+    }
+
+    @Test
+    void testTooManyRangesReturnWholeArtifact() {
+        // WHEN
+        webTestClient.get()
+                .uri("/maven/releases/foo/bar/1.0.1/bar-1.0.1.pom")
+                .header("Range", "bytes=0-0,1-1,2-2,3-3,4-4,5-5,6-6,7-7,8-8")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(CONTENT);
+
+        verify(s3, never()).download(any(), any(), any());
+    }
+
+    @Test
+    void testIfRangeMismatchReturnsWholeArtifact() {
+        // WHEN
+        webTestClient.get()
+                .uri("/maven/releases/foo/bar/1.0.1/bar-1.0.1.pom")
+                .header("Range", "bytes=0-4")
+                .header("If-Range", "\"other\"")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(CONTENT);
+
+        verify(s3, never()).download(any(), any(), any());
+    }
+
+    @Test
+    void testHeadUsesHeadObject() {
+        // WHEN
+        webTestClient.head()
+                .uri("/maven/releases/foo/bar/1.0.1/bar-1.0.1.pom")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/xml")
+                .expectHeader().contentLength(CONTENT.length())
+                .expectHeader().valueEquals("ETag", ETAG)
+                .expectHeader().lastModified(LAST_MODIFIED.toEpochMilli())
+                .expectBody().isEmpty();
+
+        verify(s3, never()).download(any(), any());
+    }
+
+    @Test
+    void testHeadOfUnknownLengthOmitsContentLength() {
+        // GIVEN
+        when(s3.head(any(), any())).thenReturn(Mono.just(HeadObjectResponse.builder()
+                .contentType("application/xml")
+                .eTag(ETAG)
+                .build()));
+
+        // WHEN
+        webTestClient.head()
+                .uri("/maven/releases/foo/bar/1.0.1/bar-1.0.1.pom")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist("Content-Length")
+                .expectHeader().valueEquals("ETag", ETAG);
+    }
+
+    @Test
+    void testHeadNotModified() {
+        // WHEN
+        webTestClient.head()
+                .uri("/maven/releases/foo/bar/1.0.1/bar-1.0.1.pom")
+                .ifNoneMatch(ETAG)
+                .exchange()
+
+                // THEN
+                .expectStatus().isNotModified();
+
+        verify(s3, never()).download(any(), any());
+    }
+
+    @Test
+    void testFailedConditionalUploadIsRejected() {
+        // GIVEN
+        when(s3.upload(any(), any(), any(), any(), any()))
+                .thenReturn(Mono.error(S3Exception.builder().statusCode(412).build()));
+
+        // WHEN
+        webTestClient.put()
+                .uri("/maven/releases/foo/bar/1.0.1/bar-1.0.1.pom")
+                .bodyValue(CONTENT)
+                .exchange()
+
+                // THEN
+                .expectStatus().isForbidden()
+                .expectBody(String.class).isEqualTo("Artifact already exists");
+    }
+
+    @Test
+    void testChecksumOfUploadedArtifactIsAcknowledged() throws Exception {
+        // GIVEN
+        var stored = new ConcurrentHashMap<String, String>();
+        var metadata = new ConcurrentHashMap<String, Map<String, String>>();
+        appProperties.setMavenValidate(true);
+        appProperties.setChecksumsEnabled(true);
+        when(s3.exists(any(), any())).thenAnswer(invocation -> Mono.just(stored.containsKey(invocation.<String>getArgument(1))));
+        when(s3.upload(any(), any(), any(), any(), any())).thenAnswer(invocation -> Mono.deferContextual(ctx -> Flux.from(invocation.<Publisher<ByteBuffer>>getArgument(4))
+                .map(buffer -> UTF_8.decode(buffer).toString())
+                .reduce(String::concat)
+                .doOnNext(content -> stored.put(invocation.getArgument(1), content))
+                .doOnNext(content -> metadata.put(invocation.getArgument(1), ctx.getOrDefault(S3Repository.METADATA, Map.of())))
+                .thenReturn(PutObjectResponse.builder().build())));
+        S3Repository checksums = new ChecksumS3Repository(s3, 100, DataSize.ofMegabytes(1), new BucketPermissions(Duration.ofMinutes(1), 100));
+        webTestClient = WebTestClient.bindToController(new RepositoryController(checksums, appProperties, new MetadataUpdater(checksums, 5, true, false),
+                        new GroupResolver(checksums, Map.of(), Duration.ofMinutes(1), 100)))
+                .controllerAdvice(new ErrorHandler())
+                .build();
+        String sha1 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest("jar".getBytes(UTF_8)));
+
+        webTestClient.put()
+                .uri("/maven/releases/foo/bar/1.0/bar-1.0.jar")
+                .bodyValue("jar")
+                .exchange()
+                .expectStatus().isCreated();
+
+        // WHEN
+        webTestClient.put()
+                .uri("/maven/releases/foo/bar/1.0/bar-1.0.jar.sha1")
+                .bodyValue(sha1)
+                .exchange()
+
+                // THEN
+                .expectStatus().isCreated();
+
+        // stored as metadata of the jar only
+        assertThat(metadata.get("foo/bar/1.0/bar-1.0.jar")).containsEntry("checksum-sha1", sha1);
+        verify(s3, never()).upload(any(), eq("foo/bar/1.0/bar-1.0.jar.sha1"), any(), any(), any());
+    }
+
+    @Test
+    void testUploadToReservedPathIsRejected() {
+        // WHEN
+        webTestClient.put()
+                .uri("/maven/releases/.mvnio/metadata-index.gz")
+                .bodyValue(CONTENT)
+                .exchange()
+
+                // THEN
+                .expectStatus().isForbidden();
+        verify(s3, never()).upload(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testBundleUpload() {
+        // GIVEN
+        var uploads = new ConcurrentHashMap<String, String>();
+        appProperties.setMavenValidate(true);
+        when(s3.exists(any(), any())).thenReturn(Mono.just(false));
+        when(s3.upload(any(), any(), any(), any(), any())).thenAnswer(invocation -> Flux.from(invocation.<Publisher<ByteBuffer>>getArgument(4))
+                .map(buffer -> UTF_8.decode(buffer).toString())
+                .reduce(String::concat)
+                .doOnNext(content -> uploads.put(invocation.getArgument(1), content))
+                .thenReturn(PutObjectResponse.builder().build()));
+
+        var bundle = new MultipartBodyBuilder();
+        bundle.part("file", new ByteArrayResource("jar".getBytes(UTF_8))).filename("bar-1.0.jar");
+        bundle.part("file", new ByteArrayResource(CONTENT.getBytes(UTF_8))).filename("bar-1.0.pom");
+
+        // WHEN
+        webTestClient.post()
+                .uri("/bundle/releases/foo/bar/1.0")
+                .body(BodyInserters.fromMultipartData(bundle.build()))
+                .exchange()
+
+                // THEN
+                .expectStatus().isCreated();
+
+        assertThat(uploads).containsOnly(
+                Map.entry("foo/bar/1.0/bar-1.0.jar", "jar"),
+                Map.entry("foo/bar/1.0/bar-1.0.pom", CONTENT));
+        verify(s3).upload(any(), eq("foo/bar/1.0/bar-1.0.jar"), eq("application/java-archive"), eq(3L), any());
+    }
+
+    @Test
+    void testBundleWithIdenticalArtifactIsUploadedAgain() {
+        // GIVEN
+        appProperties.setMavenValidate(true);
+        when(s3.exists(any(), any())).thenReturn(Mono.just(false));
+        when(s3.exists("releases", "foo/bar/1.0/bar-1.0.pom")).thenReturn(Mono.just(true));
+        when(s3.upload(any(), any(), any(), any(), any())).thenReturn(Mono.just(PutObjectResponse.builder().build()));
+
+        var bundle = new MultipartBodyBuilder();
+        bundle.part("file", new ByteArrayResource("jar".getBytes(UTF_8))).filename("bar-1.0.jar");
+        bundle.part("file", new ByteArrayResource(CONTENT.getBytes(UTF_8))).filename("bar-1.0.pom");
+
+        // WHEN
+        webTestClient.post()
+                .uri("/bundle/releases/foo/bar/1.0")
+                .body(BodyInserters.fromMultipartData(bundle.build()))
+                .exchange()
+
+                // THEN
+                .expectStatus().isCreated();
+
+        verify(s3).upload(any(), eq("foo/bar/1.0/bar-1.0.jar"), any(), any(), any());
+        verify(s3, never()).upload(any(), eq("foo/bar/1.0/bar-1.0.pom"), any(), any(), any());
+    }
+
+    @Test
+    void testTooLargeBundleIsRejected() {
+        // GIVEN
+        appProperties.setMavenBundleMaxSize(DataSize.ofKilobytes(1));
+        webTestClient = WebTestClient.bindToController(new RepositoryController(s3, appProperties, new MetadataUpdater(s3, 5, true, true),
+                        new GroupResolver(s3, Map.of(), Duration.ofMinutes(1), 100)))
+                .controllerAdvice(new ErrorHandler())
+                .build();
+
+        var bundle = new MultipartBodyBuilder();
+        bundle.part("file", new ByteArrayResource(new byte[2048])).filename("bar-1.0.jar");
+
+        // WHEN
+        webTestClient.post()
+                .uri("/bundle/releases/foo/bar/1.0")
+                .body(BodyInserters.fromMultipartData(bundle.build()))
+                .exchange()
+
+                // THEN
+                .expectStatus().isEqualTo(413);
+
+        verify(s3, never()).upload(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testBundleWithExistingArtifactIsRejected() {
+        // GIVEN
+        appProperties.setMavenValidate(true);
+        when(s3.exists(any(), any())).thenReturn(Mono.just(false));
+        when(s3.exists("releases", "foo/bar/1.0/bar-1.0.pom")).thenReturn(Mono.just(true));
+
+        var bundle = new MultipartBodyBuilder();
+        bundle.part("file", new ByteArrayResource("jar".getBytes(UTF_8))).filename("bar-1.0.jar");
+        bundle.part("file", new ByteArrayResource("<project/>".getBytes(UTF_8))).filename("bar-1.0.pom");
+
+        // WHEN
+        webTestClient.post()
+                .uri("/bundle/releases/foo/bar/1.0")
+                .body(BodyInserters.fromMultipartData(bundle.build()))
+                .exchange()
+
+                // THEN
+                .expectStatus().isForbidden()
+                .expectBody(String.class).isEqualTo("Artifact already exists");
+
+        verify(s3, never()).upload(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testBundleWithInvalidFileIsRejected() {
+        // GIVEN
+        appProperties.setMavenValidate(true);
+
+        var bundle = new MultipartBodyBuilder();
+        bundle.part("file", new ByteArrayResource("jar".getBytes(UTF_8))).filename("baz-1.0.jar");
+
+        // WHEN
+        webTestClient.post()
+                .uri("/bundle/releases/foo/bar/1.0")
+                .body(BodyInserters.fromMultipartData(bundle.build()))
+                .exchange()
+
+                // THEN
+                .expectStatus().isBadRequest();
+
+        verify(s3, never()).upload(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testArchiveDownload() throws Exception {
+        // GIVEN
+        when(s3.keys("releases", "foo/bar/1.0/")).thenReturn(Flux.just("foo/bar/1.0/bar-1.0.jar", "foo/bar/1.0/bar-1.0.pom"));
+
+        // WHEN
+        byte[] archive = webTestClient.get()
+                .uri("/archive/releases/foo/bar/1.0")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/zip")
+                .expectHeader().valueEquals("Content-Disposition", "attachment; filename=\"bar-1.0.zip\"")
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        var entries = new LinkedHashMap<String, String>();
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), UTF_8));
+            }
+        }
+        assertThat(entries).containsExactly(
+                Map.entry("foo/bar/1.0/bar-1.0.jar", CONTENT),
+                Map.entry("foo/bar/1.0/bar-1.0.pom", CONTENT));
+    }
+
+    @Test
+    void testArchiveSkipsInternalFiles() throws Exception {
+        // GIVEN
+        when(s3.keys("releases", null)).thenReturn(Flux.just(".mvnio/metadata-index.gz", "foo/bar/1.0/bar-1.0.pom"));
+
+        // WHEN
+        byte[] archive = webTestClient.get()
+                .uri("/archive/releases/")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        var names = new ArrayList<String>();
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+            }
+        }
+        assertThat(names).containsExactly("foo/bar/1.0/bar-1.0.pom");
+    }
+
+    @Test
+    void testArchiveWithTooManyFilesIsRejected() {
+        // GIVEN
+        when(s3.keys("releases", "foo/")).thenReturn(Flux.range(0, 11).map(i -> "foo/bar/1." + i + "/bar-1." + i + ".pom"));
+
+        // WHEN
+        webTestClient.get()
+                .uri("/archive/releases/foo")
+                .exchange()
+
+                // THEN
+                .expectStatus().isEqualTo(413);
+
+        verify(s3, never()).download(any(), any());
+    }
+
+    @Test
+    void testArchiveOfEmptyPathNotFound() {
+        // GIVEN
+        when(s3.keys("releases", "foo/bar/2.0/")).thenReturn(Flux.empty());
+
+        // WHEN
+        webTestClient.get()
+                .uri("/archive/releases/foo/bar/2.0")
+                .exchange()
+
+                // THEN
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testGroupDownloadFromMember() {
+        // GIVEN
+        when(s3.exists("releases", "foo/bar/1.0-SNAPSHOT/bar-1.0-SNAPSHOT.pom")).thenReturn(Mono.just(false));
+        when(s3.exists("snapshots", "foo/bar/1.0-SNAPSHOT/bar-1.0-SNAPSHOT.pom")).thenReturn(Mono.just(true));
+
+        // WHEN
+        webTestClient.get()
+                .uri("/group/public/foo/bar/1.0-SNAPSHOT/bar-1.0-SNAPSHOT.pom")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(CONTENT);
+
+        verify(s3).download("snapshots", "foo/bar/1.0-SNAPSHOT/bar-1.0-SNAPSHOT.pom");
+    }
+
+    @Test
+    void testGroupNotFound() {
+        // WHEN
+        webTestClient.get()
+                .uri("/group/other/foo/bar/1.0/bar-1.0.pom")
+                .exchange()
+
+                // THEN
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testHeadNotFound() {
+        // GIVEN
+        when(s3.head(any(), any())).thenReturn(Mono.error(NoSuchKeyException.builder().build()));
+
+        // WHEN
+        webTestClient.head()
+                .uri("/maven/releases/foo/bar/1.0.1/bar-1.0.1.pom")
+                .exchange()
+
+                // THEN
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testListIsStreamedAsJsonArray() {
+        // GIVEN
+        when(s3.list("releases", "/foo/bar")).thenReturn(Flux.just("1.0/", "1.1/", "maven-\"metadata\".xml"));
+
+        // WHEN
+        webTestClient.get()
+                .uri("/list/releases/foo/bar")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody(String.class).isEqualTo("[\"1.0/\",\"1.1/\",\"maven-\\\"metadata\\\".xml\"]");
+    }
+
+    @Test
+    void testEmptyListIsEmptyJsonArray() {
+        // GIVEN
+        when(s3.list("releases", "/foo")).thenReturn(Flux.empty());
+
+        // WHEN
+        webTestClient.get()
+                .uri("/list/releases/foo")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("[]");
+    }
+
+    @Test
+    void testListIsStreamedAsNdjson() {
+        // GIVEN
+        when(s3.list("releases", "/foo/bar")).thenReturn(Flux.just("1.0/", "maven-metadata.xml"));
+
+        // WHEN
+        webTestClient.get()
+                .uri("/list/releases/foo/bar")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/x-ndjson")
+                .expectBody(String.class).isEqualTo("\"1.0/\"\n\"maven-metadata.xml\"\n");
+    }
+
+    @Test
+    void testListPageReturnsContinuationToken() {
+        // GIVEN
+        when(s3.list("releases", "/foo/bar", "token-1", 2)).thenReturn(Mono.just(new Page(List.of("1.1/", "1.2/"), "token-2")));
+
+        // WHEN (the limit is capped at the page size)
+        webTestClient.get()
+                .uri("/list/releases/foo/bar?continuationToken=token-1&limit=5")
+                .exchange()
+
+                // THEN
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(RepositoryController.CONTINUATION_TOKEN, "token-2")
+                .expectBody(String.class).isEqualTo("[\"1.1/\",\"1.2/\"]");
+    }
+
+    @Test
+    void testMetadataPageContinuesAfterLastKey() {
+        // GIVEN
+        when(s3.metadata("releases", null, 2)).thenReturn(Flux.just("/a/maven-metadata.xml", "/b/maven-metadata.xml"));
+        when(s3.metadata("releases", "b/maven-metadata.xml", 2)).thenReturn(Flux.just("/c/maven-metadata.xml"));
+
+        // WHEN
+        String token = webTestClient.get()
+                .uri("/metadata/releases?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("[\"/a/maven-metadata.xml\",\"/b/maven-metadata.xml\"]")
+                .returnResult().getResponseHeaders().getFirst(RepositoryController.CONTINUATION_TOKEN);
+
+        // THEN
+        webTestClient.get()
+                .uri("/metadata/releases?limit=2&continuationToken=" + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(RepositoryController.CONTINUATION_TOKEN)
+                .expectBody(String.class).isEqualTo("[\"/c/maven-metadata.xml\"]");
+    }
+
+    @Test
+    void testInvalidLimitIsRejected() {
+        // WHEN
+        webTestClient.get()
+                .uri("/list/releases/foo?limit=0")
+                .exchange()
+
+                // THEN
+                .expectStatus().isBadRequest();
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.j3t.mvnio.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.j3t.mvnio.storage.Download;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class ZipStreamTest {
+
+    // number of downloads in progress and the maximum seen
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Test
+    void testEntriesAreInOrder() throws Exception {
+        // GIVEN the first objects take the longest
+        Flux<String> names = Flux.range(0, 8).map(i -> "foo/bar/1.0/file-" + i);
+
+        // WHEN
+        byte[] archive = read(ZipStream.zip(names, name -> download(name, 80 - 10 * (name.charAt(name.length() - 1) - '0')), 3));
+
+        // THEN
+        List<String> entries = new ArrayList<>();
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                assertThat(new String(zip.readAllBytes(), UTF_8)).isEqualTo(entry.getName().repeat(1000));
+                entries.add(entry.getName());
+            }
+        }
+        assertThat(entries).containsExactlyElementsOf(names.collectList().block());
+        assertThat(maxInFlight.get()).isEqualTo(3);
+    }
+
+    @Test
+    void testMissingObjectsAreSkipped() throws Exception {
+        // WHEN
+        byte[] archive = read(ZipStream.zip(Flux.just("a", "b"), name -> name.equals("a") ? Mono.empty() : download(name, 0), 2));
+
+        // THEN
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            assertThat(zip.getNextEntry().getName()).isEqualTo("b");
+            assertThat(zip.getNextEntry()).isNull();
+        }
+    }
+
+    private Mono<Download> download(String name, long delay) {
+        byte[] chunk = name.repeat(100).getBytes(UTF_8);
+
+        return Mono.just(Download.builder()
+                        .content(Flux.range(0, 10).map(i -> ByteBuffer.wrap(chunk)))
+                        .build())
+                .delayElement(Duration.ofMillis(delay))
+                .doOnSubscribe(s -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                .doOnTerminate(inFlight::decrementAndGet);
+    }
+
+    private static byte[] read(Flux<ByteBuffer> content) {
+        return content
+                .reduce(new ByteArrayOutputStream(), (out, buffer) -> {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    out.writeBytes(bytes);
+                    return out;
+                })
+                .map(ByteArrayOutputStream::toByteArray)
+                .block();
+    }
+}
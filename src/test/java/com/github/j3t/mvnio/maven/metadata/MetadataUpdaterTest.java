@@ -0,0 +1,327 @@
+package com.github.j3t.mvnio.maven.metadata;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+
+import com.github.j3t.mvnio.maven.validation.Coordinates;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+class MetadataUpdaterTest {
+
+    static final String METADATA = "foo/bar/maven-metadata.xml";
+
+    S3Repository s3;
+
+    // objects by key, stored with a new ETag on each upload
+    Map<String, Stored> objects = new ConcurrentHashMap<>();
+
+    // number of uploads which fail as if the object has been changed by someone else
+    AtomicInteger conflicts = new AtomicInteger();
+
+    // completes when the next download may read the object
+    Mono<Void> downloadDelay = Mono.empty();
+
+    // access keys of the clients which wrote the metadata file
+    List<String> writers = new CopyOnWriteArrayList<>();
+
+    // conditions of the writes of the metadata file
+    List<String> conditions = new CopyOnWriteArrayList<>();
+
+    MetadataUpdater updater;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+
+        when(s3.download(eq("releases"), anyString())).thenAnswer(invocation -> downloadDelay.then(Mono.defer(() -> {
+            Stored stored = objects.get(invocation.<String>getArgument(1));
+            return stored == null
+                    ? Mono.error(NoSuchKeyException.builder().build())
+                    : Mono.just(Download.builder()
+                    .content(Flux.just(ByteBuffer.wrap(stored.content())))
+                    .eTag(stored.eTag())
+                    .build());
+        })));
+
+        when(s3.upload(eq("releases"), anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(1);
+            Publisher<ByteBuffer> file = invocation.getArgument(4);
+
+            return Mono.deferContextual(ctx -> {
+                Stored stored = objects.get(key);
+                boolean precondition = ctx.hasKey(S3Repository.IF_MATCH)
+                        ? stored != null && stored.eTag().equals(ctx.get(S3Repository.IF_MATCH))
+                        : !ctx.getOrDefault(S3Repository.CREATE_ONLY, false) || stored == null;
+
+                if (!precondition || key.equals(METADATA) && conflicts.getAndDecrement() > 0) {
+                    return Mono.error(S3Exception.builder().statusCode(412).build());
+                }
+
+                if (key.equals(METADATA)) {
+                    conditions.add(ctx.hasKey(S3Repository.IF_MATCH) ? "If-Match"
+                            : ctx.getOrDefault(S3Repository.CREATE_ONLY, false) ? "If-None-Match" : "none");
+                }
+
+                if (key.equals(METADATA) && ctx.hasKey(S3_CREDENTIALS_PROVIDER)) {
+                    writers.add(ctx.<AwsCredentialsProvider>get(S3_CREDENTIALS_PROVIDER).resolveCredentials().accessKeyId());
+                }
+
+                return read(file).map(content -> {
+                    String eTag = UUID.randomUUID().toString();
+                    objects.put(key, new Stored(content, eTag));
+                    return PutObjectResponse.builder().eTag(eTag).build();
+                });
+            });
+        });
+
+        updater = new MetadataUpdater(s3, 3, true, true, Clock.fixed(Instant.parse("2020-10-23T14:25:12Z"), ZoneOffset.UTC));
+    }
+
+    @Test
+    void testReleaseIsAddedToArtifactMetadata() {
+        // GIVEN
+        update("/foo/bar/1.0/bar-1.0.jar");
+
+        // WHEN
+        update("/foo/bar/1.1/bar-1.1.pom");
+
+        // THEN
+        assertThat(content(METADATA))
+                .contains("<groupId>foo</groupId>", "<artifactId>bar</artifactId>")
+                .contains("<latest>1.1</latest>", "<release>1.1</release>")
+                .contains("<version>1.0</version>", "<version>1.1</version>")
+                .contains("<lastUpdated>20201023142512</lastUpdated>");
+    }
+
+    @Test
+    void testSnapshotIsAddedToVersionMetadata() {
+        // WHEN
+        update("/foo/bar/1.0-SNAPSHOT/bar-1.0-20201023.142512-1.jar");
+        update("/foo/bar/1.0-SNAPSHOT/bar-1.0-20201023.142512-1-sources.jar");
+        update("/foo/bar/1.0-SNAPSHOT/bar-1.0-20201023.142512-1.jar.sha1");
+
+        // THEN
+        assertThat(content(METADATA))
+                .contains("<latest>1.0-SNAPSHOT</latest>")
+                .doesNotContain("<release>");
+        assertThat(content("foo/bar/1.0-SNAPSHOT/maven-metadata.xml"))
+                .contains("<version>1.0-SNAPSHOT</version>")
+                .contains("<timestamp>20201023.142512</timestamp>", "<buildNumber>1</buildNumber>")
+                .contains("<classifier>sources</classifier>")
+                .contains("<value>1.0-20201023.142512-1</value>")
+                .doesNotContain("<extension>jar.sha1</extension>");
+    }
+
+    @Test
+    void testConflictingUpdateIsRetried() {
+        // GIVEN
+        update("/foo/bar/1.0/bar-1.0.jar");
+        conflicts.set(2);
+
+        // WHEN
+        update("/foo/bar/1.1/bar-1.1.jar");
+
+        // THEN
+        assertThat(content(METADATA)).contains("<version>1.0</version>", "<version>1.1</version>");
+    }
+
+    @Test
+    void testUnchangedMetadataIsNotWritten() {
+        // GIVEN
+        update("/foo/bar/1.0/bar-1.0.jar");
+        String eTag = objects.get(METADATA).eTag();
+
+        // WHEN
+        update("/foo/bar/1.0/bar-1.0.pom");
+
+        // THEN
+        assertThat(objects.get(METADATA).eTag()).isEqualTo(eTag);
+    }
+
+    @Test
+    void testUpdatesOfOtherClientsAreWrittenSeparately() {
+        // GIVEN (the first update of alice is written while the others arrive)
+        Sinks.Empty<Void> gate = Sinks.empty();
+        downloadDelay = gate.asMono();
+        var first = update("/foo/bar/0.1/bar-0.1.jar", "alice").toFuture();
+        downloadDelay = Mono.empty();
+
+        // WHEN
+        var other = update("/foo/bar/0.2/bar-0.2.jar", "bob").toFuture();
+        var next = update("/foo/bar/0.3/bar-0.3.jar", "alice").toFuture();
+        gate.tryEmitEmpty();
+
+        // THEN
+        CompletableFuture.allOf(first, other, next).join();
+        assertThat(content(METADATA)).contains("<version>0.1</version>", "<version>0.2</version>", "<version>0.3</version>");
+        assertThat(writers).containsExactly("bob", "alice", "alice");
+    }
+
+    @Test
+    void testChecksumsAreWritten() throws Exception {
+        // WHEN
+        update("/foo/bar/1.0/bar-1.0.jar");
+
+        // THEN
+        byte[] metadata = objects.get(METADATA).content();
+        assertThat(content(METADATA + ".sha1")).isEqualTo(hex("SHA-1", metadata));
+        assertThat(content(METADATA + ".md5")).isEqualTo(hex("MD5", metadata));
+        assertThat(content(METADATA + ".sha256")).isEqualTo(hex("SHA-256", metadata));
+        assertThat(content(METADATA + ".sha512")).isEqualTo(hex("SHA-512", metadata));
+    }
+
+    @Test
+    void testChecksumsAreNotWrittenIfComputedByRepository() {
+        // GIVEN
+        updater = new MetadataUpdater(s3, 3, true, false, Clock.systemUTC());
+
+        // WHEN
+        update("/foo/bar/1.0/bar-1.0.jar");
+
+        // THEN
+        assertThat(objects).containsOnlyKeys(METADATA);
+    }
+
+    @Test
+    void testMetadataIsWrittenConditionally() {
+        // WHEN
+        update("/foo/bar/1.0/bar-1.0.jar");
+        update("/foo/bar/1.1/bar-1.1.jar");
+
+        // THEN
+        assertThat(conditions).containsExactly("If-None-Match", "If-Match");
+    }
+
+    @Test
+    void testMetadataIsWrittenUnconditionallyWithoutConditionalWrites() {
+        // GIVEN
+        updater = new MetadataUpdater(s3, 3, false, true, Clock.systemUTC());
+
+        // WHEN
+        update("/foo/bar/1.0/bar-1.0.jar");
+        update("/foo/bar/1.1/bar-1.1.jar");
+
+        // THEN
+        assertThat(conditions).containsExactly("none", "none");
+        assertThat(content(METADATA)).contains("<version>1.0</version>", "<version>1.1</version>");
+    }
+
+    @Test
+    void testUploadedArtifactMetadataIsNotStored() {
+        // GIVEN
+        update("/foo/bar/0.1/bar-0.1.jar");
+        String stored = content(METADATA);
+
+        // WHEN
+        upload(METADATA, "<metadata><groupId>foo</groupId><artifactId>bar</artifactId>"
+                + "<versioning><latest>0.1</latest><versions><version>0.1</version></versions></versioning></metadata>");
+        upload(METADATA + ".sha1", "abc");
+
+        // THEN
+        assertThat(content(METADATA)).isEqualTo(stored);
+        verify(s3, never()).upload(any(), eq(METADATA + ".sha1"), eq("application/octet-stream"), any(), any());
+    }
+
+    @Test
+    void testUploadedArtifactMetadataIsMerged() {
+        // GIVEN (the update of 0.1 failed)
+        update("/foo/bar/0.2/bar-0.2.jar");
+
+        // WHEN
+        upload(METADATA, "<metadata><groupId>foo</groupId><artifactId>bar</artifactId>"
+                + "<versioning><latest>0.1</latest><release>0.1</release><versions><version>0.1</version></versions>"
+                + "</versioning></metadata>");
+
+        // THEN
+        assertThat(content(METADATA))
+                .contains("<version>0.1</version>", "<version>0.2</version>")
+                .contains("<latest>0.2</latest>", "<release>0.2</release>");
+    }
+
+    @Test
+    void testUploadedGroupMetadataIsStored() throws Exception {
+        // GIVEN
+        String plugins = "<metadata><plugins><plugin><prefix>bar</prefix></plugin></plugins></metadata>";
+
+        // WHEN
+        upload(METADATA, plugins);
+
+        // THEN
+        assertThat(content(METADATA)).isEqualTo(plugins);
+        assertThat(content(METADATA + ".sha1")).isEqualTo(hex("SHA-1", plugins.getBytes(UTF_8)));
+    }
+
+    private void update(String path) {
+        updater.update("releases", Coordinates.parse(path)).block();
+    }
+
+    private Mono<Void> update(String path, String accessKey) {
+        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create(accessKey, "secret");
+        return updater.update("releases", Coordinates.parse(path))
+                .contextWrite(ctx -> ctx.put(S3_CREDENTIALS_PROVIDER, credentialsProvider));
+    }
+
+    private void upload(String key, String content) {
+        updater.upload("releases", key, Flux.just(ByteBuffer.wrap(content.getBytes(UTF_8)))).block();
+    }
+
+    private String content(String key) {
+        assertThat(objects).containsKey(key);
+        return new String(objects.get(key).content(), UTF_8);
+    }
+
+    private static String hex(String algorithm, byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance(algorithm).digest(bytes));
+    }
+
+    private static Mono<byte[]> read(Publisher<ByteBuffer> file) {
+        return Flux.from(file)
+                .reduce(new ByteArrayOutputStream(), (out, buffer) -> {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.duplicate().get(bytes);
+                    out.writeBytes(bytes);
+                    return out;
+                })
+                .map(ByteArrayOutputStream::toByteArray);
+    }
+
+    record Stored(byte[] content, String eTag) {
+    }
+}
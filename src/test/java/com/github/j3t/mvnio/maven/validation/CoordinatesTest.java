@@ -0,0 +1,77 @@
+package com.github.j3t.mvnio.maven.validation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CoordinatesTest {
+
+    private static Stream<Arguments> pathsAndCoordinates() {
+        return Stream.of(
+                Arguments.of("/a/b/1/b-1.jar", new Coordinates("a", "b", "1", null, null, "jar")),
+                Arguments.of("/a/b/1/b-1.jar.sha1", new Coordinates("a", "b", "1", null, null, "jar.sha1")),
+                Arguments.of("/a/b/1/b-1-sources.jar", new Coordinates("a", "b", "1", null, "sources", "jar")),
+                Arguments.of("/a/b/1/b-1-sources.jar.asc", new Coordinates("a", "b", "1", null, "sources", "jar.asc")),
+                Arguments.of("/com/github/j3t/mvnio/1.0.1/mvnio-1.0.1.pom",
+                        new Coordinates("com.github.j3t", "mvnio", "1.0.1", null, null, "pom")),
+                Arguments.of("/foo/bar/1.0.2-SNAPSHOT/bar-1.0.2-20201023.142512-1.jar",
+                        new Coordinates("foo", "bar", "1.0.2-SNAPSHOT", "20201023.142512-1", null, "jar")),
+                Arguments.of("/io/netty/netty-transport-native-epoll/4.1.53-SNAPSHOT/netty-transport-native-epoll-4.1.53-20201112.210114-1-linux-x86_64.jar",
+                        new Coordinates("io.netty", "netty-transport-native-epoll", "4.1.53-SNAPSHOT", "20201112.210114-1", "linux-x86_64", "jar"))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("pathsAndCoordinates")
+    void testParse(String path, Coordinates coordinates) {
+        assertThat(Coordinates.parse(path)).isEqualTo(coordinates);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/a/1/a-1.jar", "/a/b/1/b-2.jar", "/a/b/1-SNAPSHOT/b-1-SNAPSHOT.jar", "a/b/1/b-1.jar",
+            "/a/b/1/b-1", "/a/b/1/b-1.", "/a/b/1/b-1-.jar", "/a//b/1/b-1.jar", "/a/b/1.0/b-1x0.jar",
+            "/a/b/1-SNAPSHOT/b-1-2020102.142512-1.jar", "/a/b/1/maven-metadata.xml"})
+    void testParseInvalid(String path) {
+        assertThat(Coordinates.parse(path)).isNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/a/b/1/b-1.jar", "/foo/bar/1.0.2-SNAPSHOT/bar-1.0.2-20201023.142512-1.jar"})
+    void testType(String path) {
+        assertThat(Coordinates.parse(path).type()).isEqualTo("jar");
+        assertThat(Coordinates.parse(path + ".sha1").type()).isEqualTo("sha1");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/a/b/maven-metadata.xml", "/a/b/1-SNAPSHOT/maven-metadata.xml", "/a/b/maven-metadata.xml.sha1"})
+    void testIsMetadata(String path) {
+        assertThat(Coordinates.isMetadata(path)).isTrue();
+        assertThat(Coordinates.parse(path)).isNull();
+    }
+
+    @ParameterizedTest
+    @MethodSource("pathsAndCoordinates")
+    void testResolveInDirectory(String path, Coordinates coordinates) {
+        int filenameStart = path.lastIndexOf('/') + 1;
+
+        assertThat(Coordinates.parseDirectory(path.substring(0, filenameStart)).resolve(path.substring(filenameStart)))
+                .isEqualTo(coordinates);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/a/1", "a/b/1", "/a/b/", "/a//b/1", "/a/b/1."})
+    void testParseDirectoryInvalid(String path) {
+        assertThat(Coordinates.parseDirectory(path)).isNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"b-2.jar", "c-1.jar", "b-1", "../b-1.jar", "maven-metadata.xml"})
+    void testResolveInvalid(String filename) {
+        assertThat(Coordinates.parseDirectory("/a/b/1").resolve(filename)).isNull();
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.j3t.mvnio.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class RequestMetricsWebFilterTest {
+
+    MeterRegistry registry;
+
+    RequestMetricsWebFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        filter = new RequestMetricsWebFilter(registry, 1, List.of());
+    }
+
+    @Test
+    void testDownloadIsRecorded() {
+        // GIVEN
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/maven/releases/foo/bar/1.0/bar-1.0.jar"));
+        WebFilterChain chain = e -> e.getResponse().writeWith(Flux.just(buffer("hello")));
+
+        // WHEN
+        filter.filter(exchange, chain).block();
+
+        // THEN
+        assertThat(registry.get("mvnio.requests")
+                .tags("endpoint", "download", "repository", "releases", "status", "200")
+                .timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("mvnio.requests.ttfb").tags("endpoint", "download").timer().count()).isEqualTo(1);
+        assertThat(registry.get("mvnio.bytes").tags("direction", "out").counter().count()).isEqualTo(5);
+    }
+
+    @Test
+    void testUploadIsRecorded() {
+        // GIVEN
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.put("/maven/releases/foo/bar/1.0/bar-1.0.jar")
+                .body("hello world"));
+        WebFilterChain chain = e -> e.getRequest().getBody().then(Mono.fromRunnable(() ->
+                e.getResponse().setStatusCode(HttpStatus.CREATED)));
+
+        // WHEN
+        filter.filter(exchange, chain).block();
+
+        // THEN
+        assertThat(registry.get("mvnio.requests").tags("endpoint", "upload", "status", "201").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("mvnio.bytes").tags("direction", "in").counter().count()).isEqualTo(11);
+    }
+
+    @Test
+    void testNumberOfRepositoriesIsLimited() {
+        // GIVEN
+        WebFilterChain chain = e -> Mono.empty();
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/list/releases/foo")), chain).block();
+
+        // WHEN
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/list/snapshots/foo")), chain).block();
+
+        // THEN
+        assertThat(registry.get("mvnio.requests").tags("repository", "other").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testRepositoryIsTaggedOnceAuthorized() {
+        // GIVEN (e.g. an arbitrary name requested without valid credentials)
+        WebFilterChain denied = e -> Mono.fromRunnable(() -> e.getResponse().setStatusCode(HttpStatus.FORBIDDEN));
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/list/junk/foo")), denied).block();
+
+        // WHEN
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/list/releases/foo")), e -> Mono.empty()).block();
+
+        // THEN
+        assertThat(registry.get("mvnio.requests").tags("repository", "other", "status", "403").timer().count()).isEqualTo(1);
+        assertThat(registry.get("mvnio.requests").tags("repository", "releases").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testConfiguredGroupIsTagged() {
+        // GIVEN
+        filter = new RequestMetricsWebFilter(registry, 1, List.of("public"));
+        WebFilterChain notFound = e -> Mono.fromRunnable(() -> e.getResponse().setStatusCode(HttpStatus.NOT_FOUND));
+
+        // WHEN
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/group/public/foo/bar/1.0/bar-1.0.jar")), notFound).block();
+
+        // THEN
+        assertThat(registry.get("mvnio.requests").tags("endpoint", "group-download", "repository", "public").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void testOtherRequestsAreIgnored() {
+        // WHEN
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health")), e -> Mono.empty()).block();
+
+        // THEN
+        assertThat(registry.find("mvnio.requests").timer()).isNull();
+    }
+
+    private static DataBuffer buffer(String value) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.j3t.mvnio.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollector;
+
+class S3MetricPublisherTest {
+
+    MeterRegistry registry;
+
+    S3MetricPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        publisher = new S3MetricPublisher(registry);
+    }
+
+    @Test
+    void testSuccessfulOperation() {
+        // GIVEN
+        MetricCollector apiCall = apiCall("GetObject", true, 200);
+
+        // WHEN
+        publisher.publish(apiCall.collect());
+
+        // THEN
+        assertThat(registry.get("s3.operations").tags("operation", "GetObject", "outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("s3.connections.leased").gauge().value()).isEqualTo(3);
+        assertThat(registry.get("s3.connections.pending").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("s3.connections.max").gauge().value()).isEqualTo(64);
+        assertThat(registry.find("s3.operations.errors").counter()).isNull();
+    }
+
+    @Test
+    void testFailedOperation() {
+        // GIVEN
+        MetricCollector apiCall = apiCall("PutObject", false, 503);
+
+        // WHEN
+        publisher.publish(apiCall.collect());
+
+        // THEN
+        assertThat(registry.get("s3.operations").tags("operation", "PutObject", "outcome", "failure").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("s3.operations.errors")
+                .tags("operation", "PutObject", "error", "Throttling", "status", "503")
+                .counter().count())
+                .isEqualTo(1);
+    }
+
+    private static MetricCollector apiCall(String operation, boolean successful, int status) {
+        MetricCollector apiCall = MetricCollector.create("ApiCall");
+        apiCall.reportMetric(CoreMetric.OPERATION_NAME, operation);
+        apiCall.reportMetric(CoreMetric.API_CALL_SUCCESSFUL, successful);
+        apiCall.reportMetric(CoreMetric.API_CALL_DURATION, Duration.ofMillis(42));
+
+        MetricCollector attempt = apiCall.createChild("ApiCallAttempt");
+        attempt.reportMetric(HttpMetric.HTTP_STATUS_CODE, status);
+        if (!successful) {
+            attempt.reportMetric(CoreMetric.ERROR_TYPE, "Throttling");
+        }
+
+        MetricCollector http = attempt.createChild("HttpClient");
+        http.reportMetric(HttpMetric.MAX_CONCURRENCY, 64);
+        http.reportMetric(HttpMetric.LEASED_CONCURRENCY, 3);
+        http.reportMetric(HttpMetric.PENDING_CONCURRENCY_ACQUIRES, 1);
+        http.reportMetric(HttpMetric.CONCURRENCY_ACQUIRE_DURATION, Duration.ofMillis(1));
+
+        return apiCall;
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.j3t.mvnio.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+
+class ServerTimingWebFilterTest {
+
+    WebFilterChain chain = exchange -> ServerTiming.time("validate", Mono.just(true))
+            .then(ServerTiming.time("s3", Mono.delay(Duration.ofMillis(10))))
+            .then(ServerTiming.time("s3", Mono.delay(Duration.ofMillis(10))))
+            .then(exchange.getResponse().setComplete());
+
+    @Test
+    void testPhasesAreReported() {
+        // GIVEN
+        var filter = new ServerTimingWebFilter(true, null);
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/maven/releases/foo"));
+
+        // WHEN
+        filter.filter(exchange, chain).block();
+
+        // THEN
+        String serverTiming = exchange.getResponse().getHeaders().getFirst("Server-Timing");
+        assertThat(serverTiming).matches("validate;dur=\\d+\\.\\d, s3;dur=(\\d+)\\.\\d, total;dur=\\d+\\.\\d");
+        assertThat(Double.parseDouble(serverTiming.replaceAll(".*s3;dur=([0-9.]+).*", "$1"))).isGreaterThanOrEqualTo(20);
+    }
+
+    @Test
+    void testHeaderIsOptional() {
+        // GIVEN
+        var filter = new ServerTimingWebFilter(false, Duration.ofMinutes(1));
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/maven/releases/foo"));
+
+        // WHEN
+        filter.filter(exchange, chain).block();
+
+        // THEN
+        assertThat(exchange.getResponse().getHeaders().containsKey("Server-Timing")).isFalse();
+    }
+}
@@ -0,0 +1,228 @@
+package com.github.j3t.mvnio.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+
+import com.github.j3t.mvnio.error.ClientError;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+class MultipartUploaderTest {
+
+    static final int MB = 1024 * 1024;
+
+    S3AsyncClient s3AsyncClient;
+
+    MultipartUploader uploader;
+
+    @BeforeEach
+    void setUp() {
+        s3AsyncClient = mock(S3AsyncClient.class);
+
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("1").build()));
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(UploadPartResponse.builder()
+                        .eTag("part-" + invocation.getArgument(0, UploadPartRequest.class).partNumber())
+                        .build()));
+        when(s3AsyncClient.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().eTag("all").build()));
+        when(s3AsyncClient.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+
+        uploader = new MultipartUploader(s3AsyncClient, DataSize.ofMegabytes(5), 2, 2, 3, Duration.ofMillis(500));
+    }
+
+    @Test
+    void testContentIsUploadedInParts() {
+        // WHEN
+        StepVerifier.create(upload(12 * MB, 12L * MB))
+
+                // THEN
+                .expectNextMatches(response -> response.eTag().equals("all"))
+                .verifyComplete();
+
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3AsyncClient, times(3)).uploadPart(parts.capture(), any(AsyncRequestBody.class));
+        assertThat(parts.getAllValues())
+                .extracting(UploadPartRequest::partNumber, UploadPartRequest::contentLength)
+                .containsExactlyInAnyOrder(
+                        tuple(1, 5L * MB),
+                        tuple(2, 5L * MB),
+                        tuple(3, 2L * MB));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3AsyncClient).completeMultipartUpload(complete.capture());
+        assertThat(complete.getValue().multipartUpload().parts())
+                .extracting(CompletedPart::eTag)
+                .containsExactly("part-1", "part-2", "part-3");
+        verify(s3AsyncClient, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testFailedPartIsRetried() {
+        // GIVEN
+        AtomicInteger attempts = new AtomicInteger();
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> attempts.incrementAndGet() == 1
+                        ? CompletableFuture.failedFuture(S3Exception.builder().statusCode(503).build())
+                        : CompletableFuture.completedFuture(UploadPartResponse.builder().eTag("part").build()));
+
+        // WHEN
+        StepVerifier.create(upload(6 * MB, 6L * MB))
+
+                // THEN
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void testUploadIsAbortedOnFailure() {
+        // GIVEN
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.failedFuture(S3Exception.builder().statusCode(403).build()));
+
+        // WHEN
+        StepVerifier.create(upload(6 * MB, 6L * MB))
+
+                // THEN
+                .verifyError(S3Exception.class);
+
+        verify(s3AsyncClient).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testUploadIsAbortedOnContentLengthMismatch() {
+        // WHEN
+        StepVerifier.create(upload(6 * MB, 7L * MB))
+
+                // THEN
+                .verifyError(ClientError.class);
+
+        verify(s3AsyncClient).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testContentOfUnknownSizeIsUploadedInParts() {
+        // WHEN
+        StepVerifier.create(upload(12 * MB, null))
+
+                // THEN
+                .expectNextMatches(response -> response.eTag().equals("all"))
+                .verifyComplete();
+
+        verify(s3AsyncClient, times(3)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+        verify(s3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+    }
+
+    @Test
+    void testSmallContentOfUnknownSizeIsUploadedAtOnce() {
+        // GIVEN
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().eTag("single").build()));
+
+        // WHEN
+        StepVerifier.create(upload(2 * MB, null))
+
+                // THEN
+                .expectNextMatches(response -> response.eTag().equals("single"))
+                .verifyComplete();
+
+        ArgumentCaptor<PutObjectRequest> put = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3AsyncClient).putObject(put.capture(), any(AsyncRequestBody.class));
+        assertThat(put.getValue().contentLength()).isEqualTo(2L * MB);
+        verify(s3AsyncClient, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testEmptyContentOfUnknownSizeIsUploadedAtOnce() {
+        // GIVEN
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().eTag("empty").build()));
+
+        // WHEN
+        StepVerifier.create(upload(0, null))
+
+                // THEN
+                .expectNextMatches(response -> response.eTag().equals("empty"))
+                .verifyComplete();
+
+        verify(s3AsyncClient, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testBuffersAreReused() {
+        // GIVEN
+        upload(12 * MB, 12L * MB).block(Duration.ofSeconds(10));
+
+        // WHEN (all buffers must have been returned to the pool, otherwise this would wait forever)
+        upload(12 * MB, 12L * MB).block(Duration.ofSeconds(10));
+
+        // THEN
+        verify(s3AsyncClient, times(6)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+    }
+
+    @Test
+    void testUploadIsRejectedIfNoBufferIsAvailable() {
+        // GIVEN slow clients hold all buffers
+        for (int i = 0; i < 3; i++) {
+            uploader.upload("releases", "foo/bar/1.0.1/bar-1.0.1.jar", "application/java-archive", null,
+                    Flux.concat(Mono.just(ByteBuffer.allocate(MB)), Flux.never()), builder -> {
+                    }, builder -> {
+                    }).subscribe();
+        }
+
+        // WHEN
+        StepVerifier.create(upload(6 * MB, 6L * MB))
+
+                // THEN
+                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(ClientError.class).hasMessage("Upload buffers exhausted"))
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private Mono<PutObjectResponse> upload(int size, Long contentLength) {
+        // the content arrives in chunks of 1MB
+        List<ByteBuffer> chunks = Flux.range(0, size / MB).map(i -> ByteBuffer.allocate(MB)).collectList().block();
+
+        return uploader.upload("releases", "foo/bar/1.0.1/bar-1.0.1.jar", "application/java-archive", contentLength,
+                Flux.fromIterable(chunks), builder -> {
+                }, builder -> {
+                });
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.j3t.mvnio.storage;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+
+class S3CredentialsWebFilterTest {
+
+    S3CredentialsWebFilter filter = new S3CredentialsWebFilter(Duration.ofMinutes(1), 100);
+
+    List<AwsCredentialsProvider> credentialsProviders = new ArrayList<>();
+
+    WebFilterChain chain = exchange -> Mono.deferContextual(ctx -> {
+        credentialsProviders.add(ctx.getOrDefault(S3_CREDENTIALS_PROVIDER, null));
+        return Mono.empty();
+    });
+
+    @Test
+    void testCredentialsProviderIsReused() {
+        // WHEN
+        filter("Basic dXNlcjpzZWNyZXQ=");
+        filter("Basic dXNlcjpzZWNyZXQ=");
+
+        // THEN
+        assertThat(credentialsProviders).hasSize(2);
+        assertThat(credentialsProviders.get(0)).isSameAs(credentialsProviders.get(1));
+        assertThat(credentialsProviders.get(0).resolveCredentials().accessKeyId()).isEqualTo("user");
+        assertThat(credentialsProviders.get(0).resolveCredentials().secretAccessKey()).isEqualTo("secret");
+    }
+
+    @Test
+    void testCredentialsProvidersAreKeptApart() {
+        // WHEN
+        filter("Basic dXNlcjpzZWNyZXQ=");
+        filter("Basic dXNlcjpvdGhlcg==");
+
+        // THEN
+        assertThat(credentialsProviders.get(0).resolveCredentials().secretAccessKey()).isEqualTo("secret");
+        assertThat(credentialsProviders.get(1).resolveCredentials().secretAccessKey()).isEqualTo("other");
+    }
+
+    @Test
+    void testMalformedCredentialsAreIgnored() {
+        // WHEN
+        filter("Basic not-base64!");
+        filter("Basic dXNlcg==");
+
+        // THEN
+        assertThat(credentialsProviders).containsExactly(null, null);
+    }
+
+    private void filter(String authorization) {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/maven/releases/foo")
+                .header("Authorization", authorization));
+        filter.filter(exchange, chain).block();
+    }
+}
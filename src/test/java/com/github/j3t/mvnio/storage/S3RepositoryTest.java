@@ -60,6 +60,7 @@ class S3RepositoryTest {
         mc.createObject("releases", "a/c/1.0.0-SNAPSHOT/c-1.0.0-20201112.210809-1.pom");
         mc.createObject("releases", "a/c/1.0.0-SNAPSHOT/maven-metadata.xml");
         mc.createObject("releases", "a/c/maven-metadata.xml");
+        mc.createObject("releases", "a/c/0.txt");
     }
 
     @Test
@@ -186,6 +187,27 @@ class S3RepositoryTest {
                 .verifyComplete();
     }
 
+    @Test
+    void testListIsOrderedPerPage() {
+        // GIVEN
+        S3Repository s3Repository = new S3RepositoryS3AsyncClientImpl(S3AsyncClient.builder()
+                .region(Region.US_EAST_1)
+                .serviceConfiguration(c -> c.pathStyleAccessEnabled(true))
+                .endpointOverride(URI.create(minio.getExternalAddress()))
+                .build(), null, Long.MAX_VALUE, 1);
+
+        // WHEN
+        StepVerifier
+                .create(s3Repository
+                        .list("releases", "/a/c")
+                        .contextWrite(this::injectCredentials))
+
+                // THEN
+                // a page per entry
+                .expectNext("0.txt", "1.0.0-SNAPSHOT/", "1.0.0/", "maven-metadata.xml")
+                .verifyComplete();
+    }
+
     @Test
     void testListWithoutLeadingSlash() {
         // WHEN
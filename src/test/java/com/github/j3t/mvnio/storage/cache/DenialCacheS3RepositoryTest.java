@@ -0,0 +1,105 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+class DenialCacheS3RepositoryTest {
+
+    static final String KEY = "foo/bar/1.0.1/bar-1.0.1.pom";
+
+    S3Repository s3;
+
+    DenialCacheS3Repository cache;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+
+        cache = new DenialCacheS3Repository(s3,
+                new BucketPermissions(Duration.ofMinutes(1), 100, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void testInvalidCredentialsAreRejectedLocally() {
+        // GIVEN
+        when(s3.download(any(), any(), any())).thenReturn(Mono.error(s3Error("InvalidAccessKeyId")));
+        download("user");
+
+        // WHEN
+        download("user");
+
+        // THEN
+        verify(s3, times(1)).download("releases", KEY, null);
+    }
+
+    @Test
+    void testOtherCredentialsAreCheckedBySource() {
+        // GIVEN
+        when(s3.download(any(), any(), any())).thenReturn(Mono.error(s3Error("SignatureDoesNotMatch")));
+        download("user");
+
+        // WHEN
+        download("other-user");
+
+        // THEN
+        verify(s3, times(2)).download("releases", KEY, null);
+    }
+
+    @Test
+    void testAccessDeniedIsNotRemembered() {
+        // GIVEN
+        when(s3.download(any(), any(), any())).thenReturn(Mono.error(s3Error("AccessDenied")));
+        StepVerifier.create(cache.download("releases", KEY).contextWrite(ctx -> injectCredentials(ctx, "user")))
+                .verifyError(S3Exception.class);
+
+        // WHEN
+        StepVerifier.create(cache.download("releases", KEY).contextWrite(ctx -> injectCredentials(ctx, "user")))
+                .verifyError(S3Exception.class);
+
+        // THEN
+        verify(s3, times(2)).download("releases", KEY, null);
+    }
+
+    private void download(String username) {
+        StepVerifier.create(cache.download("releases", KEY).contextWrite(ctx -> injectCredentials(ctx, username)))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(ClientError.class)
+                        .extracting(error -> ((ClientError) error).getReturnCode())
+                        .isEqualTo(401))
+                .verify();
+    }
+
+    private static S3Exception s3Error(String errorCode) {
+        return (S3Exception) S3Exception.builder()
+                .statusCode(403)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode(errorCode).build())
+                .build();
+    }
+
+    private Context injectCredentials(Context context, String username) {
+        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create(username, "secret");
+        return context.put(S3_CREDENTIALS_PROVIDER, credentialsProvider);
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+
+class DiskCacheS3RepositoryTest {
+
+    static final String CONTENT = "<project></project>";
+
+    @TempDir
+    Path directory;
+
+    S3Repository s3;
+
+    DiskCacheS3Repository cache;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+        when(s3.download(any(), any())).thenAnswer(invocation -> Mono.just(Download.builder()
+                .content(Flux.just(ByteBuffer.wrap(CONTENT.substring(0, 5).getBytes(UTF_8)),
+                        ByteBuffer.wrap(CONTENT.substring(5).getBytes(UTF_8))))
+                .contentType("application/xml")
+                .contentLength(CONTENT.length())
+                .build()));
+
+        cache = new DiskCacheS3Repository(s3, directory, DataSize.ofMegabytes(1),
+                new BucketPermissions(Duration.ofMinutes(1), 100));
+    }
+
+    @Test
+    void testReleaseIsServedFromDisk() {
+        // GIVEN
+        download("foo/bar/1.0.1/bar-1.0.1.pom", "user");
+
+        // WHEN
+        Download download = download("foo/bar/1.0.1/bar-1.0.1.pom", "user");
+
+        // THEN
+        assertThat(download.getFile()).isNotNull().hasContent(CONTENT);
+        verify(s3, times(1)).download("releases", "foo/bar/1.0.1/bar-1.0.1.pom");
+    }
+
+    @Test
+    void testOtherCredentialsAreCheckedBySource() {
+        // GIVEN
+        download("foo/bar/1.0.1/bar-1.0.1.pom", "user");
+
+        // WHEN
+        Download download = download("foo/bar/1.0.1/bar-1.0.1.pom", "other-user");
+
+        // THEN
+        assertThat(download.getFile()).isNull();
+        verify(s3, times(2)).download("releases", "foo/bar/1.0.1/bar-1.0.1.pom");
+    }
+
+    @Test
+    void testSnapshotIsNotCached() {
+        // GIVEN
+        download("foo/bar/1.0.1-SNAPSHOT/bar-1.0.1-20201023.142512-1.pom", "user");
+
+        // WHEN
+        Download download = download("foo/bar/1.0.1-SNAPSHOT/bar-1.0.1-20201023.142512-1.pom", "user");
+
+        // THEN
+        assertThat(download.getFile()).isNull();
+        verify(s3, times(2)).download("releases", "foo/bar/1.0.1-SNAPSHOT/bar-1.0.1-20201023.142512-1.pom");
+    }
+
+    @Test
+    void testMetadataIsNotCached() {
+        // GIVEN
+        download("foo/bar/maven-metadata.xml", "user");
+
+        // WHEN
+        Download download = download("foo/bar/maven-metadata.xml", "user");
+
+        // THEN
+        assertThat(download.getFile()).isNull();
+        verify(s3, times(2)).download("releases", "foo/bar/maven-metadata.xml");
+    }
+
+    @Test
+    void testRangeIsServedFromDisk() {
+        // GIVEN
+        download("foo/bar/1.0.1/bar-1.0.1.pom", "user");
+
+        // WHEN
+        Download download = cache.download("releases", "foo/bar/1.0.1/bar-1.0.1.pom", "bytes=1-7")
+                .contextWrite(ctx -> injectCredentials(ctx, "user"))
+                .block();
+
+        // THEN
+        assertThat(download.getFile()).isNotNull();
+        assertThat(download.getFilePosition()).isEqualTo(1);
+        assertThat(download.getContentLength()).isEqualTo(7);
+        assertThat(download.getContentRange()).isEqualTo("bytes 1-7/" + CONTENT.length());
+        StepVerifier.create(download.getContent().reduce(new StringBuilder(), (sb, b) -> sb.append(UTF_8.decode(b))))
+                .expectNextMatches(sb -> sb.toString().equals(CONTENT.substring(1, 8)))
+                .verifyComplete();
+        verify(s3, never()).download(any(), any(), any());
+    }
+
+    /**
+     * Downloads the given object and consumes its content.
+     */
+    private Download download(String key, String username) {
+        Download download = cache.download("releases", key)
+                .contextWrite(ctx -> injectCredentials(ctx, username))
+                .block();
+
+        StepVerifier.create(download.getContent().reduce(new StringBuilder(), (sb, b) -> sb.append(UTF_8.decode(b))))
+                .expectNextMatches(sb -> sb.toString().equals(CONTENT))
+                .verifyComplete();
+
+        return download;
+    }
+
+    private Context injectCredentials(Context context, String username) {
+        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create(username, "secret");
+        return context.put(S3_CREDENTIALS_PROVIDER, credentialsProvider);
+    }
+}
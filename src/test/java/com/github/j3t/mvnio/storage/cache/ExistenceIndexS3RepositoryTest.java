@@ -0,0 +1,137 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+class ExistenceIndexS3RepositoryTest {
+
+    static final String EXISTING = "foo/bar/1.0.0/bar-1.0.0.pom";
+    static final String ABSENT = "foo/bar/1.0.1/bar-1.0.1.pom";
+
+    S3Repository s3;
+
+    ExistenceIndexS3Repository index;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+        when(s3.keys("releases", null)).thenReturn(Flux.just(EXISTING, "foo/bar/maven-metadata.xml"));
+        when(s3.exists(any(), any())).thenAnswer(invocation -> Mono.just(EXISTING.equals(invocation.getArgument(1))));
+        when(s3.upload(any(), any(), any(), any(), any())).thenReturn(Mono.just(PutObjectResponse.builder().build()));
+
+        index = new ExistenceIndexS3Repository(s3, 1000, Duration.ofHours(1), 100, Duration.ofMinutes(10),
+                new BucketPermissions(Duration.ofMinutes(1), 100));
+    }
+
+    @Test
+    void testAbsentObjectIsAnsweredByBloomFilter() {
+        // WHEN (the first check triggers the listing, which completes immediately here)
+        boolean exists = exists(ABSENT);
+
+        // THEN
+        assertThat(exists).isFalse();
+        verify(s3, times(1)).keys("releases", null);
+        verify(s3, never()).exists("releases", ABSENT);
+    }
+
+    @Test
+    void testConfirmMissingBypassesBloomFilter() {
+        // GIVEN
+        exists(ABSENT);
+
+        // WHEN
+        boolean exists = index.exists("releases", ABSENT)
+                .contextWrite(ctx -> injectCredentials(ctx).put(S3Repository.CONFIRM_MISSING, true))
+                .block();
+
+        // THEN
+        assertThat(exists).isFalse();
+        verify(s3, times(1)).exists("releases", ABSENT);
+    }
+
+    @Test
+    void testExistingObjectIsRemembered() {
+        // GIVEN
+        exists(EXISTING);
+
+        // WHEN
+        boolean exists = exists(EXISTING);
+
+        // THEN
+        assertThat(exists).isTrue();
+        verify(s3, times(1)).exists("releases", EXISTING);
+    }
+
+    @Test
+    void testExistingObjectIsForgottenAfterTtl() {
+        // GIVEN (e.g. removed directly in S3 meanwhile)
+        index = new ExistenceIndexS3Repository(s3, 1000, Duration.ofHours(1), 100, Duration.ZERO,
+                new BucketPermissions(Duration.ofMinutes(1), 100));
+        exists(EXISTING);
+
+        // WHEN
+        exists(EXISTING);
+
+        // THEN
+        verify(s3, times(2)).exists("releases", EXISTING);
+    }
+
+    @Test
+    void testUploadedObjectIsAdded() {
+        // GIVEN
+        exists(ABSENT);
+        index.upload("releases", ABSENT, "application/xml", 0L, Flux.empty())
+                .contextWrite(this::injectCredentials)
+                .block();
+        when(s3.exists("releases", ABSENT)).thenReturn(Mono.just(true));
+
+        // WHEN
+        boolean exists = exists(ABSENT);
+
+        // THEN
+        assertThat(exists).isTrue();
+    }
+
+    @Test
+    void testMutableObjectIsCheckedBySource() {
+        // GIVEN
+        exists("foo/bar/maven-metadata.xml");
+
+        // WHEN
+        exists("foo/bar/maven-metadata.xml");
+
+        // THEN
+        verify(s3, times(2)).exists("releases", "foo/bar/maven-metadata.xml");
+        verify(s3, never()).keys(any(), any());
+    }
+
+    private boolean exists(String key) {
+        return index.exists("releases", key).contextWrite(this::injectCredentials).block();
+    }
+
+    private Context injectCredentials(Context context) {
+        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create("user", "secret");
+        return context.put(S3_CREDENTIALS_PROVIDER, credentialsProvider);
+    }
+}
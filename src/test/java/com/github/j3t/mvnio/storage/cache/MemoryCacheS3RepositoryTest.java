@@ -0,0 +1,173 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+
+class MemoryCacheS3RepositoryTest {
+
+    static final String CONTENT = "<metadata></metadata>";
+
+    S3Repository s3;
+
+    MemoryCacheS3Repository cache;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+        when(s3.download(any(), any())).thenAnswer(invocation -> Mono.just(Download.builder()
+                .content(Flux.just(ByteBuffer.wrap(CONTENT.getBytes(UTF_8))))
+                .contentType("application/xml")
+                .contentLength(CONTENT.length())
+                .eTag("\"1\"")
+                .build()));
+
+        cache = new MemoryCacheS3Repository(s3, DataSize.ofKilobytes(64), DataSize.ofKilobytes(1), Duration.ofMillis(200),
+                new BucketPermissions(Duration.ofMinutes(1), 100));
+    }
+
+    @Test
+    void testImmutableObjectIsServedFromMemory() {
+        // GIVEN
+        download("foo/bar/1.0.1/bar-1.0.1.pom");
+
+        // WHEN
+        List<ByteBuffer> content = download("foo/bar/1.0.1/bar-1.0.1.pom");
+
+        // THEN
+        assertThat(content).singleElement().matches(ByteBuffer::isDirect);
+        verify(s3, times(1)).download("releases", "foo/bar/1.0.1/bar-1.0.1.pom");
+        verify(s3, never()).head(any(), any());
+    }
+
+    @Test
+    void testMutableObjectIsServedFromMemoryUntilExpired() {
+        // GIVEN
+        download("foo/bar/maven-metadata.xml");
+
+        // WHEN
+        List<ByteBuffer> content = download("foo/bar/maven-metadata.xml");
+
+        // THEN
+        assertThat(content).singleElement().matches(ByteBuffer::isDirect);
+        verify(s3, times(1)).download("releases", "foo/bar/maven-metadata.xml");
+        verify(s3, never()).head(any(), any());
+    }
+
+    @Test
+    void testExpiredMutableObjectIsDownloadedAgain() {
+        // GIVEN
+        download("foo/bar/maven-metadata.xml");
+        Mono.delay(Duration.ofMillis(300)).block();
+
+        // WHEN
+        download("foo/bar/maven-metadata.xml");
+
+        // THEN
+        verify(s3, times(2)).download("releases", "foo/bar/maven-metadata.xml");
+    }
+
+    @Test
+    void testUploadedObjectIsForgotten() {
+        // GIVEN
+        when(s3.upload(any(), any(), any(), any(), any())).thenReturn(Mono.error(new IllegalStateException("conflict")));
+        download("foo/bar/maven-metadata.xml");
+
+        // WHEN
+        cache.upload("releases", "foo/bar/maven-metadata.xml", "application/xml", 1L, Flux.empty())
+                .onErrorResume(e -> Mono.empty())
+                .block();
+        download("foo/bar/maven-metadata.xml");
+
+        // THEN
+        verify(s3, times(2)).download("releases", "foo/bar/maven-metadata.xml");
+    }
+
+    @Test
+    void testObjectIsNotCachedIfBuffersInFlightAreExhausted() {
+        // GIVEN (a quarter of the size is reserved for the buffers in flight)
+        cache = new MemoryCacheS3Repository(s3, DataSize.ofBytes(CONTENT.length() * 4L - 1), DataSize.ofKilobytes(1),
+                Duration.ofMillis(200), new BucketPermissions(Duration.ofMinutes(1), 100));
+
+        // WHEN
+        List<ByteBuffer> content = download("foo/bar/1.0.1/bar-1.0.1.pom");
+
+        // THEN
+        assertThat(content).singleElement().matches(buffer -> !buffer.isDirect());
+    }
+
+    @Test
+    void testObjectOfUnknownSizeIsNotCached() {
+        // GIVEN (e.g. fetched from an upstream repository without length)
+        when(s3.download("releases", "foo/bar/1.0.1/bar-1.0.1.pom")).thenAnswer(invocation -> Mono.just(Download.builder()
+                .content(Flux.just(ByteBuffer.wrap(CONTENT.getBytes(UTF_8))))
+                .contentType("application/xml")
+                .contentLength(-1)
+                .build()));
+        download("foo/bar/1.0.1/bar-1.0.1.pom");
+
+        // WHEN
+        List<ByteBuffer> content = download("foo/bar/1.0.1/bar-1.0.1.pom");
+
+        // THEN
+        assertThat(content).singleElement().matches(buffer -> !buffer.isDirect());
+        verify(s3, times(2)).download("releases", "foo/bar/1.0.1/bar-1.0.1.pom");
+    }
+
+    @Test
+    void testGrantOfOtherObjectIsNotEnough() {
+        // GIVEN (cached by another client, the client is allowed to read another object of the bucket only)
+        download("foo/bar/1.0.1/bar-1.0.1.pom", "other");
+        download("foo/baz/1.0.1/baz-1.0.1.pom", "user");
+
+        // WHEN
+        download("foo/bar/1.0.1/bar-1.0.1.pom", "user");
+
+        // THEN
+        verify(s3, times(2)).download("releases", "foo/bar/1.0.1/bar-1.0.1.pom");
+    }
+
+    private List<ByteBuffer> download(String key) {
+        return download(key, "user");
+    }
+
+    private List<ByteBuffer> download(String key, String username) {
+        List<ByteBuffer> content = cache.download("releases", key)
+                .flatMap(download -> download.getContent().collectList())
+                .contextWrite(ctx -> injectCredentials(ctx, username))
+                .block();
+
+        assertThat(content).extracting(b -> UTF_8.decode(b.duplicate()).toString()).containsExactly(CONTENT);
+
+        return content;
+    }
+
+    private Context injectCredentials(Context context, String username) {
+        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create(username, "secret");
+        return context.put(S3_CREDENTIALS_PROVIDER, credentialsProvider);
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+class NegativeCacheS3RepositoryTest {
+
+    static final String KEY = "foo/bar/1.0.1/bar-1.0.1.pom";
+
+    S3Repository s3;
+    BucketPermissions permissions;
+
+    NegativeCacheS3Repository cache;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+        when(s3.head(any(), any())).thenReturn(Mono.error(NoSuchKeyException.builder().build()));
+        when(s3.download(any(), any(), any())).thenReturn(Mono.error(NoSuchKeyException.builder().build()));
+        when(s3.upload(any(), any(), any(), any(), any())).thenReturn(Mono.just(PutObjectResponse.builder().build()));
+
+        permissions = new BucketPermissions(Duration.ofMinutes(1), 100);
+        cache = new NegativeCacheS3Repository(s3, Duration.ofMinutes(1), 100, permissions);
+    }
+
+    @Test
+    void testMissingObjectIsRemembered() {
+        // GIVEN
+        head("user");
+
+        // WHEN
+        head("user");
+        download("user");
+
+        // THEN
+        verify(s3, times(1)).head("releases", KEY);
+        verify(s3, times(0)).download(any(), any(), any());
+    }
+
+    @Test
+    void testMissingObjectIsRememberedForExists() {
+        // GIVEN
+        when(s3.exists(any(), any())).thenReturn(Mono.just(false));
+        exists("user");
+
+        // WHEN
+        boolean exists = exists("user");
+
+        // THEN
+        assertThat(exists).isFalse();
+        verify(s3, times(1)).exists("releases", KEY);
+        verify(s3, times(0)).head(any(), any());
+    }
+
+    @Test
+    void testOtherCredentialsAreCheckedBySource() {
+        // GIVEN
+        head("user");
+
+        // WHEN
+        head("other-user");
+
+        // THEN
+        verify(s3, times(2)).head("releases", KEY);
+    }
+
+    @Test
+    void testMissingObjectDoesNotAuthorizeReads() {
+        // WHEN
+        head("user");
+
+        // THEN (a 404 proves that the client is allowed to list the key, not to read objects)
+        assertThat(permissions.canRead(injectCredentials(Context.empty(), "user"), "releases", KEY)).isFalse();
+        assertThat(permissions.canList(injectCredentials(Context.empty(), "user"), "releases", KEY)).isTrue();
+    }
+
+    @Test
+    void testUploadInvalidatesEntry() {
+        // GIVEN
+        head("user");
+
+        // WHEN
+        cache.upload("releases", KEY, "application/xml", 0L, Flux.empty())
+                .contextWrite(ctx -> injectCredentials(ctx, "user"))
+                .block();
+        head("user");
+
+        // THEN
+        verify(s3, times(2)).head("releases", KEY);
+    }
+
+    @Test
+    void testConfirmMissingBypassesCache() {
+        // GIVEN
+        head("user");
+
+        // WHEN
+        StepVerifier.create(cache.head("releases", KEY)
+                        .contextWrite(ctx -> injectCredentials(ctx, "user").put(S3Repository.CONFIRM_MISSING, true)))
+                .verifyError(NoSuchKeyException.class);
+
+        // THEN
+        verify(s3, times(2)).head("releases", KEY);
+    }
+
+    @Test
+    void testLookupDuringUploadIsNotRemembered() {
+        // GIVEN a lookup which is answered by S3 after an upload
+        Sinks.Empty<Void> answer = Sinks.empty();
+        when(s3.head(any(), any())).thenReturn(answer.asMono().then(Mono.error(NoSuchKeyException.builder().build())));
+        Mono<?> lookup = cache.head("releases", KEY).contextWrite(ctx -> injectCredentials(ctx, "user")).onErrorComplete().cache();
+        lookup.subscribe();
+        cache.upload("releases", KEY, "application/xml", 0L, Flux.empty())
+                .contextWrite(ctx -> injectCredentials(ctx, "user"))
+                .block();
+        answer.tryEmitEmpty();
+        lookup.block();
+
+        // WHEN
+        head("user");
+
+        // THEN
+        verify(s3, times(2)).head("releases", KEY);
+    }
+
+    private void head(String username) {
+        StepVerifier.create(cache.head("releases", KEY).contextWrite(ctx -> injectCredentials(ctx, username)))
+                .verifyError(NoSuchKeyException.class);
+    }
+
+    private boolean exists(String username) {
+        return cache.exists("releases", KEY).contextWrite(ctx -> injectCredentials(ctx, username)).block();
+    }
+
+    private void download(String username) {
+        StepVerifier.create(cache.download("releases", KEY).contextWrite(ctx -> injectCredentials(ctx, username)))
+                .verifyError(NoSuchKeyException.class);
+    }
+
+    private Context injectCredentials(Context context, String username) {
+        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create(username, "secret");
+        return context.put(S3_CREDENTIALS_PROVIDER, credentialsProvider);
+    }
+}
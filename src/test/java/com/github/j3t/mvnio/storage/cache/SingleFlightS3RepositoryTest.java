@@ -0,0 +1,220 @@
+package com.github.j3t.mvnio.storage.cache;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+class SingleFlightS3RepositoryTest {
+
+    static final String KEY = "foo/bar/1.0.1/bar-1.0.1.jar";
+
+    S3Repository s3;
+
+    BucketPermissions permissions;
+
+    SingleFlightS3Repository singleFlight;
+
+    Sinks.One<Download> response;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+        response = Sinks.one();
+        when(s3.download("releases", KEY, null))
+                .thenReturn(response.asMono())
+                .thenAnswer(invocation -> Mono.just(download("a", "b", "c", "d", "e")));
+        when(s3.head("releases", KEY)).thenReturn(Mono.just(HeadObjectResponse.builder().build()));
+
+        permissions = new BucketPermissions(Duration.ofMinutes(1), 100);
+        singleFlight = new SingleFlightS3Repository(s3, 2, permissions, Duration.ofMillis(200));
+    }
+
+    @Test
+    void testConcurrentDownloadsShareRequest() {
+        // GIVEN
+        permissions.grantRead(credentials("user"), "releases", KEY);
+        Mono<Download> first = download("user").cache();
+        Mono<Download> second = download("user").cache();
+        first.subscribe();
+        second.subscribe();
+
+        // WHEN
+        response.tryEmitValue(download("a", "b"));
+
+        // THEN
+        assertThat(content(first.block())).isEqualTo("ab");
+        assertThat(content(second.block())).isEqualTo("ab");
+        verify(s3, times(1)).download("releases", KEY, null);
+    }
+
+    @Test
+    void testUnknownClientIsCheckedBeforeJoining() {
+        // GIVEN
+        Mono<Download> first = download("user").cache();
+        Mono<Download> second = download("other-user").cache();
+        first.subscribe();
+        second.subscribe();
+
+        // WHEN
+        response.tryEmitValue(download("a", "b"));
+
+        // THEN
+        assertThat(content(second.block())).isEqualTo("ab");
+        verify(s3, times(1)).head("releases", KEY);
+        verify(s3, times(1)).download("releases", KEY, null);
+    }
+
+    @Test
+    void testFollowerDownloadsSeparatelyIfLeaderIsDenied() {
+        // GIVEN
+        permissions.grantRead(credentials("user"), "releases", KEY);
+        permissions.grantRead(credentials("other-user"), "releases", KEY);
+        Mono<Download> first = download("user").cache();
+        Mono<Download> second = download("other-user").cache();
+        first.subscribe(download -> {
+        }, e -> {
+        });
+        second.subscribe();
+
+        // WHEN
+        response.tryEmitError(S3Exception.builder()
+                .statusCode(403)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("AccessDenied").build())
+                .build());
+
+        // THEN
+        StepVerifier.create(first).verifyError(S3Exception.class);
+        assertThat(content(second.block())).isEqualTo("abcde");
+        verify(s3, times(2)).download("releases", KEY, null);
+    }
+
+    @Test
+    void testLateClientDownloadsSeparately() {
+        // GIVEN
+        permissions.grantRead(credentials("user"), "releases", KEY);
+        Mono<Download> first = download("user").cache();
+        Mono<Download> second = download("user").cache();
+        first.subscribe();
+        second.subscribe();
+        response.tryEmitValue(download("a", "b", "c", "d", "e"));
+
+        // WHEN
+        String firstContent = content(first.block());
+        String secondContent = content(second.block());
+
+        // THEN
+        assertThat(firstContent).isEqualTo("abcde");
+        assertThat(secondContent).isEqualTo("abcde");
+        verify(s3, times(2)).download("releases", KEY, null);
+    }
+
+    @Test
+    void testChangedObjectIsReleasedBeforeFailing() {
+        // GIVEN
+        var released = new AtomicBoolean();
+        when(s3.download("releases", KEY, null))
+                .thenReturn(response.asMono())
+                .thenReturn(Mono.just(download("a", "b", "c", "d", "e").toBuilder()
+                        .eTag("\"2\"")
+                        .content(Flux.<ByteBuffer>never().doOnCancel(() -> released.set(true)))
+                        .build()));
+        permissions.grantRead(credentials("user"), "releases", KEY);
+        Mono<Download> first = download("user").cache();
+        Mono<Download> second = download("user").cache();
+        first.subscribe();
+        second.subscribe();
+        response.tryEmitValue(download("a", "b", "c", "d", "e"));
+        content(first.block());
+
+        // WHEN
+        StepVerifier.create(second.flatMapMany(Download::getContent))
+
+                // THEN
+                .verifyError(IllegalStateException.class);
+        assertThat(released).isTrue();
+    }
+
+    @Test
+    void testUnclaimedContentIsReleased() {
+        // GIVEN
+        var released = new AtomicBoolean();
+        permissions.grantRead(credentials("user"), "releases", KEY);
+        Mono<Download> first = download("user").cache();
+        first.subscribe();
+        response.tryEmitValue(download("a", "b").toBuilder()
+                .content(Flux.<ByteBuffer>never().doOnCancel(() -> released.set(true)))
+                .build());
+        first.block();
+
+        // WHEN
+        Mono.delay(Duration.ofMillis(500)).block();
+
+        // THEN
+        assertThat(released).isTrue();
+        assertThat(content(download("user").block())).isEqualTo("abcde");
+        verify(s3, times(2)).download("releases", KEY, null);
+    }
+
+    @Test
+    void testRangeIsNotShared() {
+        // GIVEN
+        when(s3.download("releases", KEY, "bytes=0-1")).thenAnswer(invocation -> Mono.just(download("a")));
+
+        // WHEN
+        singleFlight.download("releases", KEY, "bytes=0-1").contextWrite(ctx -> ctx.putAll(credentials("user").readOnly())).block();
+        singleFlight.download("releases", KEY, "bytes=0-1").contextWrite(ctx -> ctx.putAll(credentials("user").readOnly())).block();
+
+        // THEN
+        verify(s3, times(2)).download(any(), any(), any());
+    }
+
+    private Mono<Download> download(String username) {
+        return singleFlight.download("releases", KEY).contextWrite(ctx -> ctx.putAll(credentials(username).readOnly()));
+    }
+
+    private static Download download(String... buffers) {
+        return Download.builder()
+                .content(Flux.fromArray(buffers).map(buffer -> ByteBuffer.wrap(buffer.getBytes(UTF_8))))
+                .eTag("\"1\"")
+                .build();
+    }
+
+    private static String content(Download download) {
+        return download.getContent()
+                .map(buffer -> UTF_8.decode(buffer).toString())
+                .reduce(String::concat)
+                .block();
+    }
+
+    private static Context credentials(String username) {
+        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create(username, "secret");
+        return Context.of(S3_CREDENTIALS_PROVIDER, credentialsProvider);
+    }
+}
@@ -0,0 +1,307 @@
+package com.github.j3t.mvnio.storage.checksum;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.util.unit.DataSize;
+
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+class ChecksumS3RepositoryTest {
+
+    static final String KEY = "foo/bar/1.0.1/bar-1.0.1.pom";
+    static final String CONTENT = "<project></project>";
+    static final String SHA1 = "e2e1a3ce7b8a6a8cf3ed1a4e5d1ab2f8a1b17c0b";
+
+    S3Repository s3;
+    Map<String, String> uploaded = new ConcurrentHashMap<>();
+    Map<String, Map<String, String>> metadata = new ConcurrentHashMap<>();
+    Map<String, Boolean> createOnly = new ConcurrentHashMap<>();
+
+    ChecksumS3Repository checksums;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+        when(s3.upload(any(), any(), any(), any(), any())).thenAnswer(invocation -> Mono.deferContextual(ctx -> {
+            createOnly.put(invocation.getArgument(1), ctx.getOrDefault(S3Repository.CREATE_ONLY, false));
+            metadata.put(invocation.getArgument(1), ctx.getOrDefault(S3Repository.METADATA, Map.of()));
+            return Flux.from(invocation.<Publisher<ByteBuffer>>getArgument(4))
+                    .map(buffer -> UTF_8.decode(buffer).toString())
+                    .reduce(String::concat)
+                    .doOnNext(content -> uploaded.put(invocation.getArgument(1), content))
+                    .thenReturn(PutObjectResponse.builder().eTag("\"1\"").build());
+        }));
+        when(s3.head(any(), any())).thenReturn(Mono.error(NoSuchKeyException.builder().build()));
+        checksums = new ChecksumS3Repository(s3, 100, DataSize.ofKilobytes(1), new BucketPermissions(Duration.ofMinutes(1), 100));
+    }
+
+    @Test
+    void testChecksumsAreStoredAsMetadata() {
+        // WHEN
+        upload(KEY, CONTENT);
+
+        // THEN
+        assertThat(uploaded.get(KEY)).isEqualTo(CONTENT);
+        assertThat(metadata.get(KEY))
+                .containsEntry("checksum-md5", md5(CONTENT))
+                .containsEntry("checksum-sha1", sha1(CONTENT))
+                .containsKeys("checksum-sha256", "checksum-sha512");
+        verify(s3, times(1)).upload(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testChecksumFilesOfLargeFileAreStored() {
+        // GIVEN
+        givenMaxObjectSize(DataSize.ofBytes(4));
+
+        // WHEN
+        upload(KEY, CONTENT);
+
+        // THEN
+        for (String extension : List.of("md5", "sha1", "sha256", "sha512")) {
+            verify(s3).upload(eq("releases"), eq(KEY + "." + extension), eq("text/plain"), any(), any());
+        }
+        assertThat(uploaded.get(KEY + ".sha1")).isEqualTo(sha1(CONTENT));
+        assertThat(uploaded.get(KEY)).isEqualTo(CONTENT);
+        assertThat(metadata.get(KEY)).isEmpty();
+    }
+
+    @Test
+    void testChecksumFilesCanBeReplaced() {
+        // GIVEN
+        givenMaxObjectSize(DataSize.ofBytes(4));
+
+        // WHEN
+        checksums.upload("releases", KEY, "application/xml", (long) CONTENT.length(),
+                        Flux.just(ByteBuffer.wrap(CONTENT.getBytes(UTF_8))))
+                .contextWrite(ctx -> injectCredentials(ctx).put(S3Repository.CREATE_ONLY, true))
+                .block();
+
+        // THEN
+        assertThat(createOnly).containsEntry(KEY, true).containsEntry(KEY + ".sha1", false);
+    }
+
+    @Test
+    void testFileIsStoredIfChecksumFilesAreNot() {
+        // GIVEN
+        givenMaxObjectSize(DataSize.ofBytes(4));
+        when(s3.upload(any(), eq(KEY + ".sha1"), any(), any(), any())).thenReturn(Mono.error(new IllegalStateException("S3 down")));
+
+        // WHEN
+        PutObjectResponse response = checksums.upload("releases", KEY, "application/xml", (long) CONTENT.length(),
+                        Flux.just(ByteBuffer.wrap(CONTENT.getBytes(UTF_8))))
+                .contextWrite(this::injectCredentials)
+                .block();
+
+        // THEN
+        assertThat(response.eTag()).isEqualTo("\"1\"");
+    }
+
+    @Test
+    void testFileLargerThanAnnouncedIsRejected() {
+        // WHEN
+        StepVerifier.create(checksums.upload("releases", KEY, "application/xml", 4L,
+                                Flux.just(ByteBuffer.wrap(CONTENT.getBytes(UTF_8))))
+                        .contextWrite(this::injectCredentials))
+
+                // THEN
+                .verifyError(ClientError.class);
+        verify(s3, never()).upload(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testChecksumIsServedFromMetadata() {
+        // GIVEN
+        givenStoredFile(Map.of("checksum-sha1", sha1(CONTENT)));
+
+        // WHEN
+        String sha1 = downloadSha1();
+
+        // THEN
+        assertThat(sha1).isEqualTo(sha1(CONTENT));
+        verify(s3, never()).download(any(), any(), any());
+    }
+
+    @Test
+    void testChecksumIsServedFromMemory() {
+        // GIVEN
+        givenStoredFile(Map.of("checksum-sha1", sha1(CONTENT)));
+
+        // WHEN
+        String first = downloadSha1();
+        String second = downloadSha1();
+
+        // THEN
+        assertThat(first).isEqualTo(sha1(CONTENT));
+        assertThat(second).isEqualTo(sha1(CONTENT));
+        // the first request proves that the client is allowed to read
+        verify(s3, times(1)).head("releases", KEY);
+        verify(s3, never()).download(any(), any(), any());
+    }
+
+    @Test
+    void testChecksumHeadIsServedFromMemory() {
+        // GIVEN
+        givenStoredFile(Map.of("checksum-sha1", sha1(CONTENT)));
+        downloadSha1();
+
+        // WHEN
+        HeadObjectResponse head = checksums.head("releases", KEY + ".sha1").contextWrite(this::injectCredentials).block();
+
+        // THEN
+        assertThat(head.contentLength()).isEqualTo(sha1(CONTENT).length());
+        assertThat(head.eTag()).isEqualTo("\"" + md5(sha1(CONTENT)) + "\"");
+        verify(s3, times(1)).head("releases", KEY);
+        verify(s3, never()).head("releases", KEY + ".sha1");
+    }
+
+    @Test
+    void testChecksumFileIsServedIfFileHasNoChecksums() {
+        // GIVEN
+        givenStoredFile(Map.of());
+        givenStoredChecksum(SHA1);
+
+        // WHEN
+        String first = downloadSha1();
+        String second = downloadSha1();
+
+        // THEN
+        assertThat(first).isEqualTo(SHA1);
+        assertThat(second).isEqualTo(SHA1);
+        // the missing checksums of an immutable file are remembered
+        verify(s3, times(1)).head("releases", KEY);
+    }
+
+    @Test
+    void testMatchingChecksumIsNotStored() {
+        // GIVEN
+        upload(KEY, CONTENT);
+
+        // WHEN
+        upload(KEY + ".sha1", sha1(CONTENT));
+
+        // THEN
+        verify(s3, never()).upload(eq("releases"), eq(KEY + ".sha1"), any(), any(), any());
+        verify(s3, never()).head(any(), any());
+    }
+
+    @Test
+    void testMismatchingChecksumIsRejected() {
+        // GIVEN
+        givenStoredFile(Map.of("checksum-sha1", sha1(CONTENT)));
+
+        // WHEN
+        StepVerifier.create(checksums.upload("releases", KEY + ".sha1", "text/plain", 40L,
+                                Flux.just(ByteBuffer.wrap(SHA1.getBytes(UTF_8))))
+                        .contextWrite(this::injectCredentials))
+
+                // THEN
+                .verifyError(ClientError.class);
+    }
+
+    @Test
+    void testMismatchingChecksumFileIsRejected() {
+        // GIVEN
+        givenStoredFile(Map.of());
+        givenStoredChecksum(sha1(CONTENT));
+
+        // WHEN
+        StepVerifier.create(checksums.upload("releases", KEY + ".sha1", "text/plain", 40L,
+                                Flux.just(ByteBuffer.wrap(SHA1.getBytes(UTF_8))))
+                        .contextWrite(this::injectCredentials))
+
+                // THEN
+                .verifyError(ClientError.class);
+    }
+
+    @Test
+    void testChecksumOfFileWithoutChecksumFilesIsStored() {
+        // GIVEN
+        when(s3.download("releases", KEY + ".sha1")).thenReturn(Mono.error(NoSuchKeyException.builder().build()));
+
+        // WHEN
+        upload(KEY + ".sha1", SHA1);
+
+        // THEN
+        verify(s3).upload(eq("releases"), eq(KEY + ".sha1"), any(), eq(40L), any());
+    }
+
+    private void givenMaxObjectSize(DataSize maxObjectSize) {
+        checksums = new ChecksumS3Repository(s3, 100, maxObjectSize, new BucketPermissions(Duration.ofMinutes(1), 100));
+    }
+
+    private void givenStoredFile(Map<String, String> metadata) {
+        when(s3.head("releases", KEY)).thenReturn(Mono.just(HeadObjectResponse.builder()
+                .contentLength((long) CONTENT.length())
+                .metadata(metadata)
+                .build()));
+    }
+
+    private void givenStoredChecksum(String sha1) {
+        Download download = Download.builder()
+                .content(Flux.defer(() -> Flux.just(ByteBuffer.wrap(sha1.getBytes(UTF_8)))))
+                .contentLength(sha1.length())
+                .build();
+        when(s3.download("releases", KEY + ".sha1")).thenReturn(Mono.just(download));
+        when(s3.download("releases", KEY + ".sha1", null)).thenReturn(Mono.just(download));
+    }
+
+    private String downloadSha1() {
+        return checksums.download("releases", KEY + ".sha1")
+                .contextWrite(this::injectCredentials)
+                .flatMap(download -> download.getContent().map(buffer -> UTF_8.decode(buffer).toString()).next())
+                .block();
+    }
+
+    private void upload(String key, String content) {
+        checksums.upload("releases", key, "application/xml", (long) content.length(),
+                        Flux.just(ByteBuffer.wrap(content.getBytes(UTF_8))))
+                .contextWrite(this::injectCredentials)
+                .block();
+    }
+
+    private static String md5(String content) {
+        return HexFormat.of().formatHex(Checksum.MD5.newDigest().digest(content.getBytes(UTF_8)));
+    }
+
+    private static String sha1(String content) {
+        return HexFormat.of().formatHex(Checksum.SHA1.newDigest().digest(content.getBytes(UTF_8)));
+    }
+
+    private Context injectCredentials(Context context) {
+        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create("user", "secret");
+        return context.put(S3_CREDENTIALS_PROVIDER, credentialsProvider);
+    }
+}
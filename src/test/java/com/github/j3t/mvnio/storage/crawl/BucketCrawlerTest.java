@@ -0,0 +1,150 @@
+package com.github.j3t.mvnio.storage.crawl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Flux;
+
+class BucketCrawlerTest {
+
+    static final List<String> KEYS = List.of(
+            "README.md",
+            "a-1.txt",
+            "a/a/1.0/a-1.0.pom",
+            "a/a/maven-metadata.xml",
+            "a/b/1.0/b-1.0.pom",
+            "a/maven-metadata.xml",
+            "b/a/1.0/a-1.0.pom",
+            "b/c/1.0/c-1.0.pom",
+            "c.txt");
+
+    S3Repository s3;
+
+    // number of list requests in progress and the maximum seen
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+        var keys = new TreeSet<>(KEYS);
+
+        // directories before files, like the list requests of S3 do
+        when(s3.list(eq("releases"), anyString())).thenAnswer(invocation -> {
+            String prefix = invocation.<String>getArgument(1).substring(1);
+            var directories = new TreeSet<String>();
+            var files = new TreeSet<String>();
+
+            keys.tailSet(prefix).stream()
+                    .filter(key -> key.startsWith(prefix))
+                    .map(key -> key.substring(prefix.length()))
+                    .forEach(name -> {
+                        if (name.contains("/")) {
+                            directories.add(name.substring(0, name.indexOf('/') + 1));
+                        } else {
+                            files.add(name);
+                        }
+                    });
+
+            return Flux.concat(Flux.fromIterable(directories), Flux.fromIterable(files));
+        });
+
+        when(s3.keys(eq("releases"), anyString())).thenAnswer(invocation ->
+                listed(keys, invocation.getArgument(1), null));
+        when(s3.keys(eq("releases"), anyString(), anyString())).thenAnswer(invocation ->
+                listed(keys, invocation.getArgument(1), invocation.getArgument(2)));
+    }
+
+    @Test
+    void testKeysAreInKeyOrder() {
+        // WHEN
+        List<String> keys = new BucketCrawler(s3, 4, 2).keys("releases", null, null).collectList().block();
+
+        // THEN
+        assertThat(keys).containsExactlyElementsOf(KEYS);
+    }
+
+    @Test
+    void testShardsAreListedInParallel() {
+        // WHEN
+        new BucketCrawler(s3, 2, 2).keys("releases", null, null).blockLast();
+
+        // THEN
+        assertThat(maxInFlight.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testKeysStartAfter() {
+        // WHEN
+        List<String> keys = new BucketCrawler(s3, 4, 2).keys("releases", null, "a/a/1.0/a-1.0.pom").collectList().block();
+
+        // THEN
+        assertThat(keys).containsExactlyElementsOf(KEYS.subList(3, KEYS.size()));
+        verify(s3).keys("releases", "a/a/", "a/a/1.0/a-1.0.pom");
+        verify(s3, never()).list("releases", "/b/a/");
+    }
+
+    @Test
+    void testKeysOfPrefix() {
+        // WHEN
+        List<String> keys = new BucketCrawler(s3, 4, 1).keys("releases", "a/", null).collectList().block();
+
+        // THEN
+        assertThat(keys).containsExactly(
+                "a/a/1.0/a-1.0.pom", "a/a/maven-metadata.xml", "a/b/1.0/b-1.0.pom", "a/maven-metadata.xml");
+        verify(s3, never()).keys(any(), isNull());
+    }
+
+    @Test
+    void testShardsAreDiscoveredOnce() {
+        // GIVEN
+        var crawler = new BucketCrawler(s3, 4, 2);
+
+        // WHEN
+        crawler.keys("releases", null, null).take(2).blockLast();
+        crawler.keys("releases", null, "a/a/maven-metadata.xml").take(2).blockLast();
+
+        // THEN
+        verify(s3, times(1)).list("releases", "/");
+        verify(s3, times(1)).list("releases", "/a/");
+    }
+
+    @Test
+    void testKeysWithLowerParallelism() {
+        // WHEN
+        List<String> keys = new BucketCrawler(s3, 4, 2).keys("releases", null, null, 1).collectList().block();
+
+        // THEN
+        assertThat(keys).containsExactlyElementsOf(KEYS);
+        assertThat(maxInFlight.get()).isEqualTo(1);
+    }
+
+    private Flux<String> listed(TreeSet<String> keys, String prefix, String startAfter) {
+        return Flux.fromIterable(keys)
+                .filter(key -> key.startsWith(prefix) && (startAfter == null || key.compareTo(startAfter) > 0))
+                // each shard takes a while, so that the requests overlap
+                .delaySubscription(Duration.ofMillis(50))
+                .doOnSubscribe(s -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                // before the completion is passed on, which may start the next request
+                .doOnTerminate(inFlight::decrementAndGet)
+                .doOnCancel(inFlight::decrementAndGet);
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.j3t.mvnio.storage.crawl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Flux;
+
+class ShardedCrawlS3RepositoryTest {
+
+    S3Repository delegate = mock(S3Repository.class);
+    ShardedCrawlS3Repository repository = new ShardedCrawlS3Repository(delegate, 4, 2);
+
+    @Test
+    void testKeysOfPrefixAreNotCrawled() {
+        // GIVEN
+        when(delegate.keys("releases", "a/", null)).thenReturn(Flux.just("a/a-1.0.pom"));
+
+        // WHEN
+        var keys = repository.keys("releases", "a/", null).collectList().block();
+
+        // THEN
+        assertThat(keys).containsExactly("a/a-1.0.pom");
+        verify(delegate, never()).list(eq("releases"), anyString());
+    }
+
+    @Test
+    void testMetadata() {
+        // GIVEN
+        when(delegate.list("releases", "/")).thenReturn(Flux.just("a/", "b/"));
+        when(delegate.list("releases", "/a/")).thenReturn(Flux.just("maven-metadata.xml"));
+        when(delegate.list("releases", "/b/")).thenReturn(Flux.just("1.0/", "maven-metadata.xml"));
+        when(delegate.keys("releases", "b/1.0/")).thenReturn(Flux.just("b/1.0/b-1.0.pom"));
+
+        // WHEN
+        var metadata = repository.metadata("releases", null, 10).collectList().block();
+
+        // THEN
+        assertThat(metadata).containsExactly("/a/maven-metadata.xml", "/b/maven-metadata.xml");
+    }
+}
@@ -0,0 +1,227 @@
+package com.github.j3t.mvnio.storage.index;
+
+import static com.github.j3t.mvnio.storage.S3CredentialsWebFilter.S3_CREDENTIALS_PROVIDER;
+import static com.github.j3t.mvnio.storage.index.MetadataIndexS3Repository.INDEX_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Publisher;
+
+import com.github.j3t.mvnio.storage.BucketPermissions;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+class MetadataIndexS3RepositoryTest {
+
+    S3Repository s3;
+
+    MetadataIndexS3Repository index;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+        when(s3.download("releases", INDEX_KEY)).thenReturn(Mono.error(NoSuchKeyException.builder().build()));
+        when(s3.upload(any(), any(), any(), any(), any())).thenReturn(Mono.just(PutObjectResponse.builder().build()));
+        when(s3.metadata(any(), any(), eq(10))).thenReturn(Flux.just("/from/bucket/maven-metadata.xml"));
+        when(s3.list("releases", "/")).thenReturn(Flux.just("foo/", "README.md"));
+        when(s3.list("releases", "/foo/")).thenReturn(Flux.just("bar/", "maven-metadata.xml"));
+        when(s3.keys("releases", "foo/bar/")).thenReturn(Flux.just(
+                "foo/bar/1.0-SNAPSHOT/maven-metadata.xml", "foo/bar/1.0/bar-1.0.jar", "foo/bar/maven-metadata.xml"));
+
+        index = new MetadataIndexS3Repository(s3, Duration.ofHours(1), Duration.ZERO, 4, true,
+                new BucketPermissions(Duration.ofMinutes(1), 100));
+    }
+
+    @Test
+    void testMissingIndexIsRebuiltAndStored() {
+        // GIVEN (the first request is answered by the bucket and triggers the rebuild, which completes immediately here)
+        metadata(null, 10);
+
+        // WHEN
+        List<String> page = metadata(null, 10);
+
+        // THEN
+        assertThat(page).containsExactly("/foo/bar/maven-metadata.xml", "/foo/maven-metadata.xml");
+        assertThat(storedKeys()).containsExactly("foo/bar/maven-metadata.xml", "foo/maven-metadata.xml");
+        verify(s3, times(1)).metadata(any(), any(), eq(10));
+    }
+
+    @Test
+    void testIndexIsNotLoadedForDeniedClient() {
+        // GIVEN
+        when(s3.metadata(any(), any(), eq(10))).thenReturn(Flux.error(S3Exception.builder().statusCode(403).build()));
+
+        // WHEN
+        index.metadata("releases", null, 10)
+                .contextWrite(this::injectCredentials)
+                .onErrorResume(S3Exception.class, e -> Flux.empty())
+                .blockLast();
+
+        // THEN
+        verify(s3, after(100).never()).download("releases", INDEX_KEY);
+        verify(s3, never()).list(any(), any());
+    }
+
+    @Test
+    void testIndexIsNotUsedForUnknownClient() {
+        // GIVEN
+        givenStoredIndex("a/a/maven-metadata.xml");
+        metadata(null, 10);
+
+        // WHEN
+        List<String> page = index.metadata("releases", null, 10)
+                .contextWrite(context -> context.put(S3_CREDENTIALS_PROVIDER,
+                        (AwsCredentialsProvider) () -> AwsBasicCredentials.create("other", "secret")))
+                .collectList()
+                .block();
+
+        // THEN
+        assertThat(page).containsExactly("/from/bucket/maven-metadata.xml");
+    }
+
+    @Test
+    void testBucketIsAskedUntilIndexIsLoaded() {
+        // GIVEN
+        when(s3.download("releases", INDEX_KEY)).thenReturn(Mono.never());
+
+        // WHEN
+        List<String> page = metadata(null, 10);
+
+        // THEN
+        assertThat(page).containsExactly("/from/bucket/maven-metadata.xml");
+    }
+
+    @Test
+    void testStoredIndexIsPaged() {
+        // GIVEN
+        givenStoredIndex("a/a/maven-metadata.xml", "a/b/maven-metadata.xml", "a/c/maven-metadata.xml");
+        metadata(null, 10);
+
+        // WHEN
+        List<String> page = metadata("a/a/maven-metadata.xml", 1);
+
+        // THEN
+        assertThat(page).containsExactly("/a/b/maven-metadata.xml");
+        verify(s3, never()).list(any(), any());
+        verify(s3, never()).metadata(any(), any(), eq(1));
+        verify(s3, after(100).never()).upload(eq("releases"), eq(INDEX_KEY), any(), any(), any());
+    }
+
+    @Test
+    void testUploadedMetadataIsAdded() {
+        // GIVEN
+        givenStoredIndex("a/a/maven-metadata.xml");
+        metadata(null, 10);
+
+        // WHEN
+        index.upload("releases", "a/b/maven-metadata.xml", "application/xml", 0L, Flux.empty())
+                .contextWrite(this::injectCredentials)
+                .block();
+
+        // THEN
+        assertThat(metadata(null, 10)).containsExactly("/a/a/maven-metadata.xml", "/a/b/maven-metadata.xml");
+        assertThat(storedKeys()).containsExactly("a/a/maven-metadata.xml", "a/b/maven-metadata.xml");
+    }
+
+    @Test
+    void testStoredIndexIsReplacedConditionally() {
+        // GIVEN
+        givenStoredIndex("a/a/maven-metadata.xml");
+        var conditions = new ArrayList<String>();
+        when(s3.upload(eq("releases"), eq(INDEX_KEY), any(), any(), any())).thenAnswer(invocation -> Mono.deferContextual(ctx -> {
+            conditions.add(ctx.getOrDefault(S3Repository.IF_MATCH, null));
+            // the first write conflicts with a concurrent one
+            return conditions.size() == 1
+                    ? Mono.error(S3Exception.builder().statusCode(412).build())
+                    : Mono.just(PutObjectResponse.builder().build());
+        }));
+        metadata(null, 10);
+
+        // WHEN
+        index.upload("releases", "a/b/maven-metadata.xml", "application/xml", 0L, Flux.empty())
+                .contextWrite(this::injectCredentials)
+                .block();
+
+        // THEN
+        verify(s3, timeout(1000).times(2)).upload(eq("releases"), eq(INDEX_KEY), any(), any(), any());
+        assertThat(conditions).containsExactly("\"1\"", "\"1\"");
+    }
+
+    @Test
+    void testInternalObjectsAreNotListed() {
+        // GIVEN
+        when(s3.list("releases", "/")).thenReturn(Flux.just(".mvnio/", "foo/"));
+        when(s3.keys("releases", null, null)).thenReturn(Flux.just(INDEX_KEY, "foo/bar/maven-metadata.xml"));
+
+        // WHEN
+        List<String> entries = index.list("releases", "/").collectList().block();
+        List<String> keys = index.keys("releases", null).collectList().block();
+        List<String> internal = index.list("releases", "/.mvnio/").collectList().block();
+
+        // THEN
+        assertThat(entries).containsExactly("foo/");
+        assertThat(keys).containsExactly("foo/bar/maven-metadata.xml");
+        assertThat(internal).isEmpty();
+        verify(s3, never()).list("releases", "/.mvnio/");
+    }
+
+    private void givenStoredIndex(String... keys) {
+        MetadataIndex stored = new MetadataIndex();
+        stored.addAll(List.of(keys));
+        byte[] bytes = stored.toBytes();
+
+        when(s3.download("releases", INDEX_KEY)).thenReturn(Mono.fromSupplier(() -> Download.builder()
+                .content(Flux.just(ByteBuffer.wrap(bytes)))
+                .contentLength(bytes.length)
+                .eTag("\"1\"")
+                .build()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> storedKeys() {
+        ArgumentCaptor<Publisher<ByteBuffer>> content = ArgumentCaptor.forClass(Publisher.class);
+        verify(s3, timeout(1000)).upload(eq("releases"), eq(INDEX_KEY), any(), any(), content.capture());
+
+        ByteBuffer buffer = Flux.from(content.getValue()).blockFirst();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return MetadataIndex.parse(bytes);
+    }
+
+    private List<String> metadata(String startAfter, int limit) {
+        return index.metadata("releases", startAfter, limit)
+                .contextWrite(this::injectCredentials)
+                .collectList()
+                .block();
+    }
+
+    private Context injectCredentials(Context context) {
+        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create("user", "secret");
+        return context.put(S3_CREDENTIALS_PROVIDER, credentialsProvider);
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.j3t.mvnio.storage.limit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.j3t.mvnio.error.ClientError;
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.Page;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+class ConcurrencyLimitS3RepositoryTest {
+
+    static final String KEY = "foo/bar/1.0.1/bar-1.0.1.jar";
+
+    S3Repository s3;
+
+    MeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        s3 = mock(S3Repository.class);
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testRequestIsRejectedIfLimitIsReached() {
+        // GIVEN
+        var limiter = limiter(1, 0);
+        when(s3.head(any(), any())).thenReturn(Mono.never());
+        limiter.head("releases", KEY).subscribe();
+
+        // WHEN
+        StepVerifier.create(limiter.head("releases", KEY))
+
+                // THEN
+                .expectErrorSatisfies(e -> assertThat(((ClientError) e).getReturnCode()).isEqualTo(503))
+                .verify();
+        assertThat(registry.get("s3.limiter.rejections").counter().count()).isEqualTo(1);
+        assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void testRequestWaitsForPermit() {
+        // GIVEN
+        var limiter = limiter(1, 1);
+        Sinks.One<HeadObjectResponse> first = Sinks.one();
+        when(s3.head("releases", "first")).thenReturn(first.asMono());
+        when(s3.head("releases", "second")).thenReturn(Mono.just(HeadObjectResponse.builder().build()));
+        limiter.head("releases", "first").subscribe();
+
+        // WHEN
+        StepVerifier.create(limiter.head("releases", "second"))
+                .then(() -> assertThat(registry.get("s3.limiter.queue").gauge().value()).isEqualTo(1))
+                .then(() -> first.tryEmitValue(HeadObjectResponse.builder().build()))
+
+                // THEN
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void testWaitingRequestIsRejectedAfterMaxWait() {
+        // GIVEN
+        var limiter = limiter(1, 1);
+        when(s3.head(any(), any())).thenReturn(Mono.never());
+        limiter.head("releases", KEY).subscribe();
+
+        // WHEN
+        StepVerifier.create(limiter.head("releases", KEY))
+
+                // THEN
+                .expectError(ClientError.class)
+                .verify(Duration.ofSeconds(5));
+        assertThat(registry.get("s3.limiter.queue").gauge().value()).isZero();
+    }
+
+    @Test
+    void testDownloadHoldsPermitUntilContentIsTransferred() {
+        // GIVEN
+        var limiter = limiter(1, 0);
+        when(s3.download(any(), any(), any())).thenReturn(Mono.just(Download.builder()
+                .content(Flux.just(ByteBuffer.allocate(1)))
+                .build()));
+        Download download = limiter.download("releases", KEY).block();
+
+        // WHEN
+        assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isEqualTo(1);
+        download.getContent().blockLast();
+
+        // THEN
+        assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void testDownloadReleasesPermitIfContentIsNotRequested() {
+        // GIVEN
+        var limiter = limiter(1, 0);
+        when(s3.download(any(), any(), any())).thenReturn(Mono.just(Download.builder()
+                .content(Flux.just(ByteBuffer.allocate(1)))
+                .build()));
+        Download download = limiter.download("releases", KEY).block();
+
+        // WHEN
+        assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isEqualTo(1);
+        Mono.delay(Duration.ofMillis(500)).block();
+
+        // THEN
+        assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isZero();
+        // the content can still be requested, but the permit isn't released again
+        download.getContent().blockLast();
+        assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void testMultipartUploadHoldsPermitPerPart() {
+        // GIVEN
+        var limiter = limiter(4, 0);
+        when(s3.upload(any(), any(), any(), any(), any())).thenReturn(Mono.never());
+        when(s3.head(any(), any())).thenReturn(Mono.just(HeadObjectResponse.builder().build()));
+        limiter.upload("releases", KEY, "application/java-archive", 2048L, Flux.empty()).subscribe();
+
+        // WHEN
+        StepVerifier.create(limiter.head("releases", KEY))
+
+                // THEN
+                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(ClientError.class))
+                .verify(Duration.ofSeconds(5));
+        assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isEqualTo(4);
+    }
+
+    @Test
+    void testMultipartUploadIsNotBlockedByLowLimit() {
+        // GIVEN
+        var limiter = limiter(1, 0);
+        when(s3.upload(any(), any(), any(), any(), any())).thenReturn(Mono.just(PutObjectResponse.builder().build()));
+
+        // WHEN
+        StepVerifier.create(limiter.upload("releases", KEY, "application/java-archive", null, Flux.empty()))
+
+                // THEN
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void testListingHoldsPermitPerPage() {
+        // GIVEN (two keys per page)
+        var limiter = limiter(1, 0);
+        when(s3.keys("releases", null, null)).thenReturn(Flux.just("a", "b", "c"));
+        when(s3.keys("releases", null, "b")).thenReturn(Flux.just("c"));
+
+        // WHEN
+        StepVerifier.create(limiter.keys("releases", null), 2)
+                .expectNext("a", "b")
+
+                // THEN
+                .then(() -> assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isZero())
+                .thenRequest(1)
+                .expectNext("c")
+                .verifyComplete();
+    }
+
+    @Test
+    void testDirectoryIsListedPageByPage() {
+        // GIVEN
+        var limiter = limiter(1, 0);
+        when(s3.list("releases", "/foo", null, 2)).thenReturn(Mono.just(new Page(List.of("1.0/", "1.1/"), "next")));
+        when(s3.list("releases", "/foo", "next", 2)).thenReturn(Mono.just(new Page(List.of("maven-metadata.xml"), null)));
+
+        // WHEN
+        StepVerifier.create(limiter.list("releases", "/foo"))
+
+                // THEN
+                .expectNext("1.0/", "1.1/", "maven-metadata.xml")
+                .verifyComplete();
+        assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void testLimitIsIncreasedIfFast() {
+        // GIVEN
+        var limiter = limiter(1, 0);
+        when(s3.head(any(), any())).thenReturn(Mono.just(HeadObjectResponse.builder().build()));
+
+        // WHEN
+        limiter.head("releases", KEY).block();
+
+        // THEN
+        assertThat(registry.get("s3.limiter.limit").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void testLimitIsDecreasedIfThrottled() {
+        // GIVEN
+        var limiter = new ConcurrencyLimitS3Repository(s3, 20, 64, Duration.ofSeconds(1), 0, Duration.ofMillis(100),
+                1024, 4, Duration.ofMillis(200), 2);
+        limiter.bindTo(registry);
+        when(s3.head(any(), any())).thenReturn(Mono.error(S3Exception.builder().statusCode(503).build()));
+
+        // WHEN
+        StepVerifier.create(limiter.head("releases", KEY)).verifyError(S3Exception.class);
+
+        // THEN
+        assertThat(registry.get("s3.limiter.limit").gauge().value()).isEqualTo(18);
+        assertThat(registry.get("s3.limiter.in-flight").gauge().value()).isZero();
+    }
+
+    private ConcurrencyLimitS3Repository limiter(int initialLimit, int maxQueue) {
+        var limiter = new ConcurrencyLimitS3Repository(s3, initialLimit, 64, Duration.ofSeconds(1), maxQueue,
+                Duration.ofMillis(100), 1024, 4, Duration.ofMillis(200), 2);
+        limiter.bindTo(registry);
+        return limiter;
+    }
+}
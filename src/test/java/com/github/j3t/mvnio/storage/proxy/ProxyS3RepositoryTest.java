@@ -0,0 +1,204 @@
+package com.github.j3t.mvnio.storage.proxy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+
+import com.github.j3t.mvnio.storage.Download;
+import com.github.j3t.mvnio.storage.S3Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+class ProxyS3RepositoryTest {
+
+    static final String JAR = "foo/bar/1.0/bar-1.0.jar";
+    static final String CONTENT = "jar content ".repeat(10_000);
+
+    // a local upstream repository which knows the jar and a metadata file only
+    DisposableServer upstream;
+    AtomicInteger upstreamRequests = new AtomicInteger();
+
+    S3Repository s3;
+    Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    ProxyS3Repository proxy;
+
+    @BeforeEach
+    void setUp() {
+        upstream = HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/maven2/" + JAR, (request, response) -> {
+                            upstreamRequests.incrementAndGet();
+                            // the response is delayed, so that concurrent requests overlap
+                            return response.header("Content-Type", "application/java-archive")
+                                    .header("Content-Length", String.valueOf(CONTENT.length()))
+                                    .sendString(Mono.just(CONTENT).delayElement(Duration.ofMillis(200)));
+                        })
+                        .get("/maven2/foo/bar/maven-metadata.xml", (request, response) -> {
+                            upstreamRequests.incrementAndGet();
+                            return response.sendString(Mono.just("<metadata/>"));
+                        }))
+                .bindNow();
+
+        s3 = mock(S3Repository.class);
+        when(s3.download(eq("central"), anyString(), isNull())).thenAnswer(invocation -> Mono.defer(() -> {
+            byte[] content = objects.get(invocation.<String>getArgument(1));
+            return content == null
+                    ? Mono.error(NoSuchKeyException.builder().build())
+                    : Mono.just(Download.builder()
+                    .content(Flux.just(ByteBuffer.wrap(content)))
+                    .contentLength(content.length)
+                    .build());
+        }));
+        when(s3.upload(eq("central"), anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(1);
+            return read(invocation.getArgument(4))
+                    .doOnNext(content -> objects.put(key, content))
+                    .thenReturn(PutObjectResponse.builder().build());
+        });
+
+        proxy = new ProxyS3Repository(s3,
+                Map.of("central", URI.create("http://localhost:" + upstream.port() + "/maven2")),
+                4,
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.disposeNow();
+    }
+
+    @Test
+    void testMissingObjectIsFetchedAndStored() {
+        // WHEN
+        Download download = proxy.download("central", JAR).block();
+
+        // THEN
+        assertThat(download.getContentType()).isEqualTo("application/java-archive");
+        assertThat(download.getContentLength()).isEqualTo(CONTENT.length());
+        assertThat(new String(read(download.getContent()).block(), UTF_8)).isEqualTo(CONTENT);
+        verify(s3, after(500)).upload(eq("central"), eq(JAR), eq("application/java-archive"), eq((long) CONTENT.length()), any());
+        assertThat(objects.get(JAR)).isEqualTo(CONTENT.getBytes(UTF_8));
+    }
+
+    @Test
+    void testConcurrentMissesAreFetchedOnce() {
+        // WHEN
+        List<String> contents = Flux.range(0, 4)
+                .flatMap(i -> proxy.download("central", JAR).flatMap(download -> read(download.getContent())))
+                .map(content -> new String(content, UTF_8))
+                .collectList()
+                .block();
+
+        // THEN
+        assertThat(contents).hasSize(4).allMatch(CONTENT::equals);
+        assertThat(upstreamRequests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testUnreadObjectIsStored() {
+        // GIVEN
+        proxy = new ProxyS3Repository(s3,
+                Map.of("central", URI.create("http://localhost:" + upstream.port() + "/maven2")),
+                4,
+                Duration.ofSeconds(5),
+                Duration.ofMillis(300));
+
+        // WHEN
+        Download download = proxy.download("central", JAR).block();
+
+        // THEN
+        verify(s3, after(1000)).upload(eq("central"), eq(JAR), eq("application/java-archive"), eq((long) CONTENT.length()), any());
+        assertThat(objects.get(JAR)).isEqualTo(CONTENT.getBytes(UTF_8));
+        StepVerifier.create(download.getContent())
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+    @Test
+    void testCancelledFetchIsNotWaitedFor() {
+        // GIVEN
+        proxy.download("central", JAR).subscribe().dispose();
+
+        // WHEN
+        Download download = proxy.download("central", JAR).block(Duration.ofSeconds(2));
+
+        // THEN
+        assertThat(new String(read(download.getContent()).block(), UTF_8)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void testMissingUpstreamIsNotFound() {
+        // WHEN
+        StepVerifier.create(proxy.download("central", "foo/bar/2.0/bar-2.0.jar"))
+
+                // THEN
+                .expectError(NoSuchKeyException.class)
+                .verify();
+    }
+
+    @Test
+    void testMetadataIsPassedThrough() {
+        // WHEN
+        Download download = proxy.download("central", "foo/bar/maven-metadata.xml").block();
+
+        // THEN
+        assertThat(new String(read(download.getContent()).block(), UTF_8)).isEqualTo("<metadata/>");
+        verify(s3, after(200).never()).upload(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testOtherBucketsAreNotProxied() {
+        // GIVEN
+        when(s3.download("releases", JAR, null)).thenReturn(Mono.error(NoSuchKeyException.builder().build()));
+
+        // WHEN
+        StepVerifier.create(proxy.download("releases", JAR))
+
+                // THEN
+                .expectError(NoSuchKeyException.class)
+                .verify();
+        assertThat(upstreamRequests.get()).isZero();
+    }
+
+    private static Mono<byte[]> read(Publisher<ByteBuffer> content) {
+        return Flux.from(content)
+                .reduce(new ByteArrayOutputStream(), (out, buffer) -> {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.duplicate().get(bytes);
+                    out.writeBytes(bytes);
+                    return out;
+                })
+                .map(ByteArrayOutputStream::toByteArray);
+    }
+}